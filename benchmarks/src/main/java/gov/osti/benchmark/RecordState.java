@@ -0,0 +1,65 @@
+/*
+ */
+package gov.osti.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import gov.osti.entity.DOECodeMetadata;
+import gov.osti.search.SearchResponse;
+import java.io.IOException;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Shared benchmark state:  a synthetic record of each size, its JSON, and a
+ * page of search results made of such records, both mapped and as the raw
+ * SOLR result.
+ *
+ * @author ensornl
+ */
+@State(Scope.Benchmark)
+public class RecordState {
+    /** the number of records in a page of search results */
+    public static final int PAGE_SIZE = 20;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    @Param({"small", "median", "huge"})
+    public String size;
+
+    /** a single record */
+    public DOECodeMetadata record;
+    /** the record's JSON, as posted to the API */
+    public String json;
+    /** a page of search results */
+    public SearchResponse page;
+    /** the same page of search results, as returned by SOLR */
+    public byte[] solr;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        record = Records.metadata(size, 1);
+        json = Records.json(size, 1).toString();
+
+        page = new SearchResponse();
+        page.setStart(0);
+        page.setNumFound(PAGE_SIZE * 10);
+
+        ObjectNode result = mapper.createObjectNode();
+        ObjectNode response = result.putObject("response");
+        response.put("numFound", PAGE_SIZE * 10);
+        response.put("start", 0);
+        ArrayNode docs = response.putArray("docs");
+
+        for ( int i = 0; i<PAGE_SIZE; ++i ) {
+            DOECodeMetadata md = Records.metadata(size, i + 1);
+            page.add(md);
+            docs.addObject().put("json", md.toJson().toString());
+        }
+        solr = mapper.writeValueAsBytes(result);
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ */
+package gov.osti.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import gov.osti.entity.DOECodeMetadata;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+/**
+ * Generates synthetic DOECodeMetadata records of representative sizes for
+ * the serialization benchmarks.
+ *
+ * Records are built as JSON and parsed through DOECodeMetadata.parseJson, so
+ * they have the same shape as records read from the API.  Generation is
+ * seeded, so a given size always produces the same record.
+ *
+ * Sizes:
+ * small - a single developer, short description, no related identifiers
+ * median - a handful of developers, organizations, and identifiers
+ * huge - hundreds of developers and a very long description
+ *
+ * @author ensornl
+ */
+public class Records {
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private static final String[] WORDS = {
+        "simulation", "parallel", "solver", "mesh", "neutron", "transport",
+        "climate", "model", "particle", "accelerator", "grid", "data",
+        "analysis", "framework", "library", "kernel", "performance", "energy",
+        "materials", "quantum", "scalable", "toolkit", "visualization", "the",
+        "of", "and", "for", "with", "a", "in"
+    };
+
+    /**
+     * The number of each kind of element to generate for a record size.
+     */
+    private static class Shape {
+        private final int developers;
+        private final int contributors;
+        private final int sponsors;
+        private final int researchOrgs;
+        private final int relatedIdentifiers;
+        private final int descriptionWords;
+
+        Shape(int developers, int contributors, int sponsors, int researchOrgs, int relatedIdentifiers, int descriptionWords) {
+            this.developers = developers;
+            this.contributors = contributors;
+            this.sponsors = sponsors;
+            this.researchOrgs = researchOrgs;
+            this.relatedIdentifiers = relatedIdentifiers;
+            this.descriptionWords = descriptionWords;
+        }
+    }
+
+    /**
+     * Look up the element counts for a named size.
+     *
+     * @param size one of "small", "median", or "huge"
+     * @return the Shape of that size
+     */
+    private static Shape shapeOf(String size) {
+        if ("small".equals(size))
+            return new Shape(1, 0, 1, 1, 0, 40);
+        if ("median".equals(size))
+            return new Shape(4, 2, 2, 2, 3, 250);
+        if ("huge".equals(size))
+            return new Shape(400, 40, 10, 20, 100, 20000);
+
+        throw new IllegalArgumentException("Unknown record size: " + size);
+    }
+
+    /**
+     * Construct a string of random words.
+     *
+     * @param random the source of randomness
+     * @param count the number of words
+     * @return the words, space separated
+     */
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+
+        for ( int i = 0; i<count; ++i ) {
+            if (i>0)
+                text.append(' ');
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Construct the JSON of a synthetic record.
+     *
+     * @param size one of "small", "median", or "huge"
+     * @param codeId the CODE ID to assign
+     * @return the record JSON, in API (snake_case) form
+     */
+    public static ObjectNode json(String size, long codeId) {
+        Shape shape = shapeOf(size);
+        Random random = new Random(codeId * 31 + size.hashCode());
+        ObjectNode record = mapper.createObjectNode();
+
+        record.put("code_id", codeId);
+        record.put("software_title", "Synthetic " + words(random, 5));
+        record.put("acronym", "SYN" + codeId);
+        record.put("description", words(random, shape.descriptionWords));
+        record.put("doi", "10.11578/dc.20170601." + codeId);
+        record.put("site_ownership_code", "ORNL");
+        record.put("open_source", true);
+        record.put("repository_link", "https://github.com/doecode/synthetic-" + codeId);
+        record.put("accessibility", "OS");
+        record.put("country_of_origin", "United States");
+        record.put("keywords", words(random, 8));
+        record.put("release_date", "2017-06-01");
+        record.put("owner", "synthetic@example.gov");
+        record.putArray("licenses").add("MIT").add("Apache License 2.0");
+
+        ArrayNode developers = record.putArray("developers");
+        for ( int i = 0; i<shape.developers; ++i ) {
+            ObjectNode developer = developers.addObject();
+            developer.put("first_name", "First" + i);
+            developer.put("middle_name", "M");
+            developer.put("last_name", "Developer" + i);
+            developer.put("email", "developer" + i + "@example.gov");
+            developer.put("orcid", String.format("0000-0002-%04d-%04d", i / 10000, i % 10000));
+            developer.putArray("affiliations").add("Oak Ridge National Laboratory").add(words(random, 3));
+        }
+
+        ArrayNode contributors = record.putArray("contributors");
+        for ( int i = 0; i<shape.contributors; ++i ) {
+            ObjectNode contributor = contributors.addObject();
+            contributor.put("first_name", "First" + i);
+            contributor.put("last_name", "Contributor" + i);
+            contributor.put("email", "contributor" + i + "@example.gov");
+            contributor.put("contributor_type", "DataCurator");
+            contributor.putArray("affiliations").add(words(random, 3));
+        }
+
+        ArrayNode sponsors = record.putArray("sponsoring_organizations");
+        for ( int i = 0; i<shape.sponsors; ++i ) {
+            ObjectNode sponsor = sponsors.addObject();
+            sponsor.put("organization_name", "Office of Science " + i);
+            sponsor.put("primary_award", "AC05-00OR" + (22725 + i));
+            sponsor.put("DOE", true);
+            ObjectNode funding = sponsor.putArray("funding_identifiers").addObject();
+            funding.put("identifier_type", "AwardNumber");
+            funding.put("identifier_value", "SC00" + (1000 + i));
+        }
+
+        ArrayNode researchOrgs = record.putArray("research_organizations");
+        for ( int i = 0; i<shape.researchOrgs; ++i ) {
+            ObjectNode org = researchOrgs.addObject();
+            org.put("organization_name", "Research Organization " + i);
+            org.put("DOE", i % 2==0);
+        }
+
+        ArrayNode related = record.putArray("related_identifiers");
+        for ( int i = 0; i<shape.relatedIdentifiers; ++i ) {
+            ObjectNode identifier = related.addObject();
+            identifier.put("identifier_type", "DOI");
+            identifier.put("identifier_value", "10.5555/related." + codeId + "." + i);
+            identifier.put("relation_type", "IsCitedBy");
+        }
+
+        return record;
+    }
+
+    /**
+     * Construct a synthetic record.
+     *
+     * @param size one of "small", "median", or "huge"
+     * @param codeId the CODE ID to assign
+     * @return the DOECodeMetadata record
+     * @throws IOException if the generated JSON could not be parsed
+     */
+    public static DOECodeMetadata metadata(String size, long codeId) throws IOException {
+        return DOECodeMetadata.parseJson(new StringReader(json(size, codeId).toString()));
+    }
+}
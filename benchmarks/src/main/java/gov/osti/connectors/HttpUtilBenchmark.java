@@ -0,0 +1,42 @@
+/*
+ */
+package gov.osti.connectors;
+
+import gov.osti.benchmark.RecordState;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark the HttpUtil metadata writers used for record output.
+ *
+ * @author ensornl
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpUtilBenchmark {
+
+    @Benchmark
+    public String writeMetadataYaml(RecordState state) throws IOException {
+        return HttpUtil.writeMetadataYaml(state.record);
+    }
+
+    @Benchmark
+    public String writeXml(RecordState state) throws IOException {
+        return HttpUtil.writeXml(state.record);
+    }
+
+    @Benchmark
+    public String writeJson(RecordState state) throws IOException {
+        return HttpUtil.writeJson(state.record);
+    }
+}
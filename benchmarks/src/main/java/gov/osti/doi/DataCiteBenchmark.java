@@ -0,0 +1,33 @@
+/*
+ */
+package gov.osti.doi;
+
+import gov.osti.benchmark.RecordState;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.xml.stream.XMLStreamException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark the StAX DataCite metadata XML writer used for DOI registration.
+ *
+ * @author ensornl
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataCiteBenchmark {
+
+    @Benchmark
+    public String writeMetadata(RecordState state) throws IOException, XMLStreamException {
+        return DataCite.writeMetadata(state.record);
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ */
+package gov.osti.entity;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import gov.osti.benchmark.RecordState;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark the DOECodeMetadata JSON conversions used for storage, API
+ * responses, and parsing of submitted records.
+ *
+ * @author ensornl
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetadataJsonBenchmark {
+
+    @Benchmark
+    public JsonNode toJson(RecordState state) {
+        return state.record.toJson();
+    }
+
+    @Benchmark
+    public String toJsonString(RecordState state) {
+        return state.record.toJson().toString();
+    }
+
+    @Benchmark
+    public DOECodeMetadata parseJson(RecordState state) throws IOException {
+        return DOECodeMetadata.parseJson(new StringReader(state.json));
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ */
+package gov.osti.indexer;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import gov.osti.benchmark.RecordState;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark construction and serialization of search index documents, via
+ * the index mapper and its AgentSerializer.
+ *
+ * @author ensornl
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolrIndexerBenchmark {
+
+    @Benchmark
+    public ObjectNode toDocument(RecordState state) {
+        return SolrIndexer.toDocument(state.record);
+    }
+
+    @Benchmark
+    public String writeDocument(RecordState state) throws IOException {
+        return SolrIndexer.index_mapper.writeValueAsString(SolrIndexer.toDocument(state.record));
+    }
+}
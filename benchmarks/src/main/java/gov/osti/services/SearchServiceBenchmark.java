@@ -0,0 +1,92 @@
+/*
+ */
+package gov.osti.services;
+
+import gov.osti.benchmark.RecordState;
+import gov.osti.entity.DOECodeMetadata;
+import gov.osti.search.SearchResponse;
+import gov.osti.search.SolrDocument;
+import gov.osti.search.SolrResult;
+import gov.osti.search.StreamingSearchResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark the SearchService response mappers, with the property name
+ * filter applied, for both single-record and search result page responses,
+ * and the streamed JSON search result path.
+ *
+ * @author ensornl
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchServiceBenchmark {
+
+    @Benchmark
+    public String recordJson(RecordState state) throws IOException {
+        return SearchService.BIBLIO_WRAPPER.writer(SearchService.filter).writeValueAsString(state.record);
+    }
+
+    @Benchmark
+    public String recordXml(RecordState state) throws IOException {
+        return SearchService.XML_MAPPER.writer(SearchService.filter).writeValueAsString(state.record);
+    }
+
+    @Benchmark
+    public String recordYaml(RecordState state) throws IOException {
+        return SearchService.YAML_MAPPER.writer(SearchService.filter).writeValueAsString(state.record);
+    }
+
+    @Benchmark
+    public String pageJson(RecordState state) throws IOException {
+        return SearchService.JSON_MAPPER.writer(SearchService.filter).writeValueAsString(state.page);
+    }
+
+    @Benchmark
+    public String pageJsonMapped(RecordState state) throws IOException {
+        SolrResult result = SearchService.JSON_MAPPER.readValue(new String(state.solr, StandardCharsets.UTF_8), SolrResult.class);
+        SearchResponse query = new SearchResponse();
+        query.setStart(result.getSearchResponse().getStart());
+        query.setNumFound(result.getSearchResponse().getNumFound());
+
+        for ( SolrDocument doc : result.getSearchResponse().getDocuments() )
+            query.add(SearchService.JSON_MAPPER.readValue(doc.getJson(), DOECodeMetadata.class));
+
+        return SearchService.JSON_MAPPER.writer(SearchService.filter).writeValueAsString(query);
+    }
+
+    @Benchmark
+    public byte[] pageJsonStreamed(RecordState state) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new StreamingSearchResponse(new ByteArrayInputStream(state.solr),
+                SearchService.JSON_MAPPER, Arrays.asList(SearchService.ignoreProperties), null)
+                .write(out);
+
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public String pageXml(RecordState state) throws IOException {
+        return SearchService.XML_MAPPER.writer(SearchService.filter).writeValueAsString(state.page);
+    }
+
+    @Benchmark
+    public String pageYaml(RecordState state) throws IOException {
+        return SearchService.YAML_MAPPER.writer(SearchService.filter).writeValueAsString(state.page);
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ */
+package gov.osti.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * A simple bounded, in-memory cache whose entries expire after a time to live.
+ *
+ * When full, the least-recently-used entry is evicted.  A cache may also be
+ * bounded by the total weight (e.g., size in bytes) of its values, evicting
+ * least-recently-used entries until within the bound.  Expired entries are
+ * removed on access.  All operations are thread-safe.
+ *
+ * @author ensornl
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class ExpiringCache<K, V> {
+    /**
+     * A cached value and its expiration time.
+     */
+    private static class Entry<V> {
+        private final V value;
+        private final long expires;
+        private final long weight;
+
+        Entry(V value, long expires, long weight) {
+            this.value = value;
+            this.expires = expires;
+            this.weight = weight;
+        }
+    }
+
+    private final int maxSize;
+    private final long ttl;
+    private final long maxWeight;
+    private final ToLongFunction<? super V> weigher;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private long weight = 0;
+
+    // statistics
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * Construct a cache.
+     *
+     * @param maxSize the maximum number of entries to hold
+     * @param ttl the default time to live of each entry, in milliseconds
+     */
+    public ExpiringCache(int maxSize, long ttl) {
+        this(maxSize, ttl, Long.MAX_VALUE, value -> 0);
+    }
+
+    /**
+     * Construct a cache also bounded by the total weight of its values.
+     *
+     * @param maxSize the maximum number of entries to hold
+     * @param ttl the default time to live of each entry, in milliseconds
+     * @param maxWeight the maximum total weight of values held
+     * @param weigher determines the weight of each value
+     */
+    public ExpiringCache(int maxSize, long ttl, long maxWeight, ToLongFunction<? super V> weigher) {
+        this.maxSize = Math.max(1, maxSize);
+        this.ttl = ttl;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        // access-ordered, so the eldest entry is the least-recently used
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size()>ExpiringCache.this.maxSize) {
+                    ++evictions;
+                    weight -= eldest.getValue().weight;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Obtain the current time; may be overridden for testing purposes.
+     *
+     * @return the current time in milliseconds
+     */
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Look up a cached value.
+     *
+     * @param key the KEY to find
+     * @return the value if present and not expired, or null
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+
+        if (null!=entry && entry.expires<=now()) {
+            remove(key);
+            entry = null;
+        }
+        if (null==entry) {
+            ++misses;
+            return null;
+        }
+        ++hits;
+        return entry.value;
+    }
+
+    /**
+     * Cache a value using the default time to live.
+     *
+     * @param key the KEY
+     * @param value the value to cache; null values are not cached
+     */
+    public void put(K key, V value) {
+        put(key, value, ttl);
+    }
+
+    /**
+     * Cache a value with a specific time to live.
+     *
+     * @param key the KEY
+     * @param value the value to cache; null values are not cached
+     * @param timeToLive milliseconds until this entry expires
+     */
+    public synchronized void put(K key, V value, long timeToLive) {
+        if (null==value || timeToLive<=0)
+            return;
+
+        long valueWeight = weigher.applyAsLong(value);
+        remove(key);
+        if (valueWeight>maxWeight)
+            return;
+
+        entries.put(key, new Entry<>(value, now() + timeToLive, valueWeight));
+        weight += valueWeight;
+
+        // evict least-recently used entries until within the weight bound
+        Iterator<Entry<V>> eldest = entries.values().iterator();
+        while (weight>maxWeight && eldest.hasNext()) {
+            weight -= eldest.next().weight;
+            eldest.remove();
+            ++evictions;
+        }
+    }
+
+    /**
+     * Remove an entry, if present, keeping track of the total weight.
+     *
+     * @param key the KEY to remove
+     */
+    private void remove(K key) {
+        Entry<V> entry = entries.remove(key);
+
+        if (null!=entry)
+            weight -= entry.weight;
+    }
+
+    /**
+     * Remove a single entry, if present.
+     *
+     * @param key the KEY to remove
+     */
+    public synchronized void invalidate(K key) {
+        remove(key);
+    }
+
+    /**
+     * Remove all entries matching a condition.
+     *
+     * @param condition test applied to each KEY and value
+     * @return the number of entries removed
+     */
+    public synchronized int invalidateIf(BiPredicate<? super K, ? super V> condition) {
+        int removed = 0;
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+
+        while (it.hasNext()) {
+            Map.Entry<K, Entry<V>> entry = it.next();
+
+            if (condition.test(entry.getKey(), entry.getValue().value)) {
+                weight -= entry.getValue().weight;
+                it.remove();
+                ++removed;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * @return the number of entries presently held, including any expired
+     * but not yet removed
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Report the cache size and hit ratio counters.
+     *
+     * @return a Map of cache statistics
+     */
+    public synchronized Map<String,Object> getStatistics() {
+        Map<String,Object> statistics = new LinkedHashMap<>();
+
+        statistics.put("size", entries.size());
+        statistics.put("max_size", maxSize);
+        if (Long.MAX_VALUE!=maxWeight) {
+            statistics.put("weight", weight);
+            statistics.put("max_weight", maxWeight);
+        }
+        statistics.put("hits", hits);
+        statistics.put("misses", misses);
+        statistics.put("evictions", evictions);
+
+        return statistics;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ */
+package gov.osti.cache;
+
+import gov.osti.listeners.DoeServletContextListener;
+import gov.osti.search.SolrFacet;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared in-memory cache of unfiltered facet counts (those of every approved
+ * record), keyed by the facets requested.
+ *
+ * Browse pages request the same counts over all records repeatedly; these
+ * only change when records are indexed, so the cache is cleared whenever an
+ * index update completes (see IndexQueue.Listener), and entries otherwise
+ * expire after a time to pick up release date facets for a new year.
+ *
+ * Configuration properties:
+ * facet.cache.size - maximum entries (default 100)
+ * facet.cache.ttl - time to live in milliseconds (default 3600000)
+ *
+ * @author ensornl
+ */
+public class FacetCache {
+    private static final int SIZE = DoeServletContextListener.getConfigurationProperty("facet.cache.size", 100);
+    private static final long TTL = DoeServletContextListener.getConfigurationProperty("facet.cache.ttl", 3600000);
+
+    /**
+     * Reads facet counts from the search index.
+     */
+    public interface Loader {
+        /**
+         * Read the facet counts.
+         *
+         * @return the SolrFacet counts
+         * @throws IOException on search errors
+         */
+        SolrFacet load() throws IOException;
+    }
+
+    private static final ExpiringCache<String, SolrFacet> facets = new ExpiringCache<>(SIZE, TTL);
+
+    // times cleared by index updates
+    private static final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Obtain facet counts, reading them if not already cached.
+     *
+     * @param key the facets requested (e.g., facet names in order)
+     * @param loader the Loader to read them if not cached
+     * @return the SolrFacet counts
+     * @throws IOException if unable to read the counts
+     */
+    public static SolrFacet get(String key, Loader loader) throws IOException {
+        SolrFacet facet = facets.get(key);
+
+        if (null==facet) {
+            long generation = invalidations.get();
+            facet = loader.load();
+            // do not keep counts that may predate an update during the read
+            if (null!=facet && generation==invalidations.get())
+                facets.put(key, facet);
+        }
+        return facet;
+    }
+
+    /**
+     * Discard all cached counts, as records have changed.
+     */
+    public static void invalidate() {
+        invalidations.incrementAndGet();
+        facets.clear();
+    }
+
+    /**
+     * Report cache statistics.
+     *
+     * @return a Map of cache statistics
+     */
+    public static Map<String,Object> getStatistics() {
+        Map<String,Object> statistics = facets.getStatistics();
+
+        statistics.put("invalidations", invalidations.get());
+
+        return statistics;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ */
+package gov.osti.cache;
+
+import gov.osti.listeners.DoeServletContextListener;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared in-memory read-through cache of approved records, keyed by CODE ID,
+ * holding each record ready to send in every output format, and bounded by
+ * total size in bytes.
+ *
+ * Records are read from the approved_metadata table (or the search index) on
+ * first request, and are discarded whenever a record is approved or indexed
+ * (see Metadata.approve, IndexQueue.Listener and ReindexJob), so the next
+ * request reads the new copy.
+ *
+ * Configuration properties:
+ * record.cache.size - maximum records (default 5000)
+ * record.cache.bytes - maximum total size of records in bytes (default 33554432)
+ * record.cache.ttl - time to live in milliseconds (default 3600000)
+ *
+ * @author ensornl
+ */
+public class RecordCache {
+    private static final int SIZE = DoeServletContextListener.getConfigurationProperty("record.cache.size", 5000);
+    private static final long BYTES = DoeServletContextListener.getConfigurationProperty("record.cache.bytes", 33554432);
+    private static final long TTL = DoeServletContextListener.getConfigurationProperty("record.cache.ttl", 3600000);
+
+    /**
+     * An approved record rendered in each output format.
+     */
+    public static class Record {
+        private final byte[] json;
+        private final byte[] yaml;
+        private final byte[] xml;
+
+        /**
+         * Construct a record.
+         *
+         * @param json the JSON rendering
+         * @param yaml the YAML rendering
+         * @param xml the XML rendering
+         */
+        public Record(byte[] json, byte[] yaml, byte[] xml) {
+            this.json = json;
+            this.yaml = yaml;
+            this.xml = xml;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        public byte[] getYaml() {
+            return yaml;
+        }
+
+        public byte[] getXml() {
+            return xml;
+        }
+
+        /**
+         * @return the total size of all renderings in bytes
+         */
+        public long size() {
+            return (long) json.length + yaml.length + xml.length;
+        }
+    }
+
+    /**
+     * Reads and renders an approved record.
+     */
+    public interface Loader {
+        /**
+         * Read the record.
+         *
+         * @param codeId the CODE ID
+         * @return the rendered Record, or null if not found
+         * @throws IOException on read errors
+         */
+        Record load(Long codeId) throws IOException;
+    }
+
+    private static final ExpiringCache<Long, Record> records = new ExpiringCache<>(SIZE, TTL, BYTES, Record::size);
+
+    // times records have been discarded by updates
+    private static final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Obtain an approved record, reading it if not already cached.
+     *
+     * @param codeId the CODE ID
+     * @param loader the Loader to read it if not cached
+     * @return the rendered Record, or null if not found
+     * @throws IOException if unable to read the record
+     */
+    public static Record get(Long codeId, Loader loader) throws IOException {
+        Record record = records.get(codeId);
+
+        if (null==record) {
+            long generation = invalidations.get();
+            record = loader.load(codeId);
+            // do not keep a copy that may predate an update during the read
+            if (null!=record && generation==invalidations.get())
+                records.put(codeId, record);
+        }
+        return record;
+    }
+
+    /**
+     * Discard cached copies of records that have changed.
+     *
+     * @param codeIds the CODE IDs of the changed records
+     */
+    public static void invalidate(Collection<Long> codeIds) {
+        invalidations.incrementAndGet();
+        for ( Long codeId : codeIds )
+            records.invalidate(codeId);
+    }
+
+    /**
+     * Discard all cached records.
+     */
+    public static void invalidate() {
+        invalidations.incrementAndGet();
+        records.clear();
+    }
+
+    /**
+     * Report cache statistics.
+     *
+     * @return a Map of cache statistics
+     */
+    public static Map<String,Object> getStatistics() {
+        Map<String,Object> statistics = records.getStatistics();
+
+        statistics.put("invalidations", invalidations.get());
+
+        return statistics;
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ */
+package gov.osti.cache;
+
+import gov.osti.listeners.DoeServletContextListener;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * Shared in-memory cache of rendered search results, keyed by normalized
+ * search parameters and output format, and bounded by total size in bytes.
+ *
+ * Each result carries a strong entity tag (a digest of its content) for
+ * conditional requests.  Results are tied to the index generation they were
+ * read in; the generation advances whenever records are indexed (see
+ * IndexQueue.Listener and ReindexJob), discarding all earlier results,
+ * including any still being read at the time.
+ *
+ * Configuration properties:
+ * search.cache.size - maximum results (default 1000)
+ * search.cache.bytes - maximum total size of results in bytes (default 16777216)
+ * search.cache.ttl - time to live in milliseconds (default 600000)
+ * search.cache.rows.max - largest page size cached (default 100)
+ *
+ * @author ensornl
+ */
+public class SearchResultCache {
+    private static final int SIZE = DoeServletContextListener.getConfigurationProperty("search.cache.size", 1000);
+    private static final long BYTES = DoeServletContextListener.getConfigurationProperty("search.cache.bytes", 16777216);
+    private static final long TTL = DoeServletContextListener.getConfigurationProperty("search.cache.ttl", 600000);
+    /** largest page size (rows) of results to cache **/
+    public static final int MAX_ROWS = DoeServletContextListener.getConfigurationProperty("search.cache.rows.max", 100);
+
+    /**
+     * A rendered search result.
+     */
+    public static class Result {
+        private final byte[] content;
+        private final String contentType;
+        private final String etag;
+        private final long generation;
+
+        /**
+         * Construct a result.
+         *
+         * @param content the rendered result
+         * @param contentType the content MIME type
+         * @param generation the index generation it was read in
+         */
+        public Result(byte[] content, String contentType, long generation) {
+            this.content = content;
+            this.contentType = contentType;
+            this.etag = digest(content);
+            this.generation = generation;
+        }
+
+        public byte[] getContent() {
+            return content;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        /**
+         * @return the entity tag value (unquoted)
+         */
+        public String getEtag() {
+            return etag;
+        }
+
+        public long getGeneration() {
+            return generation;
+        }
+    }
+
+    private static final ExpiringCache<String, Result> results = new ExpiringCache<>(SIZE, TTL, BYTES,
+            result -> result.content.length);
+
+    // the current index generation
+    private static final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Compute the entity tag of content.
+     *
+     * @param content the content
+     * @return a hex digest of the content
+     */
+    private static String digest(byte[] content) {
+        try {
+            return Hex.encodeHexString(MessageDigest.getInstance("SHA-256").digest(content)).substring(0, 32);
+        } catch ( NoSuchAlgorithmException e ) {
+            // always available
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Construct the cache key.
+     *
+     * @param parameters the normalized search parameters
+     * @param format the output format
+     * @return the key
+     */
+    public static String key(String parameters, String format) {
+        return format + "\n" + parameters;
+    }
+
+    /**
+     * Obtain the current index generation; read before searching, and pass
+     * to the Result to cache.
+     *
+     * @return the generation
+     */
+    public static long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Look up a cached result.
+     *
+     * @param key the key (see key())
+     * @return the Result of the current generation, or null
+     */
+    public static Result get(String key) {
+        Result result = results.get(key);
+
+        return (null==result || generation.get()!=result.generation) ? null : result;
+    }
+
+    /**
+     * Cache a result, unless the index has changed since it was read.
+     *
+     * @param key the key (see key())
+     * @param result the Result
+     */
+    public static void put(String key, Result result) {
+        if (generation.get()==result.generation)
+            results.put(key, result);
+    }
+
+    /**
+     * Advance the index generation, discarding all cached results.
+     */
+    public static void invalidate() {
+        generation.incrementAndGet();
+        results.clear();
+    }
+
+    /**
+     * Report cache statistics.
+     *
+     * @return a Map of cache statistics
+     */
+    public static Map<String,Object> getStatistics() {
+        Map<String,Object> statistics = results.getStatistics();
+
+        statistics.put("generation", generation.get());
+
+        return statistics;
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ */
+package gov.osti.cache;
+
+import gov.osti.listeners.DoeServletContextListener;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory index of Site email domains, to determine the SITE CODE of an
+ * email address.
+ *
+ * Domains are held in a trie of their labels in reverse order ("gov", then
+ * "ornl", then "cs"), so an address is resolved in one step per label of its
+ * domain, to the Site of the longest matching domain suffix: an address at
+ * "cs.ornl.gov" belongs to the Site of "ornl.gov" unless "cs.ornl.gov" is
+ * listed itself.  Addresses of no known Site are contractors ("CONTR").
+ *
+ * The index is read with a single query at startup, and read again after a
+ * time to pick up changes to the SITES and EMAIL_DOMAINS tables, or at once
+ * after invalidate().
+ *
+ * Configuration properties:
+ * site.index.ttl - time in milliseconds before reading the domains again
+ *   (default 3600000)
+ *
+ * @author ensornl
+ */
+public class SiteIndex {
+    // logger
+    private static final Logger log = LoggerFactory.getLogger(SiteIndex.class);
+
+    private static final long TTL = DoeServletContextListener.getConfigurationProperty("site.index.ttl", 3600000);
+
+    /** the SITE CODE of addresses of no known Site **/
+    public static final String CONTRACTOR = "CONTR";
+
+    /**
+     * A domain label, the Site it belongs to if listed, and the labels below
+     * it.
+     */
+    static class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private String siteCode;
+    }
+
+    // the current index; replaced whole, never modified once built
+    private static volatile Node root = null;
+    // when the index was read, and its size
+    private static volatile long loaded;
+    private static int domains = 0;
+    // index reads, and addresses resolved
+    private static long loads = 0;
+    private static final AtomicLong lookups = new AtomicLong();
+    private static final AtomicLong matches = new AtomicLong();
+
+    /**
+     * Read the index at startup.  A failure is logged; reading is tried again
+     * on first use.
+     */
+    public static void start() {
+        try {
+            getRoot();
+            log.info("Site index loaded: " + domains + " email domains.");
+        } catch ( RuntimeException e ) {
+            log.warn("Unable to load site index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Obtain the index, reading it if needed.  If it cannot be read again, the
+     * previous index is kept until the next refresh.
+     *
+     * @return the root Node
+     */
+    private static Node getRoot() {
+        Node current = root;
+
+        if (null!=current && System.currentTimeMillis()-loaded <= TTL)
+            return current;
+
+        synchronized (SiteIndex.class) {
+            if (null!=root && System.currentTimeMillis()-loaded <= TTL)
+                return root;
+
+            EntityManager em = DoeServletContextListener.createEntityManager();
+
+            try {
+                load(em.createQuery("SELECT s.siteCode, d FROM Site s JOIN s.emailDomains d", Object[].class)
+                        .getResultList());
+            } catch ( PersistenceException e ) {
+                if (null==root)
+                    throw e;
+                log.warn("Unable to refresh site index: " + e.getMessage());
+                loaded = System.currentTimeMillis();
+            } finally {
+                em.close();
+            }
+            return root;
+        }
+    }
+
+    /**
+     * Replace the index.
+     *
+     * @param rows rows of SITE CODE and email domain values
+     */
+    static synchronized void load(List<Object[]> rows) {
+        Node top = new Node();
+        int count = 0;
+
+        for ( Object[] row : rows ) {
+            String siteCode = (String) row[0];
+            String[] labels = labels((String) row[1]);
+
+            if (StringUtils.isBlank(siteCode) || 0==labels.length)
+                continue;
+
+            Node node = top;
+            for ( int i = labels.length-1 ; i>=0 ; --i )
+                node = node.children.computeIfAbsent(labels[i], label -> new Node());
+
+            if (null==node.siteCode) {
+                node.siteCode = siteCode;
+                ++count;
+            } else if (!node.siteCode.equals(siteCode)) {
+                log.warn("Email domain " + row[1] + " listed for both " + node.siteCode + " and " + siteCode +
+                        "; using " + node.siteCode);
+            }
+        }
+
+        domains = count;
+        loaded = System.currentTimeMillis();
+        root = top;
+        ++loads;
+    }
+
+    /**
+     * Split the domain of an email address, or a domain, into its labels.
+     *
+     * @param value the email address or domain, such as "@ornl.gov"
+     * @return the lower-case labels, in order; empty if none
+     */
+    private static String[] labels(String value) {
+        String domain = StringUtils.trimToEmpty(StringUtils.substringAfterLast(value, "@"));
+
+        if (domain.isEmpty() && !StringUtils.contains(value, "@"))
+            domain = StringUtils.trimToEmpty(value);
+
+        domain = StringUtils.strip(domain.toLowerCase(), ".");
+        return (domain.isEmpty()) ? new String[0] : domain.split("\\.+");
+    }
+
+    /**
+     * Find the Site of the longest domain suffix of an address.
+     *
+     * @param top the root Node of the index
+     * @param email the email address
+     * @return the SITE CODE, or null if none matches
+     */
+    static String lookup(Node top, String email) {
+        String[] labels = labels(email);
+        String siteCode = null;
+        Node node = top;
+
+        for ( int i = labels.length-1 ; i>=0 && null!=node ; --i ) {
+            node = node.children.get(labels[i]);
+            if (null!=node && null!=node.siteCode)
+                siteCode = node.siteCode;
+        }
+        return siteCode;
+    }
+
+    /**
+     * Determine the SITE CODE of an email address.
+     *
+     * @param email the email address
+     * @return the SITE CODE, or CONTRACTOR if of no known Site
+     */
+    public static String resolve(String email) {
+        String siteCode = lookup(getRoot(), email);
+
+        lookups.incrementAndGet();
+        if (null==siteCode)
+            return CONTRACTOR;
+
+        matches.incrementAndGet();
+        return siteCode;
+    }
+
+    /**
+     * Determine the SITE CODE of each of a number of email addresses.
+     *
+     * @param emails the email addresses
+     * @return each address and its SITE CODE (or CONTRACTOR), in the order given
+     */
+    public static Map<String, String> resolve(Collection<String> emails) {
+        Map<String, String> siteCodes = new LinkedHashMap<>();
+
+        for ( String email : emails )
+            siteCodes.put(email, resolve(email));
+
+        return siteCodes;
+    }
+
+    /**
+     * Read the index again on next use.
+     */
+    public static void invalidate() {
+        loaded = 0;
+    }
+
+    /**
+     * Report index statistics.
+     *
+     * @return a Map of statistics
+     */
+    public static synchronized Map<String,Object> getStatistics() {
+        Map<String,Object> statistics = new LinkedHashMap<>();
+
+        statistics.put("loaded", null!=root);
+        statistics.put("domains", domains);
+        statistics.put("loads", loads);
+        statistics.put("lookups", lookups.get());
+        statistics.put("matches", matches.get());
+
+        return statistics;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ */
+package gov.osti.cache;
+
+import gov.osti.listeners.DoeServletContextListener;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shared in-memory cache of remote validation results (award numbers,
+ * repository links), keyed by check type and normalized value.
+ *
+ * Valid and not-valid results are held for separate times; failures to make
+ * the check at all (service unreachable, timeouts) are held only briefly, so
+ * a struggling service is not called for every request, but recovers quickly.
+ *
+ * Configuration properties:
+ * validation.cache.size - maximum entries (default 5000)
+ * validation.cache.ttl.valid - time to live of valid results in milliseconds (default 86400000)
+ * validation.cache.ttl.invalid - time to live of not-valid results in milliseconds (default 600000)
+ * validation.cache.ttl.error - time to live of failed checks in milliseconds (default 30000)
+ *
+ * @author ensornl
+ */
+public class ValidationCache {
+    // logger
+    private static final Logger log = LoggerFactory.getLogger(ValidationCache.class);
+
+    private static final int SIZE = DoeServletContextListener.getConfigurationProperty("validation.cache.size", 5000);
+    private static final long TTL_VALID = DoeServletContextListener.getConfigurationProperty("validation.cache.ttl.valid", 86400000);
+    private static final long TTL_INVALID = DoeServletContextListener.getConfigurationProperty("validation.cache.ttl.invalid", 600000);
+    private static final long TTL_ERROR = DoeServletContextListener.getConfigurationProperty("validation.cache.ttl.error", 30000);
+
+    /**
+     * A remote validation check.
+     */
+    public interface Check {
+        /**
+         * Make the check.
+         *
+         * @return TRUE if valid, FALSE if not, or null if unable to tell
+         * @throws Exception on failure to make the check, treated as null
+         */
+        Boolean call() throws Exception;
+    }
+
+    // results by type and normalized value; a null (unknown) result is held
+    // as FALSE
+    private static final ExpiringCache<String, Boolean> results = new ExpiringCache<>(SIZE, TTL_VALID);
+
+    // outcome counters of checks made
+    private static final AtomicLong valid = new AtomicLong();
+    private static final AtomicLong invalid = new AtomicLong();
+    private static final AtomicLong errors = new AtomicLong();
+
+    /**
+     * Normalize a value for use as a cache key; leading and trailing space
+     * and trailing slashes are not significant.
+     *
+     * @param value the value
+     * @return the normalized value
+     */
+    public static String normalize(String value) {
+        return StringUtils.stripEnd(StringUtils.trimToEmpty(value), "/");
+    }
+
+    /**
+     * Construct the cache key.
+     *
+     * @param type the check type
+     * @param value the value
+     * @return the key for this check
+     */
+    private static String key(String type, String value) {
+        return StringUtils.lowerCase(type) + ":" + normalize(value);
+    }
+
+    /**
+     * Obtain the result of a check, making it if not already cached.
+     *
+     * @param type the check type (e.g., "awardnumber")
+     * @param value the value to check
+     * @param check the Check to make if not cached
+     * @return true if valid, false if not or unable to tell
+     */
+    public static boolean check(String type, String value, Check check) {
+        String key = key(type, value);
+        Boolean result = results.get(key);
+
+        if (null!=result)
+            return result;
+
+        try {
+            result = check.call();
+        } catch ( Exception e ) {
+            log.warn("Unable to check " + type + " " + value + ": " + e.getMessage());
+            result = null;
+        }
+
+        if (null==result) {
+            errors.incrementAndGet();
+            results.put(key, Boolean.FALSE, TTL_ERROR);
+            return false;
+        }
+        if (result)
+            valid.incrementAndGet();
+        else
+            invalid.incrementAndGet();
+        results.put(key, result, result ? TTL_VALID : TTL_INVALID);
+
+        return result;
+    }
+
+    /**
+     * Discard the cached result of a check, if any.
+     *
+     * @param type the check type
+     * @param value the value
+     */
+    public static void invalidate(String type, String value) {
+        results.invalidate(key(type, value));
+    }
+
+    /**
+     * Discard all cached results.
+     */
+    public static void clear() {
+        results.clear();
+    }
+
+    /**
+     * Report cache statistics.
+     *
+     * @return a Map of cache and check outcome statistics
+     */
+    public static Map<String,Object> getStatistics() {
+        Map<String,Object> statistics = results.getStatistics();
+
+        statistics.put("valid", valid.get());
+        statistics.put("invalid", invalid.get());
+        statistics.put("errors", errors.get());
+
+        return statistics;
+    }
+}
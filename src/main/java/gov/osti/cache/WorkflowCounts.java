@@ -0,0 +1,184 @@
+/*
+ */
+package gov.osti.cache;
+
+import gov.osti.entity.DOECodeMetadata.Status;
+import gov.osti.listeners.DoeServletContextListener;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import javax.persistence.EntityManager;
+
+/**
+ * Shared counts of Metadata records by workflow status and site ownership
+ * code, for the totals of project listings.
+ *
+ * The counts are read with a single grouped query on first use, then kept
+ * current by applying each workflow state change as it is committed (see
+ * Change), rather than counting again on every request.  They are read again
+ * after a time, to correct any drift from changes made outside this
+ * application.
+ *
+ * Configuration properties:
+ * workflow.counts.ttl - time in milliseconds before counting again (default 3600000)
+ *
+ * @author ensornl
+ */
+public class WorkflowCounts {
+    private static final long TTL = DoeServletContextListener.getConfigurationProperty("workflow.counts.ttl", 3600000);
+
+    /**
+     * A change to the count of records, from one workflow state to another,
+     * to apply once committed.
+     */
+    public static class Change {
+        private final Status from;
+        private final Status to;
+        private final String site;
+
+        private Change(Status from, Status to, String site) {
+            this.from = from;
+            this.to = to;
+            this.site = site;
+        }
+
+        /**
+         * Apply the change to the counts.
+         */
+        public void apply() {
+            WorkflowCounts.apply(this);
+        }
+    }
+
+    // counts by status, then site; null until read
+    private static Map<Status, Map<String, Long>> counts = null;
+    // when the counts were read
+    private static long loaded;
+    // counts read, and changes applied
+    private static long loads = 0;
+    private static long changes = 0;
+
+    /**
+     * Describe a record entering a workflow state, or moving between states.
+     *
+     * @param from the previous state, or null for a new record
+     * @param to the new state
+     * @param site the SITE OWNERSHIP CODE of the record
+     * @return the Change
+     */
+    public static Change change(Status from, Status to, String site) {
+        return new Change(from, to, site);
+    }
+
+    /**
+     * Apply a committed change.  Nothing need be done if the counts have not
+     * been read yet, as reading them will see the change.
+     *
+     * @param change the Change
+     */
+    private static synchronized void apply(Change change) {
+        if (null==counts || Objects.equals(change.from, change.to))
+            return;
+
+        if (null!=change.from)
+            counts.computeIfAbsent(change.from, s -> new HashMap<>())
+                    .merge(change.site, -1L, Long::sum);
+        counts.computeIfAbsent(change.to, s -> new HashMap<>())
+                .merge(change.site, 1L, Long::sum);
+        ++changes;
+    }
+
+    /**
+     * Obtain the counts, reading them if needed.
+     *
+     * @return the counts by status, then site
+     */
+    private static synchronized Map<Status, Map<String, Long>> getCounts() {
+        if (null==counts || System.currentTimeMillis()-loaded > TTL) {
+            EntityManager em = DoeServletContextListener.createEntityManager();
+
+            try {
+                load(em.createQuery("SELECT md.workflowStatus, md.siteOwnershipCode, COUNT(md) FROM DOECodeMetadata md " +
+                        "GROUP BY md.workflowStatus, md.siteOwnershipCode", Object[].class)
+                        .getResultList());
+            } finally {
+                em.close();
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Replace the counts.
+     *
+     * @param rows rows of status, site, and count values
+     */
+    static synchronized void load(List<Object[]> rows) {
+        Map<Status, Map<String, Long>> values = new HashMap<>();
+
+        for ( Object[] row : rows )
+            values.computeIfAbsent((Status) row[0], s -> new HashMap<>())
+                    .put((String) row[1], ((Number) row[2]).longValue());
+
+        counts = values;
+        loaded = System.currentTimeMillis();
+        ++loads;
+    }
+
+    /**
+     * Count records in a workflow state.
+     *
+     * @param status the workflow state, or null for all states
+     * @return the count of records
+     */
+    public static synchronized long getCount(Status status) {
+        long count = 0;
+
+        for ( Map.Entry<Status, Map<String, Long>> entry : getCounts().entrySet() )
+            if (null==status || status.equals(entry.getKey()))
+                for ( Long value : entry.getValue().values() )
+                    count += value;
+
+        return count;
+    }
+
+    /**
+     * Count records of a site in a workflow state.
+     *
+     * @param status the workflow state, or null for all states
+     * @param site the SITE OWNERSHIP CODE
+     * @return the count of records
+     */
+    public static synchronized long getCount(Status status, String site) {
+        long count = 0;
+
+        for ( Map.Entry<Status, Map<String, Long>> entry : getCounts().entrySet() )
+            if (null==status || status.equals(entry.getKey()))
+                count += entry.getValue().getOrDefault(site, 0L);
+
+        return count;
+    }
+
+    /**
+     * Discard the counts, to be read again on next use.
+     */
+    public static synchronized void invalidate() {
+        counts = null;
+    }
+
+    /**
+     * Report counter statistics.
+     *
+     * @return a Map of statistics
+     */
+    public static synchronized Map<String,Object> getStatistics() {
+        Map<String,Object> statistics = new HashMap<>();
+
+        statistics.put("loaded", null!=counts);
+        statistics.put("loads", loads);
+        statistics.put("changes", changes);
+
+        return statistics;
+    }
+}
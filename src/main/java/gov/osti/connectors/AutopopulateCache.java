@@ -0,0 +1,208 @@
+/*
+ */
+package gov.osti.connectors;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import gov.osti.cache.ExpiringCache;
+import gov.osti.listeners.DoeServletContextListener;
+import java.net.URI;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of Connector (autopopulate) results, by canonical repository URL.
+ *
+ * Results are served from the cache while fresh.  Once past their fresh time,
+ * but still within the stale window, the stale result is served immediately
+ * while a background refresh reads it again; since Connector requests are
+ * conditional (see ParallelFetcher), an unchanged repository costs only 304
+ * responses to refresh.  Repositories the Connectors could not read are
+ * cached for the fresh time only.
+ *
+ * Configuration properties:
+ * autopopulate.cache.size - maximum repositories cached (default 1000)
+ * autopopulate.cache.ttl - time results are fresh in milliseconds (default 300000)
+ * autopopulate.cache.stale - time stale results may be served while
+ *   refreshing, in milliseconds (default 86400000)
+ *
+ * @author ensornl
+ */
+public class AutopopulateCache {
+    // logger
+    private static final Logger log = LoggerFactory.getLogger(AutopopulateCache.class);
+
+    private static final int SIZE = DoeServletContextListener.getConfigurationProperty("autopopulate.cache.size", 1000);
+    private static final long FRESH = DoeServletContextListener.getConfigurationProperty("autopopulate.cache.ttl", 300000);
+    private static final long STALE = DoeServletContextListener.getConfigurationProperty("autopopulate.cache.stale", 86400000);
+
+    /**
+     * A cached result, possibly none, and when it was read.
+     */
+    private static class Entry {
+        private final JsonNode result;
+        private final long read;
+
+        Entry(JsonNode result, long read) {
+            this.result = result;
+            this.read = read;
+        }
+    }
+
+    private final Function<String, JsonNode> loader;
+    private final ExpiringCache<String, Entry> entries = new ExpiringCache<>(SIZE, FRESH + STALE);
+    // keys being refreshed in the background
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    // the background refresh worker, created on first use
+    private ThreadPoolExecutor refresher = null;
+
+    // statistics
+    private final AtomicLong stale = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+
+    /**
+     * Construct a cache.
+     *
+     * @param loader reads the result for a URL, or null if none
+     */
+    public AutopopulateCache(Function<String, JsonNode> loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Determine the cache key for a repository URL; scheme and host are not
+     * case sensitive, and any query, fragment, trailing slash or ".git"
+     * suffix is ignored.
+     *
+     * @param url the repository URL
+     * @return the canonical URL
+     */
+    public static String canonical(String url) {
+        String value = StringUtils.trimToEmpty(url);
+
+        try {
+            URI uri = new URI(value);
+
+            if (null!=uri.getHost())
+                value = StringUtils.lowerCase(uri.getScheme()) + "://" + uri.getHost().toLowerCase()
+                        + ((-1==uri.getPort()) ? "" : ":" + uri.getPort())
+                        + StringUtils.defaultString(uri.getRawPath());
+        } catch ( Exception e ) {
+            // not a URI; use as given
+        }
+        return StringUtils.removeEnd(StringUtils.stripEnd(value, "/"), ".git");
+    }
+
+    /**
+     * Obtain the result for a repository URL.
+     *
+     * @param url the repository URL
+     * @return the JSON result, or null if none could be read
+     */
+    public JsonNode get(String url) {
+        String key = canonical(url);
+        Entry entry = entries.get(key);
+        long now = System.currentTimeMillis();
+
+        if (null==entry) {
+            entry = new Entry(loader.apply(url), now);
+            // do not keep failed reads past their fresh time
+            entries.put(key, entry, (null==entry.result) ? FRESH : FRESH + STALE);
+        } else if (now - entry.read >= FRESH) {
+            stale.incrementAndGet();
+            refresh(key, url);
+        }
+        return entry.result;
+    }
+
+    /**
+     * Read a result again in the background, unless already doing so.
+     *
+     * @param key the cache key
+     * @param url the repository URL
+     */
+    private void refresh(String key, String url) {
+        if (!refreshing.add(key))
+            return;
+
+        try {
+            getRefresher().execute(() -> {
+                try {
+                    refreshes.incrementAndGet();
+                    JsonNode result = loader.apply(url);
+
+                    // keep serving the stale result if unable to read it now
+                    if (null!=result)
+                        entries.put(key, new Entry(result, System.currentTimeMillis()));
+                } catch ( Exception e ) {
+                    log.warn("Unable to refresh " + url + ": " + e.getMessage());
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch ( Exception e ) {
+            // queue full or shut down; try again on a later request
+            refreshing.remove(key);
+        }
+    }
+
+    /**
+     * Obtain the background refresh worker.
+     *
+     * @return the ThreadPoolExecutor
+     */
+    private synchronized ThreadPoolExecutor getRefresher() {
+        if (null==refresher) {
+            refresher = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(100),
+                    r -> {
+                        Thread thread = new Thread(r, "autopopulate-refresh");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            refresher.allowCoreThreadTimeOut(true);
+        }
+        return refresher;
+    }
+
+    /**
+     * Discard the result for a repository URL, if any.
+     *
+     * @param url the repository URL
+     */
+    public void invalidate(String url) {
+        entries.invalidate(canonical(url));
+    }
+
+    /**
+     * Stop any background refresh.
+     */
+    public synchronized void shutdown() {
+        if (null!=refresher) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+    }
+
+    /**
+     * Report cache statistics.
+     *
+     * @return a Map of cache statistics
+     */
+    public Map<String,Object> getStatistics() {
+        Map<String,Object> statistics = entries.getStatistics();
+
+        statistics.put("stale", stale.get());
+        statistics.put("refreshes", refreshes.get());
+
+        return statistics;
+    }
+}
@@ -13,7 +13,10 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.regex.Pattern;
 import org.apache.http.client.methods.HttpGet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,6 +30,8 @@ public class BitBucket implements ConnectorInterface {
     private static final String BITBUCKET_API_URL="https://api.bitbucket.org/2.0/repositories/";
     // base URL for RAW view requests (suffix with "owner/project/raw/master/metadata.yml")
     private static final String BITBUCKET_RAW_URL="https://bitbucket.org/";
+    // URLs must have at least an owner/project path
+    private static final Pattern OWNER_PROJECT_PATTERN = Pattern.compile("://[^/]+/[^/]+/[^/]+");
     // a logger
     private static final Logger log = LoggerFactory.getLogger(BitBucket.class);
     
@@ -39,6 +44,26 @@ public class BitBucket implements ConnectorInterface {
         // not required
     }
     
+    /**
+     * Handles bitbucket.org repository URLs.
+     * 
+     * @return the BitBucket host name
+     */
+    @Override
+    public Collection<String> getHosts() {
+        return Collections.singletonList("bitbucket.org");
+    }
+    
+    /**
+     * Requires an "owner/project" path.
+     * 
+     * @return the URL Pattern
+     */
+    @Override
+    public Pattern getUrlPattern() {
+        return OWNER_PROJECT_PATTERN;
+    }
+    
     /**
      * Split a given Name into two parts, assuming it's "first last".  If no
      * space delimiter found, assume the "first name" to be the entire content.
@@ -95,17 +120,15 @@ public class BitBucket implements ConnectorInterface {
         HttpGet get = new HttpGet(BITBUCKET_API_URL + name);
         
         try {
-            // try to get the METADATA YAML first
-            JsonNode results = HttpUtil.readMetadataYaml(BITBUCKET_RAW_URL + name + "/raw/master/metadata.yml");
+            // try to get the METADATA YAML (or its alternate name) first
+            JsonNode results = HttpUtil.readMetadataYaml(
+                    BITBUCKET_RAW_URL + name + "/raw/master/metadata.yml",
+                    BITBUCKET_RAW_URL + name + "/raw/master/doecode.yml");
 
-            if (null!=results)
-                return results;
-            // try alternate names
-            results = HttpUtil.readMetadataYaml(BITBUCKET_RAW_URL + name + "/raw/master/doecode.yml");
             if (null!=results)
                 return results;
             
-            Response response = mapper.readValue(HttpUtil.fetch(get), Response.class);
+            Response response = mapper.readValue(ParallelFetcher.fetch(get), Response.class);
             
             // glean what information we can from the JSON
             md.setSoftwareTitle(response.getFullName());
@@ -130,10 +153,12 @@ public class BitBucket implements ConnectorInterface {
             } else if ( "team".equals(response.getOwner().getType()) ) {
                 // skip a step, tack on "/members" to get at the member list
                 MemberList teamList = mapper.readValue(
-                        HttpUtil.fetch(new HttpGet(response.getOwner().getLinks().getSelf() + "/members")), MemberList.class);
+                        ParallelFetcher.fetch(new HttpGet(response.getOwner().getLinks().getSelf() + "/members")), MemberList.class);
                 
                 User[] users = teamList.getUsers();
                 for ( User user : users ) {
+                    if (developers.size()>=ParallelFetcher.MAX_CONTRIBUTORS)
+                        break;
                     Developer developer = new Developer();
                     String[] nameParts = parseName(user.getDisplayName());
                     
@@ -4,19 +4,116 @@ package gov.osti.connectors;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import java.io.IOException;
+import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- *
+ * Dispatches auto-populate requests to the Connector handling the URL's host.
+ * 
+ * A host index is built once from the hosts each Connector declares; a URL
+ * is only offered to the Connectors for its host (or a parent domain), or,
+ * failing that, to the Connectors declaring no hosts.  Connectors are
+ * initialized on first use.
+ * 
  * @author ensornl
  */
 public class ConnectorFactory {
     // a Logger
     private static final Logger log = LoggerFactory.getLogger(ConnectorFactory.class);
+    
+    /**
+     * A registered Connector, its initialization state, and call metrics.
+     */
+    private static class Registration {
+        private final ConnectorInterface connector;
+        private final String name;
+        private volatile boolean initialized = false;
+        
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong found = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong time = new AtomicLong();
+        
+        Registration(ConnectorInterface connector, String name) {
+            this.connector = connector;
+            this.name = name;
+        }
+        
+        /**
+         * Initialize the Connector, if not already done.
+         * 
+         * @throws IOException on initializer errors; tried again next call
+         */
+        private synchronized void init() throws IOException {
+            if (!initialized) {
+                connector.init();
+                initialized = true;
+            }
+        }
+        
+        /**
+         * Call the Connector, if the URL matches its pattern.
+         * 
+         * @param url the URL to read from
+         * @return the JSON read, or null if none
+         */
+        private JsonNode read(String url) {
+            if (null!=connector.getUrlPattern() && !connector.getUrlPattern().matcher(url).find())
+                return null;
+            
+            long start = System.currentTimeMillis();
+            calls.incrementAndGet();
+            try {
+                if (!initialized)
+                    init();
+                
+                JsonNode result = connector.read(url);
+                if (null!=result)
+                    found.incrementAndGet();
+                return result;
+            } catch ( Exception e ) {
+                errors.incrementAndGet();
+                log.warn(getName() + " failed reading " + url + ": " + e.getMessage());
+                return null;
+            } finally {
+                time.addAndGet(System.currentTimeMillis() - start);
+            }
+        }
+        
+        private String getName() {
+            return name;
+        }
+        
+        private Map<String,Object> getStatistics() {
+            Map<String,Object> statistics = new LinkedHashMap<>();
+            
+            statistics.put("initialized", initialized);
+            statistics.put("calls", calls.get());
+            statistics.put("found", found.get());
+            statistics.put("errors", errors.get());
+            statistics.put("average_ms", (0==calls.get()) ? 0 : time.get() / calls.get());
+            
+            return statistics;
+        }
+    }
+    
     // the set of Connectors to process
-    private ArrayList<ConnectorInterface> connectors = new ArrayList<>();
+    private ArrayList<Registration> connectors = new ArrayList<>();
+    // Connectors by host name, and those handling any host
+    private volatile Map<String, List<Registration>> hosts = Collections.emptyMap();
+    private volatile List<Registration> fallback = Collections.emptyList();
+    // cached results, by repository URL
+    private final AutopopulateCache cache = new AutopopulateCache(this::readConnectors);
     
     private ConnectorFactory() {
     }
@@ -30,40 +127,138 @@ public class ConnectorFactory {
     }
     
     /**
-     * Add a new instance of a Connector onto the Factory.
+     * Add a new instance of a Connector onto the Factory.  Each is named by
+     * its class; further instances of the same class are numbered, as
+     * "GitLab#2".
      * 
      * @param connector an instantiated Connector
      * @return the Factory
      */
-    public ConnectorFactory add(ConnectorInterface connector) {
-        connectors.add(connector);
+    public synchronized ConnectorFactory add(ConnectorInterface connector) {
+        String name = connector.getClass().getSimpleName();
+        int count = 1;
+        
+        for ( Registration registration : connectors ) {
+            if (registration.connector.getClass().equals(connector.getClass()))
+                ++count;
+        }
+        connectors.add(new Registration(connector, (1==count) ? name : name + "#" + count));
+        return this;
+    }
+    
+    /**
+     * Add each Connector found via ServiceLoader.
+     * 
+     * @return the Factory
+     */
+    public ConnectorFactory load() {
+        for ( ConnectorInterface connector : ServiceLoader.load(ConnectorInterface.class) ) {
+            log.info("Found Connector: " + connector.getClass().getName());
+            add(connector);
+        }
+        
         return this;
     }
     
     /**
-     * Initialize all Connectors and prepare for reading calls.
+     * Build the host index of the Connectors, ready for reading calls.
+     * Each Connector is initialized on its first call.
      * 
      * @return the Factory instance
      * @throws IOException on initializer errors
      */
-    public ConnectorFactory build() throws IOException {
-        // init each Connector
-        for ( ConnectorInterface connector : connectors ) {
-            connector.init();
+    public synchronized ConnectorFactory build() throws IOException {
+        Map<String, List<Registration>> index = new HashMap<>();
+        List<Registration> any = new ArrayList<>();
+        
+        for ( Registration registration : connectors ) {
+            if (registration.connector.getHosts().isEmpty())
+                any.add(registration);
+            for ( String host : registration.connector.getHosts() )
+                index.computeIfAbsent(host.toLowerCase(), h -> new ArrayList<>()).add(registration);
         }
+        hosts = index;
+        fallback = any;
         
         return this;
     }
     
     /**
      * Process through each Connector in the chain, returning any JSON encountered.
+     * Results are cached; see AutopopulateCache.
      * 
      * @param url the URL to read from
      * @return the JSON of metadata if found, or null if none of the Connectors
      * recognize or could read the information
      */
     public JsonNode read(String url) {
-        for ( ConnectorInterface c : connectors ) {
+        return cache.get(url);
+    }
+    
+    /**
+     * Discard any cached result for a URL, so the next read calls the
+     * Connectors again.
+     * 
+     * @param url the URL
+     */
+    public void invalidate(String url) {
+        cache.invalidate(url);
+    }
+    
+    /**
+     * Stop any background cache refresh.
+     */
+    public void shutdown() {
+        cache.shutdown();
+    }
+    
+    /**
+     * Report result cache and per-Connector statistics.
+     * 
+     * @return a Map of statistics
+     */
+    public synchronized Map<String,Object> getStatistics() {
+        Map<String,Object> statistics = new LinkedHashMap<>();
+        
+        statistics.put("cache", cache.getStatistics());
+        for ( Registration registration : connectors )
+            statistics.put(registration.getName(), registration.getStatistics());
+        
+        return statistics;
+    }
+    
+    /**
+     * Find the Connectors for a URL's host, or any parent domain of it.
+     * 
+     * @param url the URL
+     * @return the Connectors handling the host, or those handling any host
+     */
+    private List<Registration> route(String url) {
+        try {
+            String host = new URI(StringUtils.trimToEmpty(url)).getHost();
+            
+            while (null!=host) {
+                List<Registration> found = hosts.get(host.toLowerCase());
+                if (null!=found)
+                    return found;
+                
+                int dot = host.indexOf('.');
+                host = (-1==dot) ? null : host.substring(dot+1);
+            }
+        } catch ( Exception e ) {
+            log.warn("Not a valid URI: " + url + " message: " + e.getMessage());
+        }
+        return fallback;
+    }
+    
+    /**
+     * Call each Connector for the URL, returning the first JSON encountered.
+     * 
+     * @param url the URL to read from
+     * @return the JSON of metadata if found, or null if none
+     */
+    private JsonNode readConnectors(String url) {
+        for ( Registration c : route(url) ) {
             JsonNode result = c.read(url);
             
             if (null!=result)
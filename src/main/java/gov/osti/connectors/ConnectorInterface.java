@@ -4,15 +4,23 @@ package gov.osti.connectors;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.regex.Pattern;
 
 /**
  * Define common access points for Connector type metadata producers.
  * 
+ * Connectors are discovered via ServiceLoader (listed in
+ * META-INF/services/gov.osti.connectors.ConnectorInterface), and are only
+ * called for URLs on the hosts they declare.
+ * 
  * @author ensornl
  */
 public interface ConnectorInterface {
     /**
-     * Initialize any values necessary for the Connector.
+     * Initialize any values necessary for the Connector.  Called once, before
+     * the first read.
      * 
      * @throws IOException on file IO or other initializer errors
      */
@@ -27,4 +35,24 @@ public interface ConnectorInterface {
      * @return JSON of the metadata found, or null if none read
      */
     public JsonNode read(String url);
+    
+    /**
+     * The host names this Connector handles; subdomains of these are handled
+     * as well.  A Connector declaring no hosts is tried for any URL no other
+     * Connector handles.
+     * 
+     * @return the host names handled
+     */
+    public default Collection<String> getHosts() {
+        return Collections.emptyList();
+    }
+    
+    /**
+     * A pattern the URL must contain for this Connector to be called, if any.
+     * 
+     * @return a Pattern, or null to accept any URL on the handled hosts
+     */
+    public default Pattern getUrlPattern() {
+        return null;
+    }
 }
@@ -14,7 +14,10 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.regex.Pattern;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.HttpHeaders;
@@ -40,6 +43,8 @@ public class GitHub implements ConnectorInterface {
      * paste on owner/repository/branch/filename to obtain a single file reference.
      **/
     private static final String GITHUB_RAW_BASE_URL = "https://raw.githubusercontent.com/";
+    /** URLs must have at least an owner/project path **/
+    private static final Pattern OWNER_PROJECT_PATTERN = Pattern.compile("://[^/]+/[^/]+/[^/]+");
     
     /**
      * Initialize and read the properties for configuration purposes.
@@ -54,6 +59,26 @@ public class GitHub implements ConnectorInterface {
         API_USER = DoeServletContextListener.getConfigurationProperty("github.user");
     }
     
+    /**
+     * Handles github.com repository URLs.
+     * 
+     * @return the GitHub host name
+     */
+    @Override
+    public Collection<String> getHosts() {
+        return Collections.singletonList("github.com");
+    }
+    
+    /**
+     * Requires an "owner/project" path.
+     * 
+     * @return the URL Pattern
+     */
+    @Override
+    public Pattern getUrlPattern() {
+        return OWNER_PROJECT_PATTERN;
+    }
+    
     /**
      * Construct a GET request to the GitHub API.
      * 
@@ -108,6 +133,39 @@ public class GitHub implements ConnectorInterface {
         return null;
     }
     
+    /**
+     * Convert a GitHub User into a Developer.
+     *
+     * @param user the User
+     * @return a Developer
+     */
+    private static Developer toDeveloper(User user) {
+        Developer developer = new Developer();
+
+        developer.setEmail(user.getEmail());
+        List<String> affiliations = new ArrayList<>();
+        if (StringUtils.isNotEmpty(user.getCompany())) {
+            affiliations.add(user.getCompany());
+            developer.setAffiliations(affiliations);
+        }
+
+        /** if no User name is present, default to the login name;
+         * otherwise attempt to break into first/last name.
+         */
+        if (StringUtils.isEmpty(user.getName())) {
+            developer.setFirstName(user.getLogin());
+        } else {
+            int lastSpace = user.getName().lastIndexOf(" ");
+            if ( -1==lastSpace ) {
+                developer.setFirstName(user.getName());
+            } else {
+                developer.setFirstName(user.getName().substring(0, lastSpace));
+                developer.setLastName(user.getName().substring(lastSpace+1));
+            }
+        }
+        return developer;
+    }
+
     /**
      * Obtain the connection-driven metadata elements from GitHub public API
      * requests.
@@ -129,13 +187,11 @@ public class GitHub implements ConnectorInterface {
             if (null==name)
                 return null;
             
-            // try to get the metadata YAML file first
-            JsonNode yaml = HttpUtil.readMetadataYaml(GITHUB_RAW_BASE_URL + name + "/master/metadata.yml");
+            // try to get the metadata YAML file (or its alternate name) first
+            JsonNode yaml = HttpUtil.readMetadataYaml(
+                    GITHUB_RAW_BASE_URL + name + "/master/metadata.yml",
+                    GITHUB_RAW_BASE_URL + name + "/master/doecode.yml");
             // if it's not empty, use that
-            if (null!=yaml)
-                return yaml;
-            // try alternate names
-            yaml = HttpUtil.readMetadataYaml(GITHUB_RAW_BASE_URL + name + "/master/doecode.yml");
             if (null!=yaml)
                 return yaml;
 
@@ -144,7 +200,7 @@ public class GitHub implements ConnectorInterface {
 
             // Convert the JSON into an Object we can handle
             Repository response = 
-                    mapper.readValue(HttpUtil.fetch(get), Repository.class);
+                    mapper.readValue(ParallelFetcher.fetch(get), Repository.class);
 
             // parse the relevant response parts into Metadata
             md.setSoftwareTitle(response.getFullName());
@@ -152,41 +208,23 @@ public class GitHub implements ConnectorInterface {
             md.setDescription(response.getDescription());
 
             if (StringUtils.isNotEmpty(response.getContributorsUrl())) {
-                HttpGet contributor_request = gitHubAPIGet(response.getContributorsUrl());
-                Contributor[] contributors = mapper.readValue(HttpUtil.fetch(contributor_request), Contributor[].class);
+                long deadline = System.currentTimeMillis() + ParallelFetcher.TIMEOUT;
+                // only ask for as many contributors as we will read
+                HttpGet contributor_request = gitHubAPIGet(response.getContributorsUrl()
+                        + "?per_page=" + Math.min(100, ParallelFetcher.MAX_CONTRIBUTORS));
+                Contributor[] contributors = mapper.readValue(ParallelFetcher.fetch(contributor_request, deadline), Contributor[].class);
 
-                List<Developer> developers = new ArrayList<>();
+                // read the User details of each concurrently
+                List<HttpGet> user_requests = new ArrayList<>();
                 for ( Contributor contributor : contributors ) {
-                    Developer developer = new Developer();
-                    if (StringUtils.isNotEmpty(contributor.getUrl())) {
-                        HttpGet user_request = gitHubAPIGet(contributor.getUrl());
-                        User user = mapper.readValue(HttpUtil.fetch(user_request), User.class);
-
-                        developer.setEmail(user.getEmail());
-                        List<String> affiliations = new ArrayList<>();
-                        if (StringUtils.isNotEmpty(user.getCompany())) {
-                            affiliations.add(user.getCompany());
-                            developer.setAffiliations(affiliations);
-                        }
-
-                        /** if no User name is present, default to the login name;
-                         * otherwise attempt to break into first/last name.
-                         */
-                        if (StringUtils.isEmpty(user.getName())) {
-                            developer.setFirstName(user.getLogin());
-                        } else {
-                            int lastSpace = user.getName().lastIndexOf(" ");
-                            if ( -1==lastSpace ) {
-                                developer.setFirstName(user.getName());
-                            } else {
-                                developer.setFirstName(user.getName().substring(0, lastSpace));
-                                developer.setLastName(user.getName().substring(lastSpace+1));
-                            }
-                        }
-                        developers.add(developer);
-                    }
+                    if (user_requests.size()>=ParallelFetcher.MAX_CONTRIBUTORS)
+                        break;
+                    if (StringUtils.isNotEmpty(contributor.getUrl()))
+                        user_requests.add(gitHubAPIGet(contributor.getUrl()));
                 }
-                md.setDevelopers(developers);
+                md.setDevelopers(ParallelFetcher.fetchAll(user_requests,
+                        content -> toDeveloper(mapper.readValue(content, User.class)),
+                        deadline));
             }
             return md.toJson();
         } catch ( IOException e ) {
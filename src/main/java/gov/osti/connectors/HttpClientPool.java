@@ -0,0 +1,259 @@
+/*
+ */
+package gov.osti.connectors;
+
+import gov.osti.listeners.DoeServletContextListener;
+import java.io.IOException;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single shared, pooled HttpClient for all outbound HTTP requests (SOLR,
+ * DataCite, archiver, validation API, and repository Connectors).
+ *
+ * Connections are kept alive and reused per destination (route).  The pool is
+ * started and stopped by the DoeServletContextListener; if used outside of a
+ * servlet context (unit tests), it is started on first use.
+ *
+ * Callers MUST NOT close the client obtained here; close (or fully consume)
+ * each response instead, so the connection is returned to the pool.
+ *
+ * Configuration properties:
+ * http.pool.max - maximum total connections (default 100)
+ * http.pool.route.max - default maximum connections per destination (default 20)
+ * http.pool.search.max - maximum connections to the search/index hosts (default 50)
+ * http.pool.routes - comma-delimited per-destination overrides, e.g.
+ *   "https://mds.datacite.org=10,solr.local:8983=40" (scheme defaults to http)
+ * http.timeout - connect/socket/pool timeouts in milliseconds (default 5000)
+ * http.search.timeout - socket timeout for search requests (default 30000)
+ * http.idle.timeout - evict connections idle longer than this, in milliseconds
+ *   (default 30000)
+ *
+ * @author ensornl
+ */
+public class HttpClientPool {
+    // logger
+    private static final Logger log = LoggerFactory.getLogger(HttpClientPool.class);
+
+    // the connection manager and client instances
+    private static PoolingHttpClientConnectionManager manager = null;
+    private static volatile CloseableHttpClient client = null;
+    // default request configuration
+    private static RequestConfig defaultConfig = null;
+
+    /**
+     * Construct the HttpRoute the client will use for a given URL.
+     *
+     * @param url the URL (or "host[:port]", assumed to be http)
+     * @return an HttpRoute, or null if unable to parse
+     */
+    protected static HttpRoute toRoute(String url) {
+        try {
+            String value = StringUtils.trimToEmpty(url);
+            URI uri = new URI(value.contains("://") ? value : "http://" + value);
+
+            if (null==uri.getHost())
+                return null;
+
+            String scheme = (null==uri.getScheme()) ? "http" : uri.getScheme().toLowerCase();
+            boolean secure = "https".equals(scheme);
+            int port = (-1==uri.getPort()) ? (secure ? 443 : 80) : uri.getPort();
+
+            return new HttpRoute(new HttpHost(uri.getHost(), port, scheme), null, secure);
+        } catch ( Exception e ) {
+            log.warn("Unable to determine HTTP route for " + url + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Set a maximum connection count for a particular destination URL.
+     *
+     * @param url the URL to limit
+     * @param max the maximum number of connections
+     */
+    private static void setRouteLimit(String url, int max) {
+        HttpRoute route = toRoute(url);
+
+        if (null!=route && max>0)
+            manager.setMaxPerRoute(route, max);
+    }
+
+    /**
+     * Start up the connection pool, if not already started.
+     */
+    public static synchronized void start() {
+        if (null!=client)
+            return;
+
+        int timeout = DoeServletContextListener.getConfigurationProperty("http.timeout", 5000);
+
+        manager = new PoolingHttpClientConnectionManager();
+        manager.setMaxTotal(DoeServletContextListener.getConfigurationProperty("http.pool.max", 100));
+        manager.setDefaultMaxPerRoute(DoeServletContextListener.getConfigurationProperty("http.pool.route.max", 20));
+        // re-check connections that sat idle a while before reusing them
+        manager.setValidateAfterInactivity(2000);
+
+        // search and index services typically see the most traffic
+        int searchMax = DoeServletContextListener.getConfigurationProperty("http.pool.search.max", 50);
+        setRouteLimit(DoeServletContextListener.getConfigurationProperty("search.url"), searchMax);
+        setRouteLimit(DoeServletContextListener.getConfigurationProperty("index.url"), searchMax);
+
+        // any explicitly-configured destination limits
+        for ( String entry : StringUtils.split(DoeServletContextListener.getConfigurationProperty("http.pool.routes"), ",") ) {
+            int split = entry.lastIndexOf("=");
+
+            try {
+                if (-1!=split)
+                    setRouteLimit(entry.substring(0, split), Integer.parseInt(entry.substring(split+1).trim()));
+            } catch ( NumberFormatException e ) {
+                log.warn("Invalid http.pool.routes entry: " + entry);
+            }
+        }
+
+        defaultConfig = RequestConfig
+                .custom()
+                .setConnectTimeout(timeout)
+                .setConnectionRequestTimeout(timeout)
+                .setSocketTimeout(timeout)
+                .build();
+
+        client = HttpClientBuilder
+                .create()
+                .setConnectionManager(manager)
+                .setDefaultRequestConfig(defaultConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections((long)DoeServletContextListener.getConfigurationProperty("http.idle.timeout", 30000), TimeUnit.MILLISECONDS)
+                .build();
+
+        log.info("HTTP connection pool started.");
+    }
+
+    /**
+     * Close all pooled connections and stop idle connection eviction.
+     */
+    public static synchronized void shutdown() {
+        if (null==client)
+            return;
+
+        try {
+            // closes the connection manager as well
+            client.close();
+        } catch ( Exception e ) {
+            log.warn("HTTP connection pool close error: " + e.getMessage());
+        } finally {
+            client = null;
+            manager = null;
+        }
+        log.info("HTTP connection pool stopped.");
+    }
+
+    /**
+     * Obtain the shared HttpClient.  Do not close it.
+     *
+     * @return the pooled CloseableHttpClient instance
+     */
+    public static CloseableHttpClient getClient() {
+        if (null==client)
+            start();
+
+        return client;
+    }
+
+    /**
+     * Release a response's connection back to the pool, consuming any
+     * remaining content.  Safe to call with null.
+     *
+     * @param response the response to release, if any
+     */
+    public static void release(CloseableHttpResponse response) {
+        if (null==response)
+            return;
+
+        try {
+            EntityUtils.consumeQuietly(response.getEntity());
+            response.close();
+        } catch ( IOException e ) {
+            log.warn("HTTP response close error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Obtain a RequestConfig based on the pool defaults, with a different
+     * socket (read) timeout value.  Intended for requests known to be slower
+     * than the default, such as large SOLR queries.
+     *
+     * @param socketTimeout the socket timeout in milliseconds
+     * @return a RequestConfig to set on the request
+     */
+    public static RequestConfig withSocketTimeout(int socketTimeout) {
+        getClient();
+
+        return RequestConfig
+                .copy(defaultConfig)
+                .setSocketTimeout(socketTimeout)
+                .build();
+    }
+
+    /**
+     * Obtain the configured socket timeout for search requests.
+     *
+     * @return a RequestConfig suitable for SOLR search requests
+     */
+    public static RequestConfig searchConfig() {
+        return withSocketTimeout(DoeServletContextListener.getConfigurationProperty("http.search.timeout", 30000));
+    }
+
+    /**
+     * Convert PoolStats to a Map for reporting.
+     *
+     * @param stats the PoolStats to convert
+     * @return a Map of the values
+     */
+    private static Map<String,Object> toMap(PoolStats stats) {
+        Map<String,Object> values = new LinkedHashMap<>();
+
+        values.put("leased", stats.getLeased());
+        values.put("available", stats.getAvailable());
+        values.put("pending", stats.getPending());
+        values.put("max", stats.getMax());
+
+        return values;
+    }
+
+    /**
+     * Report connection pool utilization, in total and per destination.
+     *
+     * @return a Map of pool statistics; empty if the pool is not running
+     */
+    public static synchronized Map<String,Object> getStatistics() {
+        Map<String,Object> statistics = new LinkedHashMap<>();
+
+        if (null==manager)
+            return statistics;
+
+        statistics.put("total", toMap(manager.getTotalStats()));
+
+        Map<String,Object> routes = new LinkedHashMap<>();
+        for ( HttpRoute route : manager.getRoutes() ) {
+            routes.put(route.getTargetHost().toURI(), toMap(manager.getStats(route)));
+        }
+        statistics.put("routes", routes);
+
+        return statistics;
+    }
+}
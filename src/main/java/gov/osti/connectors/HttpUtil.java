@@ -12,13 +12,10 @@ import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import gov.osti.entity.DOECodeMetadata;
 import java.io.IOException;
-import javax.servlet.http.HttpServletResponse;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.config.RequestConfig;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,51 +42,48 @@ public class HttpUtil {
     /**
      * Retrieve just the String content from a given HttpGet request.
      * 
+     * Requests are made through the ParallelFetcher, so are subject to its
+     * per-host and rate limits, and revalidate any previous response.
+     * 
      * @param get the GET to execute
      * @return String contents of the results
      * @throws IOException on IO errors
      */
     protected static String fetch(HttpGet get) throws IOException {
-        // create an HTTP client to request through
-        CloseableHttpClient hc = 
-                HttpClientBuilder
-                .create()
-                .setDefaultRequestConfig(RequestConfig
-                    .custom()
-                    .setConnectTimeout(5000)
-                    .setConnectionRequestTimeout(5000)
-                    .setSocketTimeout(5000)
-                    .build())
-                .build();
-        
-        try {
-            // only return if response is OK
-            HttpResponse response = hc.execute(get);
-            return ( HttpServletResponse.SC_OK==response.getStatusLine().getStatusCode()) ?
-                    EntityUtils.toString(response.getEntity()) :
-                    "";
-        } finally {
-            hc.close();
-        }
+        return ParallelFetcher.fetch(get);
     }
     
     /**
      * Attempt to read URL (file) as a YAML metadata reference.  Returns null
      * if YAML file not found or could not process.
      * 
-     * @param url the URL to the file to attempt to read
+     * If several URLs are given (alternate file names), all are requested at
+     * once; the first in order that is found is used.
+     * 
+     * @param urls the URL(s) to the file to attempt to read
      * @return JSON representation of the YAML read, or null if not found/invalid
      * @throws IOException on file IO errors
      */
-    protected static JsonNode readMetadataYaml(String url) throws IOException {
-        try {
-            // read the YAML in as a DOECodeMetadata record
-            DOECodeMetadata yaml = YAML_MAPPER.readValue(HttpUtil.fetch(new HttpGet(url)), DOECodeMetadata.class);
-            return (null==yaml) ? null : yaml.toJson();
-        } catch ( IOException e ) {
-            // no YAML or illegal format, skip it
-            return null;
-        }
+    protected static JsonNode readMetadataYaml(String... urls) throws IOException {
+        List<HttpGet> gets = new ArrayList<>();
+        for ( String url : urls )
+            gets.add(new HttpGet(url));
+        
+        // no YAML (not found, or empty) or illegal format, skip it
+        List<JsonNode> found = ParallelFetcher.fetchAll(gets, content -> {
+                    if (StringUtils.isBlank(content))
+                        return null;
+                    try {
+                        DOECodeMetadata yaml = YAML_MAPPER.readValue(content, DOECodeMetadata.class);
+                        return (null==yaml) ? null : yaml.toJson();
+                    } catch ( IOException e ) {
+                        log.debug("Unable to parse metadata YAML: " + e.getMessage());
+                        return null;
+                    }
+                },
+                System.currentTimeMillis() + ParallelFetcher.TIMEOUT);
+        
+        return (found.isEmpty()) ? null : found.get(0);
     }
     
     /**
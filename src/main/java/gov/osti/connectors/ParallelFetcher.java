@@ -0,0 +1,345 @@
+/*
+ */
+package gov.osti.connectors;
+
+import gov.osti.cache.ExpiringCache;
+import gov.osti.listeners.DoeServletContextListener;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Concurrent, rate-limit-aware API requests for repository Connectors.
+ *
+ * Requests to each host are limited to a number in flight at once.  Rate
+ * limit response headers ("X-RateLimit-Remaining"/"X-RateLimit-Reset", and
+ * "Retry-After") are tracked per host; once a host reports its limit is used
+ * up, further requests to it fail at once until it resets, rather than
+ * spending what quota remains or waiting past the caller's deadline.
+ *
+ * Successful responses carrying an "ETag" or "Last-Modified" validator are
+ * kept, and later requests for the same URL are made conditional; an
+ * unchanged resource then costs a 304 Not Modified (which GitHub does not
+ * count against the rate limit) and the kept content is returned.
+ *
+ * Configuration properties:
+ * connector.threads - maximum concurrent requests overall (default 16)
+ * connector.host.parallelism - maximum concurrent requests per host (default 4)
+ * connector.contributors.max - maximum contributors read per repository (default 30)
+ * connector.timeout - deadline for reading contributor details in milliseconds (default 15000)
+ * connector.cache.size - maximum responses kept for revalidation (default 1000)
+ * connector.cache.ttl - time responses are kept for revalidation in milliseconds (default 86400000)
+ *
+ * @author ensornl
+ */
+public class ParallelFetcher {
+    // logger
+    private static final Logger log = LoggerFactory.getLogger(ParallelFetcher.class);
+
+    private static final int THREADS = Math.max(1, DoeServletContextListener.getConfigurationProperty("connector.threads", 16));
+    static final int HOST_PARALLELISM = Math.max(1, DoeServletContextListener.getConfigurationProperty("connector.host.parallelism", 4));
+    /** maximum contributors to read details of, per repository **/
+    public static final int MAX_CONTRIBUTORS = Math.max(1, DoeServletContextListener.getConfigurationProperty("connector.contributors.max", 30));
+    /** deadline for reading contributor details, in milliseconds **/
+    public static final long TIMEOUT = Math.max(1, DoeServletContextListener.getConfigurationProperty("connector.timeout", 15000));
+    private static final int CACHE_SIZE = DoeServletContextListener.getConfigurationProperty("connector.cache.size", 1000);
+    private static final long CACHE_TTL = DoeServletContextListener.getConfigurationProperty("connector.cache.ttl", 86400000);
+    // wait assumed when a host reports a rate limit without saying for how long
+    private static final long DEFAULT_RETRY_AFTER = 60000;
+
+    /**
+     * Parse the content of a response.
+     *
+     * @param <T> the result type
+     */
+    public interface Parser<T> {
+        /**
+         * Parse response content.
+         *
+         * @param content the response content
+         * @return the parsed result
+         * @throws IOException on parsing errors
+         */
+        T parse(String content) throws IOException;
+    }
+
+    /**
+     * A response kept for conditional revalidation.
+     */
+    private static class Validated {
+        private final String etag;
+        private final String lastModified;
+        private final String content;
+
+        Validated(String etag, String lastModified, String content) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.content = content;
+        }
+    }
+
+    // responses with validators, by URL
+    private static final ExpiringCache<String, Validated> validated = new ExpiringCache<>(CACHE_SIZE, CACHE_TTL);
+    // request permits by host
+    private static final Map<String, Semaphore> permits = new ConcurrentHashMap<>();
+    // rate limited hosts, and when they may be called again
+    private static final Map<String, Long> limitedUntil = new ConcurrentHashMap<>();
+    // the shared request workers, created on first use
+    private static ExecutorService pool = null;
+
+    // statistics
+    private static final AtomicLong requests = new AtomicLong();
+    private static final AtomicLong rateLimited = new AtomicLong();
+    private static final AtomicLong timeouts = new AtomicLong();
+    private static final AtomicLong notModified = new AtomicLong();
+
+    /**
+     * Obtain the shared request worker pool.
+     *
+     * @return the ExecutorService
+     */
+    private static synchronized ExecutorService getPool() {
+        if (null==pool) {
+            final AtomicInteger count = new AtomicInteger();
+
+            pool = Executors.newFixedThreadPool(THREADS, r -> {
+                Thread thread = new Thread(r, "connector-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return pool;
+    }
+
+    /**
+     * Stop the request workers, abandoning any requests in progress.
+     */
+    public static synchronized void shutdown() {
+        if (null!=pool) {
+            pool.shutdownNow();
+            pool = null;
+        }
+    }
+
+    /**
+     * Retrieve the String content of a GET request, within the per-host
+     * limits, and noting any rate limit the host reports.
+     *
+     * @param get the GET to execute
+     * @param deadline the time by which the request must start
+     * @return String contents of the results; empty if not OK
+     * @throws IOException on IO errors, if the host is rate limited, or if
+     * unable to start by the deadline
+     */
+    public static String fetch(HttpGet get, long deadline) throws IOException {
+        String host = get.getURI().getHost();
+        Long until = limitedUntil.get(host);
+
+        if (null!=until) {
+            if (until > System.currentTimeMillis()) {
+                rateLimited.incrementAndGet();
+                throw new IOException ("Rate limit reached for " + host);
+            }
+            limitedUntil.remove(host, until);
+        }
+
+        Semaphore permit = permits.computeIfAbsent(host, h -> new Semaphore(HOST_PARALLELISM));
+        try {
+            if (!permit.tryAcquire(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS))
+                throw new IOException ("Timed out waiting to call " + host);
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new IOException ("Interrupted waiting to call " + host);
+        }
+
+        try {
+            String url = get.getURI().toString();
+            Validated previous = validated.get(url);
+
+            if (null!=previous) {
+                if (null!=previous.etag)
+                    get.setHeader(HttpHeaders.IF_NONE_MATCH, previous.etag);
+                if (null!=previous.lastModified)
+                    get.setHeader(HttpHeaders.IF_MODIFIED_SINCE, previous.lastModified);
+            }
+
+            requests.incrementAndGet();
+            CloseableHttpResponse response = HttpClientPool.getClient().execute(get);
+
+            try {
+                noteRateLimit(host, response);
+
+                int status = response.getStatusLine().getStatusCode();
+                if (HttpServletResponse.SC_NOT_MODIFIED==status && null!=previous) {
+                    notModified.incrementAndGet();
+                    return previous.content;
+                }
+                if (HttpServletResponse.SC_OK!=status)
+                    return "";
+
+                String content = EntityUtils.toString(response.getEntity());
+                Header etag = response.getFirstHeader(HttpHeaders.ETAG);
+                Header lastModified = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+                if (null!=etag || null!=lastModified)
+                    validated.put(url, new Validated(
+                            (null==etag) ? null : etag.getValue(),
+                            (null==lastModified) ? null : lastModified.getValue(),
+                            content));
+
+                return content;
+            } finally {
+                HttpClientPool.release(response);
+            }
+        } finally {
+            permit.release();
+        }
+    }
+
+    /**
+     * Retrieve the String content of a GET request, waiting at most the
+     * default timeout to start.
+     *
+     * @param get the GET to execute
+     * @return String contents of the results; empty if not OK
+     * @throws IOException on IO errors, or if the host is rate limited
+     */
+    public static String fetch(HttpGet get) throws IOException {
+        return fetch(get, System.currentTimeMillis() + TIMEOUT);
+    }
+
+    /**
+     * Record any rate limit reported in a response.
+     *
+     * @param host the host called
+     * @param response the response
+     */
+    private static void noteRateLimit(String host, CloseableHttpResponse response) {
+        long now = System.currentTimeMillis();
+        long until = limitedUntil(headerValue(response, "X-RateLimit-Remaining"),
+                headerValue(response, "X-RateLimit-Reset"),
+                headerValue(response, "Retry-After"), now);
+
+        if (until > now) {
+            log.warn("Rate limit reached for " + host + "; suspending requests for " + ((until - now) / 1000) + " seconds.");
+            limitedUntil.put(host, until);
+        }
+    }
+
+    /**
+     * Obtain the value of a response header.
+     *
+     * @param response the response
+     * @param name the header name
+     * @return the header value, or null if not present
+     */
+    private static String headerValue(CloseableHttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return (null==header) ? null : header.getValue().trim();
+    }
+
+    /**
+     * Determine until when a host is rate limited, from its response headers.
+     * "Retry-After" (in seconds) takes precedence; otherwise the limit applies
+     * once "X-RateLimit-Remaining" reaches zero, until "X-RateLimit-Reset"
+     * (epoch seconds).  A wait that cannot be read is taken as the default.
+     *
+     * @param remaining the X-RateLimit-Remaining value, if any
+     * @param reset the X-RateLimit-Reset value, if any
+     * @param retryAfter the Retry-After value, if any
+     * @param now the current time
+     * @return the time requests may resume, or 0 if not limited
+     */
+    static long limitedUntil(String remaining, String reset, String retryAfter, long now) {
+        if (null!=retryAfter)
+            return now + NumberUtils.toLong(retryAfter, DEFAULT_RETRY_AFTER / 1000) * 1000;
+
+        if (null!=remaining && NumberUtils.toLong(remaining, 1)<=0) {
+            long resetTime = NumberUtils.toLong(reset, 0) * 1000;
+            return (resetTime > now) ? resetTime : now + DEFAULT_RETRY_AFTER;
+        }
+        return 0;
+    }
+
+    /**
+     * Retrieve and parse several GET requests concurrently.  Results are
+     * returned in request order; any request that fails, or is not complete
+     * by the deadline, is left out.
+     *
+     * @param <T> the result type
+     * @param gets the GET requests to make
+     * @param parser the Parser for each response
+     * @param deadline the time by which results are needed
+     * @return a List of the parsed results available by the deadline
+     */
+    public static <T> List<T> fetchAll(List<HttpGet> gets, Parser<T> parser, long deadline) {
+        List<Future<T>> futures = new ArrayList<>();
+        List<T> results = new ArrayList<>();
+
+        for ( HttpGet get : gets )
+            futures.add(getPool().submit(() -> parser.parse(fetch(get, deadline))));
+
+        for ( int i = 0; i<futures.size(); ++i ) {
+            Future<T> future = futures.get(i);
+
+            try {
+                T result = future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+
+                if (null!=result)
+                    results.add(result);
+            } catch ( TimeoutException e ) {
+                timeouts.incrementAndGet();
+                future.cancel(true);
+                gets.get(i).abort();
+            } catch ( ExecutionException e ) {
+                log.warn("Unable to read " + gets.get(i).getURI() + ": " + e.getCause().getMessage());
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                for ( int j = i; j<futures.size(); ++j ) {
+                    futures.get(j).cancel(true);
+                    gets.get(j).abort();
+                }
+                break;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Report request statistics.
+     *
+     * @return a Map of request statistics
+     */
+    public static Map<String,Object> getStatistics() {
+        Map<String,Object> statistics = new LinkedHashMap<>();
+
+        statistics.put("requests", requests.get());
+        statistics.put("rate_limited", rateLimited.get());
+        statistics.put("timeouts", timeouts.get());
+        statistics.put("not_modified", notModified.get());
+        statistics.put("revalidation_cache", validated.getStatistics());
+        statistics.put("limited_hosts", new ArrayList<>(limitedUntil.keySet()));
+
+        return statistics;
+    }
+}
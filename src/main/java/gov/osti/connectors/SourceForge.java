@@ -12,6 +12,8 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -41,6 +43,26 @@ public class SourceForge implements ConnectorInterface {
         // not required
     }
     
+    /**
+     * Handles sourceforge.net project URLs.
+     * 
+     * @return the SourceForge host name
+     */
+    @Override
+    public Collection<String> getHosts() {
+        return Collections.singletonList("sourceforge.net");
+    }
+    
+    /**
+     * Requires a "/projects/project-name" path.
+     * 
+     * @return the URL Pattern
+     */
+    @Override
+    public Pattern getUrlPattern() {
+        return PROJECT_NAME_PATTERN;
+    }
+    
     /**
      * Attempt to read the PROJECT NAME from the given URL.
      * 
@@ -5,6 +5,7 @@ package gov.osti.doi;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import gov.osti.connectors.HttpClientPool;
 import gov.osti.entity.Contributor;
 import gov.osti.entity.DOECodeMetadata;
 import gov.osti.entity.Developer;
@@ -25,13 +26,10 @@ import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 import org.apache.commons.codec.binary.Base64;
-import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
-import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -337,18 +335,8 @@ public class DataCite {
      * @throws IOException on metadata registration errors
      */
     private static void registerMetadata(DOECodeMetadata m) throws IOException {
-        // set some reasonable default timeouts
-        // create an HTTP client to request through
-        CloseableHttpClient hc = 
-                HttpClientBuilder
-                .create()
-                .setDefaultRequestConfig(RequestConfig
-                    .custom()
-                    .setSocketTimeout(5000)
-                    .setConnectTimeout(5000)
-                    .setConnectionRequestTimeout(5000)
-                    .build())
-                .build();
+        // responses are released back to the shared connection pool
+        CloseableHttpResponse response = null;
         
         try {
             // create an API authenticated request to send METADATA
@@ -362,7 +350,7 @@ public class DataCite {
             request.setEntity(new StringEntity(writeMetadata(m), "UTF-8"));
             
             // 201 CREATED is the only successful API response
-            HttpResponse response = hc.execute(request);
+            response = HttpClientPool.getClient().execute(request);
             int status_code = response.getStatusLine().getStatusCode();
             if ( HttpStatus.SC_CREATED!=status_code ) {
                 // otherwise, read the reason why
@@ -375,7 +363,7 @@ public class DataCite {
             log.warn("XML metadata error: " + e.getMessage());
             throw new IOException ("XML parser error: " + e.getMessage());
         } finally {
-            hc.close();
+            HttpClientPool.release(response);
         }
     }
     
@@ -386,18 +374,8 @@ public class DataCite {
      * @throws IOException on HTTP transmission errors, or failed to register DOI
      */
     private static void registerDoi(DOECodeMetadata m) throws IOException {
-        // set some reasonable default timeouts
-        // create an HTTP client to request through
-        CloseableHttpClient hc = 
-                HttpClientBuilder
-                .create()
-                .setDefaultRequestConfig(RequestConfig
-                        .custom()
-                        .setSocketTimeout(5000)
-                        .setConnectTimeout(5000)
-                        .setConnectionRequestTimeout(5000)
-                        .build())
-                .build();
+        // responses are released back to the shared connection pool
+        CloseableHttpResponse response = null;
         
         try {
             // send a DOI registration request
@@ -410,7 +388,7 @@ public class DataCite {
             
             request.setEntity(new StringEntity("doi=" + m.getDoi() + "\nurl=" + DATACITE_BASE_URL + m.getCodeId() + "\n"));
             
-            HttpResponse response = hc.execute(request);
+            response = HttpClientPool.getClient().execute(request);
             int status_code = response.getStatusLine().getStatusCode();
             
             // success if SC_CREATED (201) returned, otherwise throw error
@@ -420,7 +398,7 @@ public class DataCite {
                 throw new IOException ("DOI registration failed: " + text_response);
             }
         } finally {
-            hc.close();
+            HttpClientPool.release(response);
         }
     }
     
@@ -0,0 +1,185 @@
+/*
+ */
+package gov.osti.doi;
+
+import gov.osti.entity.DoiReservation;
+import gov.osti.listeners.DoeServletContextListener;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.LockTimeoutException;
+import javax.persistence.PessimisticLockException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands out DOI reservation values from blocks of indexes claimed in advance.
+ *
+ * Each node claims a block of index values from the shared DOI_RESERVATION
+ * sequence in a single transaction, then hands them out from an in-memory
+ * atomic counter without locking.  A new block is claimed only when the
+ * current one is used up, or the date has rolled over.  Since blocks never
+ * overlap, no two nodes can hand out the same value; unused values of a block
+ * (e.g., at shutdown or midnight) are simply skipped.
+ *
+ * Configuration properties:
+ * doi.block.size - index values claimed per block (default 20)
+ *
+ * @author ensornl
+ */
+public class DoiAllocator {
+    // logger
+    private static final Logger log = LoggerFactory.getLogger(DoiAllocator.class);
+    // date pattern of DOI reservation values
+    private static final DateTimeFormatter DATE_PATTERN = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    /**
+     * A claimed, contiguous block of index values for a date.
+     */
+    public static class Block {
+        private final String datePattern;
+        private final int last;
+        private final AtomicInteger next;
+
+        /**
+         * Construct a Block.
+         *
+         * @param datePattern the date pattern (yyyyMMdd) of the block
+         * @param first the first index value
+         * @param last the last index value
+         */
+        public Block(String datePattern, int first, int last) {
+            this.datePattern = datePattern;
+            this.last = last;
+            this.next = new AtomicInteger(first);
+        }
+    }
+
+    /**
+     * The shared source of index value blocks.
+     */
+    public interface BlockSource {
+        /**
+         * Claim a block of index values.
+         *
+         * @param datePattern the current date pattern (yyyyMMdd)
+         * @param size the number of values to claim
+         * @return the claimed Block; its date may be later than requested,
+         * but never earlier
+         * @throws IOException if unable to claim a block
+         */
+        Block claim(String datePattern, int size) throws IOException;
+    }
+
+    // the shared instance
+    private static DoiAllocator instance = null;
+
+    private final BlockSource source;
+    private final int blockSize;
+    private final Supplier<LocalDate> clock;
+    private final AtomicReference<Block> current = new AtomicReference<>();
+    private final Object claimLock = new Object();
+
+    /**
+     * Construct an allocator.
+     *
+     * @param source the BlockSource to claim from
+     * @param blockSize the number of values to claim at a time
+     * @param clock supplies the current date
+     */
+    public DoiAllocator(BlockSource source, int blockSize, Supplier<LocalDate> clock) {
+        this.source = source;
+        this.blockSize = Math.max(1, blockSize);
+        this.clock = clock;
+    }
+
+    /**
+     * Obtain the shared allocator, claiming blocks from the database.
+     *
+     * @return the DoiAllocator instance
+     */
+    public static synchronized DoiAllocator getInstance() {
+        if (null==instance)
+            instance = new DoiAllocator(DoiAllocator::claimFromDatabase,
+                    DoeServletContextListener.getConfigurationProperty("doi.block.size", 20),
+                    LocalDate::now);
+
+        return instance;
+    }
+
+    /**
+     * Claim a block of values from the DOI_RESERVATION row, under a row lock.
+     *
+     * @param datePattern the current date pattern
+     * @param size the number of values to claim
+     * @return the claimed Block
+     * @throws IOException if unable to obtain the lock
+     */
+    private static Block claimFromDatabase(String datePattern, int size) throws IOException {
+        EntityManager em = DoeServletContextListener.createEntityManager();
+        // set a LOCK TIMEOUT to prevent collision
+        em.setProperty("javax.persistence.lock.timeout", 5000);
+
+        try {
+            em.getTransaction().begin();
+
+            DoiReservation reservation = em.find(DoiReservation.class, DoiReservation.TYPE, LockModeType.PESSIMISTIC_WRITE);
+
+            if (null==reservation)
+                reservation = new DoiReservation();
+
+            int first = reservation.reserveBlock(datePattern, size);
+
+            em.merge(reservation);
+
+            em.getTransaction().commit();
+
+            return new Block(reservation.getDatePattern(), first, reservation.getIndex());
+        } catch ( PessimisticLockException | LockTimeoutException e ) {
+            log.warn("DOI Reservation, unable to obtain lock.", e);
+            throw new IOException ("Unable to claim DOI reservation block.");
+        } finally {
+            if (em.getTransaction().isActive())
+                em.getTransaction().rollback();
+            em.close();
+        }
+    }
+
+    /**
+     * Obtain a new, unique DOI reservation value.
+     *
+     * @return a DoiReservation containing the reserved date pattern and index
+     * @throws IOException if a new block was needed and could not be claimed
+     */
+    public DoiReservation reserve() throws IOException {
+        while (true) {
+            String today = DATE_PATTERN.format(clock.get());
+            Block block = current.get();
+
+            // fast path:  take the next value of the current block
+            if (null!=block && block.datePattern.compareTo(today)>=0) {
+                int index = block.next.getAndIncrement();
+
+                if (index<=block.last) {
+                    DoiReservation reservation = new DoiReservation();
+                    reservation.setDatePattern(block.datePattern);
+                    reservation.setIndex(index);
+
+                    return reservation;
+                }
+            }
+
+            // used up or out of date; one thread claims a new block while
+            // the others wait for it
+            synchronized (claimLock) {
+                if (current.get()==block)
+                    current.set(source.claim(DATE_PATTERN.format(clock.get()), blockSize));
+            }
+        }
+    }
+}
@@ -21,7 +21,9 @@ import javax.persistence.Table;
 @JsonIgnoreProperties (ignoreUnknown = true)
 @NamedQueries ({
     @NamedQuery (name = "ApprovedMetadata.findByCodeId", query = "SELECT a FROM ApprovedMetadata a WHERE a.codeId=:codeId"),
-    @NamedQuery (name = "ApprovedMetadata.findAll", query = "SELECT a FROM ApprovedMetadata a")
+    @NamedQuery (name = "ApprovedMetadata.findAll", query = "SELECT a FROM ApprovedMetadata a"),
+    @NamedQuery (name = "ApprovedMetadata.findAfter", query = "SELECT a FROM ApprovedMetadata a WHERE a.codeId>:codeId ORDER BY a.codeId"),
+    @NamedQuery (name = "ApprovedMetadata.countAfter", query = "SELECT COUNT(a) FROM ApprovedMetadata a WHERE a.codeId>:codeId")
 })
 public class ApprovedMetadata implements Serializable {
     @Id
@@ -13,7 +13,6 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.Table;
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -101,12 +100,35 @@ public class DoiReservation implements Serializable {
     public synchronized void reserve() {
         String now = DateTimeFormatter.ofPattern("yyyyMMdd").format(LocalDate.now());
 
-        if (!StringUtils.startsWith(getDatePattern(), now)) {
-            setDatePattern(now);
-            setIndex(1);
-        } else {
-            setIndex(++index);
+        reserveBlock(now, 1);
+    }
+
+    /**
+     * Claim a contiguous block of index values for a date.
+     *
+     * If the stored date pattern is earlier than the requested date (or not
+     * set), the sequence restarts at 1 for the requested date.  The date
+     * pattern never moves backwards; if a later date is already stored (e.g.,
+     * another node's clock has passed midnight), the block is claimed from that
+     * date's sequence instead.  After this call, the date pattern is that of the
+     * claimed block and the index is its LAST value.
+     *
+     * Entity attributes are modified by this call, and should be persisted
+     * outside this Bean context.
+     *
+     * @param date the requested date pattern (yyyyMMdd)
+     * @param size the number of index values to claim
+     * @return the FIRST index value of the claimed block
+     */
+    public synchronized int reserveBlock(String date, int size) {
+        if (null==getDatePattern() || null==getIndex() || getDatePattern().compareTo(date)<0) {
+            setDatePattern(date);
+            setIndex(0);
         }
+        int first = getIndex() + 1;
+        setIndex(getIndex() + size);
+
+        return first;
     }
 
     /**
@@ -0,0 +1,118 @@
+/*
+ */
+package gov.osti.entity;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * A summary of a Metadata record for list views: the record's own columns,
+ * without any of its child tables, read in a single query via a JPQL
+ * constructor expression (see SELECT_FIELDS).  Attribute names match those
+ * of DOECodeMetadata.
+ *
+ * @author ensornl
+ */
+public class MetadataSummary implements Serializable {
+    /**
+     * The DOECodeMetadata attributes to select (from alias "md"), in
+     * constructor order.
+     */
+    public static final String[] ATTRIBUTES = {
+        "codeId", "softwareTitle", "acronym", "doi", "siteOwnershipCode",
+        "owner", "workflowStatus", "accessibility", "repositoryLink",
+        "landingPage", "releaseDate", "dateRecordAdded", "dateRecordUpdated"
+    };
+    /** JPQL SELECT clause constructing summaries of "md" **/
+    public static final String SELECT_FIELDS = "NEW " + MetadataSummary.class.getName() +
+            "(md." + String.join(", md.", ATTRIBUTES) + ")";
+
+    private Long codeId;
+    private String softwareTitle;
+    private String acronym;
+    private String doi;
+    private String siteOwnershipCode;
+    private String owner;
+    private DOECodeMetadata.Status workflowStatus;
+    private DOECodeMetadata.Accessibility accessibility;
+    private String repositoryLink;
+    private String landingPage;
+    @JsonFormat (shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd", timezone = "EST")
+    private Date releaseDate;
+    @JsonFormat (shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd", timezone = "EST")
+    private Date dateRecordAdded;
+    @JsonFormat (shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd", timezone = "EST")
+    private Date dateRecordUpdated;
+
+    public MetadataSummary(Long codeId, String softwareTitle, String acronym, String doi,
+            String siteOwnershipCode, String owner, DOECodeMetadata.Status workflowStatus,
+            DOECodeMetadata.Accessibility accessibility, String repositoryLink, String landingPage,
+            Date releaseDate, Date dateRecordAdded, Date dateRecordUpdated) {
+        this.codeId = codeId;
+        this.softwareTitle = softwareTitle;
+        this.acronym = acronym;
+        this.doi = doi;
+        this.siteOwnershipCode = siteOwnershipCode;
+        this.owner = owner;
+        this.workflowStatus = workflowStatus;
+        this.accessibility = accessibility;
+        this.repositoryLink = repositoryLink;
+        this.landingPage = landingPage;
+        this.releaseDate = releaseDate;
+        this.dateRecordAdded = dateRecordAdded;
+        this.dateRecordUpdated = dateRecordUpdated;
+    }
+
+    public Long getCodeId() {
+        return codeId;
+    }
+
+    public String getSoftwareTitle() {
+        return softwareTitle;
+    }
+
+    public String getAcronym() {
+        return acronym;
+    }
+
+    public String getDoi() {
+        return doi;
+    }
+
+    public String getSiteOwnershipCode() {
+        return siteOwnershipCode;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public DOECodeMetadata.Status getWorkflowStatus() {
+        return workflowStatus;
+    }
+
+    public DOECodeMetadata.Accessibility getAccessibility() {
+        return accessibility;
+    }
+
+    public String getRepositoryLink() {
+        return repositoryLink;
+    }
+
+    public String getLandingPage() {
+        return landingPage;
+    }
+
+    public Date getReleaseDate() {
+        return releaseDate;
+    }
+
+    public Date getDateRecordAdded() {
+        return dateRecordAdded;
+    }
+
+    public Date getDateRecordUpdated() {
+        return dateRecordUpdated;
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ */
+package gov.osti.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import java.io.Serializable;
+import java.util.Date;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import org.eclipse.persistence.annotations.Cache;
+import org.eclipse.persistence.config.CacheIsolationType;
+
+/**
+ * A side effect of a Metadata workflow change, such as archiving or DOI
+ * registration, to be delivered to an external service once the change is
+ * committed.
+ *
+ * Messages are written in the same transaction as the change itself, then
+ * delivered in the background (see OutboxDispatcher), in order for each
+ * destination and CODE ID.  A Dead message does not hold up later messages
+ * for the same destination and CODE ID, which supersede it.
+ *
+ * @author ensornl
+ */
+@Entity
+@Table (name = "OUTBOX")
+@Cache (isolation = CacheIsolationType.ISOLATED)
+@JsonIgnoreProperties (ignoreUnknown = true)
+@NamedQueries ({
+    @NamedQuery (name = "OutboxMessage.findDue", query = "SELECT m FROM OutboxMessage m WHERE m.destination = :destination " +
+            "AND m.status IN :statuses AND m.nextAttempt <= :now AND NOT EXISTS (SELECT p FROM OutboxMessage p " +
+            "WHERE p.destination = m.destination AND p.codeId = m.codeId AND p.id < m.id AND p.status IN :statuses) " +
+            "ORDER BY m.id"),
+    @NamedQuery (name = "OutboxMessage.countLater", query = "SELECT COUNT(m) FROM OutboxMessage m WHERE m.destination = :destination " +
+            "AND m.codeId = :codeId AND m.id > :id"),
+    @NamedQuery (name = "OutboxMessage.findByStatus", query = "SELECT m FROM OutboxMessage m WHERE m.status = :status ORDER BY m.id DESC"),
+    @NamedQuery (name = "OutboxMessage.countByStatus", query = "SELECT m.destination, m.status, COUNT(m) FROM OutboxMessage m " +
+            "GROUP BY m.destination, m.status")
+})
+public class OutboxMessage implements Serializable {
+    /**
+     * External services receiving messages.
+     */
+    public enum Destination {
+        Archiver,
+        DataCite,
+        Osti
+    }
+
+    /**
+     * Delivery states.  Messages being sent are held for a time, and become
+     * due again if the sender does not finish (such as on a shutdown).
+     */
+    public enum Status {
+        Pending,
+        Sending,
+        Delivered,
+        Dead
+    }
+
+    @Id
+    @GeneratedValue (strategy = GenerationType.AUTO)
+    @Column (name = "MESSAGE_ID")
+    private Long id;
+    @Enumerated (EnumType.STRING)
+    @Column (length = 20, name = "DESTINATION", nullable = false)
+    private Destination destination;
+    @Column (name = "CODE_ID")
+    private Long codeId;
+    @Lob
+    @Column (name = "PAYLOAD")
+    private String payload;
+    @Enumerated (EnumType.STRING)
+    @Column (length = 20, name = "STATUS", nullable = false)
+    private Status status = Status.Pending;
+    @Column (name = "ATTEMPTS")
+    private int attempts = 0;
+    @Column (name = "NEXT_ATTEMPT")
+    @Temporal (TemporalType.TIMESTAMP)
+    private Date nextAttempt;
+    @Column (length = 1000, name = "LAST_ERROR")
+    private String lastError;
+    @Column (name = "DATE_CREATED")
+    @Temporal (TemporalType.TIMESTAMP)
+    private Date dateCreated;
+    @Column (name = "DATE_DELIVERED")
+    @Temporal (TemporalType.TIMESTAMP)
+    private Date dateDelivered;
+
+    public OutboxMessage() {
+
+    }
+
+    /**
+     * Construct a message due at once.
+     *
+     * @param destination the Destination
+     * @param codeId the CODE ID of the Metadata concerned
+     * @param payload what to send, as the Destination expects
+     */
+    public OutboxMessage(Destination destination, Long codeId, String payload) {
+        this.destination = destination;
+        this.codeId = codeId;
+        this.payload = payload;
+        this.dateCreated = new Date();
+        this.nextAttempt = this.dateCreated;
+    }
+
+    /**
+     * @return the message ID
+     */
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * @param id the message ID
+     */
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    /**
+     * @return the Destination
+     */
+    public Destination getDestination() {
+        return destination;
+    }
+
+    /**
+     * @param destination the Destination
+     */
+    public void setDestination(Destination destination) {
+        this.destination = destination;
+    }
+
+    /**
+     * @return the CODE ID of the Metadata concerned
+     */
+    public Long getCodeId() {
+        return codeId;
+    }
+
+    /**
+     * @param codeId the CODE ID of the Metadata concerned
+     */
+    public void setCodeId(Long codeId) {
+        this.codeId = codeId;
+    }
+
+    /**
+     * @return what to send
+     */
+    @JsonIgnore
+    public String getPayload() {
+        return payload;
+    }
+
+    /**
+     * @param payload what to send
+     */
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    /**
+     * @return the delivery Status
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @param status the delivery Status
+     */
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    /**
+     * @return the number of delivery attempts made
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * @param attempts the number of delivery attempts made
+     */
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    /**
+     * @return when the message is next due
+     */
+    public Date getNextAttempt() {
+        return nextAttempt;
+    }
+
+    /**
+     * @param nextAttempt when the message is next due
+     */
+    public void setNextAttempt(Date nextAttempt) {
+        this.nextAttempt = nextAttempt;
+    }
+
+    /**
+     * @return the reason the last attempt failed, if any
+     */
+    public String getLastError() {
+        return lastError;
+    }
+
+    /**
+     * @param lastError the reason the last attempt failed
+     */
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    /**
+     * @return the date the message was written
+     */
+    public Date getDateCreated() {
+        return dateCreated;
+    }
+
+    /**
+     * @param dateCreated the date the message was written
+     */
+    public void setDateCreated(Date dateCreated) {
+        this.dateCreated = dateCreated;
+    }
+
+    /**
+     * @return the date the message was delivered, if it has been
+     */
+    public Date getDateDelivered() {
+        return dateDelivered;
+    }
+
+    /**
+     * @param dateDelivered the date the message was delivered
+     */
+    public void setDateDelivered(Date dateDelivered) {
+        this.dateDelivered = dateDelivered;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ */
+package gov.osti.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import java.io.Serializable;
+import java.util.Date;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+/**
+ * Persistent progress of a bulk reindex job, so it may be resumed after an
+ * interruption.
+ *
+ * @author ensornl
+ */
+@Entity
+@Table (name = "REINDEX_CHECKPOINT")
+@JsonIgnoreProperties (ignoreUnknown = true)
+public class ReindexCheckpoint implements Serializable {
+    // the single JOB NAME in use
+    public static final String JOB = "REINDEX";
+
+    @Id
+    @Column (length = 20, name = "JOB_NAME")
+    private String jobName = JOB;
+    // last CODE ID successfully sent to the index
+    @Column (name = "LAST_CODE_ID")
+    private Long lastCodeId = 0L;
+    @Column (name = "PROCESSED")
+    private Long processed = 0L;
+    @Column (name = "ERRORS")
+    private Long errors = 0L;
+    @Column (length = 20, name = "STATUS")
+    private String status;
+    @Column (name = "DATE_STARTED")
+    @Temporal (TemporalType.TIMESTAMP)
+    private Date dateStarted;
+    @Column (name = "DATE_UPDATED")
+    @Temporal (TemporalType.TIMESTAMP)
+    private Date dateUpdated;
+
+    /**
+     * @return the jobName
+     */
+    public String getJobName() {
+        return jobName;
+    }
+
+    /**
+     * @param jobName the jobName to set
+     */
+    public void setJobName(String jobName) {
+        this.jobName = jobName;
+    }
+
+    /**
+     * @return the last CODE ID indexed
+     */
+    public Long getLastCodeId() {
+        return lastCodeId;
+    }
+
+    /**
+     * @param lastCodeId the last CODE ID indexed
+     */
+    public void setLastCodeId(Long lastCodeId) {
+        this.lastCodeId = lastCodeId;
+    }
+
+    /**
+     * @return the number of records processed
+     */
+    public Long getProcessed() {
+        return processed;
+    }
+
+    /**
+     * @param processed the number of records processed
+     */
+    public void setProcessed(Long processed) {
+        this.processed = processed;
+    }
+
+    /**
+     * @return the number of records unable to be indexed
+     */
+    public Long getErrors() {
+        return errors;
+    }
+
+    /**
+     * @param errors the number of records unable to be indexed
+     */
+    public void setErrors(Long errors) {
+        this.errors = errors;
+    }
+
+    /**
+     * @return the job status
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * @param status the job status
+     */
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    /**
+     * @return the date the job started
+     */
+    public Date getDateStarted() {
+        return dateStarted;
+    }
+
+    /**
+     * @param dateStarted the date the job started
+     */
+    public void setDateStarted(Date dateStarted) {
+        this.dateStarted = dateStarted;
+    }
+
+    /**
+     * @return the date of the latest progress
+     */
+    public Date getDateUpdated() {
+        return dateUpdated;
+    }
+
+    /**
+     * @param dateUpdated the date of the latest progress
+     */
+    public void setDateUpdated(Date dateUpdated) {
+        this.dateUpdated = dateUpdated;
+    }
+}
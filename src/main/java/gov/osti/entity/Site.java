@@ -11,9 +11,11 @@ import javax.persistence.JoinColumn;
 import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
 import javax.persistence.Table;
+import org.eclipse.persistence.annotations.Cache;
 
 @Entity
 @Table(name="sites")
+@Cache (size = 500, expiry = 3600000)
 @NamedQueries ({
     @NamedQuery (name = "Site.findByDomain", query = "SELECT s FROM Site s JOIN s.emailDomains d WHERE d = :domain")
 })
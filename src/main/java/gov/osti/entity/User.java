@@ -16,15 +16,25 @@ import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
 import javax.persistence.PrePersist;
 import javax.persistence.PreUpdate;
+import javax.persistence.QueryHint;
 import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
+import org.eclipse.persistence.annotations.Cache;
+import org.eclipse.persistence.annotations.CacheCoordinationType;
+import org.eclipse.persistence.config.QueryHints;
 
 @Entity
 @Table(name="users")
+@Cache (size = 2000, expiry = 600000, coordinationType = CacheCoordinationType.INVALIDATE_CHANGED_OBJECTS)
 @NamedQueries ({
     @NamedQuery (name = "User.findAllUsers", query = "SELECT u FROM User u ORDER BY u.lastName"),
-    @NamedQuery (name = "User.findUser", query = "SELECT u FROM User u WHERE u.email=:email")
+    @NamedQuery (name = "User.findUser", query = "SELECT u FROM User u WHERE u.email=:email",
+            hints = {
+                @QueryHint (name = QueryHints.QUERY_RESULTS_CACHE, value = "true"),
+                @QueryHint (name = QueryHints.QUERY_RESULTS_CACHE_SIZE, value = "1000"),
+                @QueryHint (name = QueryHints.QUERY_RESULTS_CACHE_EXPIRY, value = "600000")
+            })
 })
 public class User implements Serializable {
     
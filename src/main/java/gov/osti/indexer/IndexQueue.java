@@ -0,0 +1,439 @@
+/*
+ */
+package gov.osti.indexer;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import gov.osti.entity.DOECodeMetadata;
+import gov.osti.listeners.DoeServletContextListener;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background queue for sending Metadata changes to the indexing service.
+ *
+ * Request threads only enqueue; a single worker thread sends the index
+ * documents in batches, either once enough are waiting or once the oldest has
+ * waited the configured time window.  Repeated updates to the same CODE ID
+ * while waiting are coalesced, so only the latest version is sent.  Failed
+ * batches are retried with exponential backoff, unless a newer version of a
+ * record has been queued in the meantime.
+ *
+ * Configuration properties:
+ * index.batch.size - maximum documents per update request (default 50)
+ * index.batch.window - maximum time in milliseconds to wait for a batch to
+ *   fill (default 1000)
+ * index.retry.max - attempts before giving up on a document (default 5)
+ * index.retry.backoff - initial retry delay in milliseconds, doubled on each
+ *   failed attempt (default 1000)
+ * index.retry.backoff.max - maximum retry delay in milliseconds (default 60000)
+ *
+ * @author ensornl
+ */
+public class IndexQueue {
+    // logger
+    private static final Logger log = LoggerFactory.getLogger(IndexQueue.class);
+
+    /**
+     * Something able to send a batch of index documents.
+     */
+    public interface BatchSender {
+        /**
+         * Send the documents.
+         *
+         * @param documents the index documents to send
+         * @throws IOException on failure; the batch will be retried
+         */
+        void send(List<ObjectNode> documents) throws IOException;
+    }
+
+    /**
+     * Notified after documents have been indexed successfully.
+     */
+    public interface Listener {
+        /**
+         * Called from the worker thread after each successful batch.
+         *
+         * @param codeIds the CODE IDs just indexed
+         */
+        void indexed(List<Long> codeIds);
+    }
+
+    /**
+     * A pending index document for a single CODE ID.
+     */
+    private static class Entry {
+        private final Long codeId;
+        private ObjectNode document;
+        // when this CODE ID first began waiting to be indexed
+        private final long queued;
+        // number of failed attempts so far
+        private int attempts = 0;
+        // do not send before this time (retry backoff)
+        private long notBefore = 0;
+
+        Entry(Long codeId, ObjectNode document, long queued) {
+            this.codeId = codeId;
+            this.document = document;
+            this.queued = queued;
+        }
+    }
+
+    // the shared instance
+    private static IndexQueue instance = null;
+
+    // pending documents, by CODE ID, in arrival order
+    private final LinkedHashMap<Long, Entry> pending = new LinkedHashMap<>();
+    private final Object lock = new Object();
+
+    private final BatchSender sender;
+    private final int batchSize;
+    private final long window;
+    private final int maxAttempts;
+    private final long backoff;
+    private final long maxBackoff;
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private Thread worker = null;
+    private volatile boolean running = false;
+
+    // statistics
+    private long enqueued = 0;
+    private long coalesced = 0;
+    private long sent = 0;
+    private long batches = 0;
+    private long failures = 0;
+    private long dropped = 0;
+    private int inFlight = 0;
+    private long lastBatchLag = 0;
+    private long lastSuccess = 0;
+
+    /**
+     * Construct a queue.
+     *
+     * @param sender the BatchSender to use
+     * @param batchSize the maximum number of documents per batch
+     * @param window maximum milliseconds to wait for a batch to fill
+     * @param maxAttempts number of attempts before dropping a document
+     * @param backoff initial retry delay in milliseconds
+     * @param maxBackoff maximum retry delay in milliseconds
+     */
+    public IndexQueue(BatchSender sender, int batchSize, long window, int maxAttempts, long backoff, long maxBackoff) {
+        this.sender = sender;
+        this.batchSize = Math.max(1, batchSize);
+        this.window = Math.max(0, window);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoff = Math.max(0, backoff);
+        this.maxBackoff = Math.max(this.backoff, maxBackoff);
+    }
+
+    /**
+     * Obtain the shared index queue, sending to the configured indexing
+     * service.  Started on first use.
+     *
+     * @return the IndexQueue instance
+     */
+    public static synchronized IndexQueue getInstance() {
+        if (null==instance) {
+            instance = new IndexQueue(SolrIndexer::send,
+                    DoeServletContextListener.getConfigurationProperty("index.batch.size", 50),
+                    DoeServletContextListener.getConfigurationProperty("index.batch.window", 1000),
+                    DoeServletContextListener.getConfigurationProperty("index.retry.max", 5),
+                    DoeServletContextListener.getConfigurationProperty("index.retry.backoff", 1000),
+                    DoeServletContextListener.getConfigurationProperty("index.retry.backoff.max", 60000));
+            instance.start();
+        }
+        return instance;
+    }
+
+    /**
+     * Stop the shared index queue, if running, attempting to send any pending
+     * documents first.
+     */
+    public static synchronized void shutdownInstance() {
+        if (null!=instance) {
+            instance.shutdown(10000);
+            instance = null;
+        }
+    }
+
+    /**
+     * Start the background worker thread.
+     */
+    public synchronized void start() {
+        if (running)
+            return;
+
+        running = true;
+        worker = new Thread(this::run, "index-queue");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Stop accepting new work, and wait for the worker to send whatever is
+     * ready.  Documents still waiting on retry backoff are abandoned.
+     *
+     * @param timeout maximum milliseconds to wait
+     */
+    public synchronized void shutdown(long timeout) {
+        if (!running)
+            return;
+
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+        try {
+            worker.join(timeout);
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (lock) {
+            if (!pending.isEmpty())
+                log.warn("Index queue stopped with " + pending.size() + " documents not indexed.");
+        }
+    }
+
+    /**
+     * Queue a Metadata record to be (re)indexed.  Replaces any version of the
+     * same CODE ID still waiting to be sent.
+     *
+     * @param md the Metadata to index
+     */
+    public void enqueue(DOECodeMetadata md) {
+        // take a snapshot of the record now, in the caller's thread
+        enqueue(md.getCodeId(), SolrIndexer.toDocument(md));
+    }
+
+    /**
+     * Queue an index document for a CODE ID.
+     *
+     * @param codeId the CODE ID
+     * @param document the index document
+     */
+    protected void enqueue(Long codeId, ObjectNode document) {
+        synchronized (lock) {
+            Entry entry = pending.get(codeId);
+
+            ++enqueued;
+            if (null==entry) {
+                pending.put(codeId, new Entry(codeId, document, System.currentTimeMillis()));
+            } else {
+                // newer version supersedes the waiting one; send it promptly
+                entry.document = document;
+                entry.attempts = 0;
+                entry.notBefore = 0;
+                ++coalesced;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Wait for and remove the next batch of documents to send.
+     *
+     * @return the batch of entries, or null if shutting down with nothing
+     * ready
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private List<Entry> take() throws InterruptedException {
+        synchronized (lock) {
+            while (true) {
+                long now = System.currentTimeMillis();
+                int ready = 0;
+                long oldest = Long.MAX_VALUE;
+                long nextRetry = Long.MAX_VALUE;
+
+                for ( Entry entry : pending.values() ) {
+                    if (entry.notBefore<=now) {
+                        ++ready;
+                        oldest = Math.min(oldest, entry.queued);
+                    } else {
+                        nextRetry = Math.min(nextRetry, entry.notBefore);
+                    }
+                }
+
+                if (ready>0 && (ready>=batchSize || now-oldest>=window || !running)) {
+                    List<Entry> batch = new ArrayList<>();
+                    Iterator<Entry> it = pending.values().iterator();
+
+                    while (it.hasNext() && batch.size()<batchSize) {
+                        Entry entry = it.next();
+                        if (entry.notBefore<=now) {
+                            batch.add(entry);
+                            it.remove();
+                        }
+                    }
+                    inFlight = batch.size();
+                    return batch;
+                }
+
+                if (!running)
+                    return null;
+
+                // sleep until the batch window closes, a retry comes due, or notified
+                long wake = Math.min(nextRetry, (ready>0) ? oldest+window : Long.MAX_VALUE);
+                if (Long.MAX_VALUE==wake)
+                    lock.wait();
+                else
+                    lock.wait(Math.max(1, wake-now));
+            }
+        }
+    }
+
+    /**
+     * Send a batch, and handle the outcome.
+     *
+     * @param batch the entries to send
+     */
+    private void process(List<Entry> batch) {
+        List<ObjectNode> documents = new ArrayList<>();
+        for ( Entry entry : batch )
+            documents.add(entry.document);
+
+        try {
+            sender.send(documents);
+
+            synchronized (lock) {
+                long now = System.currentTimeMillis();
+
+                sent += batch.size();
+                ++batches;
+                inFlight = 0;
+                lastSuccess = now;
+                lastBatchLag = now - batch.get(0).queued;
+                lock.notifyAll();
+            }
+            notifyIndexed(batch);
+        } catch ( Exception e ) {
+            log.warn("Indexing batch of " + batch.size() + " failed: " + e.getMessage());
+
+            synchronized (lock) {
+                long now = System.currentTimeMillis();
+
+                ++failures;
+                inFlight = 0;
+                for ( Entry entry : batch ) {
+                    // skip if a newer version was queued meanwhile
+                    if (pending.containsKey(entry.codeId))
+                        continue;
+
+                    if (++entry.attempts>=maxAttempts) {
+                        ++dropped;
+                        log.error("Giving up indexing CODE ID " + entry.codeId + " after " + entry.attempts + " attempts.");
+                        continue;
+                    }
+                    long delay = backoff << Math.min(entry.attempts-1, 20);
+                    entry.notBefore = now + Math.min(delay, maxBackoff);
+                    pending.put(entry.codeId, entry);
+                }
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Register a Listener for successfully indexed records.
+     *
+     * @param listener the Listener to add
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Inform each Listener of an indexed batch.
+     *
+     * @param batch the entries just sent
+     */
+    private void notifyIndexed(List<Entry> batch) {
+        if (listeners.isEmpty())
+            return;
+
+        List<Long> codeIds = new ArrayList<>();
+        for ( Entry entry : batch )
+            codeIds.add(entry.codeId);
+
+        for ( Listener listener : listeners ) {
+            try {
+                listener.indexed(codeIds);
+            } catch ( Exception e ) {
+                log.warn("Index listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Worker thread loop.
+     */
+    private void run() {
+        try {
+            List<Entry> batch;
+
+            while (null!=(batch = take()))
+                process(batch);
+        } catch ( InterruptedException e ) {
+            log.warn("Index queue interrupted.");
+        }
+    }
+
+    /**
+     * Wait until there is nothing left to send, or time runs out.
+     *
+     * @param timeout maximum milliseconds to wait
+     * @return true if the queue is idle, false if timed out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitIdle(long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+
+        synchronized (lock) {
+            while (!pending.isEmpty() || inFlight>0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining<=0)
+                    return false;
+                lock.wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Report queue depth, lag, and throughput counters.
+     *
+     * @return a Map of queue statistics
+     */
+    public Map<String,Object> getStatistics() {
+        Map<String,Object> statistics = new LinkedHashMap<>();
+
+        synchronized (lock) {
+            long now = System.currentTimeMillis();
+            long oldest = now;
+
+            for ( Entry entry : pending.values() )
+                oldest = Math.min(oldest, entry.queued);
+
+            statistics.put("depth", pending.size());
+            statistics.put("in_flight", inFlight);
+            statistics.put("lag_ms", now - oldest);
+            statistics.put("last_batch_lag_ms", lastBatchLag);
+            statistics.put("last_success", lastSuccess);
+            statistics.put("enqueued", enqueued);
+            statistics.put("coalesced", coalesced);
+            statistics.put("sent", sent);
+            statistics.put("batches", batches);
+            statistics.put("failed_batches", failures);
+            statistics.put("dropped", dropped);
+        }
+
+        return statistics;
+    }
+}
@@ -0,0 +1,447 @@
+/*
+ */
+package gov.osti.indexer;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import gov.osti.cache.FacetCache;
+import gov.osti.cache.RecordCache;
+import gov.osti.cache.SearchResultCache;
+import gov.osti.entity.ApprovedMetadata;
+import gov.osti.entity.DOECodeMetadata;
+import gov.osti.entity.ReindexCheckpoint;
+import gov.osti.listeners.DoeServletContextListener;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background bulk reindex of all Approved Metadata.
+ *
+ * Pages through the approved metadata in CODE ID order (keyset paging, so
+ * each page is an index range scan regardless of depth), parses each page on
+ * a bounded worker pool, and sends each page to the indexing service as a
+ * single multi-document update.  Progress is checkpointed after each page so
+ * an interrupted job may be resumed where it left off.
+ *
+ * Records are read, and progress kept, through a Store; by default the
+ * approved_metadata and REINDEX_CHECKPOINT tables.
+ *
+ * Configuration properties:
+ * reindex.page.size - records per page and update request (default 200)
+ * reindex.threads - parsing worker threads (default number of processors)
+ * reindex.retry.max - attempts to send each page before failing (default 3)
+ *
+ * @author ensornl
+ */
+public class ReindexJob implements Runnable {
+    // logger
+    private static final Logger log = LoggerFactory.getLogger(ReindexJob.class);
+
+    /**
+     * Job states.
+     */
+    public enum State {
+        Running,
+        Completed,
+        Failed,
+        Cancelled
+    }
+
+    /**
+     * Where records to reindex are read from, and progress is kept.
+     */
+    public interface Store {
+        /**
+         * Read the persisted checkpoint.
+         *
+         * @return the ReindexCheckpoint, or null if none
+         */
+        ReindexCheckpoint loadCheckpoint();
+
+        /**
+         * Persist a checkpoint, replacing any previous one.
+         *
+         * @param checkpoint the ReindexCheckpoint to save
+         */
+        void saveCheckpoint(ReindexCheckpoint checkpoint);
+
+        /**
+         * Count the records after a CODE ID.
+         *
+         * @param codeId the CODE ID to start after
+         * @return the number of records remaining
+         */
+        long count(long codeId);
+
+        /**
+         * Read a page of records after a CODE ID.
+         *
+         * @param codeId the CODE ID to start after
+         * @param rows the maximum number of records
+         * @return the records, in CODE ID order
+         */
+        List<ApprovedMetadata> fetch(long codeId, int rows);
+    }
+
+    // the current (or most recent) job, if any
+    private static ReindexJob current = null;
+
+    private final Store store;
+    private final IndexQueue.BatchSender sender;
+    private final int pageSize;
+    private final int threads;
+    private final int maxAttempts;
+
+    private Thread thread = null;
+    private ExecutorService pool = null;
+    private volatile boolean cancelled = false;
+
+    // progress
+    private volatile State state = State.Running;
+    private volatile long lastCodeId = 0;
+    private volatile long processed = 0;
+    private volatile long errors = 0;
+    private volatile long total = 0;
+    private volatile String message = null;
+    private Date dateStarted = new Date();
+    private volatile Date dateUpdated = new Date();
+
+    /**
+     * Construct a job reading from the database and sending to the configured
+     * indexing service.
+     */
+    public ReindexJob() {
+        this(new DatabaseStore(), SolrIndexer::send,
+                DoeServletContextListener.getConfigurationProperty("reindex.page.size", 200),
+                DoeServletContextListener.getConfigurationProperty("reindex.threads", Runtime.getRuntime().availableProcessors()),
+                DoeServletContextListener.getConfigurationProperty("reindex.retry.max", 3));
+    }
+
+    /**
+     * Construct a job.
+     *
+     * @param store the Store of records and progress
+     * @param sender the BatchSender to send index documents to
+     * @param pageSize records per page and update request
+     * @param threads parsing worker threads
+     * @param maxAttempts attempts to send each page before failing
+     */
+    public ReindexJob(Store store, IndexQueue.BatchSender sender, int pageSize, int threads, int maxAttempts) {
+        this.store = store;
+        this.sender = sender;
+        this.pageSize = Math.max(1, pageSize);
+        this.threads = Math.max(1, threads);
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    /**
+     * Start a new reindex job in the background, unless one is already running.
+     *
+     * @param resume if true, continue from the last checkpoint; otherwise
+     * start from the beginning
+     * @return true if started, false if a job is already running
+     */
+    public static boolean start(boolean resume) {
+        return start(new ReindexJob(), resume);
+    }
+
+    /**
+     * Start a reindex job in the background, unless one is already running.
+     *
+     * @param job the ReindexJob to run
+     * @param resume if true, continue from the last checkpoint; otherwise
+     * start from the beginning
+     * @return true if started, false if a job is already running
+     */
+    static synchronized boolean start(ReindexJob job, boolean resume) {
+        if (null!=current && State.Running.equals(current.state))
+            return false;
+
+        if (resume) {
+            ReindexCheckpoint checkpoint = job.loadCheckpoint();
+
+            if (null!=checkpoint && null!=checkpoint.getLastCodeId()) {
+                job.lastCodeId = checkpoint.getLastCodeId();
+                job.processed = (null==checkpoint.getProcessed()) ? 0 : checkpoint.getProcessed();
+                job.errors = (null==checkpoint.getErrors()) ? 0 : checkpoint.getErrors();
+                if (null!=checkpoint.getDateStarted())
+                    job.dateStarted = checkpoint.getDateStarted();
+            }
+        }
+
+        current = job;
+        job.thread = new Thread(job, "reindex");
+        job.thread.setDaemon(true);
+        job.thread.start();
+
+        return true;
+    }
+
+    /**
+     * Cancel any running job, waiting briefly for it to stop.
+     */
+    public static synchronized void shutdown() {
+        if (null==current || !State.Running.equals(current.state))
+            return;
+
+        current.cancelled = true;
+        current.thread.interrupt();
+        try {
+            current.thread.join(10000);
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Report status of the current or most recent job.  If no job has run
+     * since startup, report the last persisted checkpoint, if any.
+     *
+     * @return a Map of job status values; empty if no job has ever run
+     */
+    public static synchronized Map<String,Object> getStatus() {
+        Map<String,Object> status = new LinkedHashMap<>();
+
+        if (null!=current) {
+            status.put("status", current.state.name());
+            status.put("processed", current.processed);
+            status.put("total", current.total);
+            status.put("errors", current.errors);
+            status.put("last_code_id", current.lastCodeId);
+            status.put("date_started", current.dateStarted);
+            status.put("date_updated", current.dateUpdated);
+            if (null!=current.message)
+                status.put("message", current.message);
+        } else {
+            ReindexCheckpoint checkpoint = new ReindexJob().loadCheckpoint();
+
+            if (null!=checkpoint) {
+                // a job still marked running was interrupted by a shutdown
+                status.put("status", State.Running.name().equals(checkpoint.getStatus()) ?
+                        "Interrupted" : checkpoint.getStatus());
+                status.put("processed", checkpoint.getProcessed());
+                status.put("errors", checkpoint.getErrors());
+                status.put("last_code_id", checkpoint.getLastCodeId());
+                status.put("date_started", checkpoint.getDateStarted());
+                status.put("date_updated", checkpoint.getDateUpdated());
+            }
+        }
+
+        return status;
+    }
+
+    /**
+     * Read the persisted checkpoint, if any.
+     *
+     * @return the ReindexCheckpoint, or null if none or unable to read
+     */
+    private ReindexCheckpoint loadCheckpoint() {
+        try {
+            return store.loadCheckpoint();
+        } catch ( Exception e ) {
+            log.warn("Unable to read reindex checkpoint: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Persist the current progress.
+     */
+    private void saveCheckpoint() {
+        ReindexCheckpoint checkpoint = new ReindexCheckpoint();
+        checkpoint.setLastCodeId(lastCodeId);
+        checkpoint.setProcessed(processed);
+        checkpoint.setErrors(errors);
+        checkpoint.setStatus(state.name());
+        checkpoint.setDateStarted(dateStarted);
+        checkpoint.setDateUpdated(dateUpdated);
+
+        try {
+            store.saveCheckpoint(checkpoint);
+        } catch ( Exception e ) {
+            log.warn("Unable to save reindex checkpoint: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Submit a page of records for parsing into index documents.
+     *
+     * @param page the records to parse
+     * @return Futures of the index documents, in page order
+     */
+    private List<Future<ObjectNode>> parse(List<ApprovedMetadata> page) {
+        List<Future<ObjectNode>> documents = new ArrayList<>();
+
+        for ( ApprovedMetadata amd : page ) {
+            final String json = amd.getJson();
+
+            documents.add(pool.submit(() -> SolrIndexer.toDocument(DOECodeMetadata.parseJson(new StringReader(json)))));
+        }
+        return documents;
+    }
+
+    /**
+     * Send a batch, retrying with backoff on failure.
+     *
+     * @param documents the index documents to send
+     * @throws IOException if all attempts failed
+     * @throws InterruptedException if cancelled while waiting to retry
+     */
+    private void send(List<ObjectNode> documents) throws IOException, InterruptedException {
+        for ( int attempt = 1; ; ++attempt ) {
+            try {
+                sender.send(documents);
+                return;
+            } catch ( IOException e ) {
+                if (attempt>=maxAttempts)
+                    throw e;
+                log.warn("Reindex batch failed, attempt " + attempt + ": " + e.getMessage());
+                Thread.sleep(1000L << attempt);
+            }
+        }
+    }
+
+    /**
+     * Run the reindex job.
+     */
+    @Override
+    public void run() {
+        pool = Executors.newFixedThreadPool(threads);
+
+        try {
+            total = processed + store.count(lastCodeId);
+            saveCheckpoint();
+            log.info("Reindex starting after CODE ID " + lastCodeId + ", " + (total-processed) + " records.");
+
+            List<ApprovedMetadata> page = store.fetch(lastCodeId, pageSize);
+
+            while (!page.isEmpty() && !cancelled) {
+                long pageLast = page.get(page.size()-1).getCodeId();
+
+                // parse this page in the background while reading the next one
+                List<Future<ObjectNode>> futures = parse(page);
+                List<ApprovedMetadata> next = (page.size()<pageSize) ?
+                        Collections.<ApprovedMetadata>emptyList() :
+                        store.fetch(pageLast, pageSize);
+
+                List<ObjectNode> documents = new ArrayList<>();
+                for ( int i = 0; i<futures.size(); ++i ) {
+                    try {
+                        documents.add(futures.get(i).get());
+                    } catch ( ExecutionException e ) {
+                        ++errors;
+                        log.warn("Unable to index CODE ID " + page.get(i).getCodeId() + ": " + e.getCause());
+                    }
+                }
+
+                send(documents);
+
+                lastCodeId = pageLast;
+                processed += page.size();
+                dateUpdated = new Date();
+                saveCheckpoint();
+
+                page = next;
+            }
+
+            state = (cancelled) ? State.Cancelled : State.Completed;
+            log.info("Reindex " + state.name() + ": " + processed + " records, " + errors + " errors.");
+        } catch ( InterruptedException e ) {
+            state = State.Cancelled;
+            log.warn("Reindex cancelled after CODE ID " + lastCodeId);
+        } catch ( Exception e ) {
+            state = State.Failed;
+            message = e.getMessage();
+            log.error("Reindex failed after CODE ID " + lastCodeId + ": " + e.getMessage());
+        } finally {
+            pool.shutdownNow();
+            try {
+                pool.awaitTermination(5, TimeUnit.SECONDS);
+            } catch ( InterruptedException e ) {
+                // proceed to record final state
+            }
+            // counts and results over all records may have changed
+            FacetCache.invalidate();
+            SearchResultCache.invalidate();
+            RecordCache.invalidate();
+            // clear any interruption before the final database update
+            Thread.interrupted();
+            dateUpdated = new Date();
+            saveCheckpoint();
+        }
+    }
+
+    /**
+     * Records read from approved_metadata, and progress kept in
+     * REINDEX_CHECKPOINT.
+     */
+    private static class DatabaseStore implements Store {
+        @Override
+        public ReindexCheckpoint loadCheckpoint() {
+            EntityManager em = DoeServletContextListener.createEntityManager();
+
+            try {
+                return em.find(ReindexCheckpoint.class, ReindexCheckpoint.JOB);
+            } finally {
+                em.close();
+            }
+        }
+
+        @Override
+        public void saveCheckpoint(ReindexCheckpoint checkpoint) {
+            EntityManager em = DoeServletContextListener.createEntityManager();
+
+            try {
+                em.getTransaction().begin();
+                em.merge(checkpoint);
+                em.getTransaction().commit();
+            } finally {
+                if (em.getTransaction().isActive())
+                    em.getTransaction().rollback();
+                em.close();
+            }
+        }
+
+        @Override
+        public long count(long codeId) {
+            EntityManager em = DoeServletContextListener.createEntityManager();
+
+            try {
+                return em.createNamedQuery("ApprovedMetadata.countAfter", Long.class)
+                        .setParameter("codeId", codeId)
+                        .getSingleResult();
+            } finally {
+                em.close();
+            }
+        }
+
+        @Override
+        public List<ApprovedMetadata> fetch(long codeId, int rows) {
+            EntityManager em = DoeServletContextListener.createEntityManager();
+
+            try {
+                TypedQuery<ApprovedMetadata> query = em.createNamedQuery("ApprovedMetadata.findAfter", ApprovedMetadata.class)
+                        .setParameter("codeId", codeId)
+                        .setMaxResults(rows);
+
+                return query.getResultList();
+            } finally {
+                em.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ */
+package gov.osti.indexer;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import gov.osti.entity.Agent;
+import gov.osti.entity.DOECodeMetadata;
+import gov.osti.search.SearchBackends;
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Construct index documents from Metadata, and send them to the configured
+ * indexing service (see SearchBackends) in batches.
+ *
+ * @author ensornl
+ */
+public class SolrIndexer {
+    // ObjectMapper specifically for indexing purposes
+    protected static final ObjectMapper index_mapper = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    static {
+        // customized serializer module for Agent names consolidation
+        SimpleModule module = new SimpleModule();
+        module.addSerializer(Agent.class, new AgentSerializer());
+        index_mapper.registerModule(module);
+    }
+
+    /**
+     * Determine whether or not an indexing service is configured.
+     *
+     * @return true if a search backend accepting updates is configured
+     */
+    public static boolean isConfigured() {
+        return SearchBackends.isIndexing();
+    }
+
+    /**
+     * Construct the index document for a given Metadata record.  Includes the
+     * full JSON String of the record for later display/search.
+     *
+     * @param md the Metadata to index
+     * @return an ObjectNode index document
+     */
+    public static ObjectNode toDocument(DOECodeMetadata md) {
+        ObjectNode node = (ObjectNode)index_mapper.valueToTree(md);
+        node.put("json", md.toJson().toString());
+
+        return node;
+    }
+
+    /**
+     * Send a batch of index documents to the indexing service in a single
+     * update request.  If no indexing service is configured, do nothing.
+     *
+     * @param documents the index documents to send
+     * @throws IOException on transmission errors, or if the indexing service
+     * rejected the update
+     */
+    public static void send(Collection<? extends JsonNode> documents) throws IOException {
+        if (!isConfigured() || documents.isEmpty())
+            return;
+
+        SearchBackends.getInstance().index(documents);
+    }
+}
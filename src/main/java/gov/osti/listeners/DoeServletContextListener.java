@@ -2,14 +2,37 @@
  */
 package gov.osti.listeners;
 
+import gov.osti.cache.FacetCache;
+import gov.osti.cache.RecordCache;
+import gov.osti.cache.SearchResultCache;
+import gov.osti.cache.SiteIndex;
+import gov.osti.connectors.ConnectorFactory;
+import gov.osti.connectors.HttpClientPool;
+import gov.osti.connectors.ParallelFetcher;
+import gov.osti.indexer.IndexQueue;
+import gov.osti.indexer.ReindexJob;
+import gov.osti.indexer.SolrIndexer;
+import gov.osti.outbox.OutboxDispatcher;
+import gov.osti.persistence.EntityCache;
+import gov.osti.persistence.EntityManagerTracker;
+import gov.osti.persistence.PooledDataSource;
+import gov.osti.schema.SchemaMigrator;
+import gov.osti.search.SearchBackends;
+import gov.osti.services.Validation;
+import gov.osti.sitemap.SitemapBuilder;
 import java.io.IOException;
 import java.io.InputStream;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
+import javax.sql.DataSource;
+import org.eclipse.persistence.config.PersistenceUnitProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.lang.Exception;
@@ -58,6 +81,25 @@ public class DoeServletContextListener implements ServletContextListener {
                 "";
     }
     
+    /**
+     * Obtain the named numeric configuration property, or a default value if
+     * not set or not a valid number.
+     * 
+     * @param key the KEY name requested
+     * @param defaultValue the value to use if not configured
+     * @return the configured VALUE, or the default
+     */
+    public static int getConfigurationProperty(String key, int defaultValue) {
+        String value = getConfigurationProperty(key).trim();
+        
+        try {
+            return ("".equals(value)) ? defaultValue : Integer.parseInt(value);
+        } catch ( NumberFormatException e ) {
+            log.warn("Invalid " + key + " configuration value: " + value);
+            return defaultValue;
+        }
+    }
+    
     /**
      * Start up the services on deployment.
      * 
@@ -67,11 +109,57 @@ public class DoeServletContextListener implements ServletContextListener {
     public void contextInitialized(ServletContextEvent sce) {
         // attempt to load the persistence layer
         String persistence_unit = sce.getServletContext().getInitParameter("persistence_unit");
-        emf = Persistence.createEntityManagerFactory(persistence_unit);
+        // use the pooled DataSource if configured, rather than EclipseLink's own connections
+        Map<String,Object> properties = new HashMap<>();
+        DataSource dataSource = PooledDataSource.start();
+        if (null!=dataSource)
+            properties.put(PersistenceUnitProperties.NON_JTA_DATASOURCE, dataSource);
+        // shared entity cache, and its coordination across nodes if configured
+        EntityCache.configure(properties);
+        emf = Persistence.createEntityManagerFactory(persistence_unit, properties);
+        // bring the schema up to date, failing deployment if it has drifted
+        if (!"false".equalsIgnoreCase(getConfigurationProperty("schema.migrate")))
+            migrateSchema();
+        // resolve email addresses to sites in memory
+        SiteIndex.start();
+        
+        // start up the shared outbound HTTP connection pool
+        HttpClientPool.start();
+        // build and refresh the sitemap files in the background
+        SitemapBuilder.start();
+        // deliver archiving, DOI registration, and OSTI publication in the background
+        OutboxDispatcher.start(sce.getServletContext().getInitParameter("publishing.host"));
+        // cached facet counts, search results, and records change as records are indexed
+        if (SolrIndexer.isConfigured())
+            IndexQueue.getInstance().addListener(codeIds -> {
+                FacetCache.invalidate();
+                SearchResultCache.invalidate();
+                RecordCache.invalidate(codeIds);
+            });
         
         log.info("DOECode instance started.");
     }
 
+    /**
+     * Apply any pending schema migrations.
+     * 
+     * @throws IllegalStateException if unable to migrate, or the schema has
+     * drifted from the migrations known
+     */
+    private static void migrateSchema() {
+        EntityManager em = createEntityManager();
+        
+        try {
+            int applied = SchemaMigrator.load().migrate(em);
+            if (0!=applied)
+                log.info("Applied " + applied + " schema migrations.");
+        } catch ( IOException | SQLException e ) {
+            throw new IllegalStateException("Schema migration failed: " + e.getMessage(), e);
+        } finally {
+            em.close();
+        }
+    }
+
     /**
      * Free resources appropriately before undeployment.
      * @param sce the ServletContextEvent triggering the call
@@ -80,14 +168,27 @@ public class DoeServletContextListener implements ServletContextListener {
     public void contextDestroyed(ServletContextEvent sce) {
         // close down the Entity Manager
         log.info("Shutting down DOE Code application.");
+        // stop any bulk reindex, and send any pending index updates before
+        // closing connections
+        ReindexJob.shutdown();
+        SitemapBuilder.shutdown();
+        OutboxDispatcher.shutdownInstance();
+        Validation.shutdown();
+        ConnectorFactory.getInstance().shutdown();
+        ParallelFetcher.shutdown();
+        IndexQueue.shutdownInstance();
+        SearchBackends.shutdown();
+        HttpClientPool.shutdown();
+        
         if (null!=emf)
             emf.close();
+        PooledDataSource.shutdown();
     }
     
     /**
      * Acquire an EntityManager for persistence operations.  Handling the resulting
      * EntityManager is the responsibility of the caller.  Make sure it is closed
-     * appropriately.
+     * appropriately; those left open are reported (see EntityManagerTracker).
      * 
      * @return an EntityManager from the Factory if possible
      */
@@ -97,7 +198,7 @@ public class DoeServletContextListener implements ServletContextListener {
         
         }
         try {
-        return emf.createEntityManager();
+        return EntityManagerTracker.track(emf.createEntityManager());
         } catch( Exception e) {
         	log.info(e.getMessage());
         }
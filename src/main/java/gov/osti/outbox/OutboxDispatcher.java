@@ -0,0 +1,580 @@
+/*
+ */
+package gov.osti.outbox;
+
+import gov.osti.entity.OutboxMessage;
+import gov.osti.entity.OutboxMessage.Destination;
+import gov.osti.entity.OutboxMessage.Status;
+import gov.osti.listeners.DoeServletContextListener;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.persistence.EntityManager;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background delivery of outbox messages to external services.
+ *
+ * Workflow operations write their side effects as OutboxMessages in their own
+ * transaction, and return once it commits.  A single worker thread polls for
+ * messages due (or is woken after a commit), claims each one, and hands it to
+ * a bounded pool per destination, so a slow service delays only its own
+ * messages.  Messages for the same destination and CODE ID are delivered one
+ * at a time, in order.
+ *
+ * A claim is a conditional update of the attempt count, so only one node of
+ * several sharing the database sends a message; the claim lapses if the
+ * sender does not finish in time.  Failed messages are retried with
+ * exponential backoff, and after the maximum attempts are marked Dead, to be
+ * retried on request (see retry()).  A Dead message does not hold up later
+ * messages for its destination and CODE ID; once one is written, it
+ * supersedes the Dead message, which may no longer be retried, as that would
+ * deliver older data over newer.  Delivered messages are deleted after the
+ * retention period, unless they supersede a Dead message.
+ *
+ * Configuration properties:
+ * outbox.poll.interval - milliseconds between polls for due messages (default 5000)
+ * outbox.concurrency - messages sent at once to each destination (default 2)
+ * outbox.lease - milliseconds a claimed message is held before being due
+ *   again (default 600000)
+ * outbox.retry.max - attempts before a message is dead (default 8)
+ * outbox.retry.backoff - initial retry delay in milliseconds, doubled on each
+ *   failed attempt (default 30000)
+ * outbox.retry.backoff.max - maximum retry delay in milliseconds (default 3600000)
+ * outbox.retention - milliseconds delivered messages are kept (default 604800000)
+ *
+ * @author ensornl
+ */
+public class OutboxDispatcher {
+    // logger
+    private static final Logger log = LoggerFactory.getLogger(OutboxDispatcher.class);
+
+    // messages not yet delivered or dead
+    private static final List<Status> UNFINISHED = Arrays.asList(Status.Pending, Status.Sending);
+    // minimum time between purges of delivered messages, in milliseconds
+    private static final long PURGE_INTERVAL = 3600000;
+
+    /**
+     * Something able to deliver messages to a destination.
+     */
+    public interface Sender {
+        /**
+         * Deliver the message.
+         *
+         * @param message the OutboxMessage
+         * @throws IOException on failure; the message will be retried
+         */
+        void send(OutboxMessage message) throws IOException;
+    }
+
+    // the shared instance
+    private static OutboxDispatcher instance = null;
+
+    private final Map<Destination, Sender> senders = new EnumMap<>(Destination.class);
+    private final Map<Destination, ExecutorService> pools = new EnumMap<>(Destination.class);
+    private final Map<Destination, AtomicInteger> inFlight = new EnumMap<>(Destination.class);
+    private final int concurrency;
+    private final long interval;
+    private final long lease;
+    private final int maxAttempts;
+    private final long backoff;
+    private final long maxBackoff;
+    private final long retention;
+
+    private final Object lock = new Object();
+    private boolean woken = false;
+    private Thread worker = null;
+    private volatile boolean running = false;
+    private long lastPurge = 0;
+
+    // statistics
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong dead = new AtomicLong();
+    private final AtomicLong lastDelivery = new AtomicLong();
+
+    /**
+     * Construct a dispatcher.
+     *
+     * @param senders the Sender of each destination delivered to
+     * @param concurrency messages sent at once to each destination
+     * @param interval milliseconds between polls
+     * @param lease milliseconds a claimed message is held
+     * @param maxAttempts attempts before a message is dead
+     * @param backoff initial retry delay in milliseconds
+     * @param maxBackoff maximum retry delay in milliseconds
+     * @param retention milliseconds delivered messages are kept
+     */
+    public OutboxDispatcher(Map<Destination, Sender> senders, int concurrency, long interval, long lease,
+            int maxAttempts, long backoff, long maxBackoff, long retention) {
+        this.senders.putAll(senders);
+        this.concurrency = Math.max(1, concurrency);
+        this.interval = Math.max(100, interval);
+        this.lease = Math.max(1000, lease);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoff = Math.max(0, backoff);
+        this.maxBackoff = Math.max(this.backoff, maxBackoff);
+        this.retention = Math.max(0, retention);
+    }
+
+    /**
+     * Start the shared dispatcher, delivering to the configured services.
+     *
+     * @param publishingHost the OSTI publishing host, or null if not configured
+     */
+    public static synchronized void start(String publishingHost) {
+        if (null!=instance)
+            return;
+
+        instance = new OutboxDispatcher(OutboxSenders.configured(publishingHost),
+                DoeServletContextListener.getConfigurationProperty("outbox.concurrency", 2),
+                DoeServletContextListener.getConfigurationProperty("outbox.poll.interval", 5000),
+                DoeServletContextListener.getConfigurationProperty("outbox.lease", 600000),
+                DoeServletContextListener.getConfigurationProperty("outbox.retry.max", 8),
+                DoeServletContextListener.getConfigurationProperty("outbox.retry.backoff", 30000),
+                DoeServletContextListener.getConfigurationProperty("outbox.retry.backoff.max", 3600000),
+                DoeServletContextListener.getConfigurationProperty("outbox.retention", 604800000));
+        instance.startWorker();
+    }
+
+    /**
+     * Obtain the shared dispatcher.
+     *
+     * @return the OutboxDispatcher, or null if not started
+     */
+    public static synchronized OutboxDispatcher getInstance() {
+        return instance;
+    }
+
+    /**
+     * Stop the shared dispatcher, if running.  Messages still being sent are
+     * due again once their claim lapses.
+     */
+    public static synchronized void shutdownInstance() {
+        if (null!=instance) {
+            instance.shutdown(10000);
+            instance = null;
+        }
+    }
+
+    /**
+     * Deliver newly committed messages promptly, rather than at the next poll.
+     */
+    public static void wake() {
+        OutboxDispatcher dispatcher = getInstance();
+
+        if (null!=dispatcher)
+            dispatcher.poll();
+    }
+
+    /**
+     * Have the worker poll again at once.
+     */
+    private void poll() {
+        synchronized (lock) {
+            woken = true;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Start the worker thread and delivery pools.
+     */
+    private synchronized void startWorker() {
+        if (running)
+            return;
+
+        for ( Destination destination : senders.keySet() ) {
+            pools.put(destination, Executors.newFixedThreadPool(concurrency, runnable -> {
+                Thread thread = new Thread(runnable, "outbox-" + destination.name().toLowerCase());
+                thread.setDaemon(true);
+                return thread;
+            }));
+            inFlight.put(destination, new AtomicInteger());
+        }
+        running = true;
+        worker = new Thread(this::run, "outbox");
+        worker.setDaemon(true);
+        worker.start();
+        log.info("Outbox dispatcher started for " + senders.keySet() + ".");
+    }
+
+    /**
+     * Stop polling, and wait for messages being sent.
+     *
+     * @param timeout maximum milliseconds to wait
+     */
+    private synchronized void shutdown(long timeout) {
+        if (!running)
+            return;
+
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+        try {
+            worker.join(timeout);
+            for ( ExecutorService pool : pools.values() )
+                pool.shutdown();
+            for ( ExecutorService pool : pools.values() )
+                if (!pool.awaitTermination(timeout, TimeUnit.MILLISECONDS))
+                    pool.shutdownNow();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Poll for due messages until stopped.
+     */
+    private void run() {
+        while (running) {
+            for ( Destination destination : senders.keySet() )
+                dispatch(destination);
+
+            if (System.currentTimeMillis()-lastPurge > PURGE_INTERVAL)
+                purge();
+
+            synchronized (lock) {
+                try {
+                    if (running && !woken)
+                        lock.wait(interval);
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                woken = false;
+            }
+        }
+    }
+
+    /**
+     * Claim due messages for a destination, as its pool has room, and hand
+     * them to the pool.
+     *
+     * @param destination the Destination
+     */
+    private void dispatch(Destination destination) {
+        AtomicInteger sending = inFlight.get(destination);
+        int room = concurrency - sending.get();
+
+        if (room<=0)
+            return;
+
+        EntityManager em = DoeServletContextListener.createEntityManager();
+
+        try {
+            List<OutboxMessage> due = em.createNamedQuery("OutboxMessage.findDue", OutboxMessage.class)
+                    .setParameter("destination", destination)
+                    .setParameter("statuses", UNFINISHED)
+                    .setParameter("now", new Date())
+                    .setMaxResults(room)
+                    .getResultList();
+            // work on copies; the claim is made by update
+            em.clear();
+
+            for ( OutboxMessage message : due ) {
+                if (!claim(em, message))
+                    continue;
+
+                sending.incrementAndGet();
+                pools.get(destination).execute(() -> {
+                    try {
+                        deliver(message);
+                    } finally {
+                        sending.decrementAndGet();
+                        poll();
+                    }
+                });
+            }
+        } catch ( RuntimeException e ) {
+            log.warn("Unable to read " + destination + " outbox: " + e.getMessage());
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Claim a message for sending, by counting the attempt, unless another
+     * node or thread already has.
+     *
+     * @param em the EntityManager
+     * @param message the OutboxMessage, as read
+     * @return true if claimed
+     */
+    private boolean claim(EntityManager em, OutboxMessage message) {
+        Date until = new Date(System.currentTimeMillis() + lease);
+
+        em.getTransaction().begin();
+        try {
+            int claimed = em.createQuery("UPDATE OutboxMessage m SET m.status = :sending, " +
+                    "m.attempts = m.attempts + 1, m.nextAttempt = :until WHERE m.id = :id AND m.attempts = :attempts")
+                    .setParameter("sending", Status.Sending)
+                    .setParameter("until", until)
+                    .setParameter("id", message.getId())
+                    .setParameter("attempts", message.getAttempts())
+                    .executeUpdate();
+            em.getTransaction().commit();
+
+            if (1!=claimed)
+                return false;
+        } finally {
+            if (em.getTransaction().isActive())
+                em.getTransaction().rollback();
+        }
+
+        message.setStatus(Status.Sending);
+        message.setAttempts(message.getAttempts()+1);
+        message.setNextAttempt(until);
+        return true;
+    }
+
+    /**
+     * Send a claimed message, and record the outcome.
+     *
+     * @param message the OutboxMessage
+     */
+    private void deliver(OutboxMessage message) {
+        Exception error = null;
+
+        try {
+            senders.get(message.getDestination()).send(message);
+        } catch ( IOException | RuntimeException e ) {
+            error = e;
+        }
+        outcome(message, error, System.currentTimeMillis());
+
+        EntityManager em = DoeServletContextListener.createEntityManager();
+
+        try {
+            em.getTransaction().begin();
+            em.merge(message);
+            em.getTransaction().commit();
+        } catch ( RuntimeException e ) {
+            // the claim lapses, and the message is sent again
+            log.warn("Unable to record outbox message " + message.getId() + " outcome: " + e.getMessage());
+        } finally {
+            if (em.getTransaction().isActive())
+                em.getTransaction().rollback();
+            em.close();
+        }
+    }
+
+    /**
+     * Apply the outcome of an attempt to a message.
+     *
+     * @param message the OutboxMessage attempted
+     * @param error the failure, or null if delivered
+     * @param now the current time
+     */
+    void outcome(OutboxMessage message, Exception error, long now) {
+        if (null==error) {
+            message.setStatus(Status.Delivered);
+            message.setDateDelivered(new Date(now));
+            message.setLastError(null);
+            delivered.incrementAndGet();
+            lastDelivery.set(now);
+            return;
+        }
+
+        failures.incrementAndGet();
+        message.setLastError(StringUtils.abbreviate(String.valueOf(error.getMessage()), 1000));
+
+        if (message.getAttempts()>=maxAttempts) {
+            message.setStatus(Status.Dead);
+            dead.incrementAndGet();
+            log.error(message.getDestination() + " message " + message.getId() + " for code ID " +
+                    message.getCodeId() + " failed " + message.getAttempts() + " times: " + error.getMessage());
+        } else {
+            // double the delay on each failed attempt, up to the maximum
+            long delay = (message.getAttempts() > 30) ? maxBackoff :
+                    Math.min(maxBackoff, backoff << Math.max(0, message.getAttempts()-1));
+
+            message.setStatus(Status.Pending);
+            message.setNextAttempt(new Date(now + delay));
+            log.warn(message.getDestination() + " message " + message.getId() + " failed, attempt " +
+                    message.getAttempts() + ": " + error.getMessage());
+        }
+    }
+
+    /**
+     * Delete messages delivered before the retention period.
+     */
+    private void purge() {
+        lastPurge = System.currentTimeMillis();
+
+        EntityManager em = DoeServletContextListener.createEntityManager();
+
+        try {
+            int purged = purge(em, new Date(lastPurge - retention));
+
+            if (0!=purged)
+                log.info("Purged " + purged + " delivered outbox messages.");
+        } catch ( RuntimeException e ) {
+            log.warn("Unable to purge outbox: " + e.getMessage());
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Delete messages delivered before a date, keeping those later than a
+     * Dead message for the same destination and CODE ID, as they mark it
+     * superseded.
+     *
+     * @param em the EntityManager
+     * @param before delete messages delivered before this date
+     * @return the number of messages deleted
+     */
+    static int purge(EntityManager em, Date before) {
+        em.getTransaction().begin();
+        try {
+            int purged = em.createQuery("DELETE FROM OutboxMessage m WHERE m.status = :delivered AND m.dateDelivered < :before " +
+                    "AND NOT EXISTS (SELECT d FROM OutboxMessage d WHERE d.destination = m.destination " +
+                    "AND d.codeId = m.codeId AND d.id < m.id AND d.status = :dead)")
+                    .setParameter("delivered", Status.Delivered)
+                    .setParameter("before", before)
+                    .setParameter("dead", Status.Dead)
+                    .executeUpdate();
+            em.getTransaction().commit();
+
+            return purged;
+        } finally {
+            if (em.getTransaction().isActive())
+                em.getTransaction().rollback();
+        }
+    }
+
+    /**
+     * Return a dead message to be delivered again, from the first attempt.
+     *
+     * @param id the message ID
+     * @return the OutboxMessage requeued, or null if not on file
+     * @throws IllegalStateException if the message is not dead, or a later
+     * message for its destination and CODE ID supersedes it
+     */
+    public static OutboxMessage retry(Long id) {
+        EntityManager em = DoeServletContextListener.createEntityManager();
+
+        try {
+            OutboxMessage message = retry(em, id);
+
+            if (null!=message)
+                wake();
+            return message;
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Return a dead message to be delivered again, from the first attempt.
+     *
+     * @param em the EntityManager
+     * @param id the message ID
+     * @return the OutboxMessage requeued, or null if not on file
+     * @throws IllegalStateException if the message is not dead, or a later
+     * message for its destination and CODE ID supersedes it
+     */
+    static OutboxMessage retry(EntityManager em, Long id) {
+        em.getTransaction().begin();
+        try {
+            OutboxMessage message = em.find(OutboxMessage.class, id);
+            if (null==message)
+                return null;
+            if (!Status.Dead.equals(message.getStatus()))
+                throw new IllegalStateException("Message " + id + " is " + message.getStatus() + ".");
+
+            long later = em.createNamedQuery("OutboxMessage.countLater", Long.class)
+                    .setParameter("destination", message.getDestination())
+                    .setParameter("codeId", message.getCodeId())
+                    .setParameter("id", message.getId())
+                    .getSingleResult();
+            if (0!=later)
+                throw new IllegalStateException("Message " + id + " is superseded by a later " +
+                        message.getDestination() + " message for code ID " + message.getCodeId() + ".");
+
+            message.setStatus(Status.Pending);
+            message.setAttempts(0);
+            message.setNextAttempt(new Date());
+            em.getTransaction().commit();
+
+            return message;
+        } finally {
+            if (em.getTransaction().isActive())
+                em.getTransaction().rollback();
+        }
+    }
+
+    /**
+     * Read the messages in a delivery state, most recent first.
+     *
+     * @param status the Status
+     * @param rows the maximum number of messages
+     * @return the OutboxMessages
+     */
+    public static List<OutboxMessage> getMessages(Status status, int rows) {
+        EntityManager em = DoeServletContextListener.createEntityManager();
+
+        try {
+            return em.createNamedQuery("OutboxMessage.findByStatus", OutboxMessage.class)
+                    .setParameter("status", status)
+                    .setMaxResults(rows)
+                    .getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Count messages by destination and delivery state.
+     *
+     * @return counts of each Status, by Destination
+     */
+    public static Map<Destination, Map<Status, Long>> getCounts() {
+        Map<Destination, Map<Status, Long>> counts = new EnumMap<>(Destination.class);
+        EntityManager em = DoeServletContextListener.createEntityManager();
+
+        try {
+            for ( Object[] row : em.createNamedQuery("OutboxMessage.countByStatus", Object[].class).getResultList() )
+                counts.computeIfAbsent((Destination) row[0], d -> new EnumMap<>(Status.class))
+                        .put((Status) row[1], ((Number) row[2]).longValue());
+        } finally {
+            em.close();
+        }
+        return counts;
+    }
+
+    /**
+     * Report delivery statistics since startup.
+     *
+     * @return a Map of statistics
+     */
+    public Map<String,Object> getStatistics() {
+        Map<String,Object> statistics = new LinkedHashMap<>();
+        Map<String,Integer> sending = new LinkedHashMap<>();
+
+        for ( Map.Entry<Destination, AtomicInteger> entry : inFlight.entrySet() )
+            sending.put(entry.getKey().name(), entry.getValue().get());
+
+        statistics.put("running", running);
+        statistics.put("sending", sending);
+        statistics.put("delivered", delivered.get());
+        statistics.put("failures", failures.get());
+        statistics.put("dead", dead.get());
+        statistics.put("last_delivery", (0==lastDelivery.get()) ? null : new Date(lastDelivery.get()));
+
+        return statistics;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ */
+package gov.osti.outbox;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import gov.osti.connectors.HttpClientPool;
+import gov.osti.doi.DataCite;
+import gov.osti.entity.DOECodeMetadata;
+import gov.osti.entity.OutboxMessage;
+import gov.osti.entity.OutboxMessage.Destination;
+import gov.osti.listeners.DoeServletContextListener;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.EnumMap;
+import java.util.Map;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.entity.mime.HttpMultipartMode;
+import org.apache.http.entity.mime.MultipartEntityBuilder;
+import org.apache.http.entity.mime.content.FileBody;
+import org.apache.http.entity.mime.content.StringBody;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Delivery of outbox messages to each external service.
+ *
+ * Message payloads:
+ * Archiver - JSON of the "code_id", "repository_link", and uploaded "file"
+ *   path (if any) to archive
+ * DataCite - JSON of the Metadata whose DOI to register
+ * Osti - the OSTI software publication JSON
+ *
+ * @author ensornl
+ */
+public class OutboxSenders {
+    // the ARCHIVER service URL, if configured
+    private static final String ARCHIVER_URL = DoeServletContextListener.getConfigurationProperty("archiver.url");
+
+    // ObjectMapper for archiver payloads
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Obtain the senders of each configured destination.
+     *
+     * @param publishingHost the OSTI publishing host, or null if not configured
+     * @return the Senders by Destination
+     */
+    public static Map<Destination, OutboxDispatcher.Sender> configured(String publishingHost) {
+        Map<Destination, OutboxDispatcher.Sender> senders = new EnumMap<>(Destination.class);
+
+        if (isArchiverConfigured())
+            senders.put(Destination.Archiver, OutboxSenders::sendToArchiver);
+        senders.put(Destination.DataCite, OutboxSenders::sendToDataCite);
+        if (null!=publishingHost)
+            senders.put(Destination.Osti, message -> sendToOsti(publishingHost, message));
+
+        return senders;
+    }
+
+    /**
+     * Determine whether or not an ARCHIVER service is configured.
+     *
+     * @return true if archiving is configured
+     */
+    public static boolean isArchiverConfigured() {
+        return !"".equals(ARCHIVER_URL);
+    }
+
+    /**
+     * Construct the payload of a message to the ARCHIVER.
+     *
+     * @param codeId the CODE ID for this METADATA
+     * @param repositoryLink (optional) the REPOSITORY LINK value, or null if none
+     * @param archiveFile (optional) the File recently uploaded to ARCHIVE, or null if none
+     * @return the payload JSON, or null if there is nothing to archive
+     */
+    public static String archiverPayload(Long codeId, String repositoryLink, File archiveFile) {
+        // Nothing sent?
+        if (StringUtils.isBlank(repositoryLink) && null==archiveFile)
+            return null;
+
+        ObjectNode request = mapper.createObjectNode();
+        request.put("code_id", codeId);
+        request.put("repository_link", repositoryLink);
+        if (null!=archiveFile)
+            request.put("file", archiveFile.getPath());
+
+        return request.toString();
+    }
+
+    /**
+     * Send Metadata to the ARCHIVER external support process.
+     *
+     * @param message the OutboxMessage of what to archive
+     * @throws IOException on IO transmission errors
+     */
+    private static void sendToArchiver(OutboxMessage message) throws IOException {
+        JsonNode payload = mapper.readTree(message.getPayload());
+        String path = payload.path("file").asText(null);
+
+        // attributes to send
+        ObjectNode request = mapper.createObjectNode();
+        request.set("code_id", payload.get("code_id"));
+        request.set("repository_link", payload.get("repository_link"));
+
+        // use the shared connection pool
+        CloseableHttpResponse response = null;
+
+        try {
+            HttpPost post = new HttpPost(ARCHIVER_URL);
+
+            // determine if there's a file to send or not
+            if (null==path) {
+                post.setHeader("Content-Type", "application/json");
+                post.setHeader("Accept", "application/json");
+
+                post.setEntity(new StringEntity(request.toString(), "UTF-8"));
+            } else {
+                File archiveFile = new File(path);
+                if (!archiveFile.isFile())
+                    throw new IOException("Archive file not found: " + path);
+
+                post.setEntity(MultipartEntityBuilder
+                        .create()
+                        .setMode(HttpMultipartMode.BROWSER_COMPATIBLE)
+                        .addPart("file", new FileBody(archiveFile, ContentType.DEFAULT_BINARY))
+                        .addPart("project", new StringBody(request.toString(), ContentType.APPLICATION_JSON))
+                        .build());
+            }
+            response = HttpClientPool.getClient().execute(post);
+
+            int statusCode = response.getStatusLine().getStatusCode();
+
+            if (HttpStatus.SC_OK!=statusCode && HttpStatus.SC_CREATED!=statusCode) {
+                throw new IOException ("Archiver Error: " + EntityUtils.toString(response.getEntity()));
+            }
+        } finally {
+            HttpClientPool.release(response);
+        }
+    }
+
+    /**
+     * Register the DOI of Metadata with DataCite.
+     *
+     * @param message the OutboxMessage of the Metadata JSON
+     * @throws IOException on registration errors
+     */
+    private static void sendToDataCite(OutboxMessage message) throws IOException {
+        DataCite.register(DOECodeMetadata.parseJson(new StringReader(message.getPayload())));
+    }
+
+    /**
+     * Post a software publication to OSTI.
+     *
+     * @param publishingHost the OSTI publishing host
+     * @param message the OutboxMessage of the publication JSON
+     * @throws IOException on transmission or publication errors
+     */
+    private static void sendToOsti(String publishingHost, OutboxMessage message) throws IOException {
+        HttpPost post = new HttpPost(publishingHost + "/services/softwarecenter?action=api");
+        post.setHeader("Content-Type", "application/json");
+        post.setHeader("Accept", "application/json");
+        post.setEntity(new StringEntity(message.getPayload(), "UTF-8"));
+
+        // send through the shared connection pool
+        CloseableHttpResponse response = HttpClientPool.getClient().execute(post);
+
+        try {
+            String text = EntityUtils.toString(response.getEntity());
+
+            if ( HttpStatus.SC_OK!=response.getStatusLine().getStatusCode())
+                throw new IOException ("OSTI software publication error: " + StringUtils.abbreviate(text, 500));
+        } finally {
+            HttpClientPool.release(response);
+        }
+    }
+}
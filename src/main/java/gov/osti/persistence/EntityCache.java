@@ -0,0 +1,132 @@
+/*
+ */
+package gov.osti.persistence;
+
+import gov.osti.listeners.DoeServletContextListener;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.persistence.config.PersistenceUnitProperties;
+import org.eclipse.persistence.jpa.JpaCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Configuration and invalidation of EclipseLink's shared (second-level)
+ * entity cache and query-result cache.
+ *
+ * Site, User and DOECodeMetadata are cached per their @Cache settings, and the
+ * User.findUser query results are cached as well.
+ * Writes through the persistence unit update the shared cache on commit; the
+ * services also evict the rows they write, which with coordination enabled is
+ * passed on to the other nodes so none serves a stale copy.
+ *
+ * Configuration properties:
+ * cache.shared - "false" to disable the shared cache entirely (default true)
+ * cache.coordination.protocol - "jms", "jms-publishing", "rmi" or "jgroups"
+ *   to keep the caches of several nodes coherent (default none, for a single
+ *   node)
+ * cache.coordination.channel - the channel name; nodes sharing a database use
+ *   the same one (default EclipseLinkCommandChannel)
+ * cache.coordination.jms.topic, cache.coordination.jms.factory - the JNDI
+ *   names of the JMS topic and connection factory
+ * cache.coordination.jms.host - the JMS server URL, if not local
+ * cache.coordination.rmi.multicast.group, cache.coordination.rmi.multicast.port
+ *   - the RMI discovery multicast address
+ * cache.coordination.rmi.url - this node's RMI URL
+ *
+ * @author ensornl
+ */
+public class EntityCache {
+    // logger
+    private static final Logger log = LoggerFactory.getLogger(EntityCache.class);
+
+    // persistence unit properties set from the configuration, by property name
+    private static final String[][] COORDINATION = {
+        {"cache.coordination.channel", PersistenceUnitProperties.COORDINATION_CHANNEL},
+        {"cache.coordination.jms.topic", PersistenceUnitProperties.COORDINATION_JMS_TOPIC},
+        {"cache.coordination.jms.factory", PersistenceUnitProperties.COORDINATION_JMS_FACTORY},
+        {"cache.coordination.jms.host", PersistenceUnitProperties.COORDINATION_JMS_HOST},
+        {"cache.coordination.rmi.multicast.group", PersistenceUnitProperties.COORDINATION_RMI_MULTICAST_GROUP},
+        {"cache.coordination.rmi.multicast.port", PersistenceUnitProperties.COORDINATION_RMI_MULTICAST_GROUP_PORT},
+        {"cache.coordination.rmi.url", PersistenceUnitProperties.COORDINATION_RMI_URL}
+    };
+
+    private static volatile boolean shared = true;
+    private static volatile String protocol = null;
+    private static final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Add the configured cache settings to the persistence unit properties.
+     *
+     * @param properties the properties for the EntityManagerFactory
+     */
+    public static void configure(Map<String,Object> properties) {
+        shared = !"false".equalsIgnoreCase(DoeServletContextListener.getConfigurationProperty("cache.shared"));
+        protocol = StringUtils.trimToNull(DoeServletContextListener.getConfigurationProperty("cache.coordination.protocol"));
+
+        if (!shared) {
+            properties.put(PersistenceUnitProperties.CACHE_SHARED_DEFAULT, "false");
+            log.info("Shared entity cache disabled.");
+            return;
+        }
+        if (null==protocol)
+            return;
+
+        properties.put(PersistenceUnitProperties.COORDINATION_PROTOCOL, protocol);
+        for ( String[] setting : COORDINATION ) {
+            String value = DoeServletContextListener.getConfigurationProperty(setting[0]);
+            if (StringUtils.isNotBlank(value))
+                properties.put(setting[1], value.trim());
+        }
+        log.info("Entity cache coordination enabled: " + protocol);
+    }
+
+    /**
+     * Evict an entity from the shared cache, on this and any coordinated node,
+     * along with the cached results of queries over its type.  Called after
+     * the write has been committed.
+     *
+     * @param em the EntityManager that wrote it
+     * @param type the entity Class
+     * @param id the primary key
+     */
+    public static void evict(EntityManager em, Class<?> type, Object id) {
+        if (null==id)
+            return;
+
+        try {
+            Cache cache = em.getEntityManagerFactory().getCache();
+
+            if (cache instanceof JpaCache) {
+                ((JpaCache) cache).evict(type, id, true);
+                ((JpaCache) cache).clearQueryCache(type);
+            } else {
+                cache.evict(type, id);
+            }
+            evictions.incrementAndGet();
+        } catch ( PersistenceException | IllegalStateException e ) {
+            // the row is already committed; a stale copy expires on its own
+            log.warn("Unable to evict cached " + type.getSimpleName() + " " + id + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Report cache settings and evictions.
+     *
+     * @return a Map of statistics
+     */
+    public static Map<String,Object> getStatistics() {
+        Map<String,Object> statistics = new LinkedHashMap<>();
+
+        statistics.put("shared", shared);
+        statistics.put("coordination", (null==protocol) ? "none" : protocol);
+        statistics.put("evictions", evictions.get());
+
+        return statistics;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ */
+package gov.osti.persistence;
+
+import gov.osti.listeners.DoeServletContextListener;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the EntityManagers handed out by the DoeServletContextListener, to
+ * find those never closed.
+ *
+ * Each EntityManager is wrapped to note when it is closed.  One open longer
+ * than the threshold is logged (once), and one discarded without being closed
+ * is closed here and counted as leaked.  With tracing enabled, both are
+ * logged with the stack trace of where the EntityManager was created.
+ *
+ * Configuration properties:
+ * persistence.leak.threshold - milliseconds an EntityManager may stay open
+ *   before being reported (default 60000)
+ * persistence.leak.trace - "true" to record where each EntityManager is
+ *   created (default false)
+ *
+ * @author ensornl
+ */
+public class EntityManagerTracker {
+    // logger
+    private static final Logger log = LoggerFactory.getLogger(EntityManagerTracker.class);
+
+    private static final long THRESHOLD = DoeServletContextListener.getConfigurationProperty("persistence.leak.threshold", 60000);
+    private static final boolean TRACE = "true".equalsIgnoreCase(DoeServletContextListener.getConfigurationProperty("persistence.leak.trace"));
+    // minimum time between checks, in milliseconds
+    private static final long CHECK_INTERVAL = 10000;
+
+    /**
+     * An open EntityManager.  Refers weakly to the wrapper handed out, so
+     * that one discarded while open may be found and closed.
+     */
+    private static class Allocation extends WeakReference<EntityManager> {
+        private final EntityManager delegate;
+        private final long created = System.currentTimeMillis();
+        // where created, if tracing
+        private final Throwable origin = (TRACE) ? new Throwable("EntityManager created here") : null;
+        private volatile boolean reported = false;
+
+        Allocation(EntityManager wrapper, EntityManager delegate) {
+            super(wrapper, collected);
+            this.delegate = delegate;
+        }
+    }
+
+    // open EntityManagers, and those discarded
+    private static final Set<Allocation> open = ConcurrentHashMap.newKeySet();
+    private static final ReferenceQueue<EntityManager> collected = new ReferenceQueue<>();
+
+    private static final AtomicLong created = new AtomicLong();
+    private static final AtomicLong closed = new AtomicLong();
+    private static final AtomicLong leaked = new AtomicLong();
+    private static final AtomicLong overdue = new AtomicLong();
+    private static final AtomicLong lastCheck = new AtomicLong();
+
+    /**
+     * Track an EntityManager.
+     *
+     * @param em the EntityManager
+     * @return a wrapper of the EntityManager to hand out in its place
+     */
+    public static EntityManager track(EntityManager em) {
+        if (null==em)
+            return null;
+
+        Allocation[] allocation = new Allocation[1];
+        EntityManager wrapper = (EntityManager) Proxy.newProxyInstance(EntityManager.class.getClassLoader(),
+                new Class<?>[] {EntityManager.class},
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName()) && 0==method.getParameterCount() && open.remove(allocation[0]))
+                        closed.incrementAndGet();
+
+                    try {
+                        return method.invoke(em, args);
+                    } catch ( InvocationTargetException e ) {
+                        throw e.getCause();
+                    }
+                });
+        allocation[0] = new Allocation(wrapper, em);
+
+        open.add(allocation[0]);
+        created.incrementAndGet();
+
+        // check now and then, as EntityManagers are created
+        long now = System.currentTimeMillis();
+        long last = lastCheck.get();
+        if (now-last > CHECK_INTERVAL && lastCheck.compareAndSet(last, now))
+            check();
+
+        return wrapper;
+    }
+
+    /**
+     * Report EntityManagers open too long, and close any discarded while
+     * open.
+     */
+    public static void check() {
+        Reference<? extends EntityManager> reference;
+
+        while (null!=(reference = collected.poll())) {
+            Allocation allocation = (Allocation) reference;
+
+            if (open.remove(allocation)) {
+                leaked.incrementAndGet();
+                log.warn("EntityManager discarded without being closed.", allocation.origin);
+                try {
+                    if (allocation.delegate.isOpen())
+                        allocation.delegate.close();
+                } catch ( RuntimeException e ) {
+                    log.warn("Unable to close leaked EntityManager: " + e.getMessage());
+                }
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        for ( Allocation allocation : open ) {
+            if (!allocation.reported && now-allocation.created > THRESHOLD) {
+                allocation.reported = true;
+                overdue.incrementAndGet();
+                log.warn("EntityManager open for " + (now-allocation.created)/1000 + " seconds.", allocation.origin);
+            }
+        }
+    }
+
+    /**
+     * Report tracking statistics.
+     *
+     * @return a Map of statistics
+     */
+    public static Map<String,Object> getStatistics() {
+        check();
+
+        Map<String,Object> statistics = new LinkedHashMap<>();
+
+        statistics.put("open", open.size());
+        statistics.put("created", created.get());
+        statistics.put("closed", closed.get());
+        statistics.put("overdue", overdue.get());
+        statistics.put("leaked", leaked.get());
+        statistics.put("traced", TRACE);
+
+        return statistics;
+    }
+}
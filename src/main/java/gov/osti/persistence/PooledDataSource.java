@@ -0,0 +1,160 @@
+/*
+ */
+package gov.osti.persistence;
+
+import gov.osti.listeners.DoeServletContextListener;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.sql.DataSource;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.apache.commons.dbcp2.PoolableConnection;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The pooled JDBC DataSource for the persistence unit, in place of
+ * EclipseLink's own connection handling.
+ *
+ * Connections are validated when borrowed and while idle, prepared
+ * statements are cached per connection, and connections held past the
+ * abandoned timeout (never returned) are reclaimed and logged with the stack
+ * trace of where they were obtained.  The pool is started and stopped by the
+ * DoeServletContextListener.
+ *
+ * Configuration properties:
+ * database.url, database.user, database.password, database.driver - the JDBC
+ *   connection (as in persistence.xml); if no URL is set, no pool is used
+ * database.pool.min - connections kept open when idle (default 2)
+ * database.pool.max - maximum open connections (default 20)
+ * database.pool.wait - maximum wait for a connection in milliseconds (default 10000)
+ * database.pool.validation.query - validation SQL (default none; uses the
+ *   JDBC driver's own check)
+ * database.pool.statements - prepared statements cached per connection (default 100)
+ * database.pool.abandoned.timeout - seconds before an unreturned connection is
+ *   reclaimed (default 300)
+ *
+ * @author ensornl
+ */
+public class PooledDataSource extends BasicDataSource {
+    // logger
+    private static final Logger log = LoggerFactory.getLogger(PooledDataSource.class);
+
+    // the pool in use, if any
+    private static PooledDataSource instance = null;
+
+    /**
+     * Start up the configured pool, if not already started.
+     *
+     * @return the DataSource, or null if no database URL is configured
+     */
+    public static synchronized DataSource start() {
+        if (null==instance)
+            instance = create();
+        return instance;
+    }
+
+    /**
+     * Close all pooled connections.
+     */
+    public static synchronized void shutdown() {
+        if (null==instance)
+            return;
+
+        try {
+            instance.close();
+        } catch ( SQLException e ) {
+            log.warn("Database connection pool close error: " + e.getMessage());
+        } finally {
+            instance = null;
+        }
+        log.info("Database connection pool stopped.");
+    }
+
+    /**
+     * Construct the configured pool.
+     *
+     * @return a PooledDataSource, or null if no database URL is configured
+     */
+    private static PooledDataSource create() {
+        String url = DoeServletContextListener.getConfigurationProperty("database.url");
+
+        if (StringUtils.isBlank(url) || url.startsWith("${"))
+            return null;
+
+        int min = DoeServletContextListener.getConfigurationProperty("database.pool.min", 2);
+        int max = DoeServletContextListener.getConfigurationProperty("database.pool.max", 20);
+        PooledDataSource dataSource = new PooledDataSource();
+
+        dataSource.setUrl(url);
+        dataSource.setDriverClassName(StringUtils.trimToNull(DoeServletContextListener.getConfigurationProperty("database.driver")));
+        dataSource.setUsername(DoeServletContextListener.getConfigurationProperty("database.user"));
+        dataSource.setPassword(DoeServletContextListener.getConfigurationProperty("database.password"));
+        // transactions are demarcated by EclipseLink
+        dataSource.setDefaultAutoCommit(true);
+
+        // sizing
+        dataSource.setInitialSize(min);
+        dataSource.setMinIdle(min);
+        dataSource.setMaxIdle(max);
+        dataSource.setMaxTotal(max);
+        dataSource.setMaxWaitMillis(DoeServletContextListener.getConfigurationProperty("database.pool.wait", 10000));
+
+        // validation on borrow, and of idle connections between maintenance runs
+        String query = DoeServletContextListener.getConfigurationProperty("database.pool.validation.query");
+        if (StringUtils.isNotBlank(query))
+            dataSource.setValidationQuery(query);
+        dataSource.setValidationQueryTimeout(5);
+        dataSource.setTestOnBorrow(true);
+        dataSource.setTestWhileIdle(true);
+        dataSource.setTimeBetweenEvictionRunsMillis(60000);
+        dataSource.setMinEvictableIdleTimeMillis(600000);
+
+        // prepared statement caching
+        int statements = DoeServletContextListener.getConfigurationProperty("database.pool.statements", 100);
+        dataSource.setPoolPreparedStatements(statements>0);
+        dataSource.setMaxOpenPreparedStatements(statements);
+
+        // reclaim connections never returned
+        dataSource.setRemoveAbandonedOnBorrow(true);
+        dataSource.setRemoveAbandonedOnMaintenance(true);
+        dataSource.setRemoveAbandonedTimeout(DoeServletContextListener.getConfigurationProperty("database.pool.abandoned.timeout", 300));
+        dataSource.setLogAbandoned(true);
+
+        log.info("Database connection pool configured: " + min + " to " + max + " connections.");
+        return dataSource;
+    }
+
+    /**
+     * Report pool and EntityManager statistics.
+     *
+     * @return a Map of statistics
+     */
+    public static synchronized Map<String,Object> getStatistics() {
+        Map<String,Object> statistics = new LinkedHashMap<>();
+
+        statistics.put("pooled", null!=instance);
+        if (null!=instance) {
+            statistics.put("active", instance.getNumActive());
+            statistics.put("idle", instance.getNumIdle());
+            statistics.put("min_idle", instance.getMinIdle());
+            statistics.put("max_total", instance.getMaxTotal());
+        }
+
+        GenericObjectPool<PoolableConnection> pool = (null==instance) ? null : instance.getConnectionPool();
+        if (null!=pool) {
+            statistics.put("waiting", pool.getNumWaiters());
+            statistics.put("mean_wait_ms", pool.getMeanBorrowWaitTimeMillis());
+            statistics.put("max_wait_ms", pool.getMaxBorrowWaitTimeMillis());
+            statistics.put("borrowed", pool.getBorrowedCount());
+            statistics.put("created", pool.getCreatedCount());
+            statistics.put("destroyed", pool.getDestroyedCount());
+            statistics.put("destroyed_validation", pool.getDestroyedByBorrowValidationCount());
+        }
+        statistics.put("entity_managers", EntityManagerTracker.getStatistics());
+
+        return statistics;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ */
+package gov.osti.schema;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * A single versioned schema migration: an SQL script of statements separated
+ * by semicolons, named "V&lt;version&gt;__&lt;description&gt;.sql".
+ *
+ * Its checksum covers the statements only (not comments or spacing), so an
+ * applied migration whose statements have since been changed is detected.
+ *
+ * @author ensornl
+ */
+public class Migration {
+    // script file name pattern
+    private static final Pattern NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+    private final int version;
+    private final String description;
+    private final List<String> statements;
+    private final String checksum;
+
+    /**
+     * Construct a migration.
+     *
+     * @param version the version number
+     * @param description a short description
+     * @param statements the SQL statements, in order
+     */
+    public Migration(int version, String description, List<String> statements) {
+        this.version = version;
+        this.description = description;
+        this.statements = Collections.unmodifiableList(new ArrayList<>(statements));
+        this.checksum = DigestUtils.sha256Hex(String.join(";\n", statements));
+    }
+
+    /**
+     * Parse a migration script.
+     *
+     * @param name the script file name
+     * @param script the script content
+     * @return the Migration
+     * @throws IllegalArgumentException if the name is not a migration name
+     */
+    public static Migration parse(String name, String script) {
+        Matcher matcher = NAME.matcher(name);
+
+        if (!matcher.matches())
+            throw new IllegalArgumentException("Invalid migration name: " + name);
+
+        List<String> statements = new ArrayList<>();
+        StringBuilder statement = new StringBuilder();
+
+        for ( String line : script.split("\r?\n") ) {
+            String text = line.trim();
+            // skip comments and blank lines
+            if (text.isEmpty() || text.startsWith("--"))
+                continue;
+
+            statement.append((statement.length()==0) ? "" : " ").append(text);
+            if (text.endsWith(";")) {
+                statements.add(normalize(statement));
+                statement.setLength(0);
+            }
+        }
+        if (statement.length()>0)
+            statements.add(normalize(statement));
+
+        return new Migration(Integer.parseInt(matcher.group(1)), matcher.group(2).replace('_', ' '), statements);
+    }
+
+    /**
+     * Remove the terminating semicolon and redundant spacing of a statement.
+     *
+     * @param statement the statement text
+     * @return the normalized statement
+     */
+    private static String normalize(CharSequence statement) {
+        String text = statement.toString().trim();
+
+        if (text.endsWith(";"))
+            text = text.substring(0, text.length()-1).trim();
+
+        return text.replaceAll("\\s+", " ");
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public List<String> getStatements() {
+        return statements;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+}
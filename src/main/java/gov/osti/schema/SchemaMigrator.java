@@ -0,0 +1,233 @@
+/*
+ */
+package gov.osti.schema;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies versioned schema migrations at startup, after EclipseLink has
+ * created or extended the tables, and records each applied version, with its
+ * checksum, in the SCHEMA_VERSION table.
+ *
+ * Each migration runs in its own transaction.  Startup fails if the database
+ * has drifted from the migrations shipped: an applied version whose script has
+ * since changed, or one this application does not know (a newer release).
+ *
+ * New migrations are added to src/main/resources/db/migration and listed in
+ * SCRIPTS, in order; applied scripts must never be edited.
+ *
+ * @author ensornl
+ */
+public class SchemaMigrator {
+    // logger
+    private static final Logger log = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    /** the migration scripts, in version order **/
+    public static final String[] SCRIPTS = {
+        "V1__hot_path_indexes.sql",
+        "V2__outbox_indexes.sql"
+    };
+    // classpath location of the scripts
+    private static final String LOCATION = "db/migration/";
+
+    /** table of applied versions **/
+    public static final String TABLE = "SCHEMA_VERSION";
+
+    /**
+     * Work against the database connection in a transaction.
+     *
+     * @param <T> the result type
+     */
+    private interface Work<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
+    private final List<Migration> migrations;
+
+    /**
+     * Construct a migrator.
+     *
+     * @param migrations the known migrations
+     */
+    public SchemaMigrator(List<Migration> migrations) {
+        this.migrations = new ArrayList<>(migrations);
+        this.migrations.sort(Comparator.comparingInt(Migration::getVersion));
+    }
+
+    /**
+     * Construct a migrator of the migration scripts on the classpath.
+     *
+     * @return a SchemaMigrator
+     * @throws IOException if a script cannot be read
+     */
+    public static SchemaMigrator load() throws IOException {
+        List<Migration> migrations = new ArrayList<>();
+
+        for ( String script : SCRIPTS ) {
+            try (InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream(LOCATION + script)) {
+                if (null==in)
+                    throw new IOException("Migration script not found: " + script);
+
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                migrations.add(Migration.parse(script, reader.lines().collect(Collectors.joining("\n"))));
+            }
+        }
+        return new SchemaMigrator(migrations);
+    }
+
+    /**
+     * Check the applied versions against the known migrations.
+     *
+     * @param applied the applied versions, and their checksums
+     * @return the migrations not yet applied, in order
+     * @throws IllegalStateException if the database has drifted
+     */
+    public List<Migration> verify(Map<Integer, String> applied) {
+        List<Migration> pending = new ArrayList<>();
+        Map<Integer, String> unknown = new TreeMap<>(applied);
+
+        for ( Migration migration : migrations ) {
+            String checksum = unknown.remove(migration.getVersion());
+
+            if (null==checksum)
+                pending.add(migration);
+            else if (!checksum.equals(migration.getChecksum()))
+                throw new IllegalStateException("Schema version " + migration.getVersion() +
+                        " (" + migration.getDescription() + ") was changed after it was applied.");
+        }
+
+        if (!unknown.isEmpty())
+            throw new IllegalStateException("Schema versions " + unknown.keySet() +
+                    " are not known to this release.");
+
+        return pending;
+    }
+
+    /**
+     * Bring the schema up to date.
+     *
+     * @param em the EntityManager to obtain connections from
+     * @return the number of migrations applied
+     * @throws SQLException on database errors
+     * @throws IllegalStateException if the database has drifted
+     */
+    public int migrate(EntityManager em) throws SQLException {
+        List<Migration> pending = verify(inTransaction(em, connection -> {
+            create(connection);
+            return applied(connection);
+        }));
+
+        for ( Migration migration : pending ) {
+            log.info("Applying schema version " + migration.getVersion() + ": " + migration.getDescription());
+            inTransaction(em, connection -> apply(connection, migration));
+        }
+        return pending.size();
+    }
+
+    /**
+     * Run work against the JDBC connection of an EntityManager transaction.
+     *
+     * @param <T> the result type
+     * @param em the EntityManager
+     * @param work the Work to run
+     * @return the result
+     * @throws SQLException on database errors; the transaction is rolled back
+     */
+    private static <T> T inTransaction(EntityManager em, Work<T> work) throws SQLException {
+        em.getTransaction().begin();
+
+        try {
+            T result = work.run(em.unwrap(Connection.class));
+            em.getTransaction().commit();
+            return result;
+        } finally {
+            if (em.getTransaction().isActive())
+                em.getTransaction().rollback();
+        }
+    }
+
+    /**
+     * Create the version table, if not present.
+     *
+     * @param connection the Connection
+     * @throws SQLException on database errors
+     */
+    private static void create(Connection connection) throws SQLException {
+        DatabaseMetaData metadata = connection.getMetaData();
+        // Derby stores unquoted names in upper case, PostgreSQL in lower
+        String name = (metadata.storesLowerCaseIdentifiers()) ? TABLE.toLowerCase() : TABLE;
+
+        try (ResultSet tables = metadata.getTables(null, null, name, new String[] {"TABLE"})) {
+            if (tables.next())
+                return;
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE " + TABLE + " (VERSION INTEGER NOT NULL PRIMARY KEY, " +
+                    "DESCRIPTION VARCHAR(200), CHECKSUM VARCHAR(64) NOT NULL, APPLIED_ON TIMESTAMP)");
+        }
+    }
+
+    /**
+     * Read the applied versions.
+     *
+     * @param connection the Connection
+     * @return the applied versions, and their checksums
+     * @throws SQLException on database errors
+     */
+    private static Map<Integer, String> applied(Connection connection) throws SQLException {
+        Map<Integer, String> applied = new TreeMap<>();
+
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT VERSION, CHECKSUM FROM " + TABLE)) {
+            while (rows.next())
+                applied.put(rows.getInt(1), rows.getString(2));
+        }
+        return applied;
+    }
+
+    /**
+     * Apply a migration, and record its version.
+     *
+     * @param connection the Connection
+     * @param migration the Migration
+     * @return the version applied
+     * @throws SQLException on database errors
+     */
+    private static Integer apply(Connection connection, Migration migration) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for ( String sql : migration.getStatements() )
+                statement.execute(sql);
+        }
+
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + TABLE +
+                " (VERSION, DESCRIPTION, CHECKSUM, APPLIED_ON) VALUES (?, ?, ?, ?)")) {
+            insert.setInt(1, migration.getVersion());
+            insert.setString(2, migration.getDescription());
+            insert.setString(3, migration.getChecksum());
+            insert.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+            insert.executeUpdate();
+        }
+        return migration.getVersion();
+    }
+}
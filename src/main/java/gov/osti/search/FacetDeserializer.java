@@ -8,10 +8,12 @@ import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import java.io.IOException;
-import java.util.stream.Stream;
+import java.util.Iterator;
+import java.util.Map;
 
 /**
- * Custom deserialization of SOLR "dates" facets.
+ * Custom deserialization of SOLR JSON facets: the "dates" range facet, and
+ * any number of named terms facets.
  * 
  * @author ensornl
  */
@@ -29,13 +31,22 @@ public class FacetDeserializer extends StdDeserializer<SolrFacet> {
     public SolrFacet deserialize(JsonParser jp, DeserializationContext dc) throws IOException, JsonProcessingException {
         JsonNode node = jp.getCodec().readTree(jp);
 
-        JsonNode dates = node.get("dates");
-        JsonNode buckets = (null!=dates) ? dates.get("buckets") : null;
         SolrFacet facet = new SolrFacet();
+        Iterator<Map.Entry<String,JsonNode>> facets = node.fields();
 
-        if (null!=buckets && buckets.isArray()) {
-            for ( JsonNode bucket : buckets ) {
-                facet.add(bucket.get("val").asText(), bucket.get("count").asInt());
+        while (facets.hasNext()) {
+            Map.Entry<String,JsonNode> entry = facets.next();
+            JsonNode buckets = entry.getValue().get("buckets");
+
+            if ("count".equals(entry.getKey())) {
+                facet.setCount(entry.getValue().asInt());
+            } else if (null!=buckets && buckets.isArray()) {
+                for ( JsonNode bucket : buckets ) {
+                    if ("dates".equals(entry.getKey()))
+                        facet.add(bucket.get("val").asText(), bucket.get("count").asInt());
+                    else
+                        facet.add(entry.getKey(), bucket.get("val").asText(), bucket.get("count").asInt());
+                }
             }
         }
 
@@ -0,0 +1,642 @@
+/*
+ */
+package gov.osti.search;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Embedded, in-process SearchBackend using Lucene, for small deployments and
+ * test rigs without a SOLR service.
+ *
+ * Index documents (see SolrIndexer.toDocument) are flattened into fields
+ * named by their path (e.g., "developers.name"), analyzed as in the SOLR
+ * schema:  English text fields, exact string fields, and the "_text_",
+ * "_names", "_orcids", and "_id_numbers" copy fields.  Queries use the same
+ * syntax as SearchData.toQ, with AND as the default operator, and are limited
+ * to approved records as the SOLR "/query" handler is.  Results carry the
+ * same yearly release date facets, and value counts of the accessibility,
+ * licenses, and organization name facet fields.  Searches use
+ * near-real-time readers, so updates are visible as soon as they are
+ * indexed.
+ *
+ * Relevance is Lucene's default scoring; the SOLR handler's recency boost is
+ * not applied.  Sorting is supported on score, codeId, and releaseDate.
+ *
+ * @author ensornl
+ */
+public class LuceneBackend implements SearchBackend {
+    // logger
+    private static final Logger log = LoggerFactory.getLogger(LuceneBackend.class);
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final JsonFactory factory = new JsonFactory();
+
+    // analyzed English text fields (SOLR "text_en")
+    private static final Set<String> TEXT_FIELDS = new HashSet<>(Arrays.asList(
+            "contributingOrganizations.organizationName", "contributors.name", "contributors.orcid",
+            "countryOfOrigin", "description", "developers.name", "developers.orcid", "repositoryLink",
+            "landingPage", "researchOrganizations.organizationName", "softwareTitle",
+            "sponsoringOrganizations.organizationName",
+            "sponsoringOrganizations.fundingIdentifiers.identifierValue",
+            "sponsoringOrganizations.primaryAward"));
+    // copy fields (SOLR "text_general"), and their sources
+    private static final String ALL_TEXT = "_text_";
+    private static final Map<String, List<String>> COPY_FIELDS = new HashMap<>();
+    static {
+        for ( String source : Arrays.asList("doi", "sponsoringOrganizations.fundingIdentifiers.identifierValue",
+                "sponsoringOrganizations.primaryAward", "relatedIdentifiers.identifierValue",
+                "siteAccessionNumber", "codeId", "developers.orcid", "contributors.orcid") )
+            COPY_FIELDS.computeIfAbsent(source, s -> new ArrayList<>()).add("_id_numbers");
+        for ( String source : Arrays.asList("developers.name", "contributors.name") )
+            COPY_FIELDS.computeIfAbsent(source, s -> new ArrayList<>()).add("_names");
+        for ( String source : Arrays.asList("developers.orcid", "contributors.orcid") )
+            COPY_FIELDS.computeIfAbsent(source, s -> new ArrayList<>()).add("_orcids");
+    }
+    private static final Set<String> GENERAL_FIELDS = new HashSet<>(Arrays.asList(
+            ALL_TEXT, "_id_numbers", "_names", "_orcids"));
+    // exact string copy fields, and their sources
+    private static final Map<String, String> EXACT_COPY_FIELDS = new HashMap<>();
+    static {
+        EXACT_COPY_FIELDS.put("researchOrganizations.organizationName", "_research_organizations");
+        EXACT_COPY_FIELDS.put("sponsoringOrganizations.organizationName", "_sponsoring_organizations");
+    }
+    // string fields with values counted for facets
+    private static final Set<String> FACET_FIELDS = new HashSet<>(Arrays.asList(
+            "accessibility", "licenses", "_research_organizations", "_sponsoring_organizations"));
+    // fields with special handling
+    private static final String CODE_ID = SolrCursor.UNIQUE_KEY;
+    private static final String RELEASE_DATE = "releaseDate";
+    private static final String JSON = "json";
+    // only approved records are searchable
+    private static final Query APPROVED = new TermQuery(new Term("workflowStatus", "Approved"));
+    // first year of release date facets
+    private static final int FACET_START_YEAR = 1950;
+    private static final int DEFAULT_ROWS = 10;
+
+    private final Directory directory;
+    private final Analyzer analyzer;
+    private final IndexWriter writer;
+    private final SearcherManager searchers;
+
+    /**
+     * Construct a backend, opening (or creating) the index.
+     *
+     * @param directory the Directory holding the index
+     * @throws IOException if unable to open the index
+     */
+    public LuceneBackend(Directory directory) throws IOException {
+        Map<String, Analyzer> analyzers = new HashMap<>();
+        Analyzer english = new EnglishAnalyzer();
+        Analyzer general = new StandardAnalyzer();
+        for ( String field : TEXT_FIELDS )
+            analyzers.put(field, english);
+        for ( String field : GENERAL_FIELDS )
+            analyzers.put(field, general);
+
+        this.directory = directory;
+        // anything not text is an exact string
+        this.analyzer = new PerFieldAnalyzerWrapper(new KeywordAnalyzer(), analyzers);
+        this.writer = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+        this.searchers = new SearcherManager(writer, null);
+    }
+
+    @Override
+    public boolean isSearching() {
+        return true;
+    }
+
+    @Override
+    public boolean isIndexing() {
+        return true;
+    }
+
+    /**
+     * Parse a date value (yyyy-MM-dd or an ISO instant) to epoch milliseconds.
+     *
+     * @param value the date value
+     * @return the epoch milliseconds (UTC), or null if not a date
+     */
+    private static Long parseDate(String value) {
+        try {
+            return (10==value.length()) ?
+                    LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli() :
+                    Instant.parse(value).toEpochMilli();
+        } catch ( DateTimeParseException e ) {
+            return null;
+        }
+    }
+
+    /**
+     * Add the fields for a value, and its copy fields.
+     *
+     * @param doc the Document
+     * @param name the field name
+     * @param value the value
+     */
+    private static void addValue(Document doc, String name, String value) {
+        if (RELEASE_DATE.equals(name)) {
+            Long date = parseDate(value);
+            if (null!=date) {
+                doc.add(new LongPoint(name, date));
+                doc.add(new NumericDocValuesField(name, date));
+            }
+            doc.add(new StoredField(name, value));
+        } else if (TEXT_FIELDS.contains(name)) {
+            doc.add(new TextField(name, value, Field.Store.YES));
+        } else {
+            doc.add(new StringField(name, value, Field.Store.YES));
+            if (FACET_FIELDS.contains(name))
+                doc.add(new SortedSetDocValuesField(name, new BytesRef(value)));
+        }
+
+        doc.add(new TextField(ALL_TEXT, value, Field.Store.NO));
+        for ( String copy : COPY_FIELDS.getOrDefault(name, new ArrayList<>()) )
+            doc.add(new TextField(copy, value, Field.Store.NO));
+        if (EXACT_COPY_FIELDS.containsKey(name)) {
+            doc.add(new StringField(EXACT_COPY_FIELDS.get(name), value, Field.Store.NO));
+            doc.add(new SortedSetDocValuesField(EXACT_COPY_FIELDS.get(name), new BytesRef(value)));
+        }
+    }
+
+    /**
+     * Flatten a JSON index document into fields named by path.
+     *
+     * @param doc the Document to add to
+     * @param name the path of this node
+     * @param node the JSON node
+     */
+    private static void flatten(Document doc, String name, JsonNode node) {
+        if (node.isObject()) {
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                flatten(doc, (null==name) ? field.getKey() : name + "." + field.getKey(), field.getValue());
+            }
+        } else if (node.isArray()) {
+            for ( JsonNode value : node )
+                flatten(doc, name, value);
+        } else if (!node.isNull() && !CODE_ID.equals(name) && !JSON.equals(name)) {
+            addValue(doc, name, node.asText());
+        }
+    }
+
+    /**
+     * Construct the Lucene Document for an index document.
+     *
+     * @param node the index document
+     * @return the Document, or null if it has no CODE ID
+     */
+    protected static Document toDocument(JsonNode node) {
+        JsonNode codeId = node.get(CODE_ID);
+        if (null==codeId || !codeId.canConvertToLong())
+            return null;
+
+        Document doc = new Document();
+        long id = codeId.asLong();
+        doc.add(new StringField(CODE_ID, String.valueOf(id), Field.Store.YES));
+        doc.add(new LongPoint(CODE_ID, id));
+        doc.add(new NumericDocValuesField(CODE_ID, id));
+        doc.add(new TextField(ALL_TEXT, String.valueOf(id), Field.Store.NO));
+        for ( String copy : COPY_FIELDS.get(CODE_ID) )
+            doc.add(new TextField(copy, String.valueOf(id), Field.Store.NO));
+
+        if (node.hasNonNull(JSON))
+            doc.add(new StoredField(JSON, node.get(JSON).asText()));
+
+        flatten(doc, null, node);
+
+        return doc;
+    }
+
+    @Override
+    public synchronized void index(Collection<? extends JsonNode> documents) throws IOException {
+        if (documents.isEmpty())
+            return;
+
+        for ( JsonNode node : documents ) {
+            Document doc = toDocument(node);
+
+            if (null==doc)
+                log.warn("Index document without " + CODE_ID + " skipped.");
+            else
+                writer.updateDocument(new Term(CODE_ID, doc.get(CODE_ID)), doc);
+        }
+        writer.commit();
+        // make the changes visible to new searches
+        searchers.maybeRefreshBlocking();
+    }
+
+    /**
+     * Query parser with numeric range support for CODE ID and release date.
+     */
+    private static class Parser extends QueryParser {
+        Parser(Analyzer analyzer) {
+            super(ALL_TEXT, analyzer);
+            setDefaultOperator(QueryParser.Operator.AND);
+            setAllowLeadingWildcard(true);
+        }
+
+        private Long bound(String field, String part) throws ParseException {
+            if (null==part || "*".equals(part))
+                return null;
+            try {
+                Long value = (RELEASE_DATE.equals(field)) ? parseDate(part) : Long.valueOf(part);
+                if (null==value)
+                    throw new ParseException("Invalid " + field + " value: " + part);
+                return value;
+            } catch ( NumberFormatException e ) {
+                throw new ParseException("Invalid " + field + " value: " + part);
+            }
+        }
+
+        @Override
+        protected Query getRangeQuery(String field, String part1, String part2, boolean startInclusive, boolean endInclusive) throws ParseException {
+            if (!RELEASE_DATE.equals(field) && !CODE_ID.equals(field))
+                return super.getRangeQuery(field, part1, part2, startInclusive, endInclusive);
+
+            Long lower = bound(field, part1);
+            Long upper = bound(field, part2);
+            long from = (null==lower) ? Long.MIN_VALUE : (startInclusive ? lower : lower + 1);
+            long to = (null==upper) ? Long.MAX_VALUE : (endInclusive ? upper : upper - 1);
+
+            return LongPoint.newRangeQuery(field, from, to);
+        }
+    }
+
+    /**
+     * Translate a SOLR sort specification.
+     *
+     * @param sort the sort, e.g. "releaseDate desc,codeId asc"
+     * @return the Sort, or null for relevance order
+     * @throws SearchException if a field is not sortable
+     */
+    private static Sort toSort(String sort) throws SearchException {
+        if (StringUtils.isBlank(sort))
+            return null;
+
+        List<SortField> fields = new ArrayList<>();
+        for ( String clause : sort.split(",") ) {
+            String field = StringUtils.substringBefore(clause.trim(), " ");
+            boolean descending = "desc".equalsIgnoreCase(StringUtils.substringAfter(clause.trim(), " ").trim());
+
+            if ("score".equals(field))
+                fields.add(new SortField(null, SortField.Type.SCORE, !descending));
+            else if (CODE_ID.equals(field) || RELEASE_DATE.equals(field))
+                fields.add(new SortField(field, SortField.Type.LONG, descending));
+            else
+                throw new SearchException(400, "Can not sort on field: " + field);
+        }
+        return new Sort(fields.toArray(new SortField[0]));
+    }
+
+    /**
+     * Encode the sort values of a hit as an opaque cursor mark.
+     *
+     * @param hit the last hit of a page
+     * @return the cursor mark
+     */
+    private static String encodeMark(FieldDoc hit) {
+        ArrayNode values = mapper.createArrayNode();
+        for ( Object value : hit.fields ) {
+            if (value instanceof Float)
+                values.add((Float) value);
+            else
+                values.add(((Number) value).longValue());
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(values.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor mark to the position to search after.
+     *
+     * @param mark the cursor mark
+     * @param sort the Sort in use
+     * @return the FieldDoc to search after, or null to start at the beginning
+     * @throws SearchException if the mark is invalid for this sort
+     */
+    private static FieldDoc decodeMark(String mark, Sort sort) throws SearchException {
+        if (SolrCursor.START.equals(mark))
+            return null;
+
+        try {
+            JsonNode values = mapper.readTree(Base64.getUrlDecoder().decode(mark));
+            SortField[] fields = sort.getSort();
+            if (!values.isArray() || values.size()!=fields.length)
+                throw new SearchException(400, "Invalid cursor mark for this sort.");
+
+            Object[] after = new Object[fields.length];
+            for ( int i = 0; i<fields.length; ++i )
+                after[i] = (SortField.Type.SCORE==fields[i].getType()) ?
+                        (Object) values.get(i).floatValue() :
+                        (Object) values.get(i).asLong();
+
+            // the document is set by the caller; see query()
+            return new FieldDoc(-1, Float.NaN, after);
+        } catch ( IllegalArgumentException | IOException e ) {
+            throw new SearchException(400, "Invalid cursor mark: " + mark);
+        }
+    }
+
+    /**
+     * Counts matches by release year, as the SOLR "dates" range facet, and by
+     * the values of any facet fields, in a single pass.
+     */
+    private static class FacetCollector extends SimpleCollector {
+        private final long end = System.currentTimeMillis();
+        private final Collection<String> fields;
+        // counts by year, and by value of each field
+        private final TreeMap<Integer, Integer> years = new TreeMap<>();
+        private final Map<String, Map<String, Integer>> terms = new HashMap<>();
+        // the current segment's values, and counts by ordinal
+        private NumericDocValues dates;
+        private final Map<String, SortedSetDocValues> values = new HashMap<>();
+        private final Map<String, Map<Long, Integer>> ordinals = new HashMap<>();
+
+        FacetCollector(Collection<String> fields) {
+            this.fields = fields;
+            for ( String field : fields )
+                terms.put(field, new HashMap<>());
+        }
+
+        @Override
+        protected void doSetNextReader(LeafReaderContext context) throws IOException {
+            finish();
+            dates = DocValues.getNumeric(context.reader(), RELEASE_DATE);
+            for ( String field : fields ) {
+                values.put(field, DocValues.getSortedSet(context.reader(), field));
+                ordinals.put(field, new HashMap<>());
+            }
+        }
+
+        @Override
+        public void collect(int doc) throws IOException {
+            if (dates.advanceExact(doc) && dates.longValue()<=end) {
+                int year = Instant.ofEpochMilli(dates.longValue()).atZone(ZoneOffset.UTC).getYear();
+                if (year>=FACET_START_YEAR)
+                    years.merge(year, 1, Integer::sum);
+            }
+            for ( String field : fields ) {
+                SortedSetDocValues set = values.get(field);
+                if (set.advanceExact(doc))
+                    for ( long ord = set.nextOrd(); SortedSetDocValues.NO_MORE_ORDS!=ord; ord = set.nextOrd() )
+                        ordinals.get(field).merge(ord, 1, Integer::sum);
+            }
+        }
+
+        /**
+         * Resolve the current segment's value counts.
+         *
+         * @throws IOException on read errors
+         */
+        void finish() throws IOException {
+            for ( Map.Entry<String, Map<Long, Integer>> field : ordinals.entrySet() ) {
+                SortedSetDocValues set = values.get(field.getKey());
+                for ( Map.Entry<Long, Integer> count : field.getValue().entrySet() )
+                    terms.get(field.getKey()).merge(set.lookupOrd(count.getKey()).utf8ToString(), count.getValue(), Integer::sum);
+            }
+            ordinals.clear();
+        }
+
+        /**
+         * Obtain the most frequent values of a field, most frequent first.
+         *
+         * @param field the field
+         * @param limit the maximum values
+         * @return the values and counts, in order
+         */
+        List<Map.Entry<String, Integer>> top(String field, int limit) {
+            List<Map.Entry<String, Integer>> counts = new ArrayList<>(terms.get(field).entrySet());
+            counts.sort(Map.Entry.<String, Integer>comparingByValue().reversed()
+                    .thenComparing(Map.Entry.comparingByKey()));
+            return counts.subList(0, Math.min(Math.max(0, limit), counts.size()));
+        }
+
+        @Override
+        public boolean needsScores() {
+            return false;
+        }
+    }
+
+    /**
+     * Write a facet bucket.
+     *
+     * @param json the JsonGenerator
+     * @param value the bucket value
+     * @param count the bucket count
+     * @throws IOException on write errors
+     */
+    private static void writeBucket(JsonGenerator json, String value, int count) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("val", value);
+        json.writeNumberField("count", count);
+        json.writeEndObject();
+    }
+
+    /**
+     * Write the requested stored fields of a hit.
+     *
+     * @param json the JsonGenerator
+     * @param doc the stored Document
+     * @param fields the requested fields, or empty for all
+     * @throws IOException on write errors
+     */
+    private static void writeDocument(JsonGenerator json, Document doc, List<String> fields) throws IOException {
+        List<String> names = new ArrayList<>(fields);
+        if (names.isEmpty())
+            for ( IndexableField field : doc.getFields() )
+                if (!names.contains(field.name()))
+                    names.add(field.name());
+
+        json.writeStartObject();
+        for ( String name : names ) {
+            String[] values = doc.getValues(name);
+
+            if (0==values.length)
+                continue;
+            if (CODE_ID.equals(name)) {
+                json.writeNumberField(name, Long.parseLong(values[0]));
+            } else if (1==values.length && !name.contains(".")) {
+                json.writeStringField(name, values[0]);
+            } else {
+                json.writeArrayFieldStart(name);
+                for ( String value : values )
+                    json.writeString(value);
+                json.writeEndArray();
+            }
+        }
+        json.writeEndObject();
+    }
+
+    @Override
+    public InputStream query(SearchQuery query) throws IOException {
+        Query parsed;
+        try {
+            parsed = new BooleanQuery.Builder()
+                    .add(new Parser(analyzer).parse(query.getQ()), BooleanClause.Occur.MUST)
+                    .add(APPROVED, BooleanClause.Occur.FILTER)
+                    .build();
+        } catch ( ParseException e ) {
+            throw new SearchException(400, "Invalid query: " + e.getMessage());
+        }
+
+        Sort sort = toSort(query.getSort());
+        for ( String field : query.getFacets().values() )
+            if (!FACET_FIELDS.contains(field))
+                throw new SearchException(400, "Can not facet on field: " + field);
+        if (null!=query.getCursorMark() && (null==sort ||
+                Arrays.stream(sort.getSort()).noneMatch(field -> CODE_ID.equals(field.getField()))))
+            throw new SearchException(400, "Cursor paging requires a sort including " + CODE_ID + ".");
+        int rows = Math.max(0, (null==query.getRows()) ? DEFAULT_ROWS : query.getRows());
+        int start = (null==query.getCursorMark() && null!=query.getStart()) ? Math.max(0, query.getStart()) : 0;
+
+        IndexSearcher searcher = searchers.acquire();
+        try {
+            TopDocs hits;
+            if (null!=query.getCursorMark()) {
+                FieldDoc after = decodeMark(query.getCursorMark(), sort);
+                // sort values are unique by CODE ID, so only the last hit
+                // itself ties; placing it at the last document excludes it
+                if (null!=after)
+                    after.doc = searcher.getIndexReader().maxDoc() - 1;
+                hits = searcher.searchAfter(after, parsed, Math.max(1, rows), sort, true, false);
+            } else if (null!=sort) {
+                hits = searcher.search(parsed, Math.max(1, start + rows), sort, true, false);
+            } else {
+                hits = searcher.search(parsed, Math.max(1, start + rows));
+            }
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            JsonGenerator json = factory.createGenerator(out);
+
+            json.writeStartObject();
+            json.writeObjectFieldStart("responseHeader");
+            json.writeNumberField("status", 0);
+            json.writeEndObject();
+
+            json.writeObjectFieldStart("response");
+            json.writeNumberField("numFound", hits.totalHits);
+            json.writeNumberField("start", start);
+            json.writeArrayFieldStart("docs");
+            Set<String> fields = (query.getFields().isEmpty()) ? null : new HashSet<>(query.getFields());
+            ScoreDoc last = null;
+            for ( int i = start; i<hits.scoreDocs.length && i<start + rows; ++i ) {
+                last = hits.scoreDocs[i];
+                writeDocument(json, (null==fields) ? searcher.doc(last.doc) : searcher.doc(last.doc, fields), query.getFields());
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+
+            // the same mark again means there are no more results
+            if (null!=query.getCursorMark())
+                json.writeStringField("nextCursorMark", (null==last) ? query.getCursorMark() : encodeMark((FieldDoc) last));
+
+            json.writeObjectFieldStart("facets");
+            json.writeNumberField("count", hits.totalHits);
+            if (query.isFaceting() && hits.totalHits>0) {
+                Map<String, String> facets = query.getFacets();
+                FacetCollector counts = new FacetCollector(new HashSet<>(facets.values()));
+                searcher.search(parsed, counts);
+                counts.finish();
+
+                json.writeObjectFieldStart("dates");
+                json.writeArrayFieldStart("buckets");
+                for ( Map.Entry<Integer, Integer> year : counts.years.entrySet() )
+                    writeBucket(json, ZonedDateTime.of(year.getKey(), 1, 1, 0, 0, 0, 0, ZoneOffset.UTC).toInstant().toString(), year.getValue());
+                json.writeEndArray();
+                json.writeEndObject();
+
+                for ( Map.Entry<String, String> facet : facets.entrySet() ) {
+                    json.writeObjectFieldStart(facet.getKey());
+                    json.writeArrayFieldStart("buckets");
+                    for ( Map.Entry<String, Integer> value : counts.top(facet.getValue(), query.getFacetLimit()) )
+                        writeBucket(json, value.getKey(), value.getValue());
+                    json.writeEndArray();
+                    json.writeEndObject();
+                }
+            }
+            json.writeEndObject();
+
+            json.writeEndObject();
+            json.close();
+
+            return new ByteArrayInputStream(out.toByteArray());
+        } finally {
+            searchers.release(searcher);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            searchers.close();
+            writer.close();
+            directory.close();
+        } catch ( IOException e ) {
+            log.warn("Error closing search index: " + e.getMessage());
+        }
+    }
+}
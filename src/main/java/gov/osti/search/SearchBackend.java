@@ -0,0 +1,58 @@
+/*
+ */
+package gov.osti.search;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+
+/**
+ * A search and indexing service for approved records.
+ *
+ * Results are always in the SOLR "/query" JSON response format ("response"
+ * with "numFound", "start", and "docs"; "nextCursorMark" when paging by
+ * cursor; and "facets" with yearly release "dates" buckets and the buckets
+ * of each requested field facet), so they may be streamed or mapped the same
+ * way regardless of backend.
+ *
+ * @author ensornl
+ */
+public interface SearchBackend {
+    /**
+     * Whether or not this backend can run queries.
+     *
+     * @return true if searching is available
+     */
+    boolean isSearching();
+
+    /**
+     * Whether or not this backend accepts index updates.
+     *
+     * @return true if indexing is available
+     */
+    boolean isIndexing();
+
+    /**
+     * Run a query; only approved records are matched.
+     *
+     * @param query the SearchQuery
+     * @return the JSON results; the caller must close it
+     * @throws SearchException if the backend rejected the query
+     * @throws IOException on other errors
+     */
+    InputStream query(SearchQuery query) throws IOException;
+
+    /**
+     * Add or replace documents in the index, by CODE ID.
+     *
+     * @param documents the index documents (see SolrIndexer.toDocument)
+     * @throws IOException on errors, or if the update was rejected
+     */
+    void index(Collection<? extends JsonNode> documents) throws IOException;
+
+    /**
+     * Release any resources held.
+     */
+    void close();
+}
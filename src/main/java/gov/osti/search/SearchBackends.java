@@ -0,0 +1,105 @@
+/*
+ */
+package gov.osti.search;
+
+import gov.osti.listeners.DoeServletContextListener;
+import java.io.IOException;
+import java.nio.file.Paths;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the configured SearchBackend, shared by searching, indexing, and the
+ * sitemap.
+ *
+ * Configuration properties:
+ * search.backend - "solr" (default) or "lucene"
+ * search.url - SOLR query URL (solr backend)
+ * index.url - SOLR update URL (solr backend)
+ * search.lucene.dir - index directory (lucene backend; default
+ *   "doecode-index" in the temporary directory)
+ *
+ * @author ensornl
+ */
+public class SearchBackends {
+    // logger
+    private static final Logger log = LoggerFactory.getLogger(SearchBackends.class);
+
+    // the backend in use, created on first use
+    private static SearchBackend instance = null;
+    private static boolean initialized = false;
+
+    /**
+     * Obtain the configured SearchBackend.
+     *
+     * @return the SearchBackend, or null if no search service is configured
+     */
+    public static synchronized SearchBackend getInstance() {
+        if (!initialized) {
+            instance = create();
+            initialized = true;
+        }
+        return instance;
+    }
+
+    /**
+     * Construct the configured SearchBackend.
+     *
+     * @return a SearchBackend, or null if none configured or unable to open
+     */
+    private static SearchBackend create() {
+        String backend = DoeServletContextListener.getConfigurationProperty("search.backend");
+
+        if ("lucene".equalsIgnoreCase(backend)) {
+            String dir = DoeServletContextListener.getConfigurationProperty("search.lucene.dir");
+            if (StringUtils.isBlank(dir))
+                dir = Paths.get(System.getProperty("java.io.tmpdir"), "doecode-index").toString();
+
+            try {
+                log.info("Using embedded search index in " + dir);
+                return new LuceneBackend(FSDirectory.open(Paths.get(dir)));
+            } catch ( IOException e ) {
+                log.error("Unable to open search index " + dir + ": " + e.getMessage());
+                return null;
+            }
+        }
+
+        String searchUrl = DoeServletContextListener.getConfigurationProperty("search.url");
+        String indexUrl = DoeServletContextListener.getConfigurationProperty("index.url");
+
+        return (StringUtils.isBlank(searchUrl) && StringUtils.isBlank(indexUrl)) ?
+                null : new SolrBackend(searchUrl, indexUrl);
+    }
+
+    /**
+     * Determine whether or not searching is available.
+     *
+     * @return true if a backend is configured for searching
+     */
+    public static boolean isSearching() {
+        SearchBackend backend = getInstance();
+        return null!=backend && backend.isSearching();
+    }
+
+    /**
+     * Determine whether or not indexing is available.
+     *
+     * @return true if a backend is configured for indexing
+     */
+    public static boolean isIndexing() {
+        SearchBackend backend = getInstance();
+        return null!=backend && backend.isIndexing();
+    }
+
+    /**
+     * Close the backend, if open.
+     */
+    public static synchronized void shutdown() {
+        if (null!=instance)
+            instance.close();
+        instance = null;
+        initialized = false;
+    }
+}
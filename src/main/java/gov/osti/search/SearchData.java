@@ -1,15 +1,19 @@
 package gov.osti.search;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Serializable;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategy;
 import java.time.ZoneOffset;
@@ -26,6 +30,9 @@ public class SearchData implements Serializable {
     private static final ObjectMapper mapper = new ObjectMapper()
             .setPropertyNamingStrategy(PropertyNamingStrategy.SNAKE_CASE)
             .setSerializationInclusion(Include.NON_NULL);
+    // writes parameters in a fixed order, for comparison
+    private static final ObjectMapper key_mapper = mapper.copy()
+            .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true);
 
     // set of special characters to be escaped before sending to SOLR
     protected static Pattern TEXT_REGEX_CHARACTERS = Pattern.compile("[{}()\\[\\].+*?^$\\\\|]");
@@ -47,6 +54,17 @@ public class SearchData implements Serializable {
     private String sort = null;
     private Integer rows;
     private Integer start;
+    private String cursor;
+    private String[] facets;
+
+    // field facets that may be requested, and the index field of each
+    private static final Map<String,String> FACET_FIELDS = new LinkedHashMap<>();
+    static {
+        FACET_FIELDS.put("accessibility", "accessibility");
+        FACET_FIELDS.put("licenses", "licenses");
+        FACET_FIELDS.put("research_organizations", "_research_organizations");
+        FACET_FIELDS.put("sponsoring_organizations", "_sponsoring_organizations");
+    }
 
     /**
      * Parses JSON in the request body of the reader into a SearchDaa object.
@@ -330,4 +348,75 @@ public class SearchData implements Serializable {
         this.licenses = licenses;
     }
 
+    /**
+     * The cursor to continue paging from, if any.  Use "*" for the first page
+     * of results, then the next_cursor value of each response for the next.
+     * When set, start is ignored.
+     * @return the cursor
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Set the cursor to continue paging from.
+     * @param cursor the cursor to set
+     */
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    /**
+     * The field facets to count, if any: "accessibility", "licenses",
+     * "research_organizations", and/or "sponsoring_organizations".  Release
+     * date facets are always counted.
+     * @return the facets
+     */
+    public String[] getFacets() {
+        return facets;
+    }
+
+    /**
+     * Set the field facets to count.
+     * @param facets the facets to set
+     */
+    public void setFacets(String[] facets) {
+        this.facets = facets;
+    }
+
+    /**
+     * Obtain the requested field facets; unknown facet names are ignored.
+     * @return the index field of each requested facet, by facet name
+     */
+    @JsonIgnore
+    public Map<String,String> getFacetFields() {
+        Map<String,String> fields = new LinkedHashMap<>();
+
+        if (null!=getFacets())
+            for ( String facet : getFacets() )
+                if (FACET_FIELDS.containsKey(facet))
+                    fields.put(facet, FACET_FIELDS.get(facet));
+
+        return fields;
+    }
+
+    /**
+     * Obtain a normalized form of these parameters, equal for equal
+     * searches regardless of how the request was written.
+     * @return the parameters as JSON, with properties in a fixed order
+     * @throws IOException on serialization errors
+     */
+    public String toKey() throws IOException {
+        return key_mapper.writeValueAsString(this);
+    }
+
+    /**
+     * Whether or not these parameters match every record.
+     * @return true if no search criteria are set
+     */
+    @JsonIgnore
+    public boolean isUnfiltered() {
+        return "*:*".equals(toQ());
+    }
+
 }
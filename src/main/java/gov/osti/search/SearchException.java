@@ -0,0 +1,32 @@
+/*
+ */
+package gov.osti.search;
+
+import java.io.IOException;
+
+/**
+ * A query rejected by the search backend, with the HTTP status to report.
+ *
+ * @author ensornl
+ */
+public class SearchException extends IOException {
+    private final int status;
+
+    /**
+     * Construct an exception.
+     *
+     * @param status the HTTP status code
+     * @param message the reason given by the backend
+     */
+    public SearchException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    /**
+     * @return the HTTP status code
+     */
+    public int getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ */
+package gov.osti.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The parameters of a query to a SearchBackend, in SOLR terms:  a query
+ * String ("q"), sort, paging by start offset or cursor mark, the stored
+ * fields to return ("fl"), and the facets to count.  Facets are counted
+ * only when turned on, as for search requests; yearly release date facets
+ * are then always counted.
+ *
+ * @author ensornl
+ */
+public class SearchQuery {
+    private String q = "*:*";
+    private String sort = "";
+    private Integer start;
+    private Integer rows;
+    private String cursorMark;
+    private List<String> fields = new ArrayList<>();
+    private boolean faceting = false;
+    private Map<String,String> facets = new LinkedHashMap<>();
+    private int facetLimit = 100;
+
+    /**
+     * Construct a query.
+     *
+     * @param q the query String, in SOLR/Lucene syntax
+     */
+    public SearchQuery(String q) {
+        this.q = q;
+    }
+
+    public String getQ() {
+        return q;
+    }
+
+    public String getSort() {
+        return sort;
+    }
+
+    /**
+     * Set the sort, e.g. "releaseDate desc,codeId asc"; blank for relevance.
+     *
+     * @param sort the sort specification
+     * @return this query
+     */
+    public SearchQuery sort(String sort) {
+        this.sort = (null==sort) ? "" : sort;
+        return this;
+    }
+
+    public Integer getStart() {
+        return start;
+    }
+
+    public SearchQuery start(Integer start) {
+        this.start = start;
+        return this;
+    }
+
+    public Integer getRows() {
+        return rows;
+    }
+
+    public SearchQuery rows(Integer rows) {
+        this.rows = rows;
+        return this;
+    }
+
+    public String getCursorMark() {
+        return cursorMark;
+    }
+
+    /**
+     * Page by cursor instead of start offset; the sort must include the
+     * unique key (see SolrCursor.withUniqueKey).
+     *
+     * @param cursorMark the cursor mark, SolrCursor.START for the first page
+     * @return this query
+     */
+    public SearchQuery cursorMark(String cursorMark) {
+        this.cursorMark = cursorMark;
+        return this;
+    }
+
+    public List<String> getFields() {
+        return fields;
+    }
+
+    public SearchQuery fields(String... fields) {
+        this.fields.addAll(Arrays.asList(fields));
+        return this;
+    }
+
+    public boolean isFaceting() {
+        return faceting;
+    }
+
+    /**
+     * Turn facet counting on or off; off by default.
+     *
+     * @param faceting whether or not to count any facets
+     * @return this query
+     */
+    public SearchQuery faceting(boolean faceting) {
+        this.faceting = faceting;
+        return this;
+    }
+
+    public Map<String,String> getFacets() {
+        return facets;
+    }
+
+    /**
+     * Count the most frequent values of index fields, in addition to the
+     * release date facets.
+     *
+     * @param facets the index field of each facet, by facet name
+     * @return this query
+     */
+    public SearchQuery facets(Map<String,String> facets) {
+        this.facets.putAll(facets);
+        return this;
+    }
+
+    public int getFacetLimit() {
+        return facetLimit;
+    }
+
+    /**
+     * Set the maximum values counted per field facet.
+     *
+     * @param facetLimit the maximum values
+     * @return this query
+     */
+    public SearchQuery facetLimit(int facetLimit) {
+        this.facetLimit = facetLimit;
+        return this;
+    }
+}
@@ -24,10 +24,13 @@ public class SearchResponse {
     private Integer numFound;
     @JacksonXmlProperty (isAttribute = true)
     private Integer start;
+    @JacksonXmlProperty (isAttribute = true)
+    private String nextCursor;
     @JacksonXmlElementWrapper (localName = "docs")
     @JacksonXmlProperty (localName = "doc")
     private List<DOECodeMetadata> docs = new ArrayList<>();
     private Map<String,Integer> facets = new LinkedHashMap<>();
+    private Map<String,LinkedHashMap<String,Integer>> facetFields;
 
     /**
      * @return the numFound
@@ -57,6 +60,23 @@ public class SearchResponse {
         this.start = start;
     }
     
+    /**
+     * The opaque token to send as the "cursor" of a subsequent search, to
+     * obtain the next page of results.  Only present for cursor searches.
+     * 
+     * @return the nextCursor
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * @param nextCursor the nextCursor to set
+     */
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+    
     public List<DOECodeMetadata> add(DOECodeMetadata m) {
         docs.add(m);
         return docs;
@@ -89,4 +109,18 @@ public class SearchResponse {
     public void setFacets(Map<String,Integer> facets) {
         this.facets = facets;
     }
+
+    /**
+     * @return the value counts of each requested field facet, by facet name
+     */
+    public Map<String,LinkedHashMap<String,Integer>> getFacetFields() {
+        return facetFields;
+    }
+
+    /**
+     * @param facetFields the facetFields to set
+     */
+    public void setFacetFields(Map<String,LinkedHashMap<String,Integer>> facetFields) {
+        this.facetFields = facetFields;
+    }
 }
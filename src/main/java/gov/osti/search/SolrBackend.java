@@ -0,0 +1,172 @@
+/*
+ */
+package gov.osti.search;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import gov.osti.connectors.HttpClientPool;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Collection;
+import java.util.Map;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * SearchBackend of a remote SOLR service; queries go to the search URL
+ * ("/query" handler), and updates to the index URL.
+ *
+ * @author ensornl
+ */
+public class SolrBackend implements SearchBackend {
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final String searchUrl;
+    private final String indexUrl;
+
+    /**
+     * Construct a SOLR backend.
+     *
+     * @param searchUrl the SOLR query URL, if any
+     * @param indexUrl the SOLR update URL, if any
+     */
+    public SolrBackend(String searchUrl, String indexUrl) {
+        this.searchUrl = StringUtils.trimToEmpty(searchUrl);
+        this.indexUrl = StringUtils.trimToEmpty(indexUrl);
+    }
+
+    @Override
+    public boolean isSearching() {
+        return !searchUrl.isEmpty();
+    }
+
+    @Override
+    public boolean isIndexing() {
+        return !indexUrl.isEmpty();
+    }
+
+    @Override
+    public InputStream query(SearchQuery query) throws IOException {
+        final CloseableHttpResponse response;
+
+        try {
+            HttpGet get = new HttpGet(toQueryUri(query));
+            get.setConfig(HttpClientPool.searchConfig());
+            response = HttpClientPool.getClient().execute(get);
+        } catch ( URISyntaxException e ) {
+            throw new IOException("Invalid SOLR query URL: " + e.getMessage());
+        }
+
+        if (HttpStatus.SC_OK!=response.getStatusLine().getStatusCode()) {
+            try {
+                throw new SearchException(response.getStatusLine().getStatusCode(),
+                        EntityUtils.toString(response.getEntity()));
+            } finally {
+                HttpClientPool.release(response);
+            }
+        }
+
+        // the connection is returned to the pool when the results are closed
+        return new FilterInputStream(response.getEntity().getContent()) {
+            @Override
+            public void close() throws IOException {
+                HttpClientPool.release(response);
+            }
+        };
+    }
+
+    /**
+     * Construct the SOLR request URI of a query.  The facet request is always
+     * sent, empty if not faceting, to override the default of the "/query"
+     * handler.
+     *
+     * @param query the SearchQuery
+     * @return the request URI
+     * @throws URISyntaxException if the search URL is not valid
+     */
+    URI toQueryUri(SearchQuery query) throws URISyntaxException {
+        URIBuilder builder = new URIBuilder(searchUrl)
+                .addParameter("q", query.getQ());
+        for ( String field : query.getFields() )
+            builder.addParameter("fl", field);
+        if (StringUtils.isNotBlank(query.getSort()))
+            builder.addParameter("sort", query.getSort());
+        if (null!=query.getRows())
+            builder.addParameter("rows", String.valueOf(query.getRows()));
+        if (null!=query.getCursorMark())
+            builder.addParameter("cursorMark", query.getCursorMark());
+        else if (null!=query.getStart())
+            builder.addParameter("start", String.valueOf(query.getStart()));
+        builder.addParameter("json.facet", toJsonFacet(query));
+
+        return builder.build();
+    }
+
+    /**
+     * Construct the JSON facet request for a query:  yearly release dates
+     * since 1950, and the most frequent values of each field facet, or none
+     * if not faceting.
+     *
+     * @param query the SearchQuery
+     * @return the "json.facet" parameter value
+     */
+    protected static String toJsonFacet(SearchQuery query) {
+        ObjectNode facets = mapper.createObjectNode();
+
+        if (query.isFaceting()) {
+            facets.putObject("dates")
+                    .put("type", "range")
+                    .put("field", "releaseDate")
+                    .put("start", "1950-01-01T00:00:00Z")
+                    .put("end", "NOW")
+                    .put("gap", "+1YEARS")
+                    .put("mincount", 1);
+            for ( Map.Entry<String,String> facet : query.getFacets().entrySet() )
+                facets.putObject(facet.getKey())
+                        .put("type", "terms")
+                        .put("field", facet.getValue())
+                        .put("limit", query.getFacetLimit())
+                        .put("mincount", 1);
+        }
+        return facets.toString();
+    }
+
+    @Override
+    public void index(Collection<? extends JsonNode> documents) throws IOException {
+        if (!isIndexing() || documents.isEmpty())
+            return;
+
+        // construct a POST submission to the indexer service
+        HttpPost post = new HttpPost(indexUrl);
+        post.setHeader("Content-Type", "application/json");
+        post.setHeader("Accept", "application/json");
+        post.setEntity(new StringEntity(mapper.createArrayNode().addAll(documents).toString(), "UTF-8"));
+
+        CloseableHttpResponse response = HttpClientPool.getClient().execute(post);
+
+        try {
+            int statusCode = response.getStatusLine().getStatusCode();
+
+            if ( HttpStatus.SC_OK!=statusCode )
+                throw new IOException ("Indexing Error, response code=" + statusCode +
+                        ": " + EntityUtils.toString(response.getEntity()));
+        } finally {
+            HttpClientPool.release(response);
+        }
+    }
+
+    @Override
+    public void close() {
+        // connections belong to the shared pool
+    }
+}
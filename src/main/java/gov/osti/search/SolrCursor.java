@@ -0,0 +1,127 @@
+/*
+ */
+package gov.osti.search;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.NoSuchElementException;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Iterates over the pages of a query using a cursor mark, rather than start
+ * offsets.
+ *
+ * Each page request continues from the cursor mark returned by the previous
+ * one, so deep pages cost the same as the first.  SOLR requires the sort to
+ * end on the unique key (codeId); see withUniqueKey().  A cursor may be
+ * resumed from any mark previously obtained via getMark().
+ *
+ * @author ensornl
+ */
+public class SolrCursor {
+    /** the cursor mark of the first page */
+    public static final String START = "*";
+    /** the SOLR unique key field */
+    public static final String UNIQUE_KEY = "codeId";
+
+    // reads SOLR results, including date facets
+    private static final ObjectMapper mapper = new ObjectMapper()
+            .registerModule(new SimpleModule().addDeserializer(SolrFacet.class, new FacetDeserializer()));
+
+    private final SearchBackend backend;
+    private final String q;
+    private final String sort;
+    private final int rows;
+    private final String[] fields;
+    private String mark;
+    private boolean done = false;
+
+    /**
+     * Construct a cursor continuing from a given mark; START for the first
+     * page.
+     *
+     * @param backend the SearchBackend to query
+     * @param q the SOLR query
+     * @param sort the sort order; the unique key is added if needed
+     * @param rows the number of rows per page
+     * @param mark the cursor mark to continue from
+     * @param fields the fields to return
+     */
+    public SolrCursor(SearchBackend backend, String q, String sort, int rows, String mark, String... fields) {
+        this.backend = backend;
+        this.q = q;
+        this.sort = withUniqueKey(sort);
+        this.rows = rows;
+        this.mark = mark;
+        this.fields = fields;
+    }
+
+    /**
+     * Ensure a sort order ends on the unique key, as required for cursors.
+     * Adds an ascending codeId tie-breaker if not already sorting on it.
+     *
+     * @param sort the requested sort order; may be empty for relevance
+     * @return the sort order to use with a cursor
+     */
+    public static String withUniqueKey(String sort) {
+        if (StringUtils.isBlank(sort))
+            return "score desc," + UNIQUE_KEY + " asc";
+
+        for ( String clause : sort.split(",") ) {
+            if (UNIQUE_KEY.equals(StringUtils.substringBefore(clause.trim(), " ")))
+                return sort;
+        }
+        return sort + "," + UNIQUE_KEY + " asc";
+    }
+
+    /**
+     * @return the cursor mark of the next page
+     */
+    public String getMark() {
+        return mark;
+    }
+
+    /**
+     * @return true if there may be further pages
+     */
+    public boolean hasNext() {
+        return !done;
+    }
+
+    /**
+     * Fetch the next page of results, and advance the cursor.
+     *
+     * @return the SOLR result page
+     * @throws IOException on errors, or if the backend rejected the query
+     */
+    public SolrResult next() throws IOException {
+        if (done)
+            throw new NoSuchElementException("No more results.");
+
+        SearchQuery query = new SearchQuery(q)
+                .sort(sort)
+                .rows(rows)
+                .cursorMark(mark)
+                .fields(fields);
+        InputStream in = backend.query(query);
+
+        try {
+            SolrResult result = mapper.readValue(in, SolrResult.class);
+
+            // the same mark is returned once there are no more results; a
+            // short page is also the last
+            String next = result.getNextCursorMark();
+            done = (null==next || next.equals(mark) ||
+                    result.getSearchResponse().isEmpty() ||
+                    result.getSearchResponse().getDocuments().length<rows);
+            if (null!=next)
+                mark = next;
+
+            return result;
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -13,6 +13,8 @@ import java.io.Serializable;
 @JsonIgnoreProperties (ignoreUnknown = true)
 public class SolrDocument implements Serializable {
     private String json;
+    private Long codeId;
+    private String dateRecordUpdated;
 
     /**
      * @return the json
@@ -27,4 +29,32 @@ public class SolrDocument implements Serializable {
     public void setJson(String json) {
         this.json = json;
     }
+
+    /**
+     * @return the codeId, if requested
+     */
+    public Long getCodeId() {
+        return codeId;
+    }
+
+    /**
+     * @param codeId the codeId to set
+     */
+    public void setCodeId(Long codeId) {
+        this.codeId = codeId;
+    }
+
+    /**
+     * @return the dateRecordUpdated (yyyy-MM-dd), if requested and indexed
+     */
+    public String getDateRecordUpdated() {
+        return dateRecordUpdated;
+    }
+
+    /**
+     * @param dateRecordUpdated the dateRecordUpdated to set
+     */
+    public void setDateRecordUpdated(String dateRecordUpdated) {
+        this.dateRecordUpdated = dateRecordUpdated;
+    }
 }
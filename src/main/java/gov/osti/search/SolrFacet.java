@@ -7,7 +7,8 @@ import java.io.Serializable;
 import java.util.LinkedHashMap;
 
 /**
- * SOLR facet result section.
+ * SOLR facet result section; the yearly release "dates" counts, and the
+ * value counts of any field (terms) facets by facet name.
  * 
  * @author ensornl
  */
@@ -15,6 +16,7 @@ import java.util.LinkedHashMap;
 public class SolrFacet implements Serializable {
     private Integer count;
     private LinkedHashMap<String,Integer> values = new LinkedHashMap<>();
+    private LinkedHashMap<String,LinkedHashMap<String,Integer>> fields = new LinkedHashMap<>();
     
     /**
      * Add a key-value pair to the facet values.
@@ -29,10 +31,34 @@ public class SolrFacet implements Serializable {
         return this;
     }
     
+    /**
+     * Add a value count to a field facet.
+     * 
+     * @param facet the facet name
+     * @param key the field VALUE
+     * @param value the COUNT
+     * @return this Object for chaining
+     */
+    public SolrFacet add(String facet, String key, Integer value) {
+        fields.computeIfAbsent(facet, f -> new LinkedHashMap<>()).put(key, value);
+        
+        return this;
+    }
+    
+    /**
+     * @return the release date counts
+     */
     public LinkedHashMap<String,Integer> getValues() {
         return values;
     }
 
+    /**
+     * @return the value counts of each field facet, by facet name
+     */
+    public LinkedHashMap<String,LinkedHashMap<String,Integer>> getFields() {
+        return fields;
+    }
+
     /**
      * @return the count
      */
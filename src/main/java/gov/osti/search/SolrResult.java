@@ -17,6 +17,8 @@ public class SolrResult {
     private SolrResponse response;
     @JsonProperty (value="facets")
     private SolrFacet facet;
+    @JsonProperty (value="nextCursorMark")
+    private String nextCursorMark;
     
     /**
      * Get the SearchResponse from this search.
@@ -42,4 +44,17 @@ public class SolrResult {
     public SolrFacet getSolrFacet() {
         return facet;
     }
+
+    /**
+     * The cursor mark to continue from, if this was a cursor query.
+     * 
+     * @return the next cursor mark, or null
+     */
+    public String getNextCursorMark() {
+        return nextCursorMark;
+    }
+    
+    public void setNextCursorMark(String mark) {
+        nextCursorMark = mark;
+    }
 }
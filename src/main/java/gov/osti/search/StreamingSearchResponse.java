@@ -0,0 +1,242 @@
+/*
+ */
+package gov.osti.search;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams a SOLR JSON search result to a JSON SearchResponse.
+ *
+ * Rather than binding the SOLR result and each stored record to objects and
+ * serializing the whole response to a String, the SOLR result is read token
+ * by token, and each document's stored "json" value is copied token by token
+ * directly into the output, dropping any ignored property names at any level.  The output has the same form
+ * as SearchResponse serialized with snake_case names.
+ *
+ * Facet counts are taken from the SOLR result, unless supplied (e.g., from
+ * FacetCache).
+ *
+ * The SOLR input is read during write(), so it must remain open until then;
+ * the supplied Closeable is called when writing completes or fails.
+ *
+ * @author ensornl
+ */
+public class StreamingSearchResponse implements StreamingOutput {
+    // logger
+    private static final Logger log = LoggerFactory.getLogger(StreamingSearchResponse.class);
+
+    private final InputStream input;
+    private final ObjectMapper mapper;
+    private final Set<String> ignored;
+    private final Closeable onClose;
+    private final SolrFacet facets;
+
+    /**
+     * Construct a streaming search response.
+     *
+     * @param input the SOLR JSON search result
+     * @param mapper the ObjectMapper to use for reading and writing; must
+     * be able to read SolrFacet values
+     * @param ignored property names to remove from each stored record
+     * @param onClose called once the response is written, to release the
+     * input; may be null
+     */
+    public StreamingSearchResponse(InputStream input, ObjectMapper mapper, Collection<String> ignored, Closeable onClose) {
+        this(input, mapper, ignored, onClose, null);
+    }
+
+    /**
+     * Construct a streaming search response with given facet counts.
+     *
+     * @param input the SOLR JSON search result
+     * @param mapper the ObjectMapper to use for reading and writing; must
+     * be able to read SolrFacet values
+     * @param ignored property names to remove from each stored record
+     * @param onClose called once the response is written, to release the
+     * input; may be null
+     * @param facets the facet counts to write, or null to use those of the
+     * SOLR result
+     */
+    public StreamingSearchResponse(InputStream input, ObjectMapper mapper, Collection<String> ignored, Closeable onClose, SolrFacet facets) {
+        this.input = input;
+        this.mapper = mapper;
+        this.ignored = new HashSet<>(ignored);
+        this.onClose = onClose;
+        this.facets = facets;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException, WebApplicationException {
+        JsonParser parser = mapper.getFactory().createParser(input);
+        JsonGenerator generator = mapper.getFactory().createGenerator(output);
+        SolrFacet facet = (null==facets) ? new SolrFacet() : facets;
+        boolean wroteDocs = false;
+
+        try {
+            if (JsonToken.START_OBJECT!=parser.nextToken())
+                throw new IOException("SOLR result is not a JSON object.");
+
+            generator.writeStartObject();
+
+            while (JsonToken.FIELD_NAME==parser.nextToken()) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+
+                if ("response".equals(name)) {
+                    wroteDocs = writeResponse(parser, generator);
+                } else if ("nextCursorMark".equals(name)) {
+                    generator.writeStringField("next_cursor", parser.getText());
+                } else if ("facets".equals(name) && null==facets) {
+                    SolrFacet result = mapper.readValue(parser, SolrFacet.class);
+                    if (null!=result)
+                        facet = result;
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            if (!wroteDocs) {
+                generator.writeArrayFieldStart("docs");
+                generator.writeEndArray();
+            }
+            generator.writeObjectFieldStart("facets");
+            for ( Map.Entry<String,Integer> value : facet.getValues().entrySet() )
+                generator.writeNumberField(value.getKey(), value.getValue());
+            generator.writeEndObject();
+            if (!facet.getFields().isEmpty()) {
+                generator.writeObjectFieldStart("facet_fields");
+                for ( Map.Entry<String,LinkedHashMap<String,Integer>> field : facet.getFields().entrySet() ) {
+                    generator.writeObjectFieldStart(field.getKey());
+                    for ( Map.Entry<String,Integer> value : field.getValue().entrySet() )
+                        generator.writeNumberField(value.getKey(), value.getValue());
+                    generator.writeEndObject();
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+            generator.flush();
+        } catch ( IOException e ) {
+            log.warn("Search response streaming error.", e);
+            throw e;
+        } finally {
+            parser.close();
+            generator.close();
+            if (null!=onClose)
+                onClose.close();
+        }
+    }
+
+    /**
+     * Copy the SOLR "response" object contents, filtering each document.
+     *
+     * @param parser the SOLR result parser, positioned at the response
+     * @param generator the output
+     * @return true if a "docs" array was written
+     * @throws IOException on read or write errors
+     */
+    private boolean writeResponse(JsonParser parser, JsonGenerator generator) throws IOException {
+        boolean wroteDocs = false;
+
+        if (JsonToken.START_OBJECT!=parser.currentToken()) {
+            parser.skipChildren();
+            return false;
+        }
+        while (JsonToken.FIELD_NAME==parser.nextToken()) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+
+            if ("numFound".equals(name)) {
+                generator.writeNumberField("num_found", parser.getIntValue());
+            } else if ("start".equals(name)) {
+                generator.writeNumberField("start", parser.getIntValue());
+            } else if ("docs".equals(name) && JsonToken.START_ARRAY==parser.currentToken()) {
+                generator.writeArrayFieldStart("docs");
+                while (JsonToken.START_OBJECT==parser.nextToken())
+                    writeDocument(parser, generator);
+                generator.writeEndArray();
+                wroteDocs = true;
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return wroteDocs;
+    }
+
+    /**
+     * Copy the stored JSON record of a SOLR document, filtering it.
+     *
+     * @param parser the SOLR result parser, positioned at the document
+     * @param generator the output
+     * @throws IOException on read or write errors
+     */
+    private void writeDocument(JsonParser parser, JsonGenerator generator) throws IOException {
+        while (JsonToken.FIELD_NAME==parser.nextToken()) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+
+            if ("json".equals(name) && JsonToken.VALUE_STRING==parser.currentToken()) {
+                JsonParser record = mapper.getFactory().createParser(parser.getText());
+
+                try {
+                    if (null!=record.nextToken())
+                        copyFiltered(record, generator);
+                } finally {
+                    record.close();
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Copy the current JSON value, leaving out any ignored properties.
+     *
+     * @param parser the input, positioned at the start of the value
+     * @param generator the output
+     * @throws IOException on read or write errors
+     */
+    private void copyFiltered(JsonParser parser, JsonGenerator generator) throws IOException {
+        switch (parser.currentToken()) {
+            case START_OBJECT:
+                generator.writeStartObject();
+                while (JsonToken.FIELD_NAME==parser.nextToken()) {
+                    String name = parser.getCurrentName();
+                    parser.nextToken();
+
+                    if (ignored.contains(name)) {
+                        parser.skipChildren();
+                    } else {
+                        generator.writeFieldName(name);
+                        copyFiltered(parser, generator);
+                    }
+                }
+                generator.writeEndObject();
+                break;
+            case START_ARRAY:
+                generator.writeStartArray();
+                while (JsonToken.END_ARRAY!=parser.nextToken())
+                    copyFiltered(parser, generator);
+                generator.writeEndArray();
+                break;
+            default:
+                generator.copyCurrentEvent(parser);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ */
+package gov.osti.security;
+
+import gov.osti.cache.ExpiringCache;
+import gov.osti.entity.User;
+import gov.osti.listeners.DoeServletContextListener;
+import io.jsonwebtoken.Claims;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import javax.persistence.NoResultException;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Short-lived in-memory cache of authentication lookups, to keep the database
+ * and token signature checks off the per-request authentication path.
+ *
+ * Caches active, verified Users by API key, and parsed access token Claims by
+ * token digest.  Any change to a User's API key, roles, or active/verified
+ * state must call invalidate() for that User.
+ *
+ * Configuration properties:
+ * auth.cache.size - maximum entries per cache (default 1000)
+ * auth.cache.ttl - entry time to live in milliseconds (default 60000)
+ *
+ * @author ensornl
+ */
+public class AuthenticationCache {
+    private static final int SIZE = DoeServletContextListener.getConfigurationProperty("auth.cache.size", 1000);
+    private static final long TTL = DoeServletContextListener.getConfigurationProperty("auth.cache.ttl", 60000);
+
+    // active Users by API key
+    private static final ExpiringCache<String, User> users = new ExpiringCache<>(SIZE, TTL);
+    // parsed token Claims by SHA-256 digest of the token
+    private static final ExpiringCache<String, Claims> tokens = new ExpiringCache<>(SIZE, TTL);
+    // incremented on each invalidation, to avoid caching Users read before it
+    private static long generation = 0;
+
+    /**
+     * Parse and verify an access token, using the cached Claims if this token
+     * has already been seen.  Claims are held no longer than the token's own
+     * expiration.
+     *
+     * @param token the access token (JWT)
+     * @return the Claims of the token
+     */
+    public static Claims getClaims(String token) {
+        String digest = DigestUtils.sha256Hex(token);
+        Claims claims = tokens.get(digest);
+
+        if (null==claims) {
+            claims = DOECodeCrypt.parseJWT(token);
+
+            long ttl = (null==claims.getExpiration()) ?
+                    TTL :
+                    Math.min(TTL, claims.getExpiration().getTime() - System.currentTimeMillis());
+            tokens.put(digest, claims, ttl);
+        }
+        return claims;
+    }
+
+    /**
+     * Look up the active, verified User for an API key.
+     *
+     * @param apiKey the API key
+     * @return the User
+     * @throws NoResultException if no active, verified User has that API key
+     */
+    public static User getUser(String apiKey) {
+        User user = users.get(apiKey);
+
+        if (null==user) {
+            long before;
+            synchronized (users) {
+                before = generation;
+            }
+            EntityManager em = DoeServletContextListener.createEntityManager();
+
+            try {
+                // only allow VERIFIED users
+                user = em.createQuery("SELECT u FROM User u WHERE u.apiKey = :apiKey AND u.verified = TRUE AND u.active = TRUE", User.class)
+                        .setParameter("apiKey", apiKey)
+                        .getSingleResult();
+            } finally {
+                em.close();
+            }
+            synchronized (users) {
+                if (before==generation)
+                    users.put(apiKey, user);
+            }
+        }
+        return user;
+    }
+
+    /**
+     * Discard any cached information for a User account.
+     *
+     * @param email the email address of the User
+     */
+    public static void invalidate(String email) {
+        synchronized (users) {
+            ++generation;
+            users.invalidateIf((apiKey, user) -> StringUtils.equalsIgnoreCase(email, user.getEmail()));
+        }
+    }
+
+    /**
+     * Discard everything cached.
+     */
+    public static void clear() {
+        synchronized (users) {
+            ++generation;
+            users.clear();
+        }
+        tokens.clear();
+    }
+
+    /**
+     * Report cache statistics.
+     *
+     * @return a Map of statistics for each cache
+     */
+    public static Map<String,Object> getStatistics() {
+        Map<String,Object> statistics = new LinkedHashMap<>();
+
+        statistics.put("users", users.getStatistics());
+        statistics.put("tokens", tokens.getStatistics());
+
+        return statistics;
+    }
+}
@@ -2,8 +2,6 @@ package gov.osti.security;
 
 import java.util.Date;
 
-import javax.persistence.EntityManager;
-import javax.persistence.TypedQuery;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.Cookie;
@@ -20,7 +18,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import gov.osti.entity.User;
-import gov.osti.listeners.DoeServletContextListener;
 import io.jsonwebtoken.Claims;
 
 public class BearerTokenAuthenticatingFilter extends AuthenticatingFilter {
@@ -48,7 +45,7 @@ public class BearerTokenAuthenticatingFilter extends AuthenticatingFilter {
 		String apiKey = null;
 		String xsrfToken = null;
 		if (cookieVal != null) {
-			Claims claims = DOECodeCrypt.parseJWT(cookieVal);
+			Claims claims = AuthenticationCache.getClaims(cookieVal);
 			xsrfToken = (String) claims.get("xsrfToken");
 			String xsrfHeader = req.getHeader("X-XSRF-TOKEN");
 			
@@ -66,19 +63,13 @@ public class BearerTokenAuthenticatingFilter extends AuthenticatingFilter {
 			apiKey = authorizationHeader.substring("Basic".length()).trim();
 		}
 		
-	    EntityManager em = DoeServletContextListener.createEntityManager();
 	    User currentUser = null;
-	    try {        
-                // only allow VERIFIED users
-	        TypedQuery<User> getUserByApiKey = em.createQuery("SELECT u FROM User u WHERE u.apiKey = :apiKey AND u.verified = TRUE AND u.active = TRUE", User.class);
-	        currentUser = getUserByApiKey
-                        .setParameter("apiKey", apiKey)
-                        .getSingleResult();
+	    try {
+                // only VERIFIED, active users; cached briefly
+	        currentUser = AuthenticationCache.getUser(apiKey);
 	    } catch ( Exception e ) {
                 log.warn("Authentication Error: " + e.getMessage());
 	        throw new AuthenticationException("Could not find user");
-	    } finally {
-	        em.close();  
 	    }
 	    
 	    
@@ -3,163 +3,181 @@
  */
 package gov.osti.services;
 
-import gov.osti.entity.DOECodeMetadata;
-import gov.osti.listeners.DoeServletContextListener;
-import gov.osti.search.SearchResponse;
-import gov.osti.search.SolrDocument;
-import gov.osti.search.SolrResult;
-import static gov.osti.services.SearchService.JSON_MAPPER;
+import gov.osti.sitemap.SitemapBuilder;
 import java.io.IOException;
-import java.net.URISyntaxException;
-import java.time.LocalDate;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
-import java.time.temporal.TemporalAdjusters;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.zip.GZIPInputStream;
 import javax.servlet.ServletContext;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
-import org.apache.http.HttpResponse;
-import org.apache.http.HttpStatus;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.utils.URIBuilder;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.util.EntityUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Serve the Google sitemap index and pages, as pre-generated by the
+ * SitemapBuilder.
+ *
+ * Files are stored gzip-compressed, and sent as-is to clients accepting gzip
+ * encoding.  Responses carry Last-Modified and ETag headers, and conditional
+ * requests are answered with 304 Not Modified when unchanged.
  *
  * @author smithwa
  */
 @Path("/sitemap/")
 public class GoogleSitemapService {
 
-     protected static final int MAX_RECORDS_PER_SITEMAP_PAGE = 20000;
-     protected static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd").withZone(ZoneId.systemDefault());
-     private static final String SEARCH_URL = DoeServletContextListener.getConfigurationProperty("search.url");
-     private static final String SITE_URL = DoeServletContextListener.getConfigurationProperty("site.url");
-
      @Context
      ServletContext context;
      @Context
      UriInfo uri;
+     @Context
+     Request request;
 
      // Logger
-     private static final Logger log = LoggerFactory.getLogger(SearchService.class);
+     private static final Logger log = LoggerFactory.getLogger(GoogleSitemapService.class);
 
      /**
       * Return the list of pages of records
       *
-      * @return
+      * Response Codes:
+      * 200 - OK, sitemap index returned
+      * 304 - Not Modified since the conditional request values
+      * 503 - sitemap is not available (not configured, or not yet built)
+      *
+      * @param encoding the Accept-Encoding request header
+      * @return the sitemap index XML
       */
      @GET
      @Produces(MediaType.TEXT_XML)
      @Path("xml")
-     public Response getSitemapList() {
-          //Get the number of pages based on teh number of records
-          long numOfRecords = getNumberOfRecordsInIndex();
-          double numOfPages = (float) numOfRecords / MAX_RECORDS_PER_SITEMAP_PAGE;
-
-          //Get the date we want to use
-          LocalDate firstOfMonth = LocalDate.now().with(TemporalAdjusters.firstDayOfMonth());
-          String moddedDate = firstOfMonth.format(DATE_FORMATTER);
-
-          //Write out the xml
-          StringBuilder xml_string = new StringBuilder();
-          xml_string.append("<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">");
-          for (int i = 0; i < numOfPages; i++) {
-               xml_string.append("<sitemap>");
-               xml_string.append("<loc>")
-                       .append(SITE_URL)
-                       .append("/api/sitemap/xml/")
-                       .append(i + 1)
-                       .append("</loc>");
-               xml_string.append("<lastmod>").append(moddedDate).append("</lastmod>");
-               xml_string.append("</sitemap>");
-          }
-          xml_string.append("</sitemapindex>");
+     public Response getSitemapList(@HeaderParam(HttpHeaders.ACCEPT_ENCODING) String encoding) {
+          SitemapBuilder builder = SitemapBuilder.getInstance();
+          java.nio.file.Path file = (null == builder) ? null : builder.getIndex();
 
-          return Response.ok(xml_string.toString(), MediaType.TEXT_XML).build();
+          if (null == file)
+               return ErrorResponse
+                       .status(Response.Status.SERVICE_UNAVAILABLE, "Sitemap is not available.")
+                       .build();
+
+          return serve(file, encoding);
      }
 
      /**
       * Get a single page of Site Map results.
       * 
+      * Response Codes:
+      * 200 - OK, sitemap page returned
+      * 304 - Not Modified since the conditional request values
+      * 404 - no such page
+      * 503 - sitemap is not available (not configured, or not yet built)
+      *
       * @param pageNum the page number to retrieve
+      * @param encoding the Accept-Encoding request header
       * @return XML response containing the page site map
       */
      @GET
      @Produces(MediaType.TEXT_XML)
      @Path("xml/{pageNum}")
-     public Response getSitemapPage(@PathParam("pageNum") Long pageNum) {
-          long startNum = (pageNum - 1) * MAX_RECORDS_PER_SITEMAP_PAGE;
-          StringBuilder xml_string = new StringBuilder();
+     public Response getSitemapPage(@PathParam("pageNum") Long pageNum, @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String encoding) {
+          SitemapBuilder builder = SitemapBuilder.getInstance();
 
-          try {
-               CloseableHttpClient hc = HttpClientBuilder.create().build();
-               URIBuilder builder = new URIBuilder(SEARCH_URL).addParameter("q", "*:*").addParameter("rows", Integer.toString(MAX_RECORDS_PER_SITEMAP_PAGE))
-                       .addParameter("omitHeader", "true").addParameter("fl", "json").addParameter("fl", "codeId").addParameter("sort", "codeId asc").addParameter("start", Long.toString(startNum));
-               HttpGet get = new HttpGet(builder.build());
-               HttpResponse response = hc.execute(get);
-
-               if (HttpStatus.SC_OK == response.getStatusLine().getStatusCode()) {
-                    //Create a result object
-                    SolrResult result = JSON_MAPPER.readValue(EntityUtils.toString(response.getEntity()), SolrResult.class);
-                    SearchResponse query = new SearchResponse();
-                    query.setStart(result.getSearchResponse().getStart());
-                    query.setNumFound(result.getSearchResponse().getNumFound());
-
-                    if (null != result.getSearchResponse().getDocuments()) {
-                         for (SolrDocument doc : result.getSearchResponse().getDocuments()) {
-                              query.add(JSON_MAPPER.readValue(doc.getJson(), DOECodeMetadata.class));
-                         }
-                    }
-                    xml_string.append("<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">");
-                    query.getDocs().forEach((record) -> {
-                         xml_string.append("<url>");
-                         xml_string.append("<loc>").append(SITE_URL).append("/biblio/").append(record.getCodeId()).append("</loc>");
-                         xml_string.append("<lastmod>")
-                                 .append(DATE_FORMATTER
-                                         .format( (null==record.getDateRecordUpdated()) ? LocalDate.now() : record.getDateRecordUpdated().toInstant()) )
-                                                 .append("</lastmod>");
-                         xml_string.append("<changefreq>monthly</changefreq>");
-                         xml_string.append("<priority>0.5</priority>");
-                         xml_string.append("</url>");
-                    });
-                    xml_string.append("</urlset>");
-               }
-          } catch (URISyntaxException ex) {
-               log.error("Error in getting solr count: " + ex.getMessage());
-          } catch (IOException ex) {
-               log.error("Error in getting solr count: " + ex.getMessage());
-          }
-          return Response.ok(xml_string.toString(), MediaType.TEXT_XML).build();
+          if (null == builder || null == builder.getIndex())
+               return ErrorResponse
+                       .status(Response.Status.SERVICE_UNAVAILABLE, "Sitemap is not available.")
+                       .build();
+
+          java.nio.file.Path file = builder.getPage(pageNum);
+
+          if (null == file)
+               return ErrorResponse
+                       .notFound("Sitemap page not found.")
+                       .build();
+
+          return serve(file, encoding);
      }
 
-     public long getNumberOfRecordsInIndex() {
-          long totalCount = 0;
+     /**
+      * Send a pre-generated, gzip-compressed sitemap file.  Clients accepting
+      * gzip receive the file unaltered, copied via file channel transfer;
+      * others receive it decompressed.
+      *
+      * @param file the sitemap file
+      * @param encoding the Accept-Encoding request header
+      * @return the Response
+      */
+     private Response serve(final java.nio.file.Path file, String encoding) {
           try {
-               CloseableHttpClient hc = HttpClientBuilder.create().build();
-               URIBuilder builder = new URIBuilder(SEARCH_URL).addParameter("q", "*:*").addParameter("rows", "0").addParameter("omitHeader", "true");
-               HttpGet get = new HttpGet(builder.build());
-               HttpResponse response = hc.execute(get);
-
-               if (HttpStatus.SC_OK == response.getStatusLine().getStatusCode()) {
-                    SolrResult result = JSON_MAPPER.readValue(EntityUtils.toString(response.getEntity()), SolrResult.class);
-                    totalCount = result.getSearchResponse().getNumFound();
-               }
-          } catch (URISyntaxException ex) {
-               log.error("Error in getting solr count: " + ex.getMessage());
+               // HTTP dates are in whole seconds
+               long modified = Files.getLastModifiedTime(file).toMillis() / 1000 * 1000;
+               long size = Files.size(file);
+               boolean gzip = StringUtils.containsIgnoreCase(encoding, "gzip");
+               Date lastModified = new Date(modified);
+               EntityTag tag = new EntityTag(Long.toHexString(modified) + "-" + Long.toHexString(size) + ((gzip) ? "-gzip" : ""));
+
+               Response.ResponseBuilder unchanged = request.evaluatePreconditions(lastModified, tag);
+               if (null != unchanged)
+                    return unchanged
+                            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                            .build();
+
+               // open now, so a concurrent refresh replacing the file does not matter
+               final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+               StreamingOutput output = (gzip) ?
+                       (OutputStream out) -> {
+                            try {
+                                 long position = 0;
+                                 while (position < size)
+                                      position += channel.transferTo(position, size - position, Channels.newChannel(out));
+                            } finally {
+                                 channel.close();
+                            }
+                       } :
+                       (OutputStream out) -> {
+                            InputStream in = new GZIPInputStream(Channels.newInputStream(channel));
+                            try {
+                                 byte[] buffer = new byte[8192];
+                                 int count;
+                                 while ((count = in.read(buffer)) != -1)
+                                      out.write(buffer, 0, count);
+                            } finally {
+                                 in.close();
+                            }
+                       };
+
+               Response.ResponseBuilder response = Response
+                       .ok(output, MediaType.TEXT_XML)
+                       .lastModified(lastModified)
+                       .tag(tag)
+                       .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+               if (gzip)
+                    response
+                            .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                            .header(HttpHeaders.CONTENT_LENGTH, size);
+
+               return response.build();
           } catch (IOException ex) {
-               log.error("Error in getting solr count: " + ex.getMessage());
+               log.error("Error in reading sitemap: " + ex.getMessage());
+               return ErrorResponse
+                       .internalServerError("Sitemap unavailable.")
+                       .build();
           }
-          return totalCount;
      }
 }
@@ -8,32 +8,37 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategy;
-import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.ser.FilterProvider;
 import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
 import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 
-import gov.osti.connectors.BitBucket;
+import gov.osti.cache.RecordCache;
+import gov.osti.cache.WorkflowCounts;
 import gov.osti.connectors.ConnectorFactory;
-import gov.osti.connectors.GitHub;
 import gov.osti.connectors.HttpUtil;
-import gov.osti.connectors.SourceForge;
-import gov.osti.doi.DataCite;
-import gov.osti.entity.Agent;
+import gov.osti.doi.DoiAllocator;
 import gov.osti.entity.ApprovedMetadata;
 import gov.osti.entity.DOECodeMetadata;
 import gov.osti.entity.DOECodeMetadata.Accessibility;
 import gov.osti.entity.DOECodeMetadata.Status;
 import gov.osti.entity.Developer;
 import gov.osti.entity.DoiReservation;
+import gov.osti.entity.MetadataSummary;
 import gov.osti.entity.OstiMetadata;
+import gov.osti.entity.OutboxMessage;
+import gov.osti.entity.OutboxMessage.Destination;
 import gov.osti.entity.ResearchOrganization;
 import gov.osti.entity.SponsoringOrganization;
 import gov.osti.entity.User;
-import gov.osti.indexer.AgentSerializer;
+import gov.osti.indexer.IndexQueue;
+import gov.osti.indexer.ReindexJob;
+import gov.osti.indexer.SolrIndexer;
 import gov.osti.listeners.DoeServletContextListener;
+import gov.osti.outbox.OutboxDispatcher;
+import gov.osti.outbox.OutboxSenders;
+import gov.osti.persistence.EntityCache;
 import gov.osti.services.UserServices;
 
 import java.io.File;
@@ -44,25 +49,29 @@ import java.lang.reflect.InvocationTargetException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.persistence.EntityManager;
-import javax.persistence.LockModeType;
-import javax.persistence.LockTimeoutException;
-import javax.persistence.PessimisticLockException;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.ParameterExpression;
+import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
 import javax.servlet.ServletContext;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.Produces;
+import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
 import javax.ws.rs.InternalServerErrorException;
 import javax.ws.rs.NotFoundException;
@@ -74,23 +83,12 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import org.apache.commons.beanutils.BeanUtilsBean;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.http.HttpResponse;
-import org.apache.http.HttpStatus;
-import org.apache.http.client.config.RequestConfig;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.ContentType;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.entity.mime.HttpMultipartMode;
-import org.apache.http.entity.mime.MultipartEntityBuilder;
-import org.apache.http.entity.mime.content.FileBody;
-import org.apache.http.entity.mime.content.StringBody;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.util.EntityUtils;
 import org.apache.shiro.SecurityUtils;
 import org.apache.shiro.authz.annotation.RequiresAuthentication;
 import org.apache.shiro.authz.annotation.RequiresRoles;
 import org.apache.shiro.subject.Subject;
+import org.eclipse.persistence.annotations.BatchFetchType;
+import org.eclipse.persistence.config.QueryHints;
 import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
 import org.glassfish.jersey.media.multipart.FormDataParam;
 import org.slf4j.Logger;
@@ -107,6 +105,9 @@ import org.glassfish.jersey.server.mvc.Viewable;
  * metadata/autopopulate?repo={url} - attempt an auto-populate Connector call for
  * indicated URL, optionally in YAML format
  *
+ * DELETE
+ * metadata/autopopulate?repo={url} - discard cached auto-populate result (administrators)
+ *
  * POST
  * metadata - send JSON for persisting to the storage layer
  * metadata/submit - send JSON for posting to both ELINK and persistence layer
@@ -123,19 +124,14 @@ public class Metadata {
     private static Logger log = LoggerFactory.getLogger(Metadata.class);
     private static ConnectorFactory factory;
 
-    // URL to indexer services, if configured
-    private static String INDEX_URL = DoeServletContextListener.getConfigurationProperty("index.url");
     // absolute filesystem location to store uploaded files, if any
     private static String FILE_UPLOADS = DoeServletContextListener.getConfigurationProperty("file.uploads");
-    // API path to archiver services if available
-    private static String ARCHIVER_URL = DoeServletContextListener.getConfigurationProperty("archiver.url");
-    // create and start a ConnectorFactory for use by "autopopulate" service
+    // create and start a ConnectorFactory for use by "autopopulate" service,
+    // with the Connectors found via ServiceLoader
     static {
         try {
         factory = ConnectorFactory.getInstance()
-                .add(new GitHub())
-                .add(new SourceForge())
-                .add(new BitBucket())
+                .load()
                 .build();
         } catch ( IOException e ) {
             log.warn("Configuration failure: " + e.getMessage());
@@ -184,15 +180,24 @@ public class Metadata {
     private static final ObjectMapper mapper = new ObjectMapper()
             .setPropertyNamingStrategy(PropertyNamingStrategy.SNAKE_CASE)
             .setSerializationInclusion(JsonInclude.Include.NON_NULL);
-    // ObjectMapper specifically for indexing purposes
-    protected static final ObjectMapper index_mapper = new ObjectMapper()
-            .setSerializationInclusion(JsonInclude.Include.NON_NULL);
-    static {
-        // customized serializer module for Agent names consolidation
-        SimpleModule module = new SimpleModule();
-        module.addSerializer(Agent.class, new AgentSerializer());
-        index_mapper.registerModule(module);
-    }
+
+    // project list VIEW values
+    private static final String VIEW_SUMMARY = "summary";
+    private static final String VIEW_FULL = "full";
+    // child tables of full records to read for a page of them at once
+    private static final String[] BATCH_ATTRIBUTES = {
+        "md.developers",
+        "md.developers.affiliations",
+        "md.contributors",
+        "md.contributors.affiliations",
+        "md.sponsoringOrganizations",
+        "md.sponsoringOrganizations.fundingIdentifiers",
+        "md.contributingOrganizations",
+        "md.researchOrganizations",
+        "md.relatedIdentifiers",
+        "md.licenses",
+        "md.accessLimitations"
+    };
 
     /**
      * Link to API Documentation template.
@@ -211,31 +216,11 @@ public class Metadata {
      * @return a DoiReservation if successful, or null if not
      */
     private static DoiReservation getReservedDoi() {
-        EntityManager em = DoeServletContextListener.createEntityManager();
-        // set a LOCK TIMEOUT to prevent collision
-        em.setProperty("javax.persistence.lock.timeout", 5000);
-
         try {
-            em.getTransaction().begin();
-
-            DoiReservation reservation = em.find(DoiReservation.class, DoiReservation.TYPE, LockModeType.PESSIMISTIC_WRITE);
-
-            if (null==reservation)
-                reservation = new DoiReservation();
-
-            reservation.reserve();
-
-            em.merge(reservation);
-
-            em.getTransaction().commit();
-
-            // send it back
-            return reservation;
-        } catch ( PessimisticLockException | LockTimeoutException e ) {
-            log.warn("DOI Reservation, unable to obtain lock.", e);
+            return DoiAllocator.getInstance().reserve();
+        } catch ( IOException e ) {
+            log.warn("DOI Reservation failed: " + e.getMessage());
             return null;
-        } finally {
-            em.close();
         }
     }
 
@@ -350,31 +335,33 @@ public class Metadata {
      */
     private class RecordsList {
         // the records
-    	private List<DOECodeMetadata> records;
+    	private List<?> records;
         // a total count of a matched query
         private long total;
         // the starting index (0-based)
         private int start;
+        // continuation token for the next page, if any
+        private String nextCursor;
 
-    	RecordsList(List<DOECodeMetadata> records) {
+    	RecordsList(List<?> records) {
     		this.records = records;
     	}
 
         /**
          * Acquire the list of records (a single page of results).
          *
-         * @return a List of DOECodeMetadata Objects
+         * @return a List of DOECodeMetadata or MetadataSummary Objects
          */
-        public List<DOECodeMetadata> getRecords() {
+        public List<?> getRecords() {
                 return records;
         }
 
         /**
          * Set the current page of results.
          *
-         * @param records a List of DOECodeMetadata Objects for this page
+         * @param records a List of DOECodeMetadata or MetadataSummary Objects for this page
          */
-        public void setRecords(List<DOECodeMetadata> records) {
+        public void setRecords(List<?> records) {
                 this.records = records;
         }
 
@@ -406,6 +393,20 @@ public class Metadata {
          */
         public int getStart() { return this.start; }
 
+        /**
+         * Set the continuation token for the following page.
+         *
+         * @param cursor the token to pass to continue after this page
+         */
+        public void setNextCursor(String cursor) { nextCursor = cursor; }
+
+        /**
+         * Get the continuation token for the following page, if any.
+         *
+         * @return the token, or null if this is the last page
+         */
+        public String getNextCursor() { return nextCursor; }
+
         /**
          * Get the number of rows on the current "page" of results.
          *
@@ -417,10 +418,103 @@ public class Metadata {
     }
 
     /**
-     * Acquire a listing of all records by OWNER.
+     * Determine whether a list VIEW value requests summaries.
+     *
+     * @param view the VIEW requested: "summary", "full", or null for the
+     * default (full)
+     * @return true for summaries, false for full records, or null if the
+     * value is not recognized
+     */
+    static Boolean isSummaryView(String view) {
+        if (null==view || VIEW_FULL.equalsIgnoreCase(view))
+            return false;
+        if (VIEW_SUMMARY.equalsIgnoreCase(view))
+            return true;
+        return null;
+    }
+
+    /**
+     * Read the child tables of every record on a page of full records
+     * together, one statement per table, rather than one record at a time as
+     * each is serialized.
+     *
+     * @param <T> the query result type
+     * @param query a query of DOECodeMetadata records
+     * @return the same query
+     */
+    static <T> TypedQuery<T> batchFetch(TypedQuery<T> query) {
+        query.setHint(QueryHints.BATCH_TYPE, BatchFetchType.IN);
+        for ( String attribute : BATCH_ATTRIBUTES )
+            query.setHint(QueryHints.BATCH, attribute);
+        return query;
+    }
+
+    /**
+     * Construct a continuation token for the page following a record.
+     *
+     * @param listing identifies the listing and its filters
+     * @param codeId the CODE ID of the last record on the page
+     * @return an opaque token
+     */
+    private static String encodeCursor(String listing, long codeId) {
+        ObjectNode cursor = mapper.createObjectNode()
+                .put("listing", Integer.toHexString(listing.hashCode()))
+                .put("after", codeId);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a continuation token.
+     *
+     * @param cursor the token
+     * @param listing identifies the listing and its filters
+     * @return the CODE ID to continue after
+     * @throws IllegalArgumentException if the token is not valid for this listing
+     */
+    private static long decodeCursor(String cursor, String listing) {
+        try {
+            JsonNode node = mapper.readTree(Base64.getUrlDecoder().decode(cursor));
+
+            if (!Integer.toHexString(listing.hashCode()).equals(node.path("listing").asText()) ||
+                !node.path("after").canConvertToLong())
+                throw new IllegalArgumentException("Invalid cursor for this listing.");
+
+            return node.get("after").asLong();
+        } catch ( IOException e ) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    /**
+     * Set the continuation token of a page of records, if there may be more.
+     *
+     * @param records the RecordsList page
+     * @param rows the number of rows requested (0 for all)
+     * @param listing identifies the listing and its filters
+     */
+    private static void setNextCursor(RecordsList records, int rows, String listing) {
+        if (0==rows || records.size()<rows)
+            return;
+
+        Object last = records.getRecords().get(records.size()-1);
+        records.setNextCursor(encodeCursor(listing, (last instanceof MetadataSummary) ?
+                ((MetadataSummary) last).getCodeId() :
+                ((DOECodeMetadata) last).getCodeId()));
+    }
+
+    /**
+     * Acquire a listing of all records by OWNER, in CODE ID order.
+     *
+     * Pages may be requested by "start" offset, or by passing the
+     * "next_cursor" of the previous page as "cursor" to continue from that
+     * record without counting past the earlier ones.
      *
      * @param rows the number of rows desired (if present)
      * @param start the starting row number (from 0)
+     * @param cursor (optional) continuation token from the previous page; if
+     * present, start is ignored
+     * @param view (optional) "summary" for the main record attributes only,
+     * or "full" (default) for complete records
      * @return the Metadata information in the desired format
      * @throws JsonProcessingException
      */
@@ -429,8 +523,17 @@ public class Metadata {
     @Produces (MediaType.APPLICATION_JSON)
     public Response listProjects(
             @QueryParam("rows") int rows, 
-            @QueryParam("start") int start) 
+            @QueryParam("start") int start,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("view") String view) 
             throws JsonProcessingException {
+        Boolean summary = isSummaryView(view);
+
+        if (null==summary)
+            return ErrorResponse
+                    .badRequest("Unknown view: " + view)
+                    .build();
+
         EntityManager em = DoeServletContextListener.createEntityManager();
         
         // get the security user in context
@@ -441,19 +544,45 @@ public class Metadata {
             String rolecode = (null==roles) ? "" :
                (roles.isEmpty()) ? "" : roles.iterator().next();
 
-            TypedQuery<DOECodeMetadata> query;
+            List<String> conditions = new ArrayList<>();
+            String restriction = null;
+            Long total = null;
             // admins see ALL PROJECTS
             if ("OSTI".equals(rolecode)) {
-                query = em.createQuery("SELECT md FROM DOECodeMetadata md", DOECodeMetadata.class);
+                total = WorkflowCounts.getCount(null);
             } else if (StringUtils.isNotEmpty(rolecode)) {
                 // if you have another ROLE, it is assumed to be a SITE ADMIN; see all those records
-                query = em.createQuery("SELECT md FROM DOECodeMetadata md WHERE md.siteOwnershipCode = :site", DOECodeMetadata.class)
-                        .setParameter("site", rolecode);
+                conditions.add("md.siteOwnershipCode = :restriction");
+                restriction = rolecode;
+                total = WorkflowCounts.getCount(null, rolecode);
             } else {
                 // no roles, you see only YOUR OWN projects
-                query = em.createQuery("SELECT md FROM DOECodeMetadata md WHERE md.owner = :owner", DOECodeMetadata.class)
-                        .setParameter("owner", user.getEmail());
+                conditions.add("md.owner = :restriction");
+                restriction = user.getEmail();
             }
+
+            String listing = "projects:" + rolecode + ":" + restriction;
+            Long after = null;
+            try {
+                if (null!=cursor)
+                    after = decodeCursor(cursor, listing);
+            } catch ( IllegalArgumentException e ) {
+                return ErrorResponse
+                        .badRequest(e.getMessage())
+                        .build();
+            }
+            // continue after the last record seen
+            if (null!=after)
+                conditions.add("md.codeId > :after");
+
+            String where = (conditions.isEmpty()) ? "" : " WHERE " + String.join(" AND ", conditions);
+            TypedQuery<?> query = (summary) ?
+                    em.createQuery("SELECT " + MetadataSummary.SELECT_FIELDS + " FROM DOECodeMetadata md" + where + " ORDER BY md.codeId", MetadataSummary.class) :
+                    batchFetch(em.createQuery("SELECT md FROM DOECodeMetadata md" + where + " ORDER BY md.codeId", DOECodeMetadata.class));
+            if (null!=restriction)
+                query.setParameter("restriction", restriction);
+            if (null!=after)
+                query.setParameter("after", after);
             
             // if rows specified, and greater than 100, cap it there
             rows = (rows>100) ? 100 : rows;
@@ -461,11 +590,17 @@ public class Metadata {
             // if pagination elements are present, set them on the query
             if (0!=rows)
                 query.setMaxResults(rows);
-            if (0!=start)
+            if (0!=start && null==after)
                 query.setFirstResult(start);
 
             // get a List of records
             RecordsList records = new RecordsList(query.getResultList());
+            if (null!=total)
+                records.setTotal(total);
+            if (null==after)
+                records.setStart(start);
+            setNextCursor(records, rows, listing);
+
                 return Response
                     .status(Response.Status.OK)
                     .entity(mapper.valueToTree(records).toString())
@@ -482,14 +617,18 @@ public class Metadata {
      * JSON response is of the form:
      *
      * {"records":[{"code_id":n, ...} ],
-     *  "start":0, "rows":20, "total":100}
+     *  "start":0, "rows":20, "total":100, "next_cursor":"..."}
      *
-     * Where records is an array of DOECodeMetadata JSON, start is the beginning
-     * row number, rows is the number requested (or total if less available),
-     * and total is the total number of rows matching the filter.
+     * Where records is an array of DOECodeMetadata JSON (or summaries of them,
+     * if requested) in CODE ID order, start is the beginning row number, rows
+     * is the number requested (or total if less available), total is the
+     * total number of rows matching the filter, and next_cursor (if there may
+     * be more rows) continues the listing after this page when passed as
+     * "cursor".
      *
      * Return Codes:
      * 200 - OK, JSON is returned as above
+     * 400 - Bad request, unknown view or invalid cursor
      * 401 - Unauthorized, login is required
      * 403 - Forbidden, insufficient privileges (role required)
      * 500 - unexpected error
@@ -499,6 +638,10 @@ public class Metadata {
      * @param siteCode (optional) a SITE OWNERSHIP CODE to filter by site
      * @param state the WORKFLOW STATE if desired (default Submitted). One of
      * Approved, Saved, or Submitted, if supplied.
+     * @param cursor (optional) continuation token from the previous page; if
+     * present, start is ignored
+     * @param view (optional) "summary" for the main record attributes only,
+     * or "full" (default) for complete records
      * @return JSON of a records response
      */
     @GET
@@ -508,7 +651,9 @@ public class Metadata {
     public Response listProjectsPending(@QueryParam("start") int start,
                                         @QueryParam("rows") int rows,
                                         @QueryParam("site") String siteCode,
-                                        @QueryParam("state") String state) {
+                                        @QueryParam("state") String state,
+                                        @QueryParam("cursor") String cursor,
+                                        @QueryParam("view") String view) {
     	
     	//Require that the user be OSTI to access
     	if(!UserServices.getCurrentUser().hasRole("OSTI")) {
@@ -516,22 +661,17 @@ public class Metadata {
                     .forbidden("Permission denied.")
                     .build();
     	}
+
+        Boolean summary = isSummaryView(view);
+
+        if (null==summary)
+            return ErrorResponse
+                    .badRequest("Unknown view: " + view)
+                    .build();
     	
     	EntityManager em = DoeServletContextListener.createEntityManager();
 
         try {
-            // get a JPA CriteriaBuilder instance
-            CriteriaBuilder cb = em.getCriteriaBuilder();
-            // create a CriteriaQuery for the COUNT
-            CriteriaQuery<Long> countQuery = cb.createQuery(Long.class);
-            Root<DOECodeMetadata> md = countQuery.from(DOECodeMetadata.class);
-            countQuery.select(cb.count(md));
-
-            Expression<String> workflowStatus = md.get("workflowStatus");
-            Expression<String> siteOwnershipCode = md.get("siteOwnershipCode");
-            ParameterExpression<String> status = cb.parameter(String.class, "status");
-            ParameterExpression<String> site = cb.parameter(String.class, "site");
-
             // default requested STATE; take Submitted as the default value if not supplied
             DOECodeMetadata.Status requestedState;
             String queryState = (StringUtils.isEmpty(state)) ? "" : state.toLowerCase();
@@ -546,46 +686,74 @@ public class Metadata {
                     requestedState = DOECodeMetadata.Status.Submitted;
                     break;
             }
-            
-            if (null==siteCode) {
-                countQuery.where(cb.equal(workflowStatus, status));
-            } else {
-                countQuery.where(cb.and(
-                        cb.equal(workflowStatus, status),
-                        cb.equal(siteOwnershipCode, site)));
+
+            String listing = "pending:" + requestedState + ":" + siteCode;
+            Long after = null;
+            try {
+                if (null!=cursor)
+                    after = decodeCursor(cursor, listing);
+            } catch ( IllegalArgumentException e ) {
+                return ErrorResponse
+                        .badRequest(e.getMessage())
+                        .build();
             }
-            // query for the COUNT
-            TypedQuery<Long> cq = em.createQuery(countQuery);
-            cq.setParameter("status", requestedState);
-            if (null!=siteCode)
-                cq.setParameter("site", siteCode);
 
-            long rowCount = cq.getSingleResult();
+            // the total is kept by workflow state and site, rather than counted
+            long rowCount = (null==siteCode) ?
+                    WorkflowCounts.getCount(requestedState) :
+                    WorkflowCounts.getCount(requestedState, siteCode);
             // rows count should be less than 100 for pagination; 0 is a special case
             rows = (rows>100) ? 100 : rows;
 
-            // create a CriteriaQuery for the ROWS
-            CriteriaQuery<DOECodeMetadata> rowQuery = cb.createQuery(DOECodeMetadata.class);
-            rowQuery.select(md);
-
-            if (null==siteCode) {
-                rowQuery.where(cb.equal(workflowStatus, status));
+            // get a JPA CriteriaBuilder instance
+            CriteriaBuilder cb = em.getCriteriaBuilder();
+            // create a CriteriaQuery for the ROWS, or summaries of them
+            CriteriaQuery<Object> rowQuery = cb.createQuery();
+            Root<DOECodeMetadata> md = rowQuery.from(DOECodeMetadata.class);
+
+            if (summary) {
+                List<Selection<?>> attributes = new ArrayList<>();
+                for ( String attribute : MetadataSummary.ATTRIBUTES )
+                    attributes.add(md.get(attribute));
+                rowQuery.select(cb.construct(MetadataSummary.class, attributes.toArray(new Selection<?>[0])));
             } else {
-                rowQuery.where(cb.and(
-                        cb.equal(workflowStatus, status),
-                        cb.equal(siteOwnershipCode, site)));
+                rowQuery.select(md);
             }
 
-            TypedQuery<DOECodeMetadata> rq = em.createQuery(rowQuery);
+            Expression<String> workflowStatus = md.get("workflowStatus");
+            Expression<String> siteOwnershipCode = md.get("siteOwnershipCode");
+            Expression<Long> codeId = md.get("codeId");
+            ParameterExpression<String> status = cb.parameter(String.class, "status");
+            ParameterExpression<String> site = cb.parameter(String.class, "site");
+            ParameterExpression<Long> last = cb.parameter(Long.class, "after");
+
+            // seek on (workflow status, site, CODE ID) rather than counting past earlier rows
+            List<Predicate> conditions = new ArrayList<>();
+            conditions.add(cb.equal(workflowStatus, status));
+            if (null!=siteCode)
+                conditions.add(cb.equal(siteOwnershipCode, site));
+            if (null!=after)
+                conditions.add(cb.greaterThan(codeId, last));
+            rowQuery.where(conditions.toArray(new Predicate[0]));
+            rowQuery.orderBy(cb.asc(codeId));
+
+            TypedQuery<Object> rq = em.createQuery(rowQuery);
+            if (!summary)
+                batchFetch(rq);
             rq.setParameter("status", requestedState);
             if (null!=siteCode)
                 rq.setParameter("site", siteCode);
-            rq.setFirstResult(start);
+            if (null!=after)
+                rq.setParameter("after", after);
+            else
+                rq.setFirstResult(start);
             if (0!=rows) rq.setMaxResults(rows);
 
             RecordsList records = new RecordsList(rq.getResultList());
             records.setTotal(rowCount);
-            records.setStart(start);
+            if (null==after)
+                records.setStart(start);
+            setNextCursor(records, rows, listing);
 
             return Response
                     .ok()
@@ -638,6 +806,37 @@ public class Metadata {
         }
     }
 
+    /**
+     * Discard any cached auto-populate result for a repository URL, so the
+     * next auto-populate call reads the repository again.
+     *
+     * Response Codes:
+     * 200 - OK, any cached result discarded
+     * 400 - Bad Request, no repository URL given
+     * 401 - Unauthorized, user is not logged in
+     * 403 - Forbidden, user does not have permission to access this function
+     *
+     * @param url the REPOSITORY URL
+     * @return a Response
+     */
+    @DELETE
+    @Path ("/autopopulate")
+    @Produces (MediaType.APPLICATION_JSON)
+    @RequiresRoles ("OSTI")
+    public Response purgeAutopopulate(@QueryParam("repo") String url) {
+        if (StringUtils.isBlank(url))
+            return ErrorResponse
+                    .badRequest("Must specify a repository URL.")
+                    .build();
+
+        factory.invalidate(url);
+
+        return Response
+                .ok()
+                .entity(mapper.createObjectNode().put("value", "OK").toString())
+                .build();
+    }
+
     /**
      * Persist the DOECodeMetadata Object to the persistence layer.  Assumes an
      * open Transaction is already in progress, and it's up to the caller to
@@ -652,12 +851,13 @@ public class Metadata {
      * @param md the Object to store
      * @param user the User performing this action (must be the OWNER of the
      * record in order to UPDATE)
+     * @return the workflow state Change, to count once committed
      * @throws NotFoundException when record to update is not on file
      * @throws IllegalAccessException when attempting to update record not
      * owned by User
      * @throws InvocationTargetException on reflection errors
      */
-    private void store(EntityManager em, DOECodeMetadata md, User user) throws NotFoundException,
+    private WorkflowCounts.Change store(EntityManager em, DOECodeMetadata md, User user) throws NotFoundException,
             IllegalAccessException, InvocationTargetException {
         // fix the open source value before storing
         md.setOpenSource( !Accessibility.CS.equals(md.getAccessibility()) );
@@ -666,6 +866,8 @@ public class Metadata {
         // copy attributes into it
         if ( null==md.getCodeId() || 0==md.getCodeId()) {
             em.persist(md);
+
+            return WorkflowCounts.change(null, md.getWorkflowStatus(), md.getSiteOwnershipCode());
         } else {
             DOECodeMetadata emd = em.find(DOECodeMetadata.class, md.getCodeId());
 
@@ -676,6 +878,8 @@ public class Metadata {
                      !user.hasRole("OSTI"))
                     throw new IllegalAccessException("Invalid access attempt.");
 
+                Status previousStatus = emd.getWorkflowStatus();
+
                 // if already Submitted, but not being Approved, keep it that way (can't go back to Saved)
                 if ((Status.Submitted.equals(emd.getWorkflowStatus()) || Status.Approved.equals(emd.getWorkflowStatus())) 
                  && !Status.Approved.equals(md.getWorkflowStatus()))
@@ -704,6 +908,7 @@ public class Metadata {
 
                 // EntityManager should handle this attached Object
                 // NOTE: the returned Object is NOT ATTACHED to the EntityManager
+                return WorkflowCounts.change(previousStatus, emd.getWorkflowStatus(), emd.getSiteOwnershipCode());
             } else {
                 // can't find record to update, that's an error
                 log.warn("Unable to locate record for " + md.getCodeId() + " to update.");
@@ -739,126 +944,43 @@ public class Metadata {
     }
 
     /**
-     * Send this Metadata to the ARCHIVER external support process.
-     *
-     * Needs a CODE ID and one of either an ARCHIVE FILE or REPOSITORY LINK.
-     * 
-     * If nothing supplied to archive, do nothing.
+     * Write the external side effects of a workflow change to the outbox, in
+     * the current transaction, to be delivered once it commits (see
+     * OutboxDispatcher).
      *
-     * @param codeId the CODE ID for this METADATA
-     * @param repositoryLink (optional) the REPOSITORY LINK value, or null if none
+     * @param em the EntityManager of the transaction
+     * @param md the METADATA
      * @param archiveFile (optional) the File recently uploaded to ARCHIVE, or null if none
-     * @throws IOException on IO transmission errors
+     * @param publication (optional) the OSTI software publication JSON to post,
+     * or null if none
      */
-    private static void sendToArchiver(Long codeId, String repositoryLink, File archiveFile) throws IOException {
-        if ( "".equals(ARCHIVER_URL) )
-            return;
-
-        // Nothing sent?
-        if (StringUtils.isBlank(repositoryLink) && null==archiveFile)
-            return;
-        
-        // set up a connection
-        CloseableHttpClient hc =
-                HttpClientBuilder
-                .create()
-                .setDefaultRequestConfig(RequestConfig
-                        .custom()
-                        .setSocketTimeout(5000)
-                        .setConnectTimeout(5000)
-                        .setConnectionRequestTimeout(5000)
-                        .build())
-                .build();
-
-        try {
-            HttpPost post = new HttpPost(ARCHIVER_URL);
-            // attributes to send
-            ObjectNode request = mapper.createObjectNode();
-            request.put("code_id", codeId);
-            request.put("repository_link", repositoryLink);
-
-            // determine if there's a file to send or not
-            if (null==archiveFile) {
-                post.setHeader("Content-Type", "application/json");
-                post.setHeader("Accept", "application/json");
-
-                post.setEntity(new StringEntity(request.toString(), "UTF-8"));
-            } else {
-                post.setEntity(MultipartEntityBuilder
-                        .create()
-                        .setMode(HttpMultipartMode.BROWSER_COMPATIBLE)
-                        .addPart("file", new FileBody(archiveFile, ContentType.DEFAULT_BINARY))
-                        .addPart("project", new StringBody(request.toString(), ContentType.APPLICATION_JSON))
-                        .build());
-            }
-            HttpResponse response = hc.execute(post);
-
-            int statusCode = response.getStatusLine().getStatusCode();
-
-            if (HttpStatus.SC_OK!=statusCode && HttpStatus.SC_CREATED!=statusCode) {
-                throw new IOException ("Archiver Error: " + EntityUtils.toString(response.getEntity()));
-            }
-        } catch ( IOException e ) {
-            log.warn("Archiver request error: " + e.getMessage());
-            throw e;
-        } finally {
-            try {
-                if (null!=hc) hc.close();
-            } catch ( IOException e ) {
-                log.warn("Close Error: " + e.getMessage());
-            }
-        }
+    private static void writeOutbox(EntityManager em, DOECodeMetadata md, File archiveFile, String publication) {
+        if (null!=publication)
+            em.persist(new OutboxMessage(Destination.Osti, md.getCodeId(), publication));
+
+        // send to archiver if configured, and there is something to archive
+        String archive = (OutboxSenders.isArchiverConfigured()) ?
+                OutboxSenders.archiverPayload(md.getCodeId(), md.getRepositoryLink(), archiveFile) : null;
+        if (null!=archive)
+            em.persist(new OutboxMessage(Destination.Archiver, md.getCodeId(), archive));
+
+        // send to DataCite if needed (and there is a RELEASE DATE set)
+        if (StringUtils.isNotEmpty(md.getDoi()) && null!=md.getReleaseDate())
+            em.persist(new OutboxMessage(Destination.DataCite, md.getCodeId(), md.toJson().toString()));
     }
 
     /**
-     * Attempt to send this Metadata information to the indexing service configured.
-     * If no service is configured, do nothing.
+     * Queue this Metadata information to be sent to the indexing service
+     * configured.  If no service is configured, do nothing.
      *
      * @param md the Metadata to send
      */
     private static void sendToIndex(DOECodeMetadata md) {
         // if indexing is not configured, skip this step
-        if ("".equals(INDEX_URL))
+        if (!SolrIndexer.isConfigured())
             return;
 
-        // set some reasonable default timeouts
-        RequestConfig rc = RequestConfig
-                .custom()
-                .setSocketTimeout(5000)
-                .setConnectTimeout(5000)
-                .setConnectionRequestTimeout(5000)
-                .build();
-        // create an HTTP client to request through
-        CloseableHttpClient hc =
-                HttpClientBuilder
-                .create()
-                .setDefaultRequestConfig(rc)
-                .build();
-        try {
-            // construct a POST submission to the indexer service
-            HttpPost post = new HttpPost(INDEX_URL);
-            post.setHeader("Content-Type", "application/json");
-            post.setHeader("Accept", "application/json");
-            // add JSON String to index for later display/search
-            ObjectNode node = (ObjectNode)index_mapper.valueToTree(md);
-            node.put("json", md.toJson().toString());
-            post.setEntity(new StringEntity(node.toString(), "UTF-8"));
-
-            HttpResponse response = hc.execute(post);
-
-            if ( HttpStatus.SC_OK!=response.getStatusLine().getStatusCode() ) {
-                log.warn("Indexing Error occurred for ID=" + md.getCodeId());
-                log.warn("Message: " + EntityUtils.toString(response.getEntity()));
-            }
-        } catch ( IOException e ) {
-            log.warn("Indexing Error: " + e.getMessage() + " ID=" + md.getCodeId());
-        } finally {
-            try {
-                if (null!=hc) hc.close();
-            } catch ( IOException e ) {
-                log.warn("Index Close Error: " + e.getMessage());
-            }
-        }
+        IndexQueue.getInstance().enqueue(md);
     }
 
     /**
@@ -883,7 +1005,7 @@ public class Metadata {
             md.setOwner(user.getEmail()); // this User should OWN it
             md.setSiteOwnershipCode(user.getSiteId());
 
-            store(em, md, user);
+            WorkflowCounts.Change change = store(em, md, user);
 
             // if there's a FILE associated here, store it
             if ( null!=file && null!=fileInfo ) {
@@ -903,6 +1025,8 @@ public class Metadata {
 
             // we're done here
             em.getTransaction().commit();
+            change.apply();
+            EntityCache.evict(em, DOECodeMetadata.class, md.getCodeId());
 
             return Response
                     .status(200)
@@ -955,7 +1079,7 @@ public class Metadata {
             md.setSiteOwnershipCode(user.getSiteId());
 
             // store it
-            store(em, md, user);
+            WorkflowCounts.Change change = store(em, md, user);
             // check validations for Submitted workflow
             List<String> errors = validateSubmit(md);
             if ( !errors.isEmpty() ) {
@@ -980,30 +1104,15 @@ public class Metadata {
                             .build();
                 }
             }
-            // send this file upload along to archiver if configured
-            try {
-                // if a FILE was sent, create a File Object from it
-                File archiveFile = (null==file) ? null : new File(md.getFileName());
-                sendToArchiver(md.getCodeId(), md.getRepositoryLink(), archiveFile);
-            } catch ( IOException e ) {
-                log.error("Archiver call failure: " + e.getMessage());
-                return ErrorResponse
-                        .internalServerError("Unable to archive project.")
-                        .build();
-            }
-            // send to DataCite if needed (and there is a RELEASE DATE set)
-            if ( null!=md.getDoi() && null!=md.getReleaseDate() ) {
-                try {
-                    DataCite.register(md);
-                } catch ( IOException e ) {
-                    // tell why the DataCite registration failed
-                    return ErrorResponse
-                            .internalServerError(e.getMessage())
-                            .build();
-                }
-            }
+            // archive (with any FILE sent) and register the DOI once committed
+            File archiveFile = (null==file) ? null : new File(md.getFileName());
+            writeOutbox(em, md, archiveFile, null);
+
             // commit it
             em.getTransaction().commit();
+            change.apply();
+            EntityCache.evict(em, DOECodeMetadata.class, md.getCodeId());
+            OutboxDispatcher.wake();
 
             // we are done here
             return Response
@@ -1067,7 +1176,7 @@ public class Metadata {
             }
             
             // persist this to the database
-            store(em, md, user);
+            WorkflowCounts.Change change = store(em, md, user);
             
             // if there's a FILE associated here, store it
             if ( null!=file && null!=fileInfo ) {
@@ -1096,61 +1205,16 @@ public class Metadata {
             OstiMetadata omd = new OstiMetadata();
             omd.set(md);
 
-            // if configured, post this to OSTI
+            // if configured, post this to OSTI, archive, and register the DOI once committed
             String publishing_host = context.getInitParameter("publishing.host");
-            if (null!=publishing_host) {
-                // set some reasonable default timeouts
-                // create an HTTP client to request through
-                CloseableHttpClient hc =
-                        HttpClientBuilder
-                        .create()
-                        .setDefaultRequestConfig(RequestConfig
-                                .custom()
-                                .setSocketTimeout(5000)
-                                .setConnectTimeout(5000)
-                                .setConnectionRequestTimeout(5000)
-                                .build())
-                        .build();
-                HttpPost post = new HttpPost(publishing_host + "/services/softwarecenter?action=api");
-                post.setHeader("Content-Type", "application/json");
-                post.setHeader("Accept", "application/json");
-                post.setEntity(new StringEntity(omd.toJsonString(), "UTF-8"));
+            File archiveFile = (null==file) ? null : new File(md.getFileName());
+            writeOutbox(em, md, archiveFile, (null==publishing_host) ? null : omd.toJsonString());
 
-                try {
-                    HttpResponse response = hc.execute(post);
-                    String text = EntityUtils.toString(response.getEntity());
-
-                    if ( HttpStatus.SC_OK!=response.getStatusLine().getStatusCode()) {
-                        log.warn("OSTI Error: " + text);
-                        throw new IOException ("OSTI software publication error");
-                    }
-                } finally {
-                    hc.close();
-                }
-            }
-            // send this file upload along to archiver if configured
-            try {
-                File archiveFile = (null==file) ? null : new File(md.getFileName());
-                sendToArchiver(md.getCodeId(), md.getRepositoryLink(), archiveFile);
-            } catch ( IOException e ) {
-                log.error("Archiver call failure: " + e.getMessage());
-                return ErrorResponse
-                        .internalServerError("Unable to archive project.")
-                        .build();
-            }
-            // send any updates to DataCite as well (if RELEASE DATE is set)
-            if (StringUtils.isNotEmpty(md.getDoi()) && null!=md.getReleaseDate()) {
-                try {
-                    DataCite.register(md);
-                } catch ( IOException e ) {
-                    // if DataCite registration failed, say why
-                    return ErrorResponse
-                            .internalServerError(e.getMessage())
-                            .build();
-                }
-            }
             // if we make it this far, go ahead and commit the transaction
             em.getTransaction().commit();
+            change.apply();
+            EntityCache.evict(em, DOECodeMetadata.class, md.getCodeId());
+            OutboxDispatcher.wake();
 
             // and we're happy
             return Response
@@ -1304,32 +1368,146 @@ public class Metadata {
         return doSave(metadata, file, fileInfo);
     }
 
+    /**
+     * Start a bulk reindex of all Approved Metadata in the background.
+     *
+     * Response Codes:
+     * 202 - Accepted, reindex job started; JSON job status returned
+     * 401 - Unauthorized, user is not logged in
+     * 403 - Forbidden, user does not have permission to access this function
+     * 409 - Conflict, a reindex job is already running
+     *
+     * @param resume if true, resume from the last checkpoint of a previous job
+     * rather than starting over
+     * @return a Response containing the JSON job status
+     */
     @GET
     @Produces (MediaType.APPLICATION_JSON)
     @Path ("/reindex")
     @RequiresRoles ("OSTI")
-    public Response reindex() throws IOException {
-        EntityManager em = DoeServletContextListener.createEntityManager();
+    public Response reindex(@QueryParam("resume") boolean resume) {
+        if (!ReindexJob.start(resume))
+            return ErrorResponse
+                    .status(Response.Status.CONFLICT, "Reindex already in progress.")
+                    .build();
 
-        try {
-            TypedQuery<ApprovedMetadata> query = em.createNamedQuery("ApprovedMetadata.findAll", ApprovedMetadata.class);
-            List<ApprovedMetadata> results = query.getResultList();
-            int records = 0;
+        return Response
+                .status(Response.Status.ACCEPTED)
+                .entity(mapper.valueToTree(ReindexJob.getStatus()).toString())
+                .build();
+    }
 
-            for ( ApprovedMetadata amd : results ) {
-                DOECodeMetadata md = DOECodeMetadata.parseJson(new StringReader(amd.getJson()));
+    /**
+     * Report the progress of the current or most recent bulk reindex job.
+     *
+     * Response Codes:
+     * 200 - OK, JSON job status returned
+     * 401 - Unauthorized, user is not logged in
+     * 403 - Forbidden, user does not have permission to access this function
+     * 404 - Not Found, no reindex job has run
+     *
+     * @return a Response containing the JSON job status
+     */
+    @GET
+    @Produces (MediaType.APPLICATION_JSON)
+    @Path ("/reindex/status")
+    @RequiresRoles ("OSTI")
+    public Response reindexStatus() {
+        Map<String,Object> status = ReindexJob.getStatus();
 
-                sendToIndex(md);
-                ++records;
-            }
+        if (status.isEmpty())
+            return ErrorResponse
+                    .notFound("No reindex job on file.")
+                    .build();
 
-            return Response
-                    .ok()
-                    .entity(mapper.createObjectNode().put("indexed", String.valueOf(records)).toString())
+        return Response
+                .ok()
+                .entity(mapper.valueToTree(status).toString())
+                .build();
+    }
+
+    /**
+     * Report the delivery of workflow side effects (archiving, DOI
+     * registration, and OSTI publication) to external services: counts of
+     * messages by destination and delivery status, and the most recent
+     * messages in the requested status.
+     *
+     * Response Codes:
+     * 200 - OK, JSON outbox status returned
+     * 400 - Bad Request, unknown status
+     * 401 - Unauthorized, user is not logged in
+     * 403 - Forbidden, user does not have permission to access this function
+     *
+     * @param status the delivery status of messages to list (default Dead)
+     * @param rows the number of messages to list; capped at 100 (default 20)
+     * @return a Response containing the JSON outbox status
+     */
+    @GET
+    @Produces (MediaType.APPLICATION_JSON)
+    @Path ("/outbox")
+    @RequiresRoles ("OSTI")
+    public Response outboxStatus(
+            @QueryParam("status") String status,
+            @QueryParam("rows") int rows) {
+        OutboxMessage.Status listed;
+        try {
+            listed = (StringUtils.isBlank(status)) ? OutboxMessage.Status.Dead : OutboxMessage.Status.valueOf(status);
+        } catch ( IllegalArgumentException e ) {
+            return ErrorResponse
+                    .badRequest("Unknown status: " + status)
                     .build();
-        } finally {
-            em.close();
         }
+        rows = (rows<=0) ? 20 : Math.min(rows, 100);
+
+        ObjectNode result = mapper.createObjectNode();
+        result.putPOJO("counts", mapper.valueToTree(OutboxDispatcher.getCounts()));
+        result.putPOJO("messages", mapper.valueToTree(OutboxDispatcher.getMessages(listed, rows)));
+        OutboxDispatcher dispatcher = OutboxDispatcher.getInstance();
+        if (null!=dispatcher)
+            result.putPOJO("dispatcher", mapper.valueToTree(dispatcher.getStatistics()));
+
+        return Response
+                .ok()
+                .entity(result.toString())
+                .build();
+    }
+
+    /**
+     * Deliver a dead outbox message again, from the first attempt.
+     *
+     * Response Codes:
+     * 200 - OK, JSON of the requeued message returned
+     * 401 - Unauthorized, user is not logged in
+     * 403 - Forbidden, user does not have permission to access this function
+     * 404 - Not Found, no such message
+     * 409 - Conflict, the message is not dead, or a later message for the
+     * same destination and CODE ID supersedes it
+     *
+     * @param id the message ID
+     * @return a Response containing the JSON of the message
+     */
+    @POST
+    @Produces (MediaType.APPLICATION_JSON)
+    @Path ("/outbox/{id}/retry")
+    @RequiresRoles ("OSTI")
+    public Response outboxRetry(@PathParam("id") Long id) {
+        OutboxMessage message;
+        try {
+            message = OutboxDispatcher.retry(id);
+        } catch ( IllegalStateException e ) {
+            return ErrorResponse
+                    .status(Response.Status.CONFLICT, e.getMessage())
+                    .build();
+        }
+        if (null==message)
+            return ErrorResponse
+                    .notFound("Outbox message " + id + " not on file.")
+                    .build();
+
+        return Response
+                .ok()
+                .entity(mapper.valueToTree(message).toString())
+                .build();
     }
 
     /**
@@ -1379,6 +1557,8 @@ public class Metadata {
 
             // persist this to the database, as validations should already be complete at this stage.
             store(em, md, user);
+            // the attached record is already Approved, so count the change here
+            WorkflowCounts.Change change = WorkflowCounts.change(Status.Submitted, Status.Approved, md.getSiteOwnershipCode());
 
             // store the copy of Approved Metadata
             ApprovedMetadata amd = new ApprovedMetadata();
@@ -1389,6 +1569,11 @@ public class Metadata {
 
             // if we make it this far, go ahead and commit the transaction
             em.getTransaction().commit();
+            change.apply();
+            EntityCache.evict(em, DOECodeMetadata.class, md.getCodeId());
+
+            // discard any cached copy of the previous approval
+            RecordCache.invalidate(Collections.singletonList(md.getCodeId()));
 
             // send it to the indexer
             sendToIndex(md);
@@ -0,0 +1,97 @@
+/*
+ */
+package gov.osti.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import gov.osti.cache.FacetCache;
+import gov.osti.cache.RecordCache;
+import gov.osti.cache.SearchResultCache;
+import gov.osti.cache.SiteIndex;
+import gov.osti.cache.ValidationCache;
+import gov.osti.cache.WorkflowCounts;
+import gov.osti.connectors.ConnectorFactory;
+import gov.osti.connectors.HttpClientPool;
+import gov.osti.connectors.ParallelFetcher;
+import gov.osti.indexer.IndexQueue;
+import gov.osti.outbox.OutboxDispatcher;
+import gov.osti.persistence.EntityCache;
+import gov.osti.persistence.PooledDataSource;
+import gov.osti.security.AuthenticationCache;
+import gov.osti.sitemap.SitemapBuilder;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Administrative operational metrics for the running DOE Code services.
+ *
+ * @author ensornl
+ */
+@Path("metrics")
+public class Metrics {
+    // logger
+    private static final Logger log = LoggerFactory.getLogger(Metrics.class);
+    // JSON mapper
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    public Metrics() {
+
+    }
+
+    /**
+     * Obtain current operational metrics, such as outbound HTTP connection
+     * pool utilization and indexing queue depth.
+     *
+     * Requires authenticated administrative access.
+     *
+     * Response Codes:
+     * 200 - OK, JSON metrics returned
+     * 401 - Unauthorized, user is not logged in
+     * 403 - Forbidden, user does not have permission to access this function
+     *
+     * @return a JSON Object of the current metric values
+     */
+    @GET
+    @Produces (MediaType.APPLICATION_JSON)
+    public Response getMetrics() {
+        //Require that the user be OSTI to access
+        if(!UserServices.getCurrentUser().hasRole("OSTI")) {
+            return ErrorResponse
+                    .forbidden("Permission denied.")
+                    .build();
+        }
+
+        ObjectNode metrics = mapper.createObjectNode();
+
+        metrics.set("http_pool", mapper.valueToTree(HttpClientPool.getStatistics()));
+        metrics.set("connectors", mapper.valueToTree(ParallelFetcher.getStatistics()));
+        metrics.set("autopopulate", mapper.valueToTree(ConnectorFactory.getInstance().getStatistics()));
+        metrics.set("index_queue", mapper.valueToTree(IndexQueue.getInstance().getStatistics()));
+        metrics.set("auth_cache", mapper.valueToTree(AuthenticationCache.getStatistics()));
+        metrics.set("validation", mapper.valueToTree(Validation.getStatistics()));
+        metrics.set("validation_cache", mapper.valueToTree(ValidationCache.getStatistics()));
+        metrics.set("facet_cache", mapper.valueToTree(FacetCache.getStatistics()));
+        metrics.set("search_cache", mapper.valueToTree(SearchResultCache.getStatistics()));
+        metrics.set("record_cache", mapper.valueToTree(RecordCache.getStatistics()));
+        metrics.set("workflow_counts", mapper.valueToTree(WorkflowCounts.getStatistics()));
+        metrics.set("database", mapper.valueToTree(PooledDataSource.getStatistics()));
+        metrics.set("entity_cache", mapper.valueToTree(EntityCache.getStatistics()));
+        metrics.set("site_index", mapper.valueToTree(SiteIndex.getStatistics()));
+        OutboxDispatcher outbox = OutboxDispatcher.getInstance();
+        if (null!=outbox)
+            metrics.set("outbox", mapper.valueToTree(outbox.getStatistics()));
+        SitemapBuilder sitemap = SitemapBuilder.getInstance();
+        if (null!=sitemap)
+            metrics.set("sitemap", mapper.valueToTree(sitemap.getStatistics()));
+
+        return Response
+                .ok()
+                .entity(metrics.toString())
+                .build();
+    }
+}
@@ -13,35 +13,46 @@ import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
 import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import gov.osti.cache.FacetCache;
+import gov.osti.cache.RecordCache;
+import gov.osti.cache.SearchResultCache;
+import gov.osti.entity.ApprovedMetadata;
 import gov.osti.entity.DOECodeMetadata;
+import gov.osti.listeners.DoeServletContextListener;
+import gov.osti.search.SearchBackends;
 import gov.osti.search.SearchData;
+import gov.osti.search.SearchException;
+import gov.osti.search.SearchQuery;
 import gov.osti.search.SolrDocument;
 import gov.osti.search.SolrResult;
-import gov.osti.listeners.DoeServletContextListener;
 import gov.osti.search.FacetDeserializer;
 import gov.osti.search.SearchResponse;
+import gov.osti.search.SolrCursor;
 import gov.osti.search.SolrFacet;
+import gov.osti.search.StreamingSearchResponse;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
-import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
 import javax.servlet.ServletContext;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
-import org.apache.http.HttpResponse;
-import org.apache.http.HttpStatus;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.utils.URIBuilder;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.util.EntityUtils;
+import javax.ws.rs.core.StreamingOutput;
+import org.apache.commons.lang3.StringUtils;
 import org.glassfish.jersey.server.mvc.Viewable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,6 +69,9 @@ public class SearchService {
     // Logger
     private static final Logger log = LoggerFactory.getLogger(SearchService.class);
     
+    // maximum values counted per field facet
+    private static final int FACET_LIMIT = DoeServletContextListener.getConfigurationProperty("search.facet.limit", 100);
+    
     /** 
      * Implement a simple JSON filter to remove named properties.
      */
@@ -110,9 +124,6 @@ public class SearchService {
             .configure(SerializationFeature.WRAP_ROOT_VALUE, true)
             .addMixIn(Object.class, PropertyFilterMixIn.class);
     
-    // configured location of the search service endpoint
-    private static String SEARCH_URL = DoeServletContextListener.getConfigurationProperty("search.url");
-    
     /**
      * Link to API Documentation template.
      *
@@ -125,9 +136,10 @@ public class SearchService {
     }
     
     /**
-     * Acquire information from the searching index if possible.  This endpoint
-     * should ONLY return Approved records that have been indexed for searching.
-     * Requires that searching be configured.
+     * Acquire information about an Approved record if possible.  This endpoint
+     * should ONLY return Approved records; these are read from the approved
+     * metadata on file (or the searching index) and cached ready to send in
+     * each format (see RecordCache).  Requires that searching be configured.
      * 
      * Response Codes:
      * 200 - OK, record found, and returned in desired format
@@ -145,93 +157,173 @@ public class SearchService {
     @Produces ({MediaType.APPLICATION_JSON, "text/yaml", MediaType.APPLICATION_XML, MediaType.TEXT_PLAIN})
     public Response getSingleRecord(@PathParam("codeId") Long codeId, @QueryParam("format") String format) {
         // no search configured, you get nothing
-        if ("".equals(SEARCH_URL))
+        if (!SearchBackends.isSearching())
             return Response
                     .status(Response.Status.NO_CONTENT)
                     .build();
-        CloseableHttpClient hc = HttpClientBuilder
-                .create()
-                .build();
-        
         try {
-            // construct a Search for a single CODEID value
-            URIBuilder builder = new URIBuilder(SEARCH_URL)
-                .addParameter("q", "codeId:" + codeId)
-                .addParameter("fl", "json")
-                .addParameter("rows", "1");
-        
-            HttpGet get = new HttpGet(builder.build());
-
-            HttpResponse response = hc.execute(get);
+            RecordCache.Record record = RecordCache.get(codeId, SearchService::loadRecord);
 
-            if (HttpStatus.SC_OK==response.getStatusLine().getStatusCode()) {
-                SolrResult result = JSON_MAPPER.readValue(EntityUtils.toString(response.getEntity()), SolrResult.class);
-
-                if (result.getSearchResponse().isEmpty())
-                    return ErrorResponse
-                            .notFound("No records found.")
-                            .build();
-                // get the first result
-                SolrDocument doc = result.getSearchResponse().getDocuments()[0];
-                // convert it to a POJO
-                DOECodeMetadata md = DOECodeMetadata.parseJson(new StringReader(doc.getJson()));
-
-                // if YAML is requested, return that; otherwise, default to JSON
-                if ("yaml".equals(format)) {
-                    // return the YAML
-                    return
-                        Response
-                        .status(Response.Status.OK)
-                        .header("Content-Type", "text/yaml")
-                        .header("Content-Disposition", "attachment; filename = \"metadata.yml\"")
-                        .entity(YAML_MAPPER
-                                .writer(filter).writeValueAsString(md))
+            if (null==record)
+                return ErrorResponse
+                        .notFound("No records found.")
                         .build();
-                } else if ("xml".equals(format)) {
-                    return Response
-                            .ok()
-                            .header("Content-Type", MediaType.APPLICATION_XML)
-                            .entity(XML_MAPPER
-                                    .writer(filter).writeValueAsString(md))
-                            .build();
-                } else {
-                    // send back the JSON (named object "metadata")
-                    return Response
+
+            // if YAML is requested, return that; otherwise, default to JSON
+            if ("yaml".equals(format)) {
+                // return the YAML
+                return
+                    Response
+                    .status(Response.Status.OK)
+                    .header("Content-Type", "text/yaml")
+                    .header("Content-Disposition", "attachment; filename = \"metadata.yml\"")
+                    .entity(record.getYaml())
+                    .build();
+            } else if ("xml".equals(format)) {
+                return Response
                         .ok()
-                        .header("Content-Type", MediaType.APPLICATION_JSON)
-                        .entity(BIBLIO_WRAPPER
-                                .writer(filter)
-                                .writeValueAsString(md))
+                        .header("Content-Type", MediaType.APPLICATION_XML)
+                        .entity(record.getXml())
                         .build();
-                }
             } else {
-                return ErrorResponse
-                        .status(response.getStatusLine().getStatusCode())
-                        .message(EntityUtils.toString(response.getEntity()))
-                        .build();
+                // send back the JSON (named object "metadata")
+                return Response
+                    .ok()
+                    .header("Content-Type", MediaType.APPLICATION_JSON)
+                    .entity(record.getJson())
+                    .build();
             }
-        } catch ( IOException | URISyntaxException e ) {
+        } catch ( SearchException e ) {
+            return ErrorResponse
+                    .status(e.getStatus())
+                    .message(e.getMessage())
+                    .build();
+        } catch ( IOException e ) {
             log.warn("Searching Error.", e);
             return ErrorResponse.internalServerError("Search error encountered.").build();
         }
     }
     
+    /**
+     * Read an approved record and render it in each output format.  The
+     * approved_metadata copy is authoritative; the search index is consulted
+     * only if the record is not on file there.
+     * 
+     * @param codeId the CODE ID to find
+     * @return the rendered Record, or null if not found
+     * @throws IOException on search or rendering errors
+     */
+    private static RecordCache.Record loadRecord(Long codeId) throws IOException {
+        String json = null;
+        EntityManager em = DoeServletContextListener.createEntityManager();
+        
+        try {
+            ApprovedMetadata amd = em.find(ApprovedMetadata.class, codeId);
+            
+            if (null!=amd)
+                json = amd.getJson();
+        } catch ( PersistenceException e ) {
+            log.warn("Unable to read approved metadata " + codeId + ": " + e.getMessage());
+        } finally {
+            em.close();
+        }
+        
+        if (null==json) {
+            InputStream response = SearchBackends.getInstance().query(new SearchQuery("codeId:" + codeId)
+                    .fields("json")
+                    .rows(1));
+            
+            try {
+                SolrResult result = JSON_MAPPER.readValue(response, SolrResult.class);
+                
+                if (result.getSearchResponse().isEmpty())
+                    return null;
+                // get the first result
+                SolrDocument doc = result.getSearchResponse().getDocuments()[0];
+                json = doc.getJson();
+            } finally {
+                close(response);
+            }
+        }
+        
+        // convert it to a POJO
+        DOECodeMetadata md = DOECodeMetadata.parseJson(new StringReader(json));
+        
+        return new RecordCache.Record(
+                BIBLIO_WRAPPER.writer(filter).writeValueAsBytes(md),
+                YAML_MAPPER.writer(filter).writeValueAsBytes(md),
+                XML_MAPPER.writer(filter).writeValueAsBytes(md));
+    }
+    
+    /**
+     * Close search results quietly.
+     * 
+     * @param results the results to close, if any
+     */
+    private static void close(InputStream results) {
+        try {
+            if (null!=results)
+                results.close();
+        } catch ( IOException e ) {
+            log.warn("Unable to close search results: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Read the facet counts of a query alone, without any results.
+     * 
+     * @param search the SearchQuery
+     * @return the SolrFacet counts
+     * @throws IOException on search errors
+     */
+    private static SolrFacet readFacets(SearchQuery search) throws IOException {
+        InputStream in = SearchBackends.getInstance().query(new SearchQuery(search.getQ())
+                .rows(0)
+                .faceting(true)
+                .facets(search.getFacets())
+                .facetLimit(search.getFacetLimit()));
+        
+        try {
+            SolrResult result = JSON_MAPPER.readValue(in, SolrResult.class);
+            
+            return (null==result.getSolrFacet()) ? new SolrFacet() : result.getSolrFacet();
+        } finally {
+            close(in);
+        }
+    }
+    
     /**
      * Translate a SearchData parameter request to SOLR output search results.
      * 
+     * JSON results are streamed directly from the SOLR response, filtering
+     * each stored record as it is copied; XML and YAML results are mapped.
+     * Field facet counts ("facets" of "accessibility", "licenses",
+     * "research_organizations", "sponsoring_organizations") are returned as
+     * "facet_fields" if requested; counts over all records are cached.
+     * 
+     * For deep paging, set "cursor" to "*" for the first page, then to the
+     * "next_cursor" of each response for the next, instead of "start".
+     * 
+     * Results of up to SearchResultCache.MAX_ROWS rows are cached until
+     * records are next indexed, and carry a strong ETag; a request with a
+     * matching If-None-Match header (weak or strong) receives 304 Not
+     * Modified.  (Searching is safe despite using POST, so this is not a 412
+     * precondition failure.)
+     * 
      * @param parameters the JSON SearchData Object of search parameters
      * @param format the optional output format (YAML/JSON/XML; JSON is default)
+     * @param ifNoneMatch the If-None-Match request header, if any
      * @return the output of the SOLR search results, if any
      * @throws IOException on unexpected IO errors
-     * @throws URISyntaxException on URI search errors
      */
     @POST
     @Produces ({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, "text/yaml"})
     @Consumes (MediaType.APPLICATION_JSON)
-    public Response search(String parameters, @QueryParam("format") String format) throws IOException, URISyntaxException {
+    public Response search(String parameters, @QueryParam("format") String format,
+            @HeaderParam("If-None-Match") String ifNoneMatch) throws IOException {
 
     	// no search configured, you get nothing
-        if ("".equals(SEARCH_URL))
+        if (!SearchBackends.isSearching())
             return Response
                     .status(Response.Status.NO_CONTENT)
                     .build();
@@ -239,38 +331,160 @@ public class SearchService {
         // get a set of search parameters
         SearchData searchFor = SearchData.parseJson(new StringReader(parameters));
         
-        CloseableHttpClient hc = HttpClientBuilder
-                .create()
+        // large pages are streamed, not cached
+        if (null!=searchFor.getRows() && searchFor.getRows()>SearchResultCache.MAX_ROWS)
+            return query(searchFor, format);
+        
+        String output = ("xml".equals(format) || "yaml".equals(format)) ? format : "json";
+        String key = SearchResultCache.key(searchFor.toKey(), output);
+        SearchResultCache.Result result = SearchResultCache.get(key);
+        
+        if (null==result) {
+            long generation = SearchResultCache.getGeneration();
+            Response response = query(searchFor, format);
+            
+            if (Response.Status.OK.getStatusCode()!=response.getStatus())
+                return response;
+            
+            result = new SearchResultCache.Result(render(response.getEntity()),
+                    response.getHeaderString("Content-Type"), generation);
+            SearchResultCache.put(key, result);
+        }
+        
+        EntityTag tag = new EntityTag(result.getEtag());
+        if (matches(ifNoneMatch, tag))
+            return Response
+                    .notModified(tag)
+                    .build();
+        
+        return Response
+                .ok(result.getContent())
+                .header("Content-Type", result.getContentType())
+                .tag(tag)
                 .build();
+    }
+    
+    /**
+     * Render a search Response entity to bytes.
+     * 
+     * @param entity the Response entity; streamed, or a String
+     * @return the rendered content
+     * @throws IOException on rendering errors
+     */
+    private static byte[] render(Object entity) throws IOException {
+        if (entity instanceof StreamingOutput) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ((StreamingOutput) entity).write(out);
+            return out.toByteArray();
+        }
+        return String.valueOf(entity).getBytes(StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Determine whether an If-None-Match header matches an entity tag, by
+     * weak comparison (RFC 7232, section 3.2):  tags match on their opaque
+     * values, whether or not either is weak ("W/").
+     * 
+     * @param ifNoneMatch the If-None-Match header value, if any
+     * @param tag the current EntityTag
+     * @return true if the client's copy is current
+     */
+    protected static boolean matches(String ifNoneMatch, EntityTag tag) {
+        if (StringUtils.isBlank(ifNoneMatch))
+            return false;
         
-        URIBuilder builder = new URIBuilder(SEARCH_URL)
-                .addParameter("q", searchFor.toQ())
-                .addParameter("fl", "json")
-                .addParameter("sort", searchFor.getSort());
-        // if values are specified for rows and start, supply those.
-        if (null!=searchFor.getRows())
-            builder.addParameter("rows", String.valueOf(searchFor.getRows()));
-        if (null!=searchFor.getStart())
-            builder.addParameter("start", String.valueOf(searchFor.getStart()));
+        String current = StringUtils.removeStart(tag.toString(), "W/");
+        for ( String value : ifNoneMatch.split(",") ) {
+            String candidate = value.trim();
+            
+            if ("*".equals(candidate) || current.equals(StringUtils.removeStart(candidate, "W/")))
+                return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Run a search, streaming JSON results or mapping XML and YAML results.
+     * 
+     * @param searchFor the SearchData parameters
+     * @param format the optional output format (YAML/JSON/XML; JSON is default)
+     * @return the output of the search results
+     * @throws IOException on unexpected IO errors
+     */
+    private Response query(SearchData searchFor, String format) throws IOException {
+        SearchQuery search = new SearchQuery(searchFor.toQ())
+                .fields("json")
+                .rows(searchFor.getRows())
+                .faceting(true)
+                .facets(searchFor.getFacetFields())
+                .facetLimit(FACET_LIMIT);
+        // cursor paging continues from the cursor rather than a start offset
+        if (null!=searchFor.getCursor()) {
+            search.sort(SolrCursor.withUniqueKey(searchFor.getSort()))
+                  .cursorMark(searchFor.getCursor());
+        } else {
+            search.sort(searchFor.getSort())
+                  .start(searchFor.getStart());
+        }
         
-        HttpGet get = new HttpGet(builder.build());
+        // counts over all records are the same for every page; use those
+        // cached if available
+        SolrFacet facets = null;
+        if (searchFor.isUnfiltered()) {
+            try {
+                facets = FacetCache.get(String.join(",", search.getFacets().keySet()), () -> readFacets(search));
+                search.faceting(false);
+            } catch ( IOException e ) {
+                log.warn("Unable to read facet counts: " + e.getMessage());
+            }
+        }
         
-        HttpResponse response = hc.execute(get);
+        final InputStream response;
+        try {
+            response = SearchBackends.getInstance().query(search);
+        } catch ( SearchException e ) {
+            // let the user know something failed
+            return ErrorResponse
+                    .status(e.getStatus())
+                    .message(e.getMessage())
+                    .build();
+        }
+        // whether the response has been handed off to a streaming output
+        boolean streaming = false;
         
-        if (HttpStatus.SC_OK==response.getStatusLine().getStatusCode()) {
-            SolrResult result = JSON_MAPPER.readValue(EntityUtils.toString(response.getEntity()), SolrResult.class);
+        try {
+            // JSON is the default; stream the results through directly
+            if (!"xml".equals(format) && !"yaml".equals(format)) {
+                StreamingSearchResponse output = new StreamingSearchResponse(
+                        response, JSON_MAPPER, Arrays.asList(ignoreProperties),
+                        response, facets);
+                streaming = true;
+                
+                return Response
+                        .ok()
+                        .header("Content-Type", MediaType.APPLICATION_JSON)
+                        .entity(output)
+                        .build();
+            }
+            SolrResult result = JSON_MAPPER.readValue(response, SolrResult.class);
             // construct a search response object
             SearchResponse query = new SearchResponse();
             query.setStart(result.getSearchResponse().getStart());
             query.setNumFound(result.getSearchResponse().getNumFound());
-            
+            query.setNextCursor(result.getNextCursorMark());
+        
             // if there are matched documents, load them in
             if ( null!=result.getSearchResponse().getDocuments() ) {
                 for ( SolrDocument doc : result.getSearchResponse().getDocuments() ) {
                     query.add(JSON_MAPPER.readValue(doc.getJson(), DOECodeMetadata.class));
                 }
-                // check out the FACETS
-                query.setFacets(result.getSolrFacet().getValues());
+            }
+            // check out the FACETS
+            SolrFacet facet = (null==facets) ? result.getSolrFacet() : facets;
+            if (null!=facet) {
+                query.setFacets(facet.getValues());
+                if (!facet.getFields().isEmpty())
+                    query.setFacetFields(facet.getFields());
             }
             // respond with the appropriate format based on the input parameter
             if ("xml".equals(format)) {
@@ -281,7 +495,7 @@ public class SearchService {
                                 .writer(filter)
                                 .writeValueAsString(query))
                         .build();
-            } else if ("yaml".equals(format)) {
+            } else {
                 return Response
                         .ok()
                         .header("Content-Type", "text/yaml")
@@ -289,21 +503,10 @@ public class SearchService {
                                 .writer(filter)
                                 .writeValueAsString(query))
                         .build();
-            } else {
-                return Response
-                        .ok()
-                        .header("Content-Type", MediaType.APPLICATION_JSON)
-                        .entity(JSON_MAPPER
-                                .writer(filter)
-                                .writeValueAsString(query))
-                        .build();
             }
-        } else {
-            // let the user know something failed
-            return ErrorResponse
-                    .status(response.getStatusLine().getStatusCode())
-                    .message(EntityUtils.toString(response.getEntity()))
-                    .build();
+        } finally {
+            if (!streaming)
+                close(response);
         }
     }
 }
@@ -3,6 +3,7 @@ package gov.osti.services;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 
 import javax.persistence.EntityManager;
@@ -35,10 +36,11 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategy;
 
-import gov.osti.entity.Site;
-
+import gov.osti.cache.SiteIndex;
 import gov.osti.entity.User;
 import gov.osti.listeners.DoeServletContextListener;
+import gov.osti.persistence.EntityCache;
+import gov.osti.security.AuthenticationCache;
 import gov.osti.security.DOECodeCrypt;
 import io.jsonwebtoken.Claims;
 import java.io.Serializable;
@@ -68,6 +70,8 @@ public class UserServices {
     private static final String SITE_URL = DoeServletContextListener.getConfigurationProperty("site.url");
     // EMAIL send-from account name
     private static final String EMAIL_FROM = DoeServletContextListener.getConfigurationProperty("email.from");
+    // most email addresses resolved to SITE CODES in one request
+    private static final int MAX_SITE_CODES = 10000;
 
     public UserServices() {
 
@@ -315,8 +319,6 @@ public class UserServices {
     @Produces (MediaType.APPLICATION_JSON)
     @Path ("/getsitecode/{email}")
     public Response getSiteCode(@PathParam("email") String email) {
-        EntityManager em = DoeServletContextListener.createEntityManager();
-        
         // no email?
         if (StringUtils.isBlank(email))
             return ErrorResponse
@@ -330,13 +332,7 @@ public class UserServices {
                         .badRequest("Not a valid email address.")
                         .build();
             // assign as SITE if possible based on the EMAIL, or default to CONTRACTOR
-            String domain = email.substring(email.indexOf("@"));
-            TypedQuery<Site> query = em.createNamedQuery("Site.findByDomain", Site.class)
-                    .setParameter("domain", domain);
-
-            // look up the Site and set CODE, or CONTR if not found
-            List<Site> sites = query.getResultList();
-            String siteCode = ((sites.isEmpty()) ? "CONTR" : sites.get(0).getSiteCode());
+            String siteCode = SiteIndex.resolve(email);
             
             // return the results back
             return Response
@@ -351,8 +347,67 @@ public class UserServices {
             return ErrorResponse
                     .internalServerError(e.getMessage())
                     .build();
-        } finally {
-            em.close();
+        }
+    }
+
+    /**
+     * Determine the SITE CODE of each of a number of email addresses, for
+     * administrative tools.  Requires administrative privileges.
+     * 
+     * Response Codes:
+     * 200 - OK, JSON contains each EMAIL ADDRESS and its SITE CODE (or "CONTR"),
+     * and any addresses not valid
+     * 400 - Bad Request, unable to read the JSON array of addresses, or too many
+     * 403 - User does not have permission
+     * 500 - Internal service error
+     * 
+     * @param json JSON array of email addresses
+     * @return a Response containing the JSON if found
+     */
+    @POST
+    @Consumes (MediaType.APPLICATION_JSON)
+    @Produces (MediaType.APPLICATION_JSON)
+    @Path ("/getsitecodes")
+    public Response getSiteCodes(String json) {
+        //Require that the user be OSTI to access
+        if(!UserServices.getCurrentUser().hasRole("OSTI")) {
+            return ErrorResponse
+                    .forbidden("Permission denied.")
+                    .build();
+        }
+        
+        List<String> emails;
+        try {
+            emails = Arrays.asList(mapper.readValue(json, String[].class));
+        } catch ( IOException e ) {
+            return ErrorResponse
+                    .badRequest("Unable to read email addresses.")
+                    .build();
+        }
+        if (emails.size() > MAX_SITE_CODES)
+            return ErrorResponse
+                    .badRequest("No more than " + MAX_SITE_CODES + " email addresses allowed.")
+                    .build();
+        
+        try {
+            List<String> valid = new ArrayList<>();
+            List<String> invalid = new ArrayList<>();
+            
+            for ( String email : emails )
+                ((Validation.isValidEmail(email)) ? valid : invalid).add(email);
+            
+            return Response
+                    .ok()
+                    .entity(mapper
+                            .createObjectNode()
+                            .putPOJO("site_codes", mapper.valueToTree(SiteIndex.resolve(valid)))
+                            .putPOJO("invalid", mapper.valueToTree(invalid)).toString())
+                    .build();
+        } catch ( Exception e ) {
+            log.error("Site Lookup Error", e);
+            return ErrorResponse
+                    .internalServerError(e.getMessage())
+                    .build();
         }
     }
 
@@ -430,16 +485,10 @@ public class UserServices {
             String encryptedPassword = PASSWORD_SERVICE.encryptPassword(request.getPassword());
 
             // assign as SITE if possible based on the EMAIL, or default to CONTRACTOR
-            String domain = request.getEmail().substring(request.getEmail().indexOf("@"));
-            TypedQuery<Site> query = em.createNamedQuery("Site.findByDomain", Site.class)
-                    .setParameter("domain", domain);
-
-            // look up the Site and set CODE, or CONTR if not found
-            List<Site> sites = query.getResultList();
-            String siteCode = ((sites.isEmpty()) ? "CONTR" : sites.get(0).getSiteCode());
+            String siteCode = SiteIndex.resolve(request.getEmail());
             
             // if CONTR, we need to REQUIRE and VALIDATE the CONTRACT NUMBER
-            if (StringUtils.equals(siteCode, "CONTR")) {
+            if (StringUtils.equals(siteCode, SiteIndex.CONTRACTOR)) {
                 if (StringUtils.isBlank(request.getContractNumber()))
                     return ErrorResponse
                             .badRequest("Missing required contract number.")
@@ -481,6 +530,9 @@ public class UserServices {
             }
           
             em.getTransaction().commit();
+            // discard any cached authentication information and user copies
+            AuthenticationCache.invalidate(user.getEmail());
+            EntityCache.evict(em, User.class, user.getEmail());
             
             // send email to user
             sendRegistrationConfirmation(user.getConfirmationCode(), user.getEmail());
@@ -523,13 +575,7 @@ public class UserServices {
             }	
 
             // assign as SITE if possible based on the EMAIL, or default to CONTRACTOR
-            String domain = getCurrentUserEmail().substring(getCurrentUserEmail().indexOf("@"));
-            TypedQuery<Site> query = em.createNamedQuery("Site.findByDomain", Site.class)
-                    .setParameter("domain", domain);
-
-            // look up the Site and set CODE, or CONTR if not found
-            List<Site> sites = query.getResultList();
-            String siteCode = ((sites.isEmpty()) ? "CONTR" : sites.get(0).getSiteCode());
+            String siteCode = SiteIndex.resolve(getCurrentUserEmail());
             
             String apiKey = DOECodeCrypt.nextUniqueString();
             String confirmationCode = DOECodeCrypt.nextUniqueString();
@@ -555,6 +601,9 @@ public class UserServices {
             }
           
             em.getTransaction().commit();
+            // discard any cached authentication information and user copies
+            AuthenticationCache.invalidate(user.getEmail());
+            EntityCache.evict(em, User.class, user.getEmail());
             
             // send email to user
             sendRegistrationConfirmation(user.getConfirmationCode(), user.getEmail());
@@ -676,6 +725,9 @@ public class UserServices {
             em.merge(user);
             
             em.getTransaction().commit();
+            // discard any cached authentication information and user copies
+            AuthenticationCache.invalidate(user.getEmail());
+            EntityCache.evict(em, User.class, user.getEmail());
             
             // send back the Response with information
             return Response
@@ -744,6 +796,9 @@ public class UserServices {
             em.merge(user);
             
             em.getTransaction().commit();
+            // discard any cached authentication information and user copies
+            AuthenticationCache.invalidate(user.getEmail());
+            EntityCache.evict(em, User.class, user.getEmail());
             
             // return CREATED
             return Response
@@ -938,6 +993,9 @@ public class UserServices {
             em.merge(user);
             
             em.getTransaction().commit();
+            // discard any cached authentication information and user copies
+            AuthenticationCache.invalidate(user.getEmail());
+            EntityCache.evict(em, User.class, user.getEmail());
 
             // return the changed information
             return Response
@@ -1062,6 +1120,9 @@ public class UserServices {
             // made it this far, persist the changes
             em.merge(source);
             em.getTransaction().commit();
+            // discard any cached authentication information and user copies
+            AuthenticationCache.invalidate(source.getEmail());
+            EntityCache.evict(em, User.class, source.getEmail());
             
             // send back an OK response
             return Response
@@ -1530,6 +1591,9 @@ public class UserServices {
 
             em.merge(currentUser);
             em.getTransaction().commit();
+            // discard any cached authentication information and user copies
+            AuthenticationCache.invalidate(currentUser.getEmail());
+            EntityCache.evict(em, User.class, currentUser.getEmail());
 
             return Response
                 .ok()
@@ -1731,6 +1795,9 @@ public class UserServices {
             
             // store it
             em.getTransaction().commit();
+            // discard any cached authentication information and user copies
+            AuthenticationCache.invalidate(email);
+            EntityCache.evict(em, User.class, email);
             
         } catch ( Exception e ) {
             if (em.getTransaction().isActive())
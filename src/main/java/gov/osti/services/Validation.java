@@ -9,29 +9,50 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.i18n.phonenumbers.NumberParseException;
 import com.google.i18n.phonenumbers.PhoneNumberUtil;
 import com.google.i18n.phonenumbers.Phonenumber.PhoneNumber;
+import gov.osti.cache.ValidationCache;
+import gov.osti.connectors.HttpClientPool;
 import gov.osti.listeners.DoeServletContextListener;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.Serializable;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
 import java.net.URLEncoder;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.Produces;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.config.RequestConfig;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.shiro.authz.annotation.RequiresRoles;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.lib.Ref;
 import org.glassfish.jersey.server.mvc.Viewable;
@@ -86,6 +107,17 @@ class ApiResponse {
  *
  * REST web services for validation purposes.
  *
+ * Batch requests run the remote checks (repository links and award numbers)
+ * concurrently on a bounded worker pool, each with a deadline from when a
+ * worker starts it; identical remote checks in the same batch are only made
+ * once.  Checks refused by a full pool are reported not valid rather than
+ * made on the request thread.
+ *
+ * Configuration properties:
+ * validation.threads - maximum concurrent remote checks (default 8)
+ * validation.timeout - deadline for each remote check, from when it starts,
+ *   in milliseconds (default 10000)
+ *
  * @author ensornl
  */
 @Path("validation")
@@ -110,6 +142,16 @@ public class Validation {
     protected static final Pattern URL_PATTERN = Pattern.compile("\\bhttps?://[-a-zA-Z0-9+&@#/%?=~_|!:,.;]*[-a-zA-Z0-9+&@#/%=~_|]");
     protected static final Pattern DOI_PATTERN = Pattern.compile("10.\\d{4,9}/[-._;()/:A-Za-z0-9]+$");
 
+    // remote check worker pool size, and deadline for each check
+    private static final int THREADS = Math.max(1, DoeServletContextListener.getConfigurationProperty("validation.threads", 8));
+    private static final long TIMEOUT = Math.max(1, DoeServletContextListener.getConfigurationProperty("validation.timeout", 10000));
+    // the remote check worker pool, created on first use
+    private static ThreadPoolExecutor pool = null;
+    // remote check counters
+    private static final AtomicLong checks = new AtomicLong();
+    private static final AtomicLong deduplicated = new AtomicLong();
+    private static final AtomicLong timeouts = new AtomicLong();
+
     @JsonIgnoreProperties (ignoreUnknown = true)
     private static class ValidationRequest implements Serializable {
         private String type;
@@ -159,6 +201,99 @@ public class Validation {
         }
     }
 
+    /**
+     * A remote check for the worker pool, timed from when a worker starts it
+     * rather than from when it was queued.
+     */
+    static class RemoteCheck implements Callable<Boolean> {
+        private final Callable<Boolean> check;
+        // when a worker started the check, or 0 while queued
+        private volatile long started = 0;
+        // the pending result, or null if the check was refused
+        private Future<Boolean> result = null;
+
+        RemoteCheck(Callable<Boolean> check) {
+            this.check = check;
+        }
+
+        @Override
+        public Boolean call() throws Exception {
+            started = System.currentTimeMillis();
+            return check.call();
+        }
+
+        /**
+         * Queue the check, unless the executor refuses it.
+         *
+         * @param executor the ExecutorService to run the check
+         * @return true if queued, false if refused
+         */
+        boolean submit(ExecutorService executor) {
+            try {
+                result = executor.submit(this);
+                return true;
+            } catch ( RejectedExecutionException e ) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Obtain the remote check worker pool.  When all workers are busy and the
+     * queue is full, further checks are refused.
+     *
+     * @return the ThreadPoolExecutor for remote checks
+     */
+    private static synchronized ThreadPoolExecutor getPool() {
+        if (null==pool) {
+            final AtomicInteger count = new AtomicInteger();
+
+            pool = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(THREADS * 4),
+                    r -> {
+                        Thread thread = new Thread(r, "validation-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    new ThreadPoolExecutor.AbortPolicy());
+            pool.allowCoreThreadTimeOut(true);
+        }
+        return pool;
+    }
+
+    /**
+     * Stop the remote check worker pool, abandoning any checks in progress.
+     */
+    public static synchronized void shutdown() {
+        if (null!=pool) {
+            // cancel checks never started, so none wait on them
+            for ( Runnable queued : pool.shutdownNow() )
+                if (queued instanceof Future)
+                    ((Future<?>) queued).cancel(false);
+            pool = null;
+        }
+    }
+
+    /**
+     * Report remote check statistics.
+     *
+     * @return a Map of remote check statistics
+     */
+    public static Map<String,Object> getStatistics() {
+        Map<String,Object> statistics = new LinkedHashMap<>();
+
+        synchronized (Validation.class) {
+            statistics.put("threads", THREADS);
+            statistics.put("active", (null==pool) ? 0 : pool.getActiveCount());
+            statistics.put("queued", (null==pool) ? 0 : pool.getQueue().size());
+        }
+        statistics.put("checks", checks.get());
+        statistics.put("deduplicated", deduplicated.get());
+        statistics.put("timeouts", timeouts.get());
+
+        return statistics;
+    }
+
     /**
      * Creates a new instance of ValidationResource
      */
@@ -213,51 +348,49 @@ public class Validation {
     /**
      * Make an external validation call for a CONTRACT NUMBER for validity.
      * If unable to check, not configured properly, or an error occurs, assume
-     * FALSE.
+     * FALSE.  Results are cached.
      *
      * @param value the CONTRACT/AWARD NUMBER to check
      * @return true if valid, false if not
      */
     public static boolean isValidAwardNumber(String value) {
-        RequestConfig rc = RequestConfig
-                .custom()
-                .setSocketTimeout(5000)
-                .setConnectTimeout(5000)
-                .setConnectionRequestTimeout(5000)
-                .build();
-        CloseableHttpClient hc = HttpClientBuilder
-                .create()
-                .setDefaultRequestConfig(rc)
-                .build();
+        // if not configured, abort
+        if (StringUtils.isBlank(API_HOST) || StringUtils.isBlank(value))
+            return false;
 
-        try {
-            // if not configured, abort
-            if (StringUtils.isBlank(API_HOST))
-                return false;
+        return ValidationCache.check("awardnumber", value, () -> callAwardNumberApi(value));
+    }
 
+    /**
+     * Call the VALIDATION API for a CONTRACT NUMBER.
+     *
+     * @param value the CONTRACT/AWARD NUMBER to check
+     * @return true if valid, false if not, or null if the API gave no answer
+     * @throws IOException on HTTP client errors
+     */
+    private static Boolean callAwardNumberApi(String value) throws IOException {
+        CloseableHttpResponse response = null;
+
+        try {
             // call the VALIDATION API to get a response
             HttpGet get = new HttpGet(API_HOST + "/contract/validate/" + URLEncoder.encode(value.trim(), "UTF-8"));
-            HttpResponse response = hc.execute(get);
+            response = HttpClientPool.getClient().execute(get);
+            if (response.getStatusLine().getStatusCode()!=HttpStatus.SC_OK)
+                return null;
             // get the RESPONSE
             ApiResponse apiResponse = mapper.readValue(response.getEntity().getContent(), ApiResponse.class);
 
             return apiResponse.isValid();
-        } catch ( IOException e ) {
-            log.warn("Error checking " + value + ": " + e.getMessage());
         } finally {
-            try {
-                hc.close();
-            } catch ( IOException e ) {
-                log.warn("IOException Checking contract number " + value + ": " + e.getMessage());
-            }
+            HttpClientPool.release(response);
         }
-        return false;
     }
 
     /**
      * Determine whether or not the passed-in value is a VALID repository link.
      *
      * Presently, valid means a remote-accessible HTTP(S)-based git repository.
+     * Results are cached.
      *
      * @param value the repository link/URL to check
      * @return true if valid, false if not
@@ -266,12 +399,24 @@ public class Validation {
         if ( StringUtils.isBlank(value))
             return false;
 
+        return ValidationCache.check("repositorylink", value, () -> listRepositoryLink(value));
+    }
+
+    /**
+     * List the remote references of a repository link.
+     *
+     * @param value the repository link/URL to check
+     * @return true if valid, false if not, or null if the host could not be
+     * reached in time
+     */
+    private static Boolean listRepositoryLink(String value) {
         try {
             Collection<Ref> references = Git
                     .lsRemoteRepository()
                     .setHeads(true)
                     .setTags(true)
                     .setRemote(value)
+                    .setTimeout((int) Math.max(1, TIMEOUT / 1000))
                     .call();
 
             // must be a valid repository if it has references
@@ -279,6 +424,11 @@ public class Validation {
         } catch ( Exception e ) {
             // jgit occasionally throws sloppy runtime exceptions
             log.warn("Repository URL " + value + " failed: " + e.getMessage());
+            // only network trouble is worth checking again soon
+            for ( Throwable cause = e; null!=cause; cause = cause.getCause() ) {
+                if (cause instanceof SocketTimeoutException || cause instanceof ConnectException || cause instanceof InterruptedIOException)
+                    return null;
+            }
             return false;
         }
     }
@@ -420,6 +570,38 @@ public class Validation {
                 ErrorResponse.badRequest(generateURLErrorMsg(value, "url")).build();
     }
 
+    /**
+     * Discard the cached result of a remote validation check, so the next
+     * request checks the value again.
+     *
+     * Response Codes:
+     * 200 - OK, any cached result discarded
+     * 400 - Bad Request, type is not a cached check type or value is missing
+     * 401 - Unauthorized, user is not logged in
+     * 403 - Forbidden, user does not have permission to access this function
+     *
+     * @param type the check type, "awardnumber" or "repositorylink"
+     * @param value the value checked
+     * @return a Response
+     */
+    @DELETE
+    @Produces (MediaType.APPLICATION_JSON)
+    @Path ("/cache/{type}")
+    @RequiresRoles ("OSTI")
+    public Response purge(@PathParam("type") String type, @QueryParam("value") String value) {
+        if (!StringUtils.equalsAnyIgnoreCase(type, "awardnumber", "repositorylink") || StringUtils.isBlank(value))
+            return ErrorResponse
+                    .badRequest("Must specify awardnumber or repositorylink type and a value.")
+                    .build();
+
+        ValidationCache.invalidate(type, value);
+
+        return Response
+                .ok()
+                .entity(mapper.createObjectNode().put("value", "OK").toString())
+                .build();
+    }
+
     /**
      * Determine whether or not a contract number is valid.
      *
@@ -449,18 +631,55 @@ public class Validation {
         try {
             ValidationRequest[] requests = mapper.readValue(object, ValidationRequest[].class);
 
+            // reject unknown types before starting any remote checks
+            for ( ValidationRequest req : requests ) {
+                if (!isKnownType(req.getType())) {
+                    log.warn("Unknown validation request type: " + req.getType());
+                    return ErrorResponse
+                            .badRequest("Unknown request type: " + req.getType())
+                            .build();
+                }
+            }
+
+            // start the remote checks, once per distinct type and value
+            Map<String, RemoteCheck> remote = new HashMap<>();
+            for ( ValidationRequest req : requests ) {
+                final String type = req.getType();
+                final String value = req.getValue();
+                Callable<Boolean> check;
+
+                if (StringUtils.equalsIgnoreCase(type, "repositorylink"))
+                    check = () -> isValidRepositoryLink(value);
+                else if (StringUtils.equalsIgnoreCase(type, "awardnumber"))
+                    check = () -> isValidAwardNumber(value);
+                else
+                    continue;
+
+                String key = type.toLowerCase() + "\n" + value;
+                if (remote.containsKey(key)) {
+                    deduplicated.incrementAndGet();
+                } else {
+                    checks.incrementAndGet();
+                    RemoteCheck remoteCheck = new RemoteCheck(check);
+                    remoteCheck.submit(getPool());
+                    remote.put(key, remoteCheck);
+                }
+            }
+
             /**
              * Validations:
              *
              * "DOI" -- ensure that DOI_BASE_URL + value is reachable via the internets
              * "Award" -- call known validation endpoint with value, check for "isValid" true response
              *
+             * Remote checks are collected in request order as they complete;
+             * the others are made inline.
              */
             for ( ValidationRequest req : requests ) {
                 if (StringUtils.equalsIgnoreCase(req.getType(), "doi")) {
                     req.setError((isValidDoi(req.getValue()) ? "" : req.getValue() + " is not a valid DOI."));
                 } else if (StringUtils.equalsIgnoreCase(req.getType(), "repositorylink")) {
-                     req.setError(isValidRepositoryLink(req.getValue()) ? "" : generateURLErrorMsg(req.getValue(), req.getType()));
+                     req.setError(getResult(remote, req.getType(), req.getValue(), TIMEOUT) ? "" : generateURLErrorMsg(req.getValue(), req.getType()));
                 } else if (StringUtils.equalsIgnoreCase(req.getType(), "phonenumber")) {
                     req.setError((isValidPhoneNumber(req.getValue()) ? "" : req.getValue() + " is not a valid phone number."));
                 } else if (StringUtils.equalsIgnoreCase(req.getType(), "url")) {
@@ -468,12 +687,7 @@ public class Validation {
                 } else if (StringUtils.equalsIgnoreCase(req.getType(), "email")) {
                     req.setError((isValidEmail(req.getValue()) ? "" : req.getValue() + " is not a valid email address."));
                 } else if (StringUtils.equalsIgnoreCase(req.getType(), "awardnumber")) {
-                    req.setError((isValidAwardNumber(req.getValue()) ? "" : req.getValue() + " is not a valid Award Number."));
-                } else {
-                    log.warn("Unknown validation request type: " + req.getType());
-                    return ErrorResponse
-                            .badRequest("Unknown request type: " + req.getType())
-                            .build();
+                    req.setError((getResult(remote, req.getType(), req.getValue(), TIMEOUT) ? "" : req.getValue() + " is not a valid Award Number."));
                 }
             }
             // at the end, return any error message
@@ -491,6 +705,65 @@ public class Validation {
         }
     }
     
+    /**
+     * Determine whether or not a validation request type is supported.
+     *
+     * @param type the request type
+     * @return true if known, false if not
+     */
+    private static boolean isKnownType(String type) {
+        return StringUtils.equalsAnyIgnoreCase(type, "doi", "repositorylink", "phonenumber", "url", "email", "awardnumber");
+    }
+
+    /**
+     * Wait for the result of a remote check.  If unable to check in time, or
+     * an error occurs, assume FALSE.  A check still queued has not yet begun
+     * its time, and one running past its time is cancelled.  Repeated
+     * requests share a check, which may already have been cancelled on timing
+     * out for an earlier one.
+     *
+     * @param remote the remote checks, by type and value
+     * @param type the request type
+     * @param value the value checked
+     * @param timeout milliseconds the check may run once started
+     * @return true if valid, false if not
+     */
+    static boolean getResult(Map<String, RemoteCheck> remote, String type, String value, long timeout) {
+        RemoteCheck check = remote.get(type.toLowerCase() + "\n" + value);
+
+        if (null==check.result) {
+            timeouts.incrementAndGet();
+            log.warn("Validation of " + type + " " + value + " not made; too many checks in progress.");
+            return false;
+        }
+        try {
+            while (true) {
+                long started = check.started;
+
+                try {
+                    return check.result.get((0==started) ? timeout :
+                            Math.max(0, started + timeout - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                } catch ( TimeoutException e ) {
+                    // still queued, or started while waiting; wait again
+                    if (0==started)
+                        continue;
+
+                    timeouts.incrementAndGet();
+                    log.warn("Validation of " + type + " " + value + " timed out.");
+                    check.result.cancel(true);
+                    return false;
+                }
+            }
+        } catch ( CancellationException e ) {
+            log.warn("Validation of " + type + " " + value + " timed out.");
+        } catch ( ExecutionException e ) {
+            log.warn("Validation of " + type + " " + value + " failed: " + e.getMessage());
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
     private String generateURLErrorMsg(String url, String type) {
          String safeUrl = (null==url) ? "" : url.trim();
          String msg = "";
@@ -0,0 +1,669 @@
+/*
+ */
+package gov.osti.sitemap;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.osti.indexer.IndexQueue;
+import gov.osti.indexer.SolrIndexer;
+import gov.osti.listeners.DoeServletContextListener;
+import gov.osti.search.SearchBackend;
+import gov.osti.search.SearchBackends;
+import gov.osti.search.SearchQuery;
+import gov.osti.search.SolrDocument;
+import gov.osti.search.SolrResult;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds the Google sitemap as gzip-compressed files on disk, in the
+ * background.
+ *
+ * Sitemap pages hold up to 20,000 records each, in CODE ID order; a manifest
+ * of each page's last CODE ID, URL count, and latest modification date is
+ * kept alongside the pages.  Records indexed since the last refresh mark
+ * their pages as changed, and only those pages are rewritten.  If a page's
+ * end boundary moves as a result (e.g., it overflows), the following pages
+ * are rewritten as well, until the boundaries line up again.  The whole
+ * sitemap is rebuilt if no manifest exists, and periodically as a safety net.
+ *
+ * Configuration properties:
+ * sitemap.dir - directory to hold the sitemap files (default
+ *   "doecode-sitemap" in the temporary directory)
+ * sitemap.refresh.interval - milliseconds between incremental refreshes
+ *   (default 600000)
+ * sitemap.rebuild.interval - milliseconds between full rebuilds (default
+ *   86400000)
+ *
+ * @author ensornl
+ */
+public class SitemapBuilder {
+    // logger
+    private static final Logger log = LoggerFactory.getLogger(SitemapBuilder.class);
+
+    /** the maximum number of URLs per sitemap page */
+    public static final int MAX_URLS = 20000;
+
+    private static final String NAMESPACE = "http://www.sitemaps.org/schemas/sitemap/0.9";
+    private static final String INDEX_FILE = "sitemap-index.xml.gz";
+    private static final String MANIFEST_FILE = "sitemap-pages.json";
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * A single sitemap record entry.
+     */
+    public static class Entry {
+        private final long codeId;
+        private final String lastmod;
+
+        /**
+         * Construct an Entry.
+         *
+         * @param codeId the CODE ID
+         * @param lastmod the date last modified (yyyy-MM-dd), or null if
+         * unknown
+         */
+        public Entry(long codeId, String lastmod) {
+            this.codeId = codeId;
+            this.lastmod = lastmod;
+        }
+    }
+
+    /**
+     * Source of sitemap entries.
+     */
+    public interface Source {
+        /**
+         * Read the next entries in CODE ID order.
+         *
+         * @param after read entries with CODE IDs greater than this; null to
+         * start at the beginning
+         * @param max the maximum number of entries to read
+         * @return the entries; fewer than max if there are no more
+         * @throws IOException on read errors
+         */
+        List<Entry> read(Long after, int max) throws IOException;
+    }
+
+    /**
+     * Manifest information about a sitemap page.
+     */
+    public static class Page {
+        private long last;
+        private int count;
+        private String lastmod;
+
+        /**
+         * @return the last CODE ID on the page
+         */
+        public long getLast() {
+            return last;
+        }
+
+        public void setLast(long last) {
+            this.last = last;
+        }
+
+        /**
+         * @return the number of URLs on the page
+         */
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        /**
+         * @return the latest modification date on the page
+         */
+        public String getLastmod() {
+            return lastmod;
+        }
+
+        public void setLastmod(String lastmod) {
+            this.lastmod = lastmod;
+        }
+    }
+
+    /**
+     * The persisted page manifest.
+     */
+    public static class Manifest {
+        private long rebuilt;
+        private List<Page> pages;
+
+        /**
+         * @return the time of the last full rebuild
+         */
+        public long getRebuilt() {
+            return rebuilt;
+        }
+
+        public void setRebuilt(long rebuilt) {
+            this.rebuilt = rebuilt;
+        }
+
+        /**
+         * @return the Pages, in order
+         */
+        public List<Page> getPages() {
+            return pages;
+        }
+
+        public void setPages(List<Page> pages) {
+            this.pages = pages;
+        }
+    }
+
+    // the shared instance, and its refresh schedule
+    private static SitemapBuilder instance = null;
+    private static ScheduledExecutorService scheduler = null;
+
+    private final Source source;
+    private final Path directory;
+    private final String siteUrl;
+    private final int pageSize;
+    private final XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newFactory();
+
+    // CODE IDs changed since the last refresh
+    private final Set<Long> changed = new HashSet<>();
+    // the current pages, or null if not yet built
+    private volatile List<Page> pages = null;
+
+    // statistics
+    private volatile long lastRebuild = 0;
+    private volatile long lastRefresh = 0;
+    private volatile long refreshes = 0;
+    private volatile long pagesWritten = 0;
+    private volatile long failures = 0;
+
+    /**
+     * Construct a builder.
+     *
+     * @param source the Source of sitemap entries
+     * @param directory the directory for the sitemap files
+     * @param siteUrl the base URL of the site
+     * @param pageSize the maximum number of URLs per page
+     */
+    public SitemapBuilder(Source source, Path directory, String siteUrl, int pageSize) {
+        this.source = source;
+        this.directory = directory;
+        this.siteUrl = siteUrl;
+        this.pageSize = Math.max(1, pageSize);
+    }
+
+    /**
+     * Obtain the shared builder, if sitemaps are configured.
+     *
+     * @return the SitemapBuilder instance, or null if searching is not
+     * configured
+     */
+    public static synchronized SitemapBuilder getInstance() {
+        return instance;
+    }
+
+    /**
+     * Start building and refreshing the shared sitemap in the background,
+     * reading entries from the searching service.  Does nothing if searching
+     * is not configured.
+     */
+    public static synchronized void start() {
+        if (null!=instance || !SearchBackends.isSearching())
+            return;
+        final SearchBackend backend = SearchBackends.getInstance();
+
+        String dir = DoeServletContextListener.getConfigurationProperty("sitemap.dir");
+        Path directory = StringUtils.isBlank(dir) ?
+                Paths.get(System.getProperty("java.io.tmpdir"), "doecode-sitemap") :
+                Paths.get(dir);
+        final long refreshInterval = Math.max(1000, DoeServletContextListener.getConfigurationProperty("sitemap.refresh.interval", 600000));
+        final long rebuildInterval = DoeServletContextListener.getConfigurationProperty("sitemap.rebuild.interval", 86400000);
+
+        instance = new SitemapBuilder((after, max) -> readFromIndex(backend, after, max), directory,
+                DoeServletContextListener.getConfigurationProperty("site.url"), MAX_URLS);
+
+        if (SolrIndexer.isConfigured())
+            IndexQueue.getInstance().addListener(instance::changed);
+
+        final SitemapBuilder builder = instance;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sitemap");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> builder.refresh(rebuildInterval), 0, refreshInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the background sitemap refresh.
+     */
+    public static synchronized void shutdown() {
+        if (null==scheduler)
+            return;
+
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+        instance = null;
+    }
+
+    /**
+     * Read sitemap entries from the searching service.  Pages are read by CODE
+     * ID range (keyset) rather than by cursor mark, as a refresh starts at the
+     * boundary of whichever page changed.
+     *
+     * @param backend the SearchBackend to query
+     * @param after the CODE ID to read after, or null
+     * @param max the maximum number to read
+     * @return the entries read
+     * @throws IOException on search errors
+     */
+    private static List<Entry> readFromIndex(SearchBackend backend, Long after, int max) throws IOException {
+        String q = (null==after) ? "*:*" : "codeId:{" + after + " TO *]";
+        SearchQuery query = new SearchQuery(q)
+                .sort("codeId asc")
+                .rows(max)
+                .fields("codeId", "dateRecordUpdated");
+        SolrResult result;
+        try (InputStream in = backend.query(query)) {
+            result = mapper.readValue(in, SolrResult.class);
+        }
+        List<Entry> entries = new ArrayList<>();
+
+        if (!result.getSearchResponse().isEmpty()) {
+            for ( SolrDocument doc : result.getSearchResponse().getDocuments() )
+                entries.add(new Entry(doc.getCodeId(), doc.getDateRecordUpdated()));
+        }
+        return entries;
+    }
+
+    /**
+     * Note records that have changed, for the next refresh.
+     *
+     * @param codeIds the CODE IDs changed
+     */
+    public void changed(Collection<Long> codeIds) {
+        synchronized (changed) {
+            changed.addAll(codeIds);
+        }
+    }
+
+    /**
+     * Refresh in the background, logging any failure.  Rebuilds everything
+     * if the last full rebuild is too old.
+     *
+     * @param rebuildInterval milliseconds between full rebuilds
+     */
+    private void refresh(long rebuildInterval) {
+        try {
+            if (rebuildInterval>0 && null!=pages && System.currentTimeMillis()-lastRebuild>=rebuildInterval)
+                rebuild();
+            else
+                refresh();
+        } catch ( Exception e ) {
+            log.warn("Sitemap refresh failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rewrite the pages affected by records changed since the last refresh,
+     * or build everything if no sitemap exists yet.
+     *
+     * @throws IOException on read or write errors; changes will be retried
+     * on the next refresh
+     */
+    public synchronized void refresh() throws IOException {
+        if (null==pages)
+            pages = loadManifest();
+        if (null==pages) {
+            rebuild();
+            return;
+        }
+
+        Set<Long> codeIds;
+        synchronized (changed) {
+            codeIds = new HashSet<>(changed);
+            changed.clear();
+        }
+        if (codeIds.isEmpty())
+            return;
+
+        try {
+            // find the page each change belongs to
+            TreeSet<Integer> affected = new TreeSet<>();
+            for ( Long codeId : codeIds )
+                affected.add(pageOf(codeId));
+
+            int written = 0;
+            for ( int page : affected ) {
+                if (page>=written)
+                    written = writePages(page, false);
+            }
+            writeIndex();
+            saveManifest();
+            ++refreshes;
+            lastRefresh = System.currentTimeMillis();
+        } catch ( IOException | RuntimeException e ) {
+            ++failures;
+            // try these again next time
+            changed(codeIds);
+            throw e;
+        }
+    }
+
+    /**
+     * Rebuild the entire sitemap.
+     *
+     * @throws IOException on read or write errors
+     */
+    public synchronized void rebuild() throws IOException {
+        synchronized (changed) {
+            changed.clear();
+        }
+        try {
+            Files.createDirectories(directory);
+            if (null==pages)
+                pages = new ArrayList<>();
+
+            writePages(0, true);
+            writeIndex();
+            lastRebuild = lastRefresh = System.currentTimeMillis();
+            saveManifest();
+            log.info("Sitemap rebuilt: " + pages.size() + " pages.");
+        } catch ( IOException | RuntimeException e ) {
+            ++failures;
+            throw e;
+        }
+    }
+
+    /**
+     * Determine which page a CODE ID belongs on.
+     *
+     * @param codeId the CODE ID
+     * @return the page index (0-based)
+     */
+    private int pageOf(long codeId) {
+        for ( int i = 0; i<pages.size(); ++i ) {
+            if (codeId<=pages.get(i).getLast())
+                return i;
+        }
+        // beyond the end, so on the last page, or a new one if that is full
+        if (!pages.isEmpty() && pages.get(pages.size()-1).getCount()>=pageSize)
+            return pages.size();
+        return Math.max(0, pages.size()-1);
+    }
+
+    /**
+     * Rewrite pages starting at the given page.  Unless rebuilding to the
+     * end, stop once a rewritten page ends where it did before; a full last
+     * page may still be followed by new records, so reading continues past it.
+     *
+     * @param start the first page index (0-based) to rewrite
+     * @param toEnd if true, rewrite every page from start on
+     * @return the index of the first page not rewritten
+     * @throws IOException on read or write errors
+     */
+    private int writePages(int start, boolean toEnd) throws IOException {
+        List<Page> updated = new ArrayList<>(pages.subList(0, start));
+        Long after = (0==start) ? null : pages.get(start-1).getLast();
+        int index = start;
+
+        while (true) {
+            List<Entry> entries = source.read(after, pageSize);
+            if (entries.isEmpty())
+                break;
+
+            Page page = writePage(index, entries);
+            boolean aligned = (index<pages.size()-1 && pages.get(index).getLast()==page.getLast());
+            updated.add(page);
+            after = page.getLast();
+            ++index;
+
+            if (aligned && !toEnd) {
+                // the remaining pages are unaffected
+                updated.addAll(pages.subList(index, pages.size()));
+                pages = updated;
+                return index;
+            }
+            if (entries.size()<pageSize)
+                break;
+        }
+
+        // remove any pages no longer needed
+        for ( int i = index; i<pages.size(); ++i )
+            Files.deleteIfExists(directory.resolve(pageFile(i+1)));
+        pages = updated;
+
+        return index;
+    }
+
+    /**
+     * Write a single sitemap page.
+     *
+     * @param index the page index (0-based)
+     * @param entries the entries on the page
+     * @return the Page manifest information
+     * @throws IOException on write errors
+     */
+    private Page writePage(int index, List<Entry> entries) throws IOException {
+        Page page = new Page();
+        page.setLast(entries.get(entries.size()-1).codeId);
+        page.setCount(entries.size());
+
+        String latest = null;
+        for ( Entry entry : entries ) {
+            if (null!=entry.lastmod && (null==latest || entry.lastmod.compareTo(latest)>0))
+                latest = entry.lastmod;
+        }
+        page.setLastmod((null==latest) ? LocalDate.now().toString() : latest);
+
+        Path temp = Files.createTempFile(directory, "sitemap", ".tmp");
+        OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)));
+
+        try {
+            XMLStreamWriter xml = xmlOutputFactory.createXMLStreamWriter(out, "UTF-8");
+
+            xml.writeStartDocument("UTF-8", "1.0");
+            xml.writeStartElement("urlset");
+            xml.writeDefaultNamespace(NAMESPACE);
+            for ( Entry entry : entries ) {
+                xml.writeStartElement("url");
+                writeElement(xml, "loc", siteUrl + "/biblio/" + entry.codeId);
+                if (null!=entry.lastmod)
+                    writeElement(xml, "lastmod", entry.lastmod);
+                writeElement(xml, "changefreq", "monthly");
+                writeElement(xml, "priority", "0.5");
+                xml.writeEndElement();
+            }
+            xml.writeEndElement();
+            xml.writeEndDocument();
+            xml.close();
+        } catch ( XMLStreamException e ) {
+            throw new IOException("Unable to write sitemap page: " + e.getMessage());
+        } finally {
+            out.close();
+        }
+        Files.move(temp, directory.resolve(pageFile(index+1)), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        ++pagesWritten;
+
+        return page;
+    }
+
+    /**
+     * Write the sitemap index of all pages.
+     *
+     * @throws IOException on write errors
+     */
+    private void writeIndex() throws IOException {
+        Path temp = Files.createTempFile(directory, "sitemap", ".tmp");
+        OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)));
+
+        try {
+            XMLStreamWriter xml = xmlOutputFactory.createXMLStreamWriter(out, "UTF-8");
+
+            xml.writeStartDocument("UTF-8", "1.0");
+            xml.writeStartElement("sitemapindex");
+            xml.writeDefaultNamespace(NAMESPACE);
+            for ( int i = 0; i<pages.size(); ++i ) {
+                xml.writeStartElement("sitemap");
+                writeElement(xml, "loc", siteUrl + "/api/sitemap/xml/" + (i+1));
+                writeElement(xml, "lastmod", pages.get(i).getLastmod());
+                xml.writeEndElement();
+            }
+            xml.writeEndElement();
+            xml.writeEndDocument();
+            xml.close();
+        } catch ( XMLStreamException e ) {
+            throw new IOException("Unable to write sitemap index: " + e.getMessage());
+        } finally {
+            out.close();
+        }
+        Files.move(temp, directory.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Write a simple element with text content.
+     *
+     * @param xml the XML writer
+     * @param name the element name
+     * @param value the text content
+     * @throws XMLStreamException on write errors
+     */
+    private static void writeElement(XMLStreamWriter xml, String name, String value) throws XMLStreamException {
+        xml.writeStartElement(name);
+        xml.writeCharacters(value);
+        xml.writeEndElement();
+    }
+
+    /**
+     * Read the page manifest, if present.
+     *
+     * @return the Pages, or null if none or unreadable
+     */
+    private List<Page> loadManifest() {
+        Path file = directory.resolve(MANIFEST_FILE);
+
+        if (!Files.exists(file))
+            return null;
+        try {
+            Manifest manifest = mapper.readValue(file.toFile(), Manifest.class);
+            lastRebuild = manifest.getRebuilt();
+            lastRefresh = Files.getLastModifiedTime(file).toMillis();
+            return manifest.getPages();
+        } catch ( IOException e ) {
+            log.warn("Unable to read sitemap manifest: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Write the page manifest.
+     *
+     * @throws IOException on write errors
+     */
+    private void saveManifest() throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.setRebuilt(lastRebuild);
+        manifest.setPages(pages);
+
+        Path temp = Files.createTempFile(directory, "sitemap", ".tmp");
+        mapper.writeValue(temp.toFile(), manifest);
+        Files.move(temp, directory.resolve(MANIFEST_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * The file name of a sitemap page.
+     *
+     * @param pageNum the page number (1-based)
+     * @return the file name
+     */
+    private static String pageFile(int pageNum) {
+        return "sitemap-" + pageNum + ".xml.gz";
+    }
+
+    /**
+     * Obtain the sitemap index file.
+     *
+     * @return the gzip-compressed sitemap index file, or null if not yet built
+     */
+    public Path getIndex() {
+        Path file = directory.resolve(INDEX_FILE);
+
+        return Files.exists(file) ? file : null;
+    }
+
+    /**
+     * Obtain a sitemap page file.
+     *
+     * @param pageNum the page number (1-based)
+     * @return the gzip-compressed sitemap page file, or null if no such page
+     */
+    public Path getPage(long pageNum) {
+        List<Page> current = pages;
+
+        if (null==current || pageNum<1 || pageNum>current.size())
+            return null;
+
+        Path file = directory.resolve(pageFile((int)pageNum));
+
+        return Files.exists(file) ? file : null;
+    }
+
+    /**
+     * Report sitemap size and refresh activity.
+     *
+     * @return a Map of sitemap statistics
+     */
+    public Map<String,Object> getStatistics() {
+        Map<String,Object> statistics = new LinkedHashMap<>();
+        long urls = 0;
+        List<Page> current = (null==pages) ? Collections.<Page>emptyList() : pages;
+
+        for ( Page page : current )
+            urls += page.getCount();
+
+        statistics.put("pages", current.size());
+        statistics.put("urls", urls);
+        synchronized (changed) {
+            statistics.put("pending_changes", changed.size());
+        }
+        statistics.put("last_rebuild", lastRebuild);
+        statistics.put("last_refresh", lastRefresh);
+        statistics.put("refreshes", refreshes);
+        statistics.put("pages_written", pagesWritten);
+        statistics.put("failures", failures);
+
+        return statistics;
+    }
+}
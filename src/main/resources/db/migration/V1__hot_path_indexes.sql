@@ -0,0 +1,28 @@
+-- Secondary indexes for frequent lookups; EclipseLink table generation
+-- creates only primary keys.  Portable to Derby and PostgreSQL.
+
+-- project listings by owner, and by workflow state and site (keyset order)
+CREATE INDEX IDX_METADATA_OWNER ON metadata (OWNER);
+CREATE INDEX IDX_METADATA_STATUS_SITE ON metadata (WORKFLOW_STATUS, SITE_OWNERSHIP_CODE, CODE_ID);
+CREATE INDEX IDX_METADATA_SITE ON metadata (SITE_OWNERSHIP_CODE, CODE_ID);
+-- DOECodeMetadata.findByDoi
+CREATE INDEX IDX_METADATA_DOI ON metadata (DOI);
+
+-- API key authentication on every request
+CREATE INDEX IDX_USERS_APIKEY ON users (APIKEY);
+
+-- child tables, read by owning record
+CREATE INDEX IDX_DEVELOPERS_OWNER ON DEVELOPERS (OWNER_ID);
+CREATE INDEX IDX_CONTRIBUTORS_OWNER ON CONTRIBUTORS (OWNER_ID);
+CREATE INDEX IDX_SPONSORING_ORGS_OWNER ON SPONSORING_ORGANIZATIONS (OWNER_ID);
+CREATE INDEX IDX_CONTRIBUTING_ORGS_OWNER ON CONTRIBUTING_ORGANIZATIONS (OWNER_ID);
+CREATE INDEX IDX_RESEARCH_ORGS_OWNER ON RESEARCH_ORGANIZATIONS (OWNER_ID);
+CREATE INDEX IDX_ACCESS_LIMITATIONS_CODE ON ACCESS_LIMITATIONS (CODE_ID);
+CREATE INDEX IDX_RELATED_IDENTIFIERS_CODE ON RELATED_IDENTIFIERS (CODE_ID);
+CREATE INDEX IDX_LICENSES_CODE ON LICENSES (CODE_ID);
+CREATE INDEX IDX_DEVELOPER_AFFIL_AGENT ON DEVELOPER_AFFILIATIONS (AGENT_ID);
+CREATE INDEX IDX_CONTRIBUTOR_AFFIL_AGENT ON CONTRIBUTOR_AFFILIATIONS (AGENT_ID);
+CREATE INDEX IDX_FUNDING_IDS_ORG ON FUNDING_IDENTIFIERS (ORG_ID);
+
+-- Site.findByDomain
+CREATE INDEX IDX_EMAIL_DOMAINS_DOMAIN ON EMAIL_DOMAINS (EMAIL_DOMAIN);
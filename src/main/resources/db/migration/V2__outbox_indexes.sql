@@ -0,0 +1,5 @@
+-- Outbox polling: due messages by destination and state, and the earlier
+-- messages of the same record that must be delivered first.
+
+CREATE INDEX IDX_OUTBOX_DUE ON OUTBOX (DESTINATION, STATUS, NEXT_ATTEMPT);
+CREATE INDEX IDX_OUTBOX_CODE_ID ON OUTBOX (DESTINATION, CODE_ID, MESSAGE_ID);
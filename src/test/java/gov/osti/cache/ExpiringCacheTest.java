@@ -0,0 +1,143 @@
+/*
+ */
+package gov.osti.cache;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test expiration, size bounds, and invalidation of the ExpiringCache.
+ *
+ * @author ensornl
+ */
+public class ExpiringCacheTest {
+
+    /**
+     * A cache with a manually-advanced clock.
+     */
+    private static class TestCache extends ExpiringCache<String, String> {
+        private long time = 1000;
+
+        TestCache(int maxSize, long ttl) {
+            super(maxSize, ttl);
+        }
+
+        @Override
+        protected long now() {
+            return time;
+        }
+
+        void advance(long millis) {
+            time += millis;
+        }
+    }
+
+    public ExpiringCacheTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Entries expire after their time to live.
+     */
+    @Test
+    public void testExpiration() {
+        TestCache cache = new TestCache(10, 100);
+
+        cache.put("a", "1");
+        cache.put("b", "2", 500);
+
+        assertEquals("Missing value", "1", cache.get("a"));
+        cache.advance(100);
+        assertNull("Value not expired", cache.get("a"));
+        assertEquals("Custom TTL ignored", "2", cache.get("b"));
+        cache.advance(400);
+        assertNull("Custom TTL not expired", cache.get("b"));
+
+        assertEquals("Wrong hits", 2L, cache.getStatistics().get("hits"));
+        assertEquals("Wrong misses", 2L, cache.getStatistics().get("misses"));
+    }
+
+    /**
+     * Least-recently-used entries are evicted when full.
+     */
+    @Test
+    public void testEviction() {
+        TestCache cache = new TestCache(2, 1000);
+
+        cache.put("a", "1");
+        cache.put("b", "2");
+        // touch "a" so "b" is the least-recently used
+        cache.get("a");
+        cache.put("c", "3");
+
+        assertEquals("Wrong size", 2, cache.size());
+        assertNull("Wrong entry evicted", cache.get("b"));
+        assertEquals("Recent entry evicted", "1", cache.get("a"));
+        assertEquals("Wrong evictions", 1L, cache.getStatistics().get("evictions"));
+    }
+
+    /**
+     * Entries may be invalidated by key or condition.
+     */
+    @Test
+    public void testInvalidate() {
+        TestCache cache = new TestCache(10, 1000);
+
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("c", "2");
+
+        cache.invalidate("a");
+        assertNull("Not invalidated", cache.get("a"));
+
+        assertEquals("Wrong removed count", 2, cache.invalidateIf((key, value) -> "2".equals(value)));
+        assertEquals("Not empty", 0, cache.size());
+    }
+
+    /**
+     * Weight-bounded caches evict least-recently-used entries to fit.
+     */
+    @Test
+    public void testWeight() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, 1000, 10, String::length);
+
+        cache.put("a", "1234");
+        cache.put("b", "1234");
+        cache.get("a");
+        cache.put("c", "1234");
+
+        assertNull("Wrong entry evicted", cache.get("b"));
+        assertEquals("Wrong weight", 8L, cache.getStatistics().get("weight"));
+
+        // replacing an entry replaces its weight
+        cache.put("a", "12");
+        assertEquals("Wrong weight after replace", 6L, cache.getStatistics().get("weight"));
+
+        // too heavy to hold at all
+        cache.put("d", "12345678901");
+        assertNull("Oversized entry cached", cache.get("d"));
+        assertEquals("Entries evicted for oversized entry", 2, cache.size());
+
+        cache.clear();
+        assertEquals("Weight not cleared", 0L, cache.getStatistics().get("weight"));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ */
+package gov.osti.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the approved record cache.
+ *
+ * @author ensornl
+ */
+public class RecordCacheTest {
+
+    public RecordCacheTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+        RecordCache.invalidate();
+    }
+
+    @After
+    public void tearDown() {
+        RecordCache.invalidate();
+    }
+
+    /**
+     * Construct a rendered record.
+     */
+    private static RecordCache.Record record(String value) {
+        byte[] content = value.getBytes(StandardCharsets.UTF_8);
+        return new RecordCache.Record(content, content, content);
+    }
+
+    /**
+     * Test reading through, invalidation by CODE ID, and updates during a read.
+     */
+    @Test
+    public void testReadThrough() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        RecordCache.Loader loader = codeId -> (codeId<0) ? null : record("record " + codeId + " v" + loads.incrementAndGet());
+
+        assertEquals("Wrong record", "record 1 v1", new String(RecordCache.get(1L, loader).getJson(), StandardCharsets.UTF_8));
+        assertEquals("Not cached", "record 1 v1", new String(RecordCache.get(1L, loader).getXml(), StandardCharsets.UTF_8));
+        assertEquals("Wrong loads", 1, loads.get());
+        assertNull("Found missing record", RecordCache.get(-1L, loader));
+
+        RecordCache.get(2L, loader);
+        RecordCache.invalidate(Arrays.asList(1L));
+        assertEquals("Not refreshed", "record 1 v3", new String(RecordCache.get(1L, loader).getYaml(), StandardCharsets.UTF_8));
+        assertEquals("Other record discarded", "record 2 v2", new String(RecordCache.get(2L, loader).getJson(), StandardCharsets.UTF_8));
+
+        // a copy read while the record is approved again is not kept
+        RecordCache.Loader racing = codeId -> {
+            RecordCache.invalidate(Arrays.asList(codeId));
+            return record("stale");
+        };
+        assertEquals("Wrong stale record", "stale", new String(RecordCache.get(3L, racing).getJson(), StandardCharsets.UTF_8));
+        assertEquals("Stale record kept", "record 3 v4", new String(RecordCache.get(3L, loader).getJson(), StandardCharsets.UTF_8));
+    }
+}
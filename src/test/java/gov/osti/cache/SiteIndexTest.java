@@ -0,0 +1,69 @@
+/*
+ */
+package gov.osti.cache;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test resolving email addresses to sites.
+ *
+ * @author ensornl
+ */
+public class SiteIndexTest {
+
+    public SiteIndexTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test longest domain suffix matching.
+     */
+    @Test
+    public void testResolve() throws Exception {
+        SiteIndex.load(Arrays.asList(
+                new Object[] {"ORNL", "@ornl.gov"},
+                new Object[] {"ORNLCS", "cs.ornl.gov"},
+                new Object[] {"LANL", " @LANL.GOV "},
+                new Object[] {"OTHER", "@lanl.gov"},
+                new Object[] {"NONE", ""}));
+
+        assertEquals("Wrong exact match", "ORNL", SiteIndex.resolve("user@ornl.gov"));
+        assertEquals("Wrong subdomain match", "ORNL", SiteIndex.resolve("user@lab.ornl.gov"));
+        assertEquals("Wrong longer match", "ORNLCS", SiteIndex.resolve("user@math.cs.ornl.gov"));
+        assertEquals("Case or spacing not ignored", "LANL", SiteIndex.resolve("User@Lanl.Gov"));
+        assertEquals("Matched partial label", SiteIndex.CONTRACTOR, SiteIndex.resolve("user@xornl.gov"));
+        assertEquals("Matched parent domain", SiteIndex.CONTRACTOR, SiteIndex.resolve("user@gov"));
+        assertEquals("Matched unknown domain", SiteIndex.CONTRACTOR, SiteIndex.resolve("user@example.com"));
+        assertEquals("Matched no domain", SiteIndex.CONTRACTOR, SiteIndex.resolve("user@"));
+
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put("a@cs.ornl.gov", "ORNLCS");
+        expected.put("b@example.com", SiteIndex.CONTRACTOR);
+        assertEquals("Wrong bulk resolution", expected,
+                SiteIndex.resolve(Arrays.asList("a@cs.ornl.gov", "b@example.com")));
+        assertEquals("Wrong domain count", 3, SiteIndex.getStatistics().get("domains"));
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ */
+package gov.osti.cache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test result caching and invalidation of the ValidationCache.
+ *
+ * @author ensornl
+ */
+public class ValidationCacheTest {
+
+    public ValidationCacheTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+        ValidationCache.clear();
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Results are cached by type and normalized value, and a failed check
+     * is not valid.
+     */
+    @Test
+    public void testCheck() {
+        final AtomicInteger calls = new AtomicInteger();
+
+        assertTrue("Wrong result", ValidationCache.check("repositorylink", "https://github.com/doecode/server",
+                () -> calls.incrementAndGet() > 0));
+        assertTrue("Not cached", ValidationCache.check("RepositoryLink", " https://github.com/doecode/server/ ",
+                () -> calls.incrementAndGet() < 0));
+        assertEquals("Check repeated", 1, calls.get());
+
+        // same value, different check
+        assertFalse("Wrong result", ValidationCache.check("awardnumber", "https://github.com/doecode/server",
+                () -> calls.incrementAndGet() < 0));
+        assertEquals("Types not separate", 2, calls.get());
+
+        assertFalse("Failure passed", ValidationCache.check("awardnumber", "AC05-00OR22725", () -> {
+            throw new java.io.IOException("unreachable");
+        }));
+        assertFalse("Failure not cached", ValidationCache.check("awardnumber", "AC05-00OR22725", () -> true));
+    }
+
+    /**
+     * Single entries may be purged.
+     */
+    @Test
+    public void testInvalidate() {
+        assertFalse("Wrong result", ValidationCache.check("awardnumber", "AC05-00OR22725", () -> false));
+        ValidationCache.invalidate("awardnumber", "AC05-00OR22725 ");
+        assertTrue("Not purged", ValidationCache.check("awardnumber", "AC05-00OR22725", () -> true));
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ */
+package gov.osti.cache;
+
+import gov.osti.entity.DOECodeMetadata.Status;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the workflow status counts.
+ *
+ * @author ensornl
+ */
+public class WorkflowCountsTest {
+
+    public WorkflowCountsTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+        WorkflowCounts.load(Arrays.asList(
+                new Object[] {Status.Saved, "ORNL", 3L},
+                new Object[] {Status.Submitted, "ORNL", 2L},
+                new Object[] {Status.Submitted, "LBNL", 4L},
+                new Object[] {Status.Approved, null, 1L}));
+    }
+
+    @After
+    public void tearDown() {
+        WorkflowCounts.invalidate();
+    }
+
+    /**
+     * Test counting by state and site, and applying changes.
+     */
+    @Test
+    public void testCounts() throws Exception {
+        assertEquals("Wrong total", 10, WorkflowCounts.getCount(null));
+        assertEquals("Wrong state count", 6, WorkflowCounts.getCount(Status.Submitted));
+        assertEquals("Wrong site count", 5, WorkflowCounts.getCount(null, "ORNL"));
+        assertEquals("Wrong state site count", 4, WorkflowCounts.getCount(Status.Submitted, "LBNL"));
+        assertEquals("Wrong unknown site count", 0, WorkflowCounts.getCount(Status.Saved, "ANL"));
+        assertEquals("Wrong no site count", 1, WorkflowCounts.getCount(Status.Approved, null));
+
+        // a new record, a submission, and an approval
+        WorkflowCounts.change(null, Status.Saved, "ANL").apply();
+        WorkflowCounts.change(Status.Saved, Status.Submitted, "ORNL").apply();
+        WorkflowCounts.change(Status.Submitted, Status.Approved, "LBNL").apply();
+        // an edit without a state change
+        WorkflowCounts.change(Status.Submitted, Status.Submitted, "ORNL").apply();
+
+        assertEquals("Wrong total after changes", 11, WorkflowCounts.getCount(null));
+        assertEquals("Wrong new site count", 1, WorkflowCounts.getCount(Status.Saved, "ANL"));
+        assertEquals("Wrong saved count", 3, WorkflowCounts.getCount(Status.Saved));
+        assertEquals("Wrong submitted count", 6, WorkflowCounts.getCount(Status.Submitted));
+        assertEquals("Wrong approved count", 2, WorkflowCounts.getCount(Status.Approved));
+        assertEquals("Wrong site count after changes", 5, WorkflowCounts.getCount(null, "ORNL"));
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ */
+package gov.osti.connectors;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test keying and invalidation of the AutopopulateCache.
+ *
+ * @author ensornl
+ */
+public class AutopopulateCacheTest {
+
+    public AutopopulateCacheTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test of canonical method, of class AutopopulateCache.
+     */
+    @Test
+    public void testCanonical() {
+        String[] same = {
+            "https://github.com/doecode/server",
+            " https://GitHub.com/doecode/server/ ",
+            "HTTPS://github.com/doecode/server.git",
+            "https://github.com/doecode/server?tab=readme#top"
+        };
+
+        for ( String url : same )
+            assertEquals("Wrong key for " + url, "https://github.com/doecode/server", AutopopulateCache.canonical(url));
+
+        assertNotEquals("Path case ignored", AutopopulateCache.canonical("https://github.com/doecode/server"),
+                AutopopulateCache.canonical("https://github.com/DOEcode/server"));
+    }
+
+    /**
+     * Results are read once per repository until invalidated.
+     */
+    @Test
+    public void testGet() {
+        final AtomicInteger reads = new AtomicInteger();
+        AutopopulateCache cache = new AutopopulateCache(url -> {
+            reads.incrementAndGet();
+            return JsonNodeFactory.instance.objectNode().put("repository_link", url);
+        });
+
+        JsonNode first = cache.get("https://github.com/doecode/server");
+        assertSame("Not cached", first, cache.get("https://github.com/doecode/server/"));
+        assertEquals("Read again", 1, reads.get());
+
+        cache.invalidate("https://github.com/doecode/server.git");
+        cache.get("https://github.com/doecode/server");
+        assertEquals("Not invalidated", 2, reads.get());
+        cache.shutdown();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ */
+package gov.osti.connectors;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test host routing and lazy initialization of the ConnectorFactory.
+ *
+ * @author ensornl
+ */
+public class ConnectorFactoryTest {
+
+    /**
+     * A Connector answering with its own name for the given host.
+     */
+    private static class NamedConnector implements ConnectorInterface {
+        private final String name;
+        private final String host;
+        private int inits = 0;
+
+        NamedConnector(String name, String host) {
+            this.name = name;
+            this.host = host;
+        }
+
+        @Override
+        public void init() throws IOException {
+            ++inits;
+        }
+
+        @Override
+        public JsonNode read(String url) {
+            return JsonNodeFactory.instance.textNode(name);
+        }
+
+        @Override
+        public Collection<String> getHosts() {
+            return (null==host) ? Collections.emptyList() : Collections.singletonList(host);
+        }
+    }
+
+    public ConnectorFactoryTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * URLs go to the Connector for their host (or parent domain), or else
+     * to the Connectors handling any host.
+     */
+    @Test
+    public void testRead() throws Exception {
+        // a separate factory from the shared instance
+        Constructor<ConnectorFactory> constructor = ConnectorFactory.class.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        ConnectorFactory factory = constructor.newInstance();
+
+        NamedConnector github = new NamedConnector("github", "github.com");
+        NamedConnector other = new NamedConnector("other", null);
+        factory.add(other)
+                .add(github)
+                .add(new NamedConnector("bitbucket", "bitbucket.org"))
+                .build();
+
+        assertEquals("Initialized early", 0, github.inits);
+        assertEquals("Wrong route", "github", factory.read("https://github.com/doecode/server").asText());
+        assertEquals("Wrong route", "github", factory.read("https://www.GitHub.com/doecode/other").asText());
+        assertEquals("Wrong route", "bitbucket", factory.read("https://bitbucket.org/team/project").asText());
+        assertEquals("Wrong route", "other", factory.read("https://gitlab.com/team/project").asText());
+        assertEquals("Not initialized once", 1, github.inits);
+
+        // each instance of the same class is reported separately
+        String[] names = { "NamedConnector", "NamedConnector#2", "NamedConnector#3" };
+        long[] calls = { 1, 2, 1 };
+        for ( int i = 0; i<names.length; ++i ) {
+            @SuppressWarnings("unchecked")
+            Map<String,Object> statistics = (Map<String,Object>) factory.getStatistics().get(names[i]);
+            assertNotNull("No statistics for " + names[i], statistics);
+            assertEquals("Wrong calls for " + names[i], calls[i], statistics.get("calls"));
+        }
+        factory.shutdown();
+    }
+}
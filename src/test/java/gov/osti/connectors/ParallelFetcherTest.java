@@ -0,0 +1,168 @@
+/*
+ */
+package gov.osti.connectors;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test rate limit handling, per-host limits, and deadlines of the
+ * ParallelFetcher.
+ *
+ * @author ensornl
+ */
+public class ParallelFetcherTest {
+    // a local HTTP service; "/delay/n" answers "n" after n milliseconds
+    private static HttpServer server;
+    private static final AtomicInteger active = new AtomicInteger();
+    private static final AtomicInteger maxActive = new AtomicInteger();
+
+    public ParallelFetcherTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/delay/", exchange -> {
+            String delay = exchange.getRequestURI().getPath().substring("/delay/".length());
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+
+            try {
+                Thread.sleep(Long.parseLong(delay));
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            } finally {
+                active.decrementAndGet();
+            }
+
+            byte[] content = delay.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, content.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(content);
+            } catch ( IOException e ) {
+                // the client gave up
+            }
+        });
+        server.createContext("/limited", exchange -> {
+            exchange.getResponseHeaders().add("Retry-After", "1");
+            exchange.sendResponseHeaders(403, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        server.stop(0);
+        ParallelFetcher.shutdown();
+    }
+
+    @Before
+    public void setUp() {
+        maxActive.set(0);
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Construct a GET of the local service.
+     *
+     * @param host the host name to call it by
+     * @param path the request path
+     * @return the HttpGet
+     */
+    private static HttpGet get(String host, String path) {
+        return new HttpGet("http://" + host + ":" + server.getAddress().getPort() + path);
+    }
+
+    /**
+     * Test reading rate limit headers.
+     */
+    @Test
+    public void testLimitedUntil() {
+        long now = 1500000000000L;
+
+        assertEquals("Retry-After not read", now + 30000, ParallelFetcher.limitedUntil(null, null, "30", now));
+        assertEquals("Retry-After not first", now + 30000, ParallelFetcher.limitedUntil("0", "1500000120", "30", now));
+        assertEquals("Bad Retry-After not defaulted", now + 60000, ParallelFetcher.limitedUntil(null, null, "Wed, 21 Oct", now));
+        assertEquals("Reset not read", 1500000120000L, ParallelFetcher.limitedUntil("0", "1500000120", null, now));
+        assertEquals("Past reset not defaulted", now + 60000, ParallelFetcher.limitedUntil("0", "1400000000", null, now));
+        assertEquals("Missing reset not defaulted", now + 60000, ParallelFetcher.limitedUntil("0", null, null, now));
+        assertEquals("Limited with requests remaining", 0, ParallelFetcher.limitedUntil("5", "1500000120", null, now));
+        assertEquals("Limited without headers", 0, ParallelFetcher.limitedUntil(null, null, null, now));
+    }
+
+    /**
+     * Test requests to one host are limited to the per-host parallelism.
+     */
+    @Test
+    public void testHostParallelism() {
+        List<HttpGet> gets = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for ( int i = 0; i<ParallelFetcher.HOST_PARALLELISM * 3; ++i ) {
+            gets.add(get("localhost", "/delay/" + (200 + i)));
+            expected.add(String.valueOf(200 + i));
+        }
+
+        List<String> results = ParallelFetcher.fetchAll(gets, content -> content, System.currentTimeMillis() + 10000);
+
+        assertEquals("Wrong results", expected, results);
+        assertTrue("Host parallelism exceeded: " + maxActive.get(), maxActive.get()<=ParallelFetcher.HOST_PARALLELISM);
+        assertTrue("Requests not concurrent", maxActive.get()>1);
+    }
+
+    /**
+     * Test results available by the deadline are returned in request order,
+     * leaving out those not complete.
+     */
+    @Test
+    public void testDeadline() {
+        List<HttpGet> gets = Arrays.asList(
+                get("localhost", "/delay/300"),
+                get("localhost", "/delay/5000"),
+                get("localhost", "/delay/0"));
+        long start = System.currentTimeMillis();
+
+        List<String> results = ParallelFetcher.fetchAll(gets, content -> content, start + 1500);
+
+        assertEquals("Wrong partial results", Arrays.asList("300", "0"), results);
+        assertTrue("Deadline not kept", System.currentTimeMillis() - start < 4000);
+        assertTrue("Late request not aborted", gets.get(1).isAborted());
+    }
+
+    /**
+     * Test a host reporting a rate limit is not called again until it resets.
+     */
+    @Test
+    public void testRateLimited() throws Exception {
+        assertEquals("Limited request not empty", "", ParallelFetcher.fetch(get("127.0.0.1", "/limited")));
+
+        try {
+            ParallelFetcher.fetch(get("127.0.0.1", "/delay/0"));
+            fail("Rate limited host called");
+        } catch ( IOException e ) {
+            assertEquals("Wrong error", "Rate limit reached for 127.0.0.1", e.getMessage());
+        }
+
+        Thread.sleep(1100);
+        assertEquals("Host not called after reset", "0", ParallelFetcher.fetch(get("127.0.0.1", "/delay/0")));
+    }
+}
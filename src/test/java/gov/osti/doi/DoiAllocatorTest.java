@@ -0,0 +1,151 @@
+/*
+ */
+package gov.osti.doi;
+
+import gov.osti.entity.DoiReservation;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test uniqueness and date rollover of DOI block allocation under
+ * concurrency.
+ *
+ * @author ensornl
+ */
+public class DoiAllocatorTest {
+
+    /**
+     * A shared BlockSource standing in for the database row, with the same
+     * block claim logic.
+     */
+    private static class SharedSource implements DoiAllocator.BlockSource {
+        private final DoiReservation row = new DoiReservation();
+        private final AtomicInteger claims = new AtomicInteger();
+
+        @Override
+        public synchronized DoiAllocator.Block claim(String datePattern, int size) throws IOException {
+            claims.incrementAndGet();
+            int first = row.reserveBlock(datePattern, size);
+
+            return new DoiAllocator.Block(row.getDatePattern(), first, row.getIndex());
+        }
+    }
+
+    public DoiAllocatorTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Many threads across several allocators ("nodes") sharing one source
+     * never receive the same value.
+     */
+    @Test
+    public void testConcurrentUniqueness() throws Exception {
+        final int nodes = 4;
+        final int threadsPerNode = 8;
+        final int perThread = 500;
+        final LocalDate today = LocalDate.of(2017, 6, 1);
+
+        SharedSource source = new SharedSource();
+        List<DoiAllocator> allocators = new ArrayList<>();
+        for ( int i = 0; i<nodes; ++i )
+            allocators.add(new DoiAllocator(source, 7, () -> today));
+
+        final Set<String> values = ConcurrentHashMap.newKeySet();
+        final AtomicInteger duplicates = new AtomicInteger();
+        final CountDownLatch go = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(nodes * threadsPerNode);
+        List<Future<Object>> results = new ArrayList<>();
+
+        for ( DoiAllocator allocator : allocators ) {
+            for ( int t = 0; t<threadsPerNode; ++t ) {
+                results.add(pool.submit((Callable<Object>) () -> {
+                    go.await();
+                    for ( int n = 0; n<perThread; ++n ) {
+                        DoiReservation r = allocator.reserve();
+                        if (!values.add(r.getDatePattern() + "." + r.getIndex()))
+                            duplicates.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+        }
+        go.countDown();
+        for ( Future<Object> result : results )
+            result.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        int total = nodes * threadsPerNode * perThread;
+        assertEquals("Duplicate values issued", 0, duplicates.get());
+        assertEquals("Wrong number of values", total, values.size());
+        // blocks never overlap, so at most one partially-used block per node
+        assertTrue("Too many values skipped", source.row.getIndex() - total < nodes * 7);
+        assertTrue("Block claims not amortized", source.claims.get() < total / 2);
+    }
+
+    /**
+     * Date rollover restarts the sequence, and a lagging clock on one node
+     * does not move the sequence back to the previous date.
+     */
+    @Test
+    public void testRollover() throws Exception {
+        final AtomicReference<LocalDate> fast = new AtomicReference<>(LocalDate.of(2017, 6, 1));
+        final AtomicReference<LocalDate> slow = new AtomicReference<>(LocalDate.of(2017, 6, 1));
+
+        SharedSource source = new SharedSource();
+        DoiAllocator a = new DoiAllocator(source, 5, fast::get);
+        DoiAllocator b = new DoiAllocator(source, 5, slow::get);
+
+        DoiReservation first = a.reserve();
+        assertEquals("Wrong date", "20170601", first.getDatePattern());
+        assertEquals("Wrong index", Integer.valueOf(1), first.getIndex());
+        assertEquals("Wrong second block", Integer.valueOf(6), b.reserve().getIndex());
+
+        // node A passes midnight; new sequence
+        fast.set(LocalDate.of(2017, 6, 2));
+        DoiReservation next = a.reserve();
+        assertEquals("Not rolled over", "20170602", next.getDatePattern());
+        assertEquals("Wrong rollover index", Integer.valueOf(1), next.getIndex());
+
+        // node B is still on yesterday's block; once used up, it must claim
+        // from today's sequence rather than resetting yesterday's
+        for ( int i = 0; i<4; ++i )
+            assertEquals("Wrong date", "20170601", b.reserve().getDatePattern());
+        DoiReservation lagging = b.reserve();
+        assertEquals("Sequence moved backwards", "20170602", lagging.getDatePattern());
+        assertEquals("Wrong index", Integer.valueOf(6), lagging.getIndex());
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ */
+package gov.osti.indexer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test batching, coalescing, and retry behavior of the IndexQueue.
+ *
+ * @author ensornl
+ */
+public class IndexQueueTest {
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    public IndexQueueTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Construct a test index document.
+     *
+     * @param codeId the CODE ID
+     * @param version a version marker
+     * @return an index document
+     */
+    private static ObjectNode document(long codeId, int version) {
+        return mapper.createObjectNode().put("codeId", codeId).put("version", version);
+    }
+
+    /**
+     * Repeated updates to a CODE ID are sent once, latest version only; full
+     * batches are sent without waiting for the window.
+     */
+    @Test
+    public void testCoalesceAndBatch() throws Exception {
+        final List<List<ObjectNode>> batches = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        // long window; only a full batch should trigger a send
+        IndexQueue queue = new IndexQueue((docs) -> {
+            batches.add(new ArrayList<>(docs));
+            latch.countDown();
+        }, 3, 60000, 3, 10, 100);
+
+        queue.enqueue(1L, document(1, 1));
+        queue.enqueue(2L, document(2, 1));
+        queue.enqueue(1L, document(1, 2));
+        queue.start();
+
+        assertFalse("Sent partial batch early", latch.await(200, TimeUnit.MILLISECONDS));
+        assertEquals("Wrong depth", 2, queue.getStatistics().get("depth"));
+
+        queue.enqueue(3L, document(3, 1));
+
+        assertTrue("Batch not sent", latch.await(5, TimeUnit.SECONDS));
+        queue.shutdown(5000);
+
+        assertEquals("Wrong batch count", 1, batches.size());
+        List<ObjectNode> batch = batches.get(0);
+        assertEquals("Wrong batch size", 3, batch.size());
+        assertEquals("Wrong order", 1, batch.get(0).get("codeId").asInt());
+        assertEquals("Not coalesced", 2, batch.get(0).get("version").asInt());
+        assertEquals("Wrong coalesced count", 1L, queue.getStatistics().get("coalesced"));
+    }
+
+    /**
+     * Failed batches are retried, and given up after the maximum attempts.
+     */
+    @Test
+    public void testRetry() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+
+        IndexQueue queue = new IndexQueue((docs) -> {
+            // fail the first attempt only
+            if (1==calls.incrementAndGet())
+                throw new IOException("Unavailable");
+        }, 10, 0, 3, 10, 100);
+
+        queue.start();
+        queue.enqueue(1L, document(1, 1));
+
+        assertTrue("Not retried", queue.awaitIdle(5000));
+        assertEquals("Wrong attempts", 2, calls.get());
+        assertEquals("Wrong sent count", 1L, queue.getStatistics().get("sent"));
+
+        // always fails; should be dropped after 3 attempts
+        IndexQueue failing = new IndexQueue((docs) -> {
+            throw new IOException("Unavailable");
+        }, 10, 0, 3, 10, 100);
+
+        failing.start();
+        failing.enqueue(1L, document(1, 1));
+
+        assertTrue("Not dropped", failing.awaitIdle(5000));
+        assertEquals("Wrong dropped count", 1L, failing.getStatistics().get("dropped"));
+        assertEquals("Wrong failure count", 3L, failing.getStatistics().get("failed_batches"));
+
+        queue.shutdown(1000);
+        failing.shutdown(1000);
+    }
+}
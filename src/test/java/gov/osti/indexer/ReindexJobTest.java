@@ -0,0 +1,180 @@
+/*
+ */
+package gov.osti.indexer;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import gov.osti.entity.ApprovedMetadata;
+import gov.osti.entity.ReindexCheckpoint;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test checkpointing, cancellation, and resumption of the ReindexJob.
+ *
+ * @author ensornl
+ */
+public class ReindexJobTest {
+
+    /**
+     * Records and checkpoint held in memory.
+     */
+    private static class MemoryStore implements ReindexJob.Store {
+        private final List<ApprovedMetadata> records = new ArrayList<>();
+        private volatile ReindexCheckpoint checkpoint = null;
+
+        MemoryStore(int count) {
+            for ( long codeId = 1; codeId<=count; ++codeId ) {
+                ApprovedMetadata amd = new ApprovedMetadata();
+                amd.setCodeId(codeId);
+                amd.setJson("{\"code_id\":" + codeId + ",\"software_title\":\"Record " + codeId + "\"}");
+                records.add(amd);
+            }
+        }
+
+        @Override
+        public ReindexCheckpoint loadCheckpoint() {
+            return checkpoint;
+        }
+
+        @Override
+        public void saveCheckpoint(ReindexCheckpoint checkpoint) {
+            this.checkpoint = checkpoint;
+        }
+
+        @Override
+        public long count(long codeId) {
+            return records.stream().filter(r -> r.getCodeId()>codeId).count();
+        }
+
+        @Override
+        public List<ApprovedMetadata> fetch(long codeId, int rows) {
+            List<ApprovedMetadata> page = new ArrayList<>();
+
+            for ( ApprovedMetadata amd : records ) {
+                if (amd.getCodeId()>codeId && page.size()<rows)
+                    page.add(amd);
+            }
+            return page;
+        }
+    }
+
+    public ReindexJobTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+        ReindexJob.shutdown();
+    }
+
+    /**
+     * Wait for the current job to finish and save its final checkpoint.
+     *
+     * @param store the job's Store
+     * @return the final job status
+     */
+    private static String await(MemoryStore store) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+
+        while (("Running".equals(ReindexJob.getStatus().get("status")) ||
+                "Running".equals(store.checkpoint.getStatus())) && System.currentTimeMillis()<deadline)
+            Thread.sleep(10);
+
+        return (String) ReindexJob.getStatus().get("status");
+    }
+
+    /**
+     * A cancelled job keeps the checkpoint of its last page sent, and a
+     * resumed job continues after it without sending earlier records again.
+     */
+    @Test
+    public void testCancelAndResume() throws Exception {
+        MemoryStore store = new MemoryStore(10);
+        List<Long> sent = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch firstPage = new CountDownLatch(1);
+
+        // send the first page, then block until cancelled
+        IndexQueue.BatchSender blocking = documents -> {
+            for ( ObjectNode document : documents )
+                sent.add(document.get("codeId").asLong());
+            firstPage.countDown();
+            try {
+                new CountDownLatch(1).await(10, TimeUnit.SECONDS);
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        assertTrue("Job not started", ReindexJob.start(new ReindexJob(store, blocking, 3, 2, 1), false));
+        assertTrue("First page not sent", firstPage.await(10, TimeUnit.SECONDS));
+        assertFalse("Second job started", ReindexJob.start(new ReindexJob(store, blocking, 3, 2, 1), false));
+
+        ReindexJob.shutdown();
+
+        assertEquals("Not cancelled", "Cancelled", await(store));
+        assertEquals("Wrong records sent", Arrays.asList(1L, 2L, 3L), sent);
+        assertEquals("Wrong checkpoint status", "Cancelled", store.checkpoint.getStatus());
+        assertEquals("Wrong checkpoint CODE ID", Long.valueOf(3), store.checkpoint.getLastCodeId());
+        assertEquals("Wrong checkpoint count", Long.valueOf(3), store.checkpoint.getProcessed());
+
+        // resume from the checkpoint
+        sent.clear();
+        IndexQueue.BatchSender sender = documents -> {
+            for ( ObjectNode document : documents )
+                sent.add(document.get("codeId").asLong());
+        };
+
+        assertTrue("Job not resumed", ReindexJob.start(new ReindexJob(store, sender, 3, 2, 1), true));
+        assertEquals("Not completed", "Completed", await(store));
+        assertEquals("Wrong records resent", Arrays.asList(4L, 5L, 6L, 7L, 8L, 9L, 10L), sent);
+        assertEquals("Wrong processed count", 10L, ReindexJob.getStatus().get("processed"));
+        assertEquals("Wrong total", 10L, ReindexJob.getStatus().get("total"));
+        assertEquals("Wrong final checkpoint CODE ID", Long.valueOf(10), store.checkpoint.getLastCodeId());
+        assertEquals("Wrong final checkpoint status", "Completed", store.checkpoint.getStatus());
+    }
+
+    /**
+     * A job not resumed starts from the beginning despite a checkpoint, and
+     * fails once a page cannot be sent.
+     */
+    @Test
+    public void testRestartAndFailure() throws Exception {
+        MemoryStore store = new MemoryStore(5);
+        ReindexCheckpoint checkpoint = new ReindexCheckpoint();
+        checkpoint.setLastCodeId(4L);
+        store.checkpoint = checkpoint;
+
+        IndexQueue.BatchSender failing = documents -> {
+            if (documents.get(0).get("codeId").asLong()>1)
+                throw new IOException("Index unavailable");
+        };
+
+        assertTrue("Job not started", ReindexJob.start(new ReindexJob(store, failing, 2, 1, 1), false));
+        assertEquals("Not failed", "Failed", await(store));
+        assertEquals("Wrong message", "Index unavailable", ReindexJob.getStatus().get("message"));
+        assertEquals("Wrong checkpoint CODE ID", Long.valueOf(2), store.checkpoint.getLastCodeId());
+        assertEquals("Wrong checkpoint status", "Failed", store.checkpoint.getStatus());
+    }
+}
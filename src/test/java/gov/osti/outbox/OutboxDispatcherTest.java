@@ -0,0 +1,205 @@
+/*
+ */
+package gov.osti.outbox;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.osti.entity.OutboxMessage;
+import gov.osti.entity.OutboxMessage.Destination;
+import gov.osti.entity.OutboxMessage.Status;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import org.eclipse.persistence.config.PersistenceUnitProperties;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test outbox delivery outcomes and payloads.
+ *
+ * @author ensornl
+ */
+public class OutboxDispatcherTest {
+
+    public OutboxDispatcherTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test retry backoff, dead-lettering, and delivery.
+     */
+    @Test
+    public void testOutcome() throws Exception {
+        OutboxDispatcher dispatcher = new OutboxDispatcher(Collections.emptyMap(), 1, 1000, 60000, 3, 1000, 3000, 0);
+        OutboxMessage message = new OutboxMessage(Destination.Archiver, 123L, "{}");
+        long now = 100000;
+
+        message.setAttempts(1);
+        dispatcher.outcome(message, new IOException("Archiver Error"), now);
+        assertEquals("Wrong status after first failure", Status.Pending, message.getStatus());
+        assertEquals("Wrong first backoff", now + 1000, message.getNextAttempt().getTime());
+        assertEquals("Wrong error", "Archiver Error", message.getLastError());
+
+        message.setAttempts(2);
+        dispatcher.outcome(message, new IOException("Timed out"), now);
+        assertEquals("Backoff not doubled", now + 2000, message.getNextAttempt().getTime());
+
+        message.setAttempts(3);
+        dispatcher.outcome(message, new IOException("Timed out"), now);
+        assertEquals("Not dead after last attempt", Status.Dead, message.getStatus());
+
+        message.setAttempts(4);
+        dispatcher.outcome(message, null, now);
+        assertEquals("Not delivered", Status.Delivered, message.getStatus());
+        assertEquals("Wrong delivery date", now, message.getDateDelivered().getTime());
+        assertNull("Error kept", message.getLastError());
+
+        assertEquals("Wrong delivered count", 1L, dispatcher.getStatistics().get("delivered"));
+        assertEquals("Wrong dead count", 1L, dispatcher.getStatistics().get("dead"));
+        assertEquals("Wrong failure count", 3L, dispatcher.getStatistics().get("failures"));
+    }
+
+    /**
+     * Test the backoff is capped.
+     */
+    @Test
+    public void testBackoffLimit() throws Exception {
+        OutboxDispatcher dispatcher = new OutboxDispatcher(Collections.emptyMap(), 1, 1000, 60000, 100, 1000, 5000, 0);
+        OutboxMessage message = new OutboxMessage(Destination.DataCite, 123L, "{}");
+
+        for ( int attempts : new int[] {4, 40} ) {
+            message.setAttempts(attempts);
+            dispatcher.outcome(message, new IOException("Failed"), 0);
+            assertEquals("Backoff not capped at " + attempts, 5000, message.getNextAttempt().getTime());
+        }
+    }
+
+    /**
+     * Test archiver message payloads.
+     */
+    @Test
+    public void testArchiverPayload() throws Exception {
+        assertNull("Payload with nothing to archive", OutboxSenders.archiverPayload(123L, " ", null));
+
+        JsonNode payload = new ObjectMapper().readTree(OutboxSenders.archiverPayload(123L, "https://github.com/doecode/doecode", null));
+        assertEquals("Wrong code ID", 123L, payload.get("code_id").asLong());
+        assertEquals("Wrong link", "https://github.com/doecode/doecode", payload.get("repository_link").asText());
+        assertFalse("File without upload", payload.has("file"));
+
+        payload = new ObjectMapper().readTree(OutboxSenders.archiverPayload(123L, null, new File("/uploads/123/code.zip")));
+        assertEquals("Wrong file", new File("/uploads/123/code.zip").getPath(), payload.get("file").asText());
+    }
+
+    /**
+     * Store a message.
+     *
+     * @param em the EntityManager
+     * @param destination the Destination
+     * @param codeId the CODE ID
+     * @param status the delivery Status
+     * @return the OutboxMessage stored
+     */
+    private static OutboxMessage store(EntityManager em, Destination destination, Long codeId, Status status) {
+        OutboxMessage message = new OutboxMessage(destination, codeId, "{}");
+        message.setStatus(status);
+        if (Status.Delivered.equals(status))
+            message.setDateDelivered(new Date(0));
+
+        em.getTransaction().begin();
+        em.persist(message);
+        em.getTransaction().commit();
+        em.clear();
+
+        return message;
+    }
+
+    /**
+     * Test a dead message does not hold up later ones, which supersede it.
+     */
+    @Test
+    public void testSuperseded() throws Exception {
+        System.setProperty("derby.stream.error.file", "target/derby.log");
+
+        Map<String, String> properties = new HashMap<>();
+        properties.put(PersistenceUnitProperties.JDBC_URL, "jdbc:derby:memory:outbox;create=true");
+        properties.put(PersistenceUnitProperties.JDBC_DRIVER, "org.apache.derby.jdbc.EmbeddedDriver");
+        properties.put(PersistenceUnitProperties.JDBC_USER, "");
+        properties.put(PersistenceUnitProperties.JDBC_PASSWORD, "");
+        properties.put(PersistenceUnitProperties.DDL_GENERATION, PersistenceUnitProperties.CREATE_ONLY);
+        properties.put(PersistenceUnitProperties.LOGGING_LEVEL, "WARNING");
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("DOECode", properties);
+        EntityManager em = emf.createEntityManager();
+
+        try {
+            OutboxMessage superseded = store(em, Destination.Archiver, 123L, Status.Dead);
+            OutboxMessage dead = store(em, Destination.Archiver, 456L, Status.Dead);
+            OutboxMessage later = store(em, Destination.Archiver, 123L, Status.Delivered);
+            OutboxMessage pending = store(em, Destination.Archiver, 123L, Status.Pending);
+            OutboxMessage other = store(em, Destination.Osti, 123L, Status.Delivered);
+
+            List<OutboxMessage> due = em.createNamedQuery("OutboxMessage.findDue", OutboxMessage.class)
+                    .setParameter("destination", Destination.Archiver)
+                    .setParameter("statuses", Arrays.asList(Status.Pending, Status.Sending))
+                    .setParameter("now", new Date())
+                    .getResultList();
+            assertEquals("Held up by dead message", 1, due.size());
+            assertEquals("Wrong message due", pending.getId(), due.get(0).getId());
+
+            try {
+                OutboxDispatcher.retry(em, superseded.getId());
+                fail("Superseded message retried");
+            } catch ( IllegalStateException e ) {
+                assertEquals("Wrong superseded error", "Message " + superseded.getId() +
+                        " is superseded by a later Archiver message for code ID 123.", e.getMessage());
+            }
+
+            OutboxMessage retried = OutboxDispatcher.retry(em, dead.getId());
+            assertEquals("Not requeued", Status.Pending, retried.getStatus());
+            assertEquals("Attempts not reset", 0, retried.getAttempts());
+
+            try {
+                OutboxDispatcher.retry(em, dead.getId());
+                fail("Pending message retried");
+            } catch ( IllegalStateException e ) {
+                assertEquals("Wrong pending error", "Message " + dead.getId() + " is Pending.", e.getMessage());
+            }
+            assertNull("Unknown message retried", OutboxDispatcher.retry(em, -1L));
+
+            // the delivered message marking the dead one superseded is kept
+            assertEquals("Wrong number purged", 1, OutboxDispatcher.purge(em, new Date()));
+            em.clear();
+            assertNotNull("Superseding message purged", em.find(OutboxMessage.class, later.getId()));
+            assertNull("Delivered message not purged", em.find(OutboxMessage.class, other.getId()));
+        } finally {
+            em.close();
+            emf.close();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ */
+package gov.osti.persistence;
+
+import gov.osti.entity.User;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import org.eclipse.persistence.jpa.JpaCache;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test shared cache eviction.
+ *
+ * @author ensornl
+ */
+public class EntityCacheTest {
+
+    public EntityCacheTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Construct a stand-in EntityManager whose shared cache records the calls
+     * made to it.
+     */
+    private static EntityManager stub(List<String> calls) {
+        JpaCache cache = (JpaCache) Proxy.newProxyInstance(JpaCache.class.getClassLoader(),
+                new Class<?>[] {JpaCache.class},
+                (proxy, method, args) -> {
+                    calls.add(method.getName() + Arrays.toString(args));
+                    return null;
+                });
+        EntityManagerFactory emf = (EntityManagerFactory) Proxy.newProxyInstance(EntityManagerFactory.class.getClassLoader(),
+                new Class<?>[] {EntityManagerFactory.class},
+                (proxy, method, args) -> ("getCache".equals(method.getName())) ? cache : null);
+        return (EntityManager) Proxy.newProxyInstance(EntityManager.class.getClassLoader(),
+                new Class<?>[] {EntityManager.class},
+                (proxy, method, args) -> ("getEntityManagerFactory".equals(method.getName())) ? emf : null);
+    }
+
+    /**
+     * Test that eviction reaches the cluster and the query cache.
+     */
+    @Test
+    public void testEvict() throws Exception {
+        List<String> calls = new ArrayList<>();
+        EntityManager em = stub(calls);
+        long before = (Long) EntityCache.getStatistics().get("evictions");
+
+        EntityCache.evict(em, User.class, null);
+        assertTrue("Evicted null key", calls.isEmpty());
+
+        EntityCache.evict(em, User.class, "user@example.com");
+        assertEquals("Wrong calls", Arrays.asList(
+                "evict[" + User.class + ", user@example.com, true]",
+                "clearQueryCache[" + User.class + "]"), calls);
+        assertEquals("Not counted", before + 1, EntityCache.getStatistics().get("evictions"));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ */
+package gov.osti.persistence;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.persistence.EntityManager;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test EntityManager tracking.
+ *
+ * @author ensornl
+ */
+public class EntityManagerTrackerTest {
+
+    public EntityManagerTrackerTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Construct a stand-in EntityManager counting calls to close().
+     */
+    private static EntityManager stub(AtomicInteger closes) {
+        return (EntityManager) Proxy.newProxyInstance(EntityManager.class.getClassLoader(),
+                new Class<?>[] {EntityManager.class},
+                (proxy, method, args) -> {
+                    switch ( method.getName() ) {
+                        case "close":
+                            closes.incrementAndGet();
+                            return null;
+                        case "isOpen":
+                            return 0==closes.get();
+                        case "find":
+                            throw new IllegalArgumentException("Unknown entity");
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    /**
+     * Test that closing is tracked and passed through, as are exceptions.
+     */
+    @Test
+    public void testClose() throws Exception {
+        AtomicInteger closes = new AtomicInteger();
+        Map<String,Object> before = EntityManagerTracker.getStatistics();
+        EntityManager em = EntityManagerTracker.track(stub(closes));
+
+        assertTrue("Not open", em.isOpen());
+        assertEquals("Not counted open", (Integer) before.get("open") + 1, EntityManagerTracker.getStatistics().get("open"));
+
+        try {
+            em.find(Object.class, 1L);
+            fail("Exception not passed through");
+        } catch ( IllegalArgumentException e ) {
+            assertEquals("Wrong exception", "Unknown entity", e.getMessage());
+        }
+
+        em.close();
+        em.close();
+        assertEquals("Close not passed through", 2, closes.get());
+        assertFalse("Still open", em.isOpen());
+
+        Map<String,Object> after = EntityManagerTracker.getStatistics();
+        assertEquals("Not counted closed", before.get("open"), after.get("open"));
+        assertEquals("Closed counted twice", (Long) before.get("closed") + 1, after.get("closed"));
+        assertNull("Tracked null", EntityManagerTracker.track(null));
+    }
+}
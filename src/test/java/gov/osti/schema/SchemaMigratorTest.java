@@ -0,0 +1,117 @@
+/*
+ */
+package gov.osti.schema;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test schema migration parsing and drift detection.
+ *
+ * @author ensornl
+ */
+public class SchemaMigratorTest {
+
+    public SchemaMigratorTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test parsing scripts, including the shipped migrations.
+     */
+    @Test
+    public void testParse() throws Exception {
+        Migration migration = Migration.parse("V2__add_things.sql",
+                "-- a comment\r\nCREATE INDEX A ON T (X);\n\nCREATE INDEX B\n   ON T (Y);\n");
+
+        assertEquals("Wrong version", 2, migration.getVersion());
+        assertEquals("Wrong description", "add things", migration.getDescription());
+        assertEquals("Wrong statements", Arrays.asList("CREATE INDEX A ON T (X)", "CREATE INDEX B ON T (Y)"),
+                migration.getStatements());
+        assertEquals("Checksum changed by comments or spacing", migration.getChecksum(),
+                Migration.parse("V2__add_things.sql", "CREATE INDEX A ON T (X);\nCREATE INDEX B ON T (Y);").getChecksum());
+        assertNotEquals("Checksum unchanged by statements", migration.getChecksum(),
+                Migration.parse("V2__add_things.sql", "CREATE INDEX A ON T (Z);\nCREATE INDEX B ON T (Y);").getChecksum());
+
+        try {
+            Migration.parse("add_things.sql", "");
+            fail("Parsed invalid name");
+        } catch ( IllegalArgumentException e ) {
+            // expected
+        }
+
+        for ( String script : SchemaMigrator.SCRIPTS ) {
+            Migration shipped = Migration.parse(script, new String(Files.readAllBytes(
+                    Paths.get("src/main/resources/db/migration", script)), StandardCharsets.UTF_8));
+            assertFalse("No statements in " + script, shipped.getStatements().isEmpty());
+            for ( String statement : shipped.getStatements() )
+                assertFalse("Unterminated statement in " + script + ": " + statement, statement.contains(";"));
+        }
+    }
+
+    /**
+     * Test pending migrations and drift detection.
+     */
+    @Test
+    public void testVerify() throws Exception {
+        Migration first = new Migration(1, "first", Collections.singletonList("CREATE INDEX A ON T (X)"));
+        Migration second = new Migration(2, "second", Collections.singletonList("CREATE INDEX B ON T (Y)"));
+        SchemaMigrator migrator = new SchemaMigrator(Arrays.asList(second, first));
+        Map<Integer, String> applied = new HashMap<>();
+
+        assertEquals("Wrong pending", Arrays.asList(first, second), migrator.verify(applied));
+
+        applied.put(1, first.getChecksum());
+        List<Migration> pending = migrator.verify(applied);
+        assertEquals("Wrong pending after first", Collections.singletonList(second), pending);
+
+        applied.put(2, second.getChecksum());
+        assertTrue("Pending when current", migrator.verify(applied).isEmpty());
+
+        // an applied script changed
+        applied.put(1, second.getChecksum());
+        try {
+            migrator.verify(applied);
+            fail("Changed version not detected");
+        } catch ( IllegalStateException e ) {
+            assertTrue("Wrong message", e.getMessage().contains("version 1"));
+        }
+
+        // a newer release's version
+        applied.put(1, first.getChecksum());
+        applied.put(3, "abc");
+        try {
+            migrator.verify(applied);
+            fail("Unknown version not detected");
+        } catch ( IllegalStateException e ) {
+            assertTrue("Wrong message", e.getMessage().contains("[3]"));
+        }
+    }
+}
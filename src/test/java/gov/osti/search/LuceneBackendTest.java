@@ -0,0 +1,200 @@
+/*
+ */
+package gov.osti.search;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the embedded Lucene search backend.
+ *
+ * @author ensornl
+ */
+public class LuceneBackendTest {
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private LuceneBackend backend;
+
+    public LuceneBackendTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        backend = new LuceneBackend(new ByteBuffersDirectory());
+        backend.index(Arrays.asList(
+                document(1, "Approved", "Parallel Solvers", "2016-03-01", "Jane Smith"),
+                document(2, "Approved", "Mesh Generation Tool", "2017-07-15", "John Doe"),
+                document(3, "Approved", "Solving Meshes", "2017-01-10", "Jane Doe"),
+                document(4, "Saved", "Unapproved Solver", "2017-02-01", "Jane Smith")));
+    }
+
+    @After
+    public void tearDown() {
+        backend.close();
+    }
+
+    /**
+     * Construct an index document.
+     */
+    private static ObjectNode document(long codeId, String status, String title, String releaseDate, String developer) {
+        ObjectNode node = mapper.createObjectNode();
+        node.put("codeId", codeId);
+        node.put("workflowStatus", status);
+        node.put("softwareTitle", title);
+        node.put("releaseDate", releaseDate);
+        node.put("dateRecordUpdated", releaseDate);
+        node.put("accessibility", "OS");
+        node.putArray("developers").addObject().put("name", developer);
+        node.putArray("licenses").add("MIT").add((1==codeId % 2) ? "Apache License 2.0" : "Other");
+        node.putArray("researchOrganizations").addObject().put("organizationName", "Oak Ridge National Laboratory");
+        node.put("json", "{\"code_id\":" + codeId + "}");
+        return node;
+    }
+
+    /**
+     * Run a query and parse the results.
+     */
+    private JsonNode query(SearchQuery query) throws IOException {
+        try (InputStream in = backend.query(query)) {
+            return mapper.readTree(in);
+        }
+    }
+
+    /**
+     * Obtain the CODE IDs of a result page.
+     */
+    private static List<Long> codeIds(JsonNode result) {
+        List<Long> ids = new ArrayList<>();
+        for ( JsonNode doc : result.get("response").get("docs") )
+            ids.add(doc.get("codeId").asLong());
+        return ids;
+    }
+
+    /**
+     * Test that only approved records are found, with fields and facets.
+     */
+    @Test
+    public void testQuery() throws Exception {
+        JsonNode result = query(new SearchQuery("*:*").sort("codeId asc").fields("codeId", "json").faceting(true));
+
+        assertEquals("Wrong count", 3, result.get("response").get("numFound").asInt());
+        assertEquals("Wrong documents", Arrays.asList(1L, 2L, 3L), codeIds(result));
+        assertEquals("Wrong json", "{\"code_id\":2}", result.get("response").get("docs").get(1).get("json").asText());
+        assertNull("Unrequested field", result.get("response").get("docs").get(0).get("softwareTitle"));
+
+        JsonNode buckets = result.get("facets").get("dates").get("buckets");
+        assertEquals("Wrong buckets", 2, buckets.size());
+        assertEquals("Wrong bucket", "2016-01-01T00:00:00Z", buckets.get(0).get("val").asText());
+        assertEquals("Wrong bucket count", 2, buckets.get(1).get("count").asInt());
+
+        // stemmed title, name copy field, and exact string field
+        assertEquals("Wrong title match", Arrays.asList(2L, 3L),
+                codeIds(query(new SearchQuery("softwareTitle:(meshes)").sort("codeId asc"))));
+        assertEquals("Wrong name match", Arrays.asList(1L),
+                codeIds(query(new SearchQuery("_names:(jane smith)"))));
+        assertEquals("Wrong all text match", Arrays.asList(2L, 3L),
+                codeIds(query(new SearchQuery("_text_:(doe) accessibility:OS").sort("codeId asc"))));
+        assertEquals("Wrong release date range", Arrays.asList(3L, 2L),
+                codeIds(query(new SearchQuery("releaseDate:[2017-01-01T00:00:00Z TO *]").sort("releaseDate asc"))));
+        assertEquals("Wrong start", Arrays.asList(3L),
+                codeIds(query(new SearchQuery("*:*").sort("codeId desc").start(0).rows(1))));
+
+        // updates replace by CODE ID
+        backend.index(Arrays.asList(document(2, "Approved", "Renamed", "2017-07-15", "John Doe")));
+        assertEquals("Wrong count after update", 3,
+                query(new SearchQuery("*:*")).get("response").get("numFound").asInt());
+        assertEquals("Update not found", Arrays.asList(2L),
+                codeIds(query(new SearchQuery("softwareTitle:renamed"))));
+
+        try {
+            query(new SearchQuery("*:*").sort("softwareTitle asc"));
+            fail("Sorted on unsortable field");
+        } catch ( SearchException e ) {
+            assertEquals("Wrong status", 400, e.getStatus());
+        }
+    }
+
+    /**
+     * Test cursor paging through all results.
+     */
+    @Test
+    public void testCursor() throws Exception {
+        SolrCursor cursor = new SolrCursor(backend, "*:*", "releaseDate desc", 2, SolrCursor.START, "codeId");
+        List<Long> ids = new ArrayList<>();
+
+        while (cursor.hasNext())
+            for ( SolrDocument doc : cursor.next().getSearchResponse().getDocuments() )
+                ids.add(doc.getCodeId());
+
+        assertEquals("Wrong paging", Arrays.asList(2L, 3L, 1L), ids);
+
+        // the mark of the last page returns nothing more
+        JsonNode last = query(new SearchQuery("*:*").sort(SolrCursor.withUniqueKey("releaseDate desc")).rows(2).cursorMark(cursor.getMark()));
+        assertEquals("Results past end", 0, last.get("response").get("docs").size());
+        assertEquals("Mark changed", cursor.getMark(), last.get("nextCursorMark").asText());
+    }
+
+    /**
+     * Test field facet counts.
+     */
+    @Test
+    public void testFacets() throws Exception {
+        Map<String, String> facets = new LinkedHashMap<>();
+        facets.put("licenses", "licenses");
+        facets.put("research_organizations", "_research_organizations");
+
+        JsonNode result = query(new SearchQuery("*:*").rows(0).faceting(true).facets(facets).facetLimit(2));
+        JsonNode licenses = result.get("facets").get("licenses").get("buckets");
+
+        assertEquals("Wrong license count", 2, licenses.size());
+        assertEquals("Wrong top license", "MIT", licenses.get(0).get("val").asText());
+        assertEquals("Wrong top license count", 3, licenses.get(0).get("count").asInt());
+        assertEquals("Wrong second license", "Apache License 2.0", licenses.get(1).get("val").asText());
+        assertEquals("Wrong organization", "Oak Ridge National Laboratory",
+                result.get("facets").get("research_organizations").get("buckets").get(0).get("val").asText());
+        assertEquals("Dates not counted", 2, result.get("facets").get("dates").get("buckets").size());
+
+        // parsed into the general facet model
+        SolrFacet facet = mapper.copy()
+                .registerModule(new SimpleModule().addDeserializer(SolrFacet.class, new FacetDeserializer()))
+                .treeToValue(result.get("facets"), SolrFacet.class);
+        assertEquals("Wrong count", Integer.valueOf(3), facet.getCount());
+        assertEquals("Wrong dates", 2, facet.getValues().size());
+        assertEquals("Wrong parsed license count", Integer.valueOf(2), facet.getFields().get("licenses").get("Apache License 2.0"));
+
+        // facets off, by default
+        assertNull("Facets counted", query(new SearchQuery("*:*").faceting(false)).get("facets").get("dates"));
+        assertNull("Facets counted by default", query(new SearchQuery("*:*")).get("facets").get("dates"));
+
+        try {
+            query(new SearchQuery("*:*").faceting(true).facets(Collections.singletonMap("titles", "softwareTitle")));
+            fail("Faceted on text field");
+        } catch ( SearchException e ) {
+            assertEquals("Wrong status", 400, e.getStatus());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ */
+package gov.osti.search;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test SOLR query requests.
+ *
+ * @author ensornl
+ */
+public class SolrBackendTest {
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    public SolrBackendTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Read the "json.facet" parameter of a query request.
+     *
+     * @param query the SearchQuery
+     * @return the facet request JSON, or null if not sent
+     */
+    private static JsonNode facetParameter(SearchQuery query) throws Exception {
+        List<NameValuePair> parameters = URLEncodedUtils.parse(
+                new SolrBackend("http://localhost:8983/solr/doecode/query", null).toQueryUri(query),
+                StandardCharsets.UTF_8.name());
+
+        for ( NameValuePair parameter : parameters )
+            if ("json.facet".equals(parameter.getName()))
+                return mapper.readTree(parameter.getValue());
+        return null;
+    }
+
+    /**
+     * Test queries not counting facets override the handler's default facets
+     * with an empty request.
+     */
+    @Test
+    public void testFacetParameter() throws Exception {
+        JsonNode facets = facetParameter(new SearchQuery("codeId:123").rows(1));
+        assertNotNull("Facet request not sent", facets);
+        assertEquals("Facets requested", 0, facets.size());
+
+        facets = facetParameter(new SearchQuery("*:*").cursorMark("*").rows(100));
+        assertNotNull("Facet request not sent for cursor", facets);
+        assertEquals("Facets requested for cursor", 0, facets.size());
+
+        facets = facetParameter(new SearchQuery("*:*")
+                .faceting(true)
+                .facets(Collections.singletonMap("licenses", "licenses")));
+        assertTrue("No date facets", facets.has("dates"));
+        assertEquals("Wrong facet field", "licenses", facets.path("licenses").path("field").asText());
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ */
+package gov.osti.services;
+
+import gov.osti.entity.ContributingOrganization;
+import gov.osti.entity.Contributor;
+import gov.osti.entity.DOECodeMetadata;
+import gov.osti.entity.Developer;
+import gov.osti.entity.FundingIdentifier;
+import gov.osti.entity.MetadataSummary;
+import gov.osti.entity.RelatedIdentifier;
+import gov.osti.entity.ResearchOrganization;
+import gov.osti.entity.SponsoringOrganization;
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.persistence.TypedQuery;
+import javax.ws.rs.core.Response;
+import org.eclipse.persistence.config.PersistenceUnitProperties;
+import org.eclipse.persistence.logging.AbstractSessionLog;
+import org.eclipse.persistence.logging.SessionLog;
+import org.eclipse.persistence.logging.SessionLogEntry;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the project list views.
+ *
+ * @author ensornl
+ */
+public class MetadataListTest {
+    // SELECT statements issued by the test persistence unit
+    private static final AtomicInteger selects = new AtomicInteger();
+
+    private static EntityManagerFactory emf;
+
+    /**
+     * Counts the SELECT statements logged.
+     */
+    public static class StatementCounter extends AbstractSessionLog {
+        @Override
+        public void log(SessionLogEntry entry) {
+            if (SessionLog.SQL.equals(entry.getNameSpace()) &&
+                null!=entry.getMessage() && entry.getMessage().startsWith("SELECT"))
+                selects.incrementAndGet();
+        }
+    }
+
+    public MetadataListTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.setProperty("derby.stream.error.file", "target/derby.log");
+
+        Map<String, String> properties = new HashMap<>();
+        properties.put(PersistenceUnitProperties.JDBC_URL, "jdbc:derby:memory:doecode;create=true");
+        properties.put(PersistenceUnitProperties.JDBC_DRIVER, "org.apache.derby.jdbc.EmbeddedDriver");
+        properties.put(PersistenceUnitProperties.JDBC_USER, "");
+        properties.put(PersistenceUnitProperties.JDBC_PASSWORD, "");
+        properties.put(PersistenceUnitProperties.DDL_GENERATION, PersistenceUnitProperties.CREATE_ONLY);
+        properties.put(PersistenceUnitProperties.LOGGING_LOGGER, StatementCounter.class.getName());
+        properties.put(PersistenceUnitProperties.CATEGORY_LOGGING_LEVEL_ + SessionLog.SQL, SessionLog.FINE_LABEL);
+        emf = Persistence.createEntityManagerFactory("DOECode", properties);
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        if (null!=emf)
+            emf.close();
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Store records having a row in each child table.
+     *
+     * @param count how many records to store
+     */
+    private static void persist(int count) {
+        EntityManager em = emf.createEntityManager();
+
+        try {
+            em.getTransaction().begin();
+
+            for ( int i = 0; i<count; ++i ) {
+                DOECodeMetadata md = new DOECodeMetadata();
+                md.setSoftwareTitle("Record " + i);
+                md.setOwner("owner@example.com");
+                md.setSiteOwnershipCode("OSTI");
+
+                Developer developer = new Developer();
+                developer.setLastName("Developer");
+                developer.setAffiliations(Arrays.asList("Developer Affiliation"));
+                md.setDevelopers(Arrays.asList(developer));
+
+                Contributor contributor = new Contributor();
+                contributor.setLastName("Contributor");
+                contributor.setAffiliations(Arrays.asList("Contributor Affiliation"));
+                md.setContributors(Arrays.asList(contributor));
+
+                FundingIdentifier funding = new FundingIdentifier();
+                funding.setIdentifierType(FundingIdentifier.Type.values()[0]);
+                funding.setIdentifierValue("Funding");
+                SponsoringOrganization sponsor = new SponsoringOrganization();
+                sponsor.setOrganizationName("Sponsor");
+                sponsor.setPrimaryAward("Award");
+                sponsor.setFundingIdentifiers(Arrays.asList(funding));
+                md.setSponsoringOrganizations(Arrays.asList(sponsor));
+
+                ContributingOrganization contributing = new ContributingOrganization();
+                contributing.setOrganizationName("Contributing");
+                md.setContributingOrganizations(Arrays.asList(contributing));
+
+                ResearchOrganization research = new ResearchOrganization();
+                research.setOrganizationName("Research");
+                md.setResearchOrganizations(Arrays.asList(research));
+
+                md.setRelatedIdentifiers(Arrays.asList(new RelatedIdentifier(RelatedIdentifier.Type.values()[0],
+                        "10.5072/" + i, RelatedIdentifier.RelationType.values()[0])));
+                md.setLicenses(Arrays.asList("Other"));
+                md.setAccessLimitations(Arrays.asList("UNL"));
+
+                em.persist(md);
+            }
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+        emf.getCache().evictAll();
+    }
+
+    /**
+     * Read a page of full records and every child table of each, as in
+     * serializing them.
+     *
+     * @return the number of SELECT statements issued
+     */
+    private static int readFullPage() {
+        EntityManager em = emf.createEntityManager();
+
+        try {
+            selects.set(0);
+            List<DOECodeMetadata> records = Metadata.batchFetch(em.createQuery(
+                    "SELECT md FROM DOECodeMetadata md ORDER BY md.codeId", DOECodeMetadata.class))
+                    .setMaxResults(100)
+                    .getResultList();
+
+            for ( DOECodeMetadata md : records ) {
+                for ( Developer developer : md.getDevelopers() )
+                    developer.getAffiliations().size();
+                for ( Contributor contributor : md.getContributors() )
+                    contributor.getAffiliations().size();
+                for ( SponsoringOrganization sponsor : md.getSponsoringOrganizations() )
+                    sponsor.getFundingIdentifiers().size();
+                md.getContributingOrganizations().size();
+                md.getResearchOrganizations().size();
+                md.getRelatedIdentifiers().size();
+                md.getLicenses().size();
+                md.getAccessLimitations().size();
+            }
+            return selects.get();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Test VIEW values are recognized, and unknown ones refused.
+     */
+    @Test
+    public void testView() throws Exception {
+        assertEquals("Wrong default view", Boolean.FALSE, Metadata.isSummaryView(null));
+        assertEquals("Wrong full view", Boolean.FALSE, Metadata.isSummaryView("full"));
+        assertEquals("Wrong summary view", Boolean.TRUE, Metadata.isSummaryView("Summary"));
+        assertNull("Unknown view accepted", Metadata.isSummaryView("bogus"));
+
+        Response response = new Metadata().listProjects(0, 0, null, "bogus");
+        assertEquals("Unknown view listed", Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+    }
+
+    /**
+     * Test each summary attribute is a DOECodeMetadata attribute of the
+     * summary's constructor parameter type.
+     */
+    @Test
+    public void testSummaryAttributes() throws Exception {
+        Constructor<?>[] constructors = MetadataSummary.class.getConstructors();
+        assertEquals("Wrong number of constructors", 1, constructors.length);
+
+        Class<?>[] types = constructors[0].getParameterTypes();
+        assertEquals("Wrong number of attributes", MetadataSummary.ATTRIBUTES.length, types.length);
+
+        for ( int i = 0; i<types.length; ++i ) {
+            String attribute = MetadataSummary.ATTRIBUTES[i];
+            String getter = "get" + Character.toUpperCase(attribute.charAt(0)) + attribute.substring(1);
+
+            assertEquals("Wrong type of " + attribute, types[i], DOECodeMetadata.class.getMethod(getter).getReturnType());
+            assertEquals("Wrong summary type of " + attribute, types[i], MetadataSummary.class.getMethod(getter).getReturnType());
+        }
+    }
+
+    /**
+     * Test full pages read each child table once, however many records they
+     * hold, and summaries are read in a single statement.
+     */
+    @Test
+    public void testStatementCount() throws Exception {
+        persist(2);
+        int few = readFullPage();
+
+        persist(8);
+        int many = readFullPage();
+
+        assertEquals("Statements grow with records", few, many);
+        assertEquals("Child tables not batched", 1 + 11, many);
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            selects.set(0);
+            TypedQuery<MetadataSummary> query = em.createQuery("SELECT " + MetadataSummary.SELECT_FIELDS +
+                    " FROM DOECodeMetadata md ORDER BY md.codeId", MetadataSummary.class);
+            List<MetadataSummary> summaries = query.getResultList();
+
+            assertEquals("Wrong number of summaries", 10, summaries.size());
+            assertEquals("Wrong summary title", "Record 0", summaries.get(0).getSoftwareTitle());
+            assertEquals("Summaries not read at once", 1, selects.get());
+        } finally {
+            em.close();
+        }
+    }
+}
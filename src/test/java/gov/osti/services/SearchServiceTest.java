@@ -0,0 +1,198 @@
+/*
+ */
+package gov.osti.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import gov.osti.entity.DOECodeMetadata;
+import gov.osti.search.SearchData;
+import gov.osti.search.SearchResponse;
+import gov.osti.search.SolrCursor;
+import gov.osti.search.SolrDocument;
+import gov.osti.search.SolrResult;
+import gov.osti.search.StreamingSearchResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.ws.rs.core.EntityTag;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test search result output and cursor paging.
+ *
+ * @author ensornl
+ */
+public class SearchServiceTest {
+
+    // a stored record, with nested and top-level properties to be filtered
+    private static final String RECORD = "{\"code_id\":12,\"software_title\":\"Test Software\","
+            + "\"owner\":\"someone@example.gov\",\"workflow_status\":\"Approved\","
+            + "\"recipient_email\":\"recipient@example.gov\",\"release_date\":\"2017-06-01\","
+            + "\"developers\":[{\"first_name\":\"Test\",\"last_name\":\"Developer\","
+            + "\"email\":\"dev@example.gov\",\"affiliations\":[\"ORNL\"]}],"
+            + "\"licenses\":[\"MIT\"],\"site_ownership_code\":\"ORNL\","
+            + "\"access_limitations\":[\"UNL\"],\"description\":\"A \\\"quoted\\\" description.\"}";
+
+    public SearchServiceTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Construct a SOLR JSON result with the given documents.
+     *
+     * @param records the JSON of each record, stored as when indexed
+     * @return the SOLR result JSON
+     */
+    private static String solrResult(String... records) throws Exception {
+        StringBuilder docs = new StringBuilder();
+
+        for ( String record : records ) {
+            String stored = DOECodeMetadata.parseJson(new StringReader(record)).toJson().toString();
+
+            if (docs.length()>0)
+                docs.append(',');
+            docs.append("{\"json\":")
+                .append(SearchService.JSON_MAPPER.writeValueAsString(stored))
+                .append('}');
+        }
+        return "{\"responseHeader\":{\"status\":0,\"QTime\":1,\"params\":{\"q\":\"*:*\"}},"
+                + "\"response\":{\"numFound\":42,\"start\":20,\"docs\":[" + docs + "]},"
+                + "\"facets\":{\"count\":42,\"dates\":{\"buckets\":["
+                + "{\"val\":\"2016-01-01T00:00:00Z\",\"count\":12},"
+                + "{\"val\":\"2017-01-01T00:00:00Z\",\"count\":30}]}},"
+                + "\"nextCursorMark\":\"AoEpMjA=\"}";
+    }
+
+    /**
+     * Produce the search output by mapping the SOLR result, as for XML and
+     * YAML output.
+     *
+     * @param solr the SOLR result JSON
+     * @return the mapped JSON output
+     */
+    private static JsonNode mapped(String solr) throws Exception {
+        SolrResult result = SearchService.JSON_MAPPER.readValue(solr, SolrResult.class);
+        SearchResponse query = new SearchResponse();
+        query.setStart(result.getSearchResponse().getStart());
+        query.setNumFound(result.getSearchResponse().getNumFound());
+        query.setNextCursor(result.getNextCursorMark());
+
+        if (null!=result.getSearchResponse().getDocuments()) {
+            for ( SolrDocument doc : result.getSearchResponse().getDocuments() )
+                query.add(SearchService.JSON_MAPPER.readValue(doc.getJson(), DOECodeMetadata.class));
+            query.setFacets(result.getSolrFacet().getValues());
+        }
+        return SearchService.JSON_MAPPER.readTree(
+                SearchService.JSON_MAPPER.writer(SearchService.filter).writeValueAsString(query));
+    }
+
+    /**
+     * Produce the search output by streaming.
+     *
+     * @param solr the SOLR result JSON
+     * @param closed set once the input has been released
+     * @return the streamed JSON output
+     */
+    private static JsonNode streamed(String solr, AtomicBoolean closed) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new StreamingSearchResponse(
+                new ByteArrayInputStream(solr.getBytes(StandardCharsets.UTF_8)),
+                SearchService.JSON_MAPPER, Arrays.asList(SearchService.ignoreProperties),
+                () -> closed.set(true))
+                .write(out);
+
+        return SearchService.JSON_MAPPER.readTree(out.toByteArray());
+    }
+
+    /**
+     * Streamed JSON output matches the mapped output, filtered properties
+     * included.
+     */
+    @Test
+    public void testStreamedResults() throws Exception {
+        AtomicBoolean closed = new AtomicBoolean(false);
+        String solr = solrResult(RECORD, RECORD.replace("12", "13"));
+
+        JsonNode streamed = streamed(solr, closed);
+
+        assertEquals("Output differs", mapped(solr), streamed);
+        assertTrue("Input not released", closed.get());
+        assertEquals("Wrong document count", 2, streamed.get("docs").size());
+        assertFalse("Owner not filtered", streamed.get("docs").get(0).has("owner"));
+        assertFalse("Access limitations not filtered", streamed.get("docs").get(0).has("access_limitations"));
+        assertEquals("Wrong facet count", 30, streamed.get("facets").get("2017-01-01T00:00:00Z").asInt());
+        assertEquals("Wrong next cursor", "AoEpMjA=", streamed.get("next_cursor").asText());
+    }
+
+    /**
+     * An empty result still produces the complete response form.
+     */
+    @Test
+    public void testStreamedEmptyResults() throws Exception {
+        String solr = "{\"response\":{\"numFound\":0,\"start\":0,\"docs\":[]}}";
+
+        JsonNode streamed = streamed(solr, new AtomicBoolean());
+
+        assertEquals("Wrong numFound", 0, streamed.get("num_found").asInt());
+        assertEquals("Docs not empty", 0, streamed.get("docs").size());
+        assertEquals("Facets not empty", 0, streamed.get("facets").size());
+        assertFalse("Unexpected cursor", streamed.has("next_cursor"));
+    }
+
+    /**
+     * Cursor searches always sort on the unique key last.
+     */
+    @Test
+    public void testCursorSort() {
+        assertEquals("Wrong default sort", "score desc,codeId asc", SolrCursor.withUniqueKey(""));
+        assertEquals("Tie-breaker missing", "releaseDate desc,codeId asc", SolrCursor.withUniqueKey("releaseDate desc"));
+        assertEquals("Sort altered", "codeId desc", SolrCursor.withUniqueKey("codeId desc"));
+        assertEquals("Sort altered", "softwareTitle asc, codeId asc", SolrCursor.withUniqueKey("softwareTitle asc, codeId asc"));
+    }
+
+    /**
+     * Equal searches share a cache key; If-None-Match uses strong comparison.
+     */
+    @Test
+    public void testCacheValidation() throws Exception {
+        SearchData first = SearchData.parseJson(new StringReader("{\"all_fields\":\"solver\",\"rows\":10}"));
+        SearchData second = SearchData.parseJson(new StringReader("{\"rows\":10,\"all_fields\":\"solver\"}"));
+        SearchData other = SearchData.parseJson(new StringReader("{\"all_fields\":\"mesh\",\"rows\":10}"));
+
+        assertEquals("Keys differ", first.toKey(), second.toKey());
+        assertNotEquals("Keys equal", first.toKey(), other.toKey());
+
+        EntityTag tag = new EntityTag("abc123");
+        assertTrue("No match", SearchService.matches("\"abc123\"", tag));
+        assertTrue("No match in list", SearchService.matches("\"xyz\", \"abc123\"", tag));
+        assertTrue("No wildcard match", SearchService.matches("*", tag));
+        assertTrue("Weak tag not matched", SearchService.matches("W/\"abc123\"", tag));
+        assertTrue("Weak tag not matched in list", SearchService.matches("\"xyz\", W/\"abc123\"", tag));
+        assertTrue("Tag not matched by weak comparison", SearchService.matches("\"abc123\"", new EntityTag("abc123", true)));
+        assertFalse("Wrong tag matched", SearchService.matches("\"xyz\"", tag));
+        assertFalse("Missing header matched", SearchService.matches(null, tag));
+    }
+}
@@ -2,6 +2,17 @@
  */
 package gov.osti.services;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.core.Response;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -137,4 +148,122 @@ public class ValidationTest {
         }
     }
     
+
+    /**
+     * Test of batch request method, of class Validation.  Results come back
+     * in request order, including repeated values.
+     */
+    @Test
+    public void testRequest() throws Exception {
+        String batch = "[ {\"type\":\"email\", \"value\":\"me@anotherspot.com\"},"
+                + " {\"type\":\"repositorylink\", \"value\":\"\"},"
+                + " {\"type\":\"url\", \"value\":\"missing\"},"
+                + " {\"type\":\"repositorylink\", \"value\":\"\"},"
+                + " {\"type\":\"doi\", \"value\":\"10.5555/12345\"} ]";
+
+        Response response = new Validation().request(batch);
+        assertEquals("Wrong status", 200, response.getStatus());
+
+        JsonNode results = new ObjectMapper().readTree((String) response.getEntity());
+        String[] types = { "email", "repositorylink", "url", "repositorylink", "doi" };
+        boolean[] valid = { true, false, false, false, true };
+
+        assertEquals("Wrong result count", types.length, results.size());
+        for ( int i = 0; i<types.length; ++i ) {
+            assertEquals("Out of order", types[i], results.get(i).get("type").asText());
+            assertEquals("Wrong result for " + i, valid[i], results.get(i).get("error").asText().isEmpty());
+        }
+
+        assertEquals("Unknown type accepted", 400,
+                new Validation().request("[ {\"type\":\"bogus\", \"value\":\"x\"} ]").getStatus());
+    }
+
+    /**
+     * Test a slow remote check shared by repeated requests.  Each request is
+     * reported not valid once the check times out, including those reading it
+     * after it was cancelled.
+     */
+    @Test
+    public void testSharedCheckTimeout() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            Map<String, Validation.RemoteCheck> remote = new HashMap<>();
+            CountDownLatch cancelled = new CountDownLatch(1);
+            Validation.RemoteCheck check = new Validation.RemoteCheck(() -> {
+                try {
+                    Thread.sleep(10000);
+                } catch ( InterruptedException e ) {
+                    cancelled.countDown();
+                }
+                return true;
+            });
+            assertTrue("Check not queued", check.submit(executor));
+            remote.put("repositorylink\nhttps://example.gov/slow", check);
+
+            for ( int i = 0; i<3; ++i )
+                assertFalse("Timed out check valid", Validation.getResult(remote, "repositorylink", "https://example.gov/slow", 100));
+            assertTrue("Check not cancelled", cancelled.await(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test each remote check is timed from when it starts, not from when it
+     * was queued behind others.
+     */
+    @Test
+    public void testQueuedCheckTimeout() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            Map<String, Validation.RemoteCheck> remote = new HashMap<>();
+            for ( String value : new String[] {"first", "second"} ) {
+                Validation.RemoteCheck check = new Validation.RemoteCheck(() -> {
+                    Thread.sleep(700);
+                    return true;
+                });
+                assertTrue("Check not queued", check.submit(executor));
+                remote.put("awardnumber\n" + value, check);
+            }
+
+            assertTrue("First check timed out", Validation.getResult(remote, "awardnumber", "first", 1000));
+            assertTrue("Queued check timed out", Validation.getResult(remote, "awardnumber", "second", 1000));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test checks refused by a full pool are not valid, rather than made on
+     * the calling thread.
+     */
+    @Test
+    public void testRefusedCheck() throws Exception {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(1), new ThreadPoolExecutor.AbortPolicy());
+        CountDownLatch release = new CountDownLatch(1);
+        Thread caller = Thread.currentThread();
+
+        try {
+            Map<String, Validation.RemoteCheck> remote = new HashMap<>();
+            String[] values = {"running", "queued", "refused"};
+            for ( String value : values ) {
+                Validation.RemoteCheck check = new Validation.RemoteCheck(() -> {
+                    assertNotSame("Check made on calling thread", caller, Thread.currentThread());
+                    return release.await(10, TimeUnit.SECONDS);
+                });
+                assertEquals("Wrong check queued", !"refused".equals(value), check.submit(executor));
+                remote.put("awardnumber\n" + value, check);
+            }
+
+            assertFalse("Refused check valid", Validation.getResult(remote, "awardnumber", "refused", 1000));
+            release.countDown();
+            assertTrue("Running check not valid", Validation.getResult(remote, "awardnumber", "running", 1000));
+            assertTrue("Queued check not valid", Validation.getResult(remote, "awardnumber", "queued", 1000));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
@@ -0,0 +1,202 @@
+/*
+ */
+package gov.osti.sitemap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test building and incremental refresh of sitemap files.
+ *
+ * @author ensornl
+ */
+public class SitemapBuilderTest {
+    private Path directory;
+
+    /**
+     * An in-memory Source of entries.
+     */
+    private static class TestSource implements SitemapBuilder.Source {
+        private final TreeMap<Long, String> records = new TreeMap<>();
+
+        @Override
+        public List<SitemapBuilder.Entry> read(Long after, int max) throws IOException {
+            List<SitemapBuilder.Entry> entries = new ArrayList<>();
+            Map<Long, String> tail = (null==after) ? records : records.tailMap(after, false);
+
+            for ( Map.Entry<Long, String> record : tail.entrySet() ) {
+                if (entries.size()>=max)
+                    break;
+                entries.add(new SitemapBuilder.Entry(record.getKey(), record.getValue()));
+            }
+            return entries;
+        }
+    }
+
+    public SitemapBuilderTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("sitemap-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for ( Path file : Files.newDirectoryStream(directory) )
+            Files.delete(file);
+        Files.delete(directory);
+    }
+
+    /**
+     * Read a gzip-compressed file.
+     *
+     * @param file the file
+     * @return the uncompressed contents
+     */
+    private static String read(Path file) throws IOException {
+        InputStream in = new GZIPInputStream(Files.newInputStream(file));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try {
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = in.read(buffer)) != -1)
+                out.write(buffer, 0, count);
+        } finally {
+            in.close();
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A full build writes each page and the index.
+     */
+    @Test
+    public void testRebuild() throws Exception {
+        TestSource source = new TestSource();
+        for ( long id = 1; id<=7; ++id )
+            source.records.put(id, "2017-06-0" + id);
+        source.records.put(8L, null);
+
+        SitemapBuilder builder = new SitemapBuilder(source, directory, "https://example.gov", 3);
+        builder.refresh();
+
+        assertEquals("Wrong page count", 3, builder.getStatistics().get("pages"));
+        assertEquals("Wrong URL count", 8L, builder.getStatistics().get("urls"));
+        assertNull("Unexpected page", builder.getPage(4));
+
+        String page = read(builder.getPage(2));
+        assertTrue("Missing URL", page.contains("<loc>https://example.gov/biblio/4</loc>"));
+        assertTrue("Missing lastmod", page.contains("<lastmod>2017-06-04</lastmod>"));
+        assertFalse("Wrong page content", page.contains("/biblio/7<"));
+        assertTrue("Unknown lastmod written", read(builder.getPage(3)).contains("/biblio/8</loc><changefreq>"));
+
+        String index = read(builder.getIndex());
+        assertTrue("Missing page", index.contains("<loc>https://example.gov/api/sitemap/xml/3</loc>"));
+        assertTrue("Wrong page lastmod", index.contains("<lastmod>2017-06-06</lastmod>"));
+
+        // a new builder picks up the existing manifest without rebuilding
+        SitemapBuilder reloaded = new SitemapBuilder(source, directory, "https://example.gov", 3);
+        reloaded.refresh();
+        assertEquals("Pages rewritten", 0L, reloaded.getStatistics().get("pages_written"));
+        assertEquals("Manifest not loaded", 3, reloaded.getStatistics().get("pages"));
+    }
+
+    /**
+     * Refresh rewrites only the pages affected by changes.
+     */
+    @Test
+    public void testRefresh() throws Exception {
+        TestSource source = new TestSource();
+        for ( long id = 10; id<=90; id += 10 )
+            source.records.put(id, "2017-06-01");
+
+        SitemapBuilder builder = new SitemapBuilder(source, directory, "https://example.gov", 3);
+        builder.refresh();
+        assertEquals("Wrong page count", 3, builder.getStatistics().get("pages"));
+        long written = (Long)builder.getStatistics().get("pages_written");
+
+        // an update within a page rewrites just that page
+        source.records.put(50L, "2017-07-01");
+        builder.changed(Arrays.asList(50L));
+        builder.refresh();
+        assertEquals("Wrong pages rewritten", written + 1, builder.getStatistics().get("pages_written"));
+        assertTrue("Update missing", read(builder.getPage(2)).contains("<lastmod>2017-07-01</lastmod>"));
+        assertTrue("Index not updated", read(builder.getIndex()).contains("<lastmod>2017-07-01</lastmod>"));
+
+        // an insertion shifts the boundaries of the following pages
+        written = (Long)builder.getStatistics().get("pages_written");
+        source.records.put(45L, "2017-07-02");
+        builder.changed(Arrays.asList(45L));
+        builder.refresh();
+        assertEquals("Wrong pages rewritten", written + 3, builder.getStatistics().get("pages_written"));
+        assertEquals("Wrong page count", 4, builder.getStatistics().get("pages"));
+        assertTrue("Shifted record missing", read(builder.getPage(4)).contains("/biblio/90<"));
+
+        // new records at the end only touch the last page
+        written = (Long)builder.getStatistics().get("pages_written");
+        source.records.put(100L, "2017-07-03");
+        builder.changed(Arrays.asList(100L));
+        builder.refresh();
+        assertEquals("Wrong pages rewritten", written + 1, builder.getStatistics().get("pages_written"));
+        assertTrue("New record missing", read(builder.getPage(4)).contains("/biblio/100<"));
+    }
+
+    /**
+     * New records after a full last page start a new page.
+     */
+    @Test
+    public void testRefreshFullLastPage() throws Exception {
+        TestSource source = new TestSource();
+        for ( long id = 10; id<=90; id += 10 )
+            source.records.put(id, "2017-06-01");
+
+        SitemapBuilder builder = new SitemapBuilder(source, directory, "https://example.gov", 3);
+        builder.refresh();
+        long written = (Long)builder.getStatistics().get("pages_written");
+
+        source.records.put(100L, "2017-07-01");
+        builder.changed(Arrays.asList(100L));
+        builder.refresh();
+        assertEquals("Wrong pages rewritten", written + 1, builder.getStatistics().get("pages_written"));
+        assertEquals("Wrong page count", 4, builder.getStatistics().get("pages"));
+        assertTrue("New record missing", read(builder.getPage(4)).contains("/biblio/100<"));
+        assertTrue("New page not indexed", read(builder.getIndex()).contains("<loc>https://example.gov/api/sitemap/xml/4</loc>"));
+
+        // an update to the full last page, with new records after it
+        source.records.remove(100L);
+        builder.rebuild();
+        source.records.put(90L, "2017-07-02");
+        source.records.put(100L, "2017-07-03");
+        builder.changed(Arrays.asList(90L, 100L));
+        builder.refresh();
+        assertEquals("Wrong page count", 4, builder.getStatistics().get("pages"));
+        assertTrue("Update missing", read(builder.getPage(3)).contains("<lastmod>2017-07-02</lastmod>"));
+        assertTrue("New record missing", read(builder.getPage(4)).contains("/biblio/100<"));
+    }
+}